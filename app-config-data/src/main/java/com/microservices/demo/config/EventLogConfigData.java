@@ -0,0 +1,15 @@
+package com.microservices.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "event-log-config")
+public class EventLogConfigData {
+    // Per record events of the hot path are counted and logged as one summary line per event every interval
+    private Long summaryIntervalSeconds = 60L;
+    // Single events logged per second and event on top of the summaries, 0 logs none of them
+    private Integer samplesPerSecond = 0;
+}
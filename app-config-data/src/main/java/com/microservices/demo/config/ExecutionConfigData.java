@@ -0,0 +1,22 @@
+package com.microservices.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "execution-config")
+public class ExecutionConfigData {
+    // Threads of the stream runners, ingest pipeline workers and producer callbacks.
+    // VIRTUAL needs a java 21 runtime and falls back to PLATFORM on older ones
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+    // Platform threads running producer callbacks. 0 runs them on the kafka producer network thread as before;
+    // with virtual threads every callback gets its own thread and this is ignored
+    private Integer producerCallbackThreads = 0;
+
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL
+    }
+}
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Data
 @Configuration
 @ConfigurationProperties(prefix = "kafka-producer-config")
@@ -17,4 +20,84 @@ public class KafkaProducerConfigData {
     private Integer lingerMs;
     private Integer requestTimeoutMs;
     private Integer retryCount;
+    // In-flight and rate limits in front of the kafka template. Disabled by default, so sends are only bounded by the producer buffer
+    private Boolean enableBackpressure = false;
+    private Integer maxInFlightRecords = 10000;
+    // 0 means no rate limit
+    private Integer maxRecordsPerSecond = 0;
+    private Long backpressureBlockTimeoutMs = 500L;
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+    private Integer spillCapacity = 100000;
+    private Long spillReplayIntervalMs = 1000L;
+    // Where spilled records are kept: MEMORY is bounded by spillCapacity, JOURNAL is a memory-mapped segment journal on local disk
+    private SpillStore spillStore = SpillStore.MEMORY;
+    // Also spill records that kafka rejected after retries, instead of only logging them
+    private Boolean spillFailedRecords = false;
+    private String spillJournalDirectory = "./spill-journal";
+    private Integer spillJournalSegmentBytes = 64 * 1024 * 1024;
+    // Appends are forced to disk at most this often, 0 forces every append and below 0 only segment rollover and close do
+    private Long spillJournalForceIntervalMs = 1000L;
+    // Schema ids of the TwitterAvroModelSerializer: a pinned id never calls the schema registry, the cache file keeps
+    // resolved ids across restarts and a refresh interval above 0 re-resolves them in the background
+    private Integer schemaId;
+    private String schemaIdCacheFile;
+    private Long schemaIdRefreshIntervalMs = 0L;
+    // Schema registry client settings of the TwitterAvroModelSerializer, passed on as they are, e.g. basic.auth.credentials.source,
+    // basic.auth.user.info, bearer.auth.token or schema.registry.ssl.truststore.location
+    private Map<String, String> schemaRegistryProperties = new HashMap<>();
+    // Zstd dictionary compression of the tweet text by the TwitterAvroModelSerializer. The directory holds every dictionary
+    // version trained with TweetTextDictionary, the id picks the one to compress with, unset sends the text as it is.
+    // Consumers of such topics need the TwitterAvroModelDeserializer with the same directory. Compressed records have a
+    // schema of their own, with a pinned schemaId its id has to be pinned as well
+    private String textDictionaryDirectory = "./text-dictionaries";
+    private Long textDictionaryId;
+    private Integer textCompressionLevel = 3;
+    private Integer compressedTextSchemaId;
+    // Exactly-once: idempotence keeps retries from duplicating or reordering records within a partition, transactions also
+    // make every batch visible to read_committed consumers all or nothing. Transactions imply idempotence
+    private Boolean enableIdempotence = false;
+    private Boolean enableTransactions = false;
+    // Transactional ids are the prefix, the instance id and a producer counter. A stable instance id per deployed instance
+    // lets a restarted instance fence the transactions its previous run left open, unset takes the host name
+    private String transactionalIdPrefix = "twitter-to-kafka-service-";
+    private String transactionalInstanceId;
+    // partitioner.class of the producer, unset keeps the kafka default. HotKeyAwarePartitioner spreads the records of keys
+    // with more than hotKeyLoadFactor times the average records of a partition within hotKeyWindowMs over up to
+    // hotKeyMaxPartitions partitions
+    private String partitionerClass;
+    private Long hotKeyWindowMs = 10000L;
+    private Double hotKeyLoadFactor = 1.0;
+    private Long hotKeyMinCount = 100L;
+    private Integer hotKeyMaxPartitions = 4;
+    // Adaptive tuning watches the producer metrics every interval and recreates the producer with a batch size and linger
+    // within these bounds. batchSize * batchSizeBoostFactor, lingerMs and compressionType are the starting point
+    private Boolean enableAdaptiveTuning = false;
+    private Long adaptiveTuningIntervalMs = 60000L;
+    private Integer adaptiveMinBatchSize = 16 * 1024;
+    private Integer adaptiveMaxBatchSize = 1024 * 1024;
+    private Integer adaptiveMinLingerMs = 0;
+    private Integer adaptiveMaxLingerMs = 100;
+    // Above this many bytes per second the cheaper high rate compression type is used, when one is set
+    private String adaptiveHighRateCompressionType;
+    private Long adaptiveHighRateBytesPerSecond = 10L * 1024 * 1024;
+    // Kafka producer properties by topic name, e.g. compression.type, linger.ms or batch.size. A topic with overrides is sent
+    // by its own kafka producer, with its own buffer memory, so a slow topic can not take the buffer of the others.
+    // Adaptive tuning only tunes the shared producer
+    private Map<String, Map<String, String>> topicProducerOverrides = new HashMap<>();
+
+    // What to do with a record when no in-flight slot or rate token is available
+    public enum BackpressurePolicy {
+        // wait up to backpressureBlockTimeoutMs, then fail the send with a ProducerBackpressureException. The record is not
+        // sent, the stream runners count it as backpressured and go on with the next status
+        BLOCK,
+        // drop the record immediately and count it
+        SHED,
+        // divert the record to the local spill, it is replayed when capacity frees up
+        SPILL
+    }
+
+    public enum SpillStore {
+        MEMORY,
+        JOURNAL
+    }
 }
@@ -0,0 +1,52 @@
+package com.microservices.demo.config;
+
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData.OverflowPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Routing table of the topic router, used when twitter-to-kafka-service.enable-topic-routing is set.
+// A tweet is sent to the topic of every route it matches. Each destination topic has its own lane: a bounded queue,
+// a worker, an in-flight limit and a kafka producer, so a slow topic fills up its own queue and does not hold back the others.
+// Up to 64 routes; the routes are compiled once at startup
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "topic-routing-config")
+public class TopicRoutingConfigData {
+    private List<Route> routes = new ArrayList<>();
+    // Tweets no route matched go to kafka-config.topic-name, or are dropped and counted when disabled
+    private Boolean sendUnmatchedToDefaultTopic = true;
+    // Lane settings by topic name, topics without an entry take the default lane
+    private Map<String, Lane> lanes = new HashMap<>();
+    private Lane defaultLane = new Lane();
+
+    // All conditions set on a route must hold, the ones left empty or 0 match every tweet.
+    // Keywords match whole words, case insensitive. The stream sources read the language of every status when a route has
+    // languages; a route with languages does not match tweets of unknown language, like the avro models of the mock load generator
+    @Data
+    public static class Route {
+        private String topic;
+        private List<String> keywords = new ArrayList<>();
+        private List<Long> userIds = new ArrayList<>();
+        private List<String> languages = new ArrayList<>();
+        private Integer minTextLength = 0;
+        private Integer maxTextLength = 0;
+    }
+
+    // Batching of a lane. Kafka producer settings like compression.type or linger.ms of a topic are set through
+    // kafka-producer-config.topic-producer-overrides. BLOCK makes the stream thread wait for a full lane and so stalls
+    // every other lane too, DROP_OLDEST keeps the lanes isolated
+    @Data
+    public static class Lane {
+        private Integer queueCapacity = 10000;
+        private Integer batchSize = 500;
+        private Long flushIntervalMs = 50L;
+        private Integer maxInFlightBatches = 4;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    }
+}
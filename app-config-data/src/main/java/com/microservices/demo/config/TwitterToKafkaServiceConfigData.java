@@ -4,6 +4,7 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
@@ -13,10 +14,78 @@ public class TwitterToKafkaServiceConfigData {
     private List<String>TwitterKeywords;
     private String welcomeMessage;
     private Boolean enableMockTweets;
+    // Splits the keywords over this many twitter4j streams, each with its own connection, callback thread and lane.
+    // 1 keeps the single stream. Shards rebalance when the configuration is refreshed through /actuator/refresh
+    private Integer twitterStreamShards = 1;
+    // Raw statuses a shard queues for its lane worker before its callback thread blocks
+    private Integer twitterStreamShardQueueCapacity = 10000;
+    // 0 disables the periodic shard health log
+    private Long twitterStreamShardHealthIntervalSeconds = 30L;
     private Long mockSleepMs;
     private Integer mockMinTweetLength;
     private Integer mockMaxTweetLength;
+    // Load test mode of the mock stream: generator threads send at a fixed target rate instead of sleeping mockSleepMs between tweets
+    private Boolean enableMockLoadTest = false;
+    private Integer mockLoadTestThreads = 4;
+    private Long mockLoadTestTweetsPerSecond = 10000L;
+    // 0 runs until the service is stopped
+    private Long mockLoadTestDurationSeconds = 0L;
+    private Long mockLoadTestReportIntervalSeconds = 10L;
+    // Sends the load test tweets as raw json through the json parser of a real stream instead of as ready avro models
+    private Boolean mockLoadTestRawJson = false;
+    // Stream from the twitter api v2 filtered stream instead of the v1 twitter4j stream; ignored when mock tweets are enabled
+    private Boolean enableV2Tweets = false;
     private String twitterV2BaseUrl;
     private String twitterV2RulesBaseUrl;
     private String twitterV2BearerToken;
+    // Runs the topic bootstrap, the schema registry check and the producer warm up at the same time. With the ingest pipeline
+    // the stream also connects right away and its statuses wait in the pipeline queue until kafka is ready
+    private Boolean enableConcurrentStartup = false;
+    // Staging pipeline between the status listener and the kafka producer. Disabled by default, so statuses are sent on the stream thread as before
+    private Boolean enableIngestPipeline = false;
+    private Integer pipelineQueueCapacity = 10000;
+    private Integer pipelineBatchSize = 500;
+    private Long pipelineFlushIntervalMs = 50L;
+    private Integer pipelineWorkerThreads = 2;
+    private OverflowPolicy pipelineOverflowPolicy = OverflowPolicy.BLOCK;
+    // Reactor pipeline instead of the listener callbacks: statuses flow as a Flux through transformation, deduplication and
+    // batching into the producer, with at most reactiveMaxInFlightBatches batches waiting for their acks. It takes its batch size,
+    // flush interval and queue capacity from the pipeline settings. A stream thread waits while the pipeline has no demand,
+    // so the acks of the broker pace the source instead of a growing buffer
+    private Boolean enableReactivePipeline = false;
+    private Integer reactiveMaxInFlightBatches = 4;
+    // Routes every tweet to the topics of the topic-routing-config instead of kafka-config.topic-name, each topic with its
+    // own lane of queue, worker and batching. Replaces the other pipelines when enabled
+    private Boolean enableTopicRouting = false;
+    // Drops tweets whose id was already produced within the window. Memory is fixed by the buckets and the ids per bucket,
+    // 8 to 16 bytes per id; a bucket that fills up early is rotated early, which shortens the window
+    private Boolean enableDeduplication = false;
+    private Long deduplicationWindowSeconds = 300L;
+    private Integer deduplicationWindowBuckets = 4;
+    private Integer deduplicationMaxIdsPerBucket = 250000;
+    // Local filter on top of the keywords twitter matches on, applied before a status is sent. Keywords match whole words,
+    // case insensitive; a status needs one of the include keywords and regexes if any are set and none of the excludes.
+    // Empty languages accept every language, 0 disables a length limit. Rules are recompiled when the configuration is refreshed
+    private Boolean enableTweetFilter = false;
+    private List<String> filterIncludeKeywords = new ArrayList<>();
+    private List<String> filterExcludeKeywords = new ArrayList<>();
+    private List<String> filterIncludeRegexes = new ArrayList<>();
+    private List<String> filterExcludeRegexes = new ArrayList<>();
+    private List<String> filterLanguages = new ArrayList<>();
+    private Integer filterMinTextLength = 0;
+    private Integer filterMaxTextLength = 0;
+
+    // What to do with a new status when the pipeline queue is full
+    public enum OverflowPolicy {
+        // wait on the stream thread until a worker frees a slot
+        BLOCK,
+        // evict the oldest queued status to make room for the new one
+        DROP_OLDEST,
+        // bypass the queue and transform and send the status on the calling thread, which slows the stream down to the producer.
+        // Before kafka is ready the calling thread waits for it like the workers do
+        CALLER_RUNS,
+        // transform the status on the calling thread and divert it to the record spill of the kafka producer, the spill replayer
+        // sends it when the producer has capacity again. Statuses that do not fit into the spill either are dropped
+        SPILL
+    }
 }
@@ -0,0 +1,57 @@
+package com.microservices.demo.benchmarks;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// Configuration and sample data shared by the benchmarks, mirroring the values of the twitter_to_kafka profile
+final class BenchmarkFixtures {
+
+    static final String TOPIC_NAME = "twitter-topic";
+
+    static final List<String> KEYWORDS = List.of("Java", "Microservices", "Kafka", "Elasticsearch");
+
+    static final int MIN_TWEET_LENGTH = 5;
+
+    static final int MAX_TWEET_LENGTH = 15;
+
+    private BenchmarkFixtures() {
+    }
+
+    static KafkaConfigData kafkaConfig() {
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setTopicName(TOPIC_NAME);
+        kafkaConfigData.setTopicNamesToCreate(List.of(TOPIC_NAME));
+        return kafkaConfigData;
+    }
+
+    static KafkaProducerConfigData producerConfig() {
+        return new KafkaProducerConfigData();
+    }
+
+    // Plain Avro binary encoding without the schema registry wire format, for the mock producer
+    static Serializer<TwitterAvroModel> avroBinarySerializer() {
+        SpecificDatumWriter<TwitterAvroModel> datumWriter = new SpecificDatumWriter<>(TwitterAvroModel.class);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        BinaryEncoder[] encoder = new BinaryEncoder[1];
+        return (topic, message) -> {
+            try {
+                buffer.reset();
+                encoder[0] = EncoderFactory.get().directBinaryEncoder(buffer, encoder[0]);
+                datumWriter.write(message, encoder[0]);
+                return buffer.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
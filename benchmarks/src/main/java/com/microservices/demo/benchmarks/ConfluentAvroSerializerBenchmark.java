@@ -0,0 +1,59 @@
+package com.microservices.demo.benchmarks;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.serializers.AbstractKafkaSchemaSerDeConfig;
+import io.confluent.kafka.serializers.KafkaAvroSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// The value serializer the service is configured with, against an in-memory schema registry so no network is involved
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfluentAvroSerializerBenchmark {
+
+    private KafkaAvroSerializer kafkaAvroSerializer;
+
+    private TwitterAvroModel twitterAvroModel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        kafkaAvroSerializer = new KafkaAvroSerializer(new MockSchemaRegistryClient());
+        kafkaAvroSerializer.configure(Map.of(AbstractKafkaSchemaSerDeConfig.SCHEMA_REGISTRY_URL_CONFIG, "mock://benchmarks"), false);
+        twitterAvroModel = TwitterAvroModel.newBuilder()
+                .setId(1_234_567_890_123L)
+                .setUserId(987_654_321L)
+                .setText("Lorem ipsum dolor sit amet Kafka consectetuer adipiscing elit Maecenas porttitor")
+                .setCreatedAt(System.currentTimeMillis())
+                .build();
+        // Registers the schema once, so the measurement only sees the cached schema id lookup
+        kafkaAvroSerializer.serialize(BenchmarkFixtures.TOPIC_NAME, twitterAvroModel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        kafkaAvroSerializer.close();
+    }
+
+    @Benchmark
+    public byte[] serializeWithSchemaRegistryWireFormat() {
+        return kafkaAvroSerializer.serialize(BenchmarkFixtures.TOPIC_NAME, twitterAvroModel);
+    }
+}
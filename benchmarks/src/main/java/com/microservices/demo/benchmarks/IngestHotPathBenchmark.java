@@ -0,0 +1,181 @@
+package com.microservices.demo.benchmarks;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.config.service.impl.TwitterKafkaProducer;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import com.microservices.demo.kafka.producer.serializer.TwitterAvroModelSerializer;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.impl.DirectIngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.runner.impl.MockTweetSynthesizer;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of every step a mock tweet goes through on its way to kafka, from raw json to the producer.
+// Each step runs on pre-built input, so the numbers of one step do not include the cost of the steps before it
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestHotPathBenchmark {
+
+    // The mock producer keeps every sent record, it is cleared regularly so the history does not grow during an iteration
+    private static final int MOCK_PRODUCER_HISTORY_LIMIT = 10_000;
+
+    private MockTweetSynthesizer mockTweetSynthesizer;
+
+    private TwitterJsonToAvroTransformer twitterJsonToAvroTransformer;
+
+    private Serializer<TwitterAvroModel> avroBinarySerializer;
+
+    private TwitterAvroModelSerializer wireFormatSerializer;
+
+    private TwitterKafkaStatusListener twitterKafkaStatusListener;
+
+    private TweetIdDeduplicator tweetIdDeduplicator;
+
+    private TweetFilter tweetFilter;
+
+    private long nextTweetId;
+
+    private MockProducer<Long, TwitterAvroModel> mockProducer;
+
+    private String tweetAsRawJson;
+
+    private TwitterAvroModel twitterAvroModel;
+
+    private int sentSinceClear;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mockTweetSynthesizer = new MockTweetSynthesizer(BenchmarkFixtures.KEYWORDS.toArray(new String[0]),
+                BenchmarkFixtures.MIN_TWEET_LENGTH, BenchmarkFixtures.MAX_TWEET_LENGTH);
+        // Meters record into a simple registry, so the numbers include the cost of the instrumentation
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IngestMetrics ingestMetrics = new IngestMetrics(meterRegistry);
+        twitterJsonToAvroTransformer = new TwitterJsonToAvroTransformer(ingestMetrics);
+        avroBinarySerializer = BenchmarkFixtures.avroBinarySerializer();
+        wireFormatSerializer = new TwitterAvroModelSerializer((subject, schema) -> 1);
+
+        mockProducer = new MockProducer<>(true, new LongSerializer(), BenchmarkFixtures.avroBinarySerializer()) {
+            // KafkaTemplate closes its producer after each send, a real producer factory hands out a close-safe wrapper instead
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        KafkaProducerConfigData producerConfig = BenchmarkFixtures.producerConfig();
+        TwitterKafkaProducer twitterKafkaProducer = new TwitterKafkaProducer(
+                new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer)),
+                producerConfig,
+                new InFlightLimiter(producerConfig),
+                new InMemoryRecordSpill<>(producerConfig),
+                new ExecutionConfigData(),
+                new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(meterRegistry));
+        DirectIngestPipeline ingestPipeline = new DirectIngestPipeline(BenchmarkFixtures.kafkaConfig(), twitterKafkaProducer,
+                new TweetIdDeduplicator(new TwitterToKafkaServiceConfigData()));
+        twitterKafkaStatusListener = new TwitterKafkaStatusListener(BenchmarkFixtures.kafkaConfig(), ingestPipeline,
+                twitterJsonToAvroTransformer, new TweetFilter(new TwitterToKafkaServiceConfigData()));
+
+        TwitterToKafkaServiceConfigData deduplicationConfig = new TwitterToKafkaServiceConfigData();
+        deduplicationConfig.setEnableDeduplication(true);
+        tweetIdDeduplicator = new TweetIdDeduplicator(deduplicationConfig);
+
+        TwitterToKafkaServiceConfigData filterConfig = new TwitterToKafkaServiceConfigData();
+        filterConfig.setEnableTweetFilter(true);
+        filterConfig.setFilterIncludeKeywords(BenchmarkFixtures.KEYWORDS);
+        filterConfig.setFilterExcludeKeywords(List.of("giveaway", "crypto", "airdrop", "nsfw", "follow back"));
+        filterConfig.setFilterMaxTextLength(280);
+        tweetFilter = new TweetFilter(filterConfig);
+
+        tweetAsRawJson = mockTweetSynthesizer.createTweetAsRawJson();
+        twitterAvroModel = twitterJsonToAvroTransformer.getTwitterAvroModelFromJson(tweetAsRawJson);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearMockProducer() {
+        mockProducer.clear();
+        sentSinceClear = 0;
+    }
+
+    @Benchmark
+    public String formatMockTweet() {
+        return mockTweetSynthesizer.createTweetAsRawJson();
+    }
+
+    // What the mock load test generators hand to the ingest pipeline
+    @Benchmark
+    public TwitterAvroModel createMockTweetModel() {
+        return mockTweetSynthesizer.createTweet();
+    }
+
+    // What the raw json sources hand to the ingest pipeline
+    @Benchmark
+    public TwitterAvroModel transformJsonToAvro() {
+        return twitterJsonToAvroTransformer.getTwitterAvroModelFromJson(tweetAsRawJson);
+    }
+
+    // Unique ids, so every call is a miss that is inserted, buckets rotate early once the configured ids are reached
+    @Benchmark
+    public boolean deduplicateTweetId() {
+        return tweetIdDeduplicator.isDuplicate(++nextTweetId);
+    }
+
+    // Length check and one automaton pass over the text for all include and exclude keywords
+    @Benchmark
+    public boolean filterTweetText() {
+        return tweetFilter.accept(twitterAvroModel.getText(), null);
+    }
+
+    @Benchmark
+    public byte[] serializeAvroBinary() {
+        return avroBinarySerializer.serialize(BenchmarkFixtures.TOPIC_NAME, twitterAvroModel);
+    }
+
+    // Hand written encoder including the schema registry header, compare with ConfluentAvroSerializerBenchmark
+    @Benchmark
+    public byte[] serializeWireFormat() {
+        return wireFormatSerializer.serialize(BenchmarkFixtures.TOPIC_NAME, twitterAvroModel);
+    }
+
+    // Listener, json transformer, producer and the avro serialization inside the mock producer, without a broker
+    @Benchmark
+    public void listenerToProducer() {
+        twitterKafkaStatusListener.onRawStatus(tweetAsRawJson);
+        if (++sentSinceClear == MOCK_PRODUCER_HISTORY_LIMIT) {
+            mockProducer.clear();
+            sentSinceClear = 0;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.microservices.demo.common.execution;
+
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.ExecutionConfigData.ThreadMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Single place that decides whether the long running and blocking work of the services runs on virtual or platform threads.
+// The modules are compiled for java 17, so the virtual thread api is looked up reflectively and only used when the runtime has it.
+// Code running on these threads must not block inside synchronized blocks (that pins the carrier thread), use java.util.concurrent locks instead
+@Component
+public class ExecutorFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutorFactory.class);
+
+    private final Method ofVirtual;
+
+    private final Method builderName;
+
+    private final Method builderFactory;
+
+    private final Method newThreadPerTaskExecutor;
+
+    public ExecutorFactory(ExecutionConfigData executionConfigData) {
+        Method[] virtualThreadApi = executionConfigData.getThreadMode() == ThreadMode.VIRTUAL ? findVirtualThreadApi() : null;
+        this.ofVirtual = virtualThreadApi == null ? null : virtualThreadApi[0];
+        this.builderName = virtualThreadApi == null ? null : virtualThreadApi[1];
+        this.builderFactory = virtualThreadApi == null ? null : virtualThreadApi[2];
+        this.newThreadPerTaskExecutor = virtualThreadApi == null ? null : virtualThreadApi[3];
+        LOG.info("Using {} threads", isVirtual() ? "virtual" : "platform");
+    }
+
+    public boolean isVirtual() {
+        return ofVirtual != null;
+    }
+
+    // Threads named name-1, name-2, ...; platform threads are daemon threads so they never keep the jvm alive
+    public ThreadFactory threadFactory(String name) {
+        if (isVirtual()) {
+            try {
+                Object builder = builderName.invoke(ofVirtual.invoke(null), name + "-", 1L);
+                return (ThreadFactory) builderFactory.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create virtual thread factory " + name, e);
+            }
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // A virtual thread per task, or a fixed pool of platformThreads threads when running on platform threads
+    public ExecutorService newExecutor(String name, int platformThreads) {
+        ThreadFactory threadFactory = threadFactory(name);
+        if (isVirtual()) {
+            try {
+                return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create virtual thread executor " + name, e);
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, threadFactory);
+    }
+
+    public Thread startThread(String name, Runnable task) {
+        Thread thread = threadFactory(name).newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    private static Method[] findVirtualThreadApi() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method builderName = builderClass.getMethod("name", String.class, long.class);
+            Method builderFactory = builderClass.getMethod("factory");
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // Fails on java 19 and 20 unless preview features are enabled
+            builderFactory.invoke(builderName.invoke(ofVirtual.invoke(null), "probe-", 1L));
+            return new Method[]{ofVirtual, builderName, builderFactory, newThreadPerTaskExecutor};
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            LOG.warn("Virtual threads are not available on java {}, falling back to platform threads", Runtime.version().feature());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.microservices.demo.common.logging;
+
+import com.microservices.demo.config.EventLogConfigData;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Writes the summary line of every SampledEventLogger once per summary interval and applies the sampling rate.
+// Without it, e.g. in tests and benchmarks, events are only counted
+@Component
+public class EventLogSummarizer {
+
+    private final EventLogConfigData eventLogConfigData;
+
+    private ScheduledExecutorService summaryExecutor;
+
+    // Only touched by the summary thread, and by close once that thread is gone
+    private long lastSummaryNanos;
+
+    public EventLogSummarizer(EventLogConfigData eventLogConfigData) {
+        this.eventLogConfigData = eventLogConfigData;
+    }
+
+    @PostConstruct
+    public void start() {
+        SampledEventLogger.setSamplesPerSecond(eventLogConfigData.getSamplesPerSecond());
+        long intervalSeconds = eventLogConfigData.getSummaryIntervalSeconds();
+        lastSummaryNanos = System.nanoTime();
+        summaryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-log-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+        summaryExecutor.scheduleAtFixedRate(this::summarize, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // Summarizes what was counted since the last interval, so the last events before a shutdown are not lost.
+    // That window is usually shorter than an interval, the summary gives its actual length
+    @PreDestroy
+    public void close() {
+        if (summaryExecutor == null) {
+            return;
+        }
+        summaryExecutor.shutdown();
+        try {
+            // A summary still running would race the last one on the counts
+            if (!summaryExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        summarize();
+    }
+
+    void summarize() {
+        long now = System.nanoTime();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - lastSummaryNanos);
+        lastSummaryNanos = now;
+        for (SampledEventLogger eventLogger : SampledEventLogger.getEventLoggers()) {
+            eventLogger.summarize(elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.microservices.demo.common.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Logs a per record event of the hot path, like a received tweet or a sent record, without writing a line per record.
+// Every event is counted and the EventLogSummarizer logs the count once per interval; on top of that at most
+// samples-per-second single events are logged, with their details as key value pairs.
+// Held in a static field next to the class logger:
+//     if (SENT_EVENTS.record()) { SENT_EVENTS.log("topic", topicName, "key", key); }
+// so building the details costs nothing unless the event is sampled
+public final class SampledEventLogger {
+
+    private static final long SAMPLE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final List<SampledEventLogger> EVENT_LOGGERS = new CopyOnWriteArrayList<>();
+
+    // Shared by all events, set from event-log-config.samples-per-second by the EventLogSummarizer
+    private static volatile int samplesPerSecond;
+
+    private final Logger logger;
+
+    private final String event;
+
+    private final LongAdder count = new LongAdder();
+
+    private final AtomicLong sampleWindowStartNanos = new AtomicLong(System.nanoTime());
+
+    private final AtomicInteger sampleWindowCount = new AtomicInteger();
+
+    // Only touched by the summarizer thread
+    private long summarizedCount;
+
+    private SampledEventLogger(Class<?> owner, String event) {
+        this.logger = LoggerFactory.getLogger(owner);
+        this.event = event;
+    }
+
+    public static SampledEventLogger getLogger(Class<?> owner, String event) {
+        SampledEventLogger eventLogger = new SampledEventLogger(owner, event);
+        EVENT_LOGGERS.add(eventLogger);
+        return eventLogger;
+    }
+
+    static void setSamplesPerSecond(int samples) {
+        samplesPerSecond = samples;
+    }
+
+    static List<SampledEventLogger> getEventLoggers() {
+        return EVENT_LOGGERS;
+    }
+
+    // Counts one event and returns true if this one should be logged on its own as well
+    public boolean record() {
+        count.increment();
+        int samples = samplesPerSecond;
+        return samples > 0 && logger.isInfoEnabled() && trySample(samples);
+    }
+
+    public void log(String key, Object value) {
+        event().addKeyValue(key, value).log();
+    }
+
+    public void log(String key1, Object value1, String key2, Object value2) {
+        event().addKeyValue(key1, value1).addKeyValue(key2, value2).log();
+    }
+
+    public void log(String key1, Object value1, String key2, Object value2, String key3, Object value3) {
+        event().addKeyValue(key1, value1).addKeyValue(key2, value2).addKeyValue(key3, value3).log();
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Logs the events counted since the last summary, elapsedMillis ago, nothing if there were none
+    void summarize(long elapsedMillis) {
+        long total = count.sum();
+        long events = total - summarizedCount;
+        summarizedCount = total;
+        if (events > 0) {
+            logger.atInfo()
+                    .setMessage("{} {} event(s) in the last {} ms")
+                    .addArgument(events)
+                    .addArgument(event)
+                    .addArgument(elapsedMillis)
+                    .addKeyValue("event", event)
+                    .addKeyValue("count", events)
+                    .addKeyValue("elapsed_ms", elapsedMillis)
+                    .log();
+        }
+    }
+
+    private LoggingEventBuilder event() {
+        return logger.atInfo().setMessage(event).addKeyValue("event", event);
+    }
+
+    private boolean trySample(int samples) {
+        long now = System.nanoTime();
+        long windowStart = sampleWindowStartNanos.get();
+        if (now - windowStart >= SAMPLE_WINDOW_NANOS && sampleWindowStartNanos.compareAndSet(windowStart, now)) {
+            sampleWindowCount.set(0);
+        }
+        return sampleWindowCount.incrementAndGet() <= samples;
+    }
+}
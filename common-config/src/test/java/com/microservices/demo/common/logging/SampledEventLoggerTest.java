@@ -0,0 +1,93 @@
+package com.microservices.demo.common.logging;
+
+import com.microservices.demo.config.EventLogConfigData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SampledEventLoggerTest {
+
+    @AfterEach
+    public void resetSampling() {
+        SampledEventLogger.setSamplesPerSecond(0);
+    }
+
+    @Test
+    public void countsEveryEventAndSamplesNoneByDefault() {
+        SampledEventLogger eventLogger = SampledEventLogger.getLogger(SampledEventLoggerTest.class, "test.default");
+        for (int i = 0; i < 1_000; i++) {
+            assertFalse(eventLogger.record());
+        }
+        assertEquals(1_000, eventLogger.getCount());
+    }
+
+    @Test
+    public void samplesAtMostTheConfiguredEventsPerSecond() {
+        SampledEventLogger.setSamplesPerSecond(3);
+        SampledEventLogger eventLogger = SampledEventLogger.getLogger(SampledEventLoggerTest.class, "test.sampled");
+        int sampled = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (eventLogger.record()) {
+                eventLogger.log("index", i);
+                sampled++;
+            }
+        }
+        // The loop may cross into a second window on a slow machine
+        assertTrue(sampled >= 3 && sampled <= 6, "sampled " + sampled);
+        assertEquals(1_000, eventLogger.getCount());
+    }
+
+    @Test
+    public void summarizerAppliesTheSamplingRateAndFlushesOnClose() {
+        EventLogConfigData configData = new EventLogConfigData();
+        configData.setSamplesPerSecond(1);
+        EventLogSummarizer summarizer = new EventLogSummarizer(configData);
+        summarizer.start();
+        SampledEventLogger eventLogger = SampledEventLogger.getLogger(SampledEventLoggerTest.class, "test.summarized");
+
+        assertTrue(eventLogger.record());
+        assertFalse(eventLogger.record());
+        summarizer.close();
+        assertEquals(2, eventLogger.getCount());
+    }
+
+    @Test
+    public void closeSummarizesTheActualLengthOfTheLastWindow() {
+        EventLogConfigData configData = new EventLogConfigData();
+        configData.setSummaryIntervalSeconds(3_600L);
+        EventLogSummarizer summarizer = new EventLogSummarizer(configData);
+        Logger logger = (Logger) LoggerFactory.getLogger(SampledEventLoggerTest.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            summarizer.start();
+            SampledEventLogger eventLogger = SampledEventLogger.getLogger(SampledEventLoggerTest.class, "test.closed");
+            eventLogger.record();
+            eventLogger.record();
+            summarizer.close();
+        } finally {
+            logger.detachAppender(appender);
+        }
+
+        List<ILoggingEvent> summaries = appender.list.stream()
+                .filter(event -> event.getFormattedMessage().contains("test.closed")).toList();
+        assertEquals(1, summaries.size());
+        ILoggingEvent summary = summaries.get(0);
+        assertEquals(2L, summary.getArgumentArray()[0]);
+        long elapsedMillis = summary.getKeyValuePairs().stream().filter(pair -> pair.key.equals("elapsed_ms"))
+                .mapToLong(pair -> (Long) pair.value).findFirst().orElseThrow();
+        assertTrue(summary.getFormattedMessage().endsWith("in the last " + elapsedMillis + " ms"));
+        // Closed right away, far from the hour of a full interval
+        assertTrue(elapsedMillis < 60_000L, "elapsed " + elapsedMillis);
+    }
+}
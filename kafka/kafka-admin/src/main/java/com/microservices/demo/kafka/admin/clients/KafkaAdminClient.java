@@ -3,23 +3,29 @@ package com.microservices.demo.kafka.admin.clients;
 import com.microservices.demo.config.KafkaConfigData;
 import com.microservices.demo.config.RetryConfigData;
 import com.microservices.demo.kafka.admin.exception.KafkaClientException;
-import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.Admin;
 import org.apache.kafka.clients.admin.CreateTopicsResult;
 import org.apache.kafka.clients.admin.NewTopic;
-import org.apache.kafka.clients.admin.TopicListing;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.errors.TopicExistsException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
-import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
@@ -31,7 +37,7 @@ public class KafkaAdminClient {
     private final RetryConfigData retryConfigData;
 
     // AdminClient is a class provided by Apache Kafka within the Kafka Clients library that allows administrative operations on Kafka brokers. It is used to manage and inspect various Kafka cluster resources, such as topics, brokers, and configurations
-    private final AdminClient adminClient;
+    private final Admin adminClient;
 
     // A RetryTemplate in Spring Framework is a utility that provides retry operations for executing code that may fail. It allows configuring retry policies and handling failure scenarios with retries, making it ideal for managing transient errors, such as network failures or temporary unavailability of external systems.
     private final RetryTemplate retryTemplate;
@@ -40,7 +46,7 @@ public class KafkaAdminClient {
     private final WebClient webClient;
 
 
-    public KafkaAdminClient(KafkaConfigData kafkaConfigData, RetryConfigData retryConfigData, AdminClient adminClient, RetryTemplate retryTemplate, WebClient webClient) {
+    public KafkaAdminClient(KafkaConfigData kafkaConfigData, RetryConfigData retryConfigData, Admin adminClient, RetryTemplate retryTemplate, WebClient webClient) {
         this.kafkaConfigData = kafkaConfigData;
         this.retryConfigData = retryConfigData;
         this.adminClient = adminClient;
@@ -48,118 +54,193 @@ public class KafkaAdminClient {
         this.webClient = webClient;
     }
 
+    // Blocks until every configured topic exists and has a leader on all of its partitions
     public void createTopics(){
+        try {
+            createTopicsAsync().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof KafkaClientException kafkaClientException ? kafkaClientException
+                    : new KafkaClientException("Error while creating kafka topics", e.getCause());
+        }
+    }
+
+    // Creates the configured topics and completes when all of them are ready. Only the configured names are created and described,
+    // so the time it takes does not grow with the number of topics in the cluster, and the topics are followed in parallel.
+    // A topic that already exists counts as created. Waits back off from sleepTimeMs by the multiplier without blocking a thread
+    public CompletableFuture<List<TopicReadiness>> createTopicsAsync(){
+        long startNanos = System.nanoTime();
         // A Kafka client class representing the result of a topic creation request. It is used to handle the response when attempting to create topics in Kafka asynchronously.
         CreateTopicsResult createTopicsResult;
         try{
             // call a method with retry logic configured in the retry config
             createTopicsResult = retryTemplate.execute(this::doCreateTopics);
         }catch(Throwable t){
-            throw new KafkaClientException("Reached maximum number of retry for creating kafka topics", t);
+            return CompletableFuture.failedFuture(new KafkaClientException("Reached maximum number of retry for creating kafka topics", t));
         }
-        checkTopicsCreated();
+        List<CompletableFuture<TopicReadiness>> topicFutures = createTopicsResult.values().entrySet().stream()
+                .map(topicCreation -> awaitTopicCreated(topicCreation.getKey(), topicCreation.getValue(), 1, retryConfigData.getSleepTimeMs())
+                        .thenCompose(created -> awaitLeaders(topicCreation.getKey(), 1, retryConfigData.getSleepTimeMs())
+                                .thenApply(describeAttempts -> new TopicReadiness(topicCreation.getKey(), created, describeAttempts,
+                                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)))))
+                .toList();
+        return CompletableFuture.allOf(topicFutures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> {
+                    List<TopicReadiness> report = topicFutures.stream().map(CompletableFuture::join).toList();
+                    logTimingReport(report, startNanos);
+                    return report;
+                });
     }
 
+    // Waits until every partition of the configured topics has a leader, without creating them
     public void checkTopicsCreated(){
-        Collection<TopicListing> topics = getTopics();
-        int retryCount = 1;
-        Integer maxRetry = retryConfigData.getMaxAttempts();
-        Integer multiplier = retryConfigData.getMultiplier().intValue();
-        Long sleepTimeMs = retryConfigData.getSleepTimeMs();
-        for(String topic: kafkaConfigData.getTopicNamesToCreate()){
-            // Wait until topic created or max retry reached, increasing waiting time exponentially
-            while(!isTopicCreated(topics, topic)){
-                checkMaxRetry(retryCount++, maxRetry);
-                sleep(sleepTimeMs);
-                sleepTimeMs *= multiplier;
-                topics = getTopics();
-            }
+        List<CompletableFuture<Integer>> leaderFutures = kafkaConfigData.getTopicNamesToCreate().stream()
+                .map(topic -> awaitLeaders(topic.trim(), 1, retryConfigData.getSleepTimeMs()))
+                .toList();
+        try {
+            CompletableFuture.allOf(leaderFutures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof KafkaClientException kafkaClientException ? kafkaClientException
+                    : new KafkaClientException("Error while reading kafka topics", e.getCause());
         }
     }
+
     // to be able to check if schema registry is up and running
     public void checkSchemaRegistry(){
-        int retryCount = 1;
-        Integer maxRetry = retryConfigData.getMaxAttempts();
-        Integer multiplier = retryConfigData.getMultiplier().intValue();
-        Long sleepTimeMs = retryConfigData.getSleepTimeMs();
-        while(!getSchemaRegistryStatus().is2xxSuccessful()){
-            checkMaxRetry(retryCount, maxRetry);
-            sleep(sleepTimeMs);
-            sleepTimeMs *= multiplier;
+        try {
+            checkSchemaRegistryAsync().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof KafkaClientException kafkaClientException ? kafkaClientException
+                    : new KafkaClientException("Error while checking schema registry", e.getCause());
         }
     }
 
+    // Completes once the schema registry answers with a 2xx status, so it can be awaited next to the topic bootstrap.
+    // Waits back off like the topic checks, without blocking a thread
+    public CompletableFuture<Void> checkSchemaRegistryAsync(){
+        return awaitSchemaRegistry(1, retryConfigData.getSleepTimeMs());
+    }
+
+    private CompletableFuture<Void> awaitSchemaRegistry(int attempt, long sleepTimeMs) {
+        return getSchemaRegistryStatus().thenCompose(status -> {
+            if (status.is2xxSuccessful()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (attempt >= retryConfigData.getMaxAttempts()) {
+                return CompletableFuture.failedFuture(new KafkaClientException("Reached maximum number of retry for checking schema registry"));
+            }
+            LOG.info("Schema registry answered {}, attempt {}", status, attempt);
+            return delay(sleepTimeMs).thenCompose(delayed -> awaitSchemaRegistry(attempt + 1, nextSleepTimeMs(sleepTimeMs)));
+        });
+    }
+
     // We will make a rest call here and return the HTTP status to check the status of the schema registry.
-    private HttpStatus getSchemaRegistryStatus(){
+    private CompletableFuture<HttpStatusCode> getSchemaRegistryStatus(){
         try {
-            return (HttpStatus) webClient
+            return webClient
                     .method(HttpMethod.GET)
                     .uri(kafkaConfigData.getSchemaRegistryUrl())
-                    .exchange()
-                    .map(ClientResponse::statusCode)
-                    .block();
+                    .exchangeToMono(response -> Mono.just(response.statusCode()))
+                    .onErrorReturn(HttpStatus.SERVICE_UNAVAILABLE)
+                    .toFuture();
         } catch (Exception e) {
-            return HttpStatus.SERVICE_UNAVAILABLE;
+            return CompletableFuture.completedFuture(HttpStatus.SERVICE_UNAVAILABLE);
         }
     }
 
-    private void sleep(Long sleepTimeMs){
-        try {
-            Thread.sleep(sleepTimeMs);
-        } catch (InterruptedException e) {
-            throw new KafkaClientException("Error while sleeping for waiting new created topics");
-        }
+    // RetryContext is an interface in Spring Retry that provides contextual information about the current retry operation. It is used within the retry logic to access details such as the number of retries attempted, the exception that caused the retry, and other metadata. This context is available during each attempt of the retry and helps in making decisions or logging relevant information.
+    private CreateTopicsResult doCreateTopics(RetryContext retryContext) {
+        List<String> topicNames = kafkaConfigData.getTopicNamesToCreate();
+        LOG.info("Creating {} topics(s), attempt {}", topicNames.size(), retryContext.getRetryCount());
+        List<NewTopic> kafkaTopics =  topicNames.stream().map(topic -> newTopic(topic.trim())).collect(Collectors.toList());
+        return adminClient.createTopics(kafkaTopics);
+    }
+
+    private NewTopic newTopic(String topicName) {
+        return new NewTopic(topicName, kafkaConfigData.getNumOfPartitions(), kafkaConfigData.getReplicationFactor());
     }
 
-    private void checkMaxRetry(int retry, Integer maxRetry) {
-        if(retry>maxRetry)
-            throw new KafkaClientException("Reached maximum number of retry for reading kafka topics");
+
+    // Completes with true if the topic was created and false if it existed already. Other failures create the topic again after a wait
+    private CompletableFuture<Boolean> awaitTopicCreated(String topicName, KafkaFuture<Void> creation, int attempt, long sleepTimeMs) {
+        return toCompletableFuture(creation).handle((ignored, throwable) -> {
+            Throwable cause = unwrap(throwable);
+            if (cause == null) {
+                return CompletableFuture.completedFuture(true);
+            }
+            if (cause instanceof TopicExistsException) {
+                return CompletableFuture.completedFuture(false);
+            }
+            if (attempt >= retryConfigData.getMaxAttempts()) {
+                return CompletableFuture.<Boolean>failedFuture(
+                        new KafkaClientException("Reached maximum number of retry for creating kafka topic " + topicName, cause));
+            }
+            LOG.warn("Could not create kafka topic {}, attempt {}: {}", topicName, attempt, cause.getMessage());
+            return delay(sleepTimeMs).thenCompose(delayed -> awaitTopicCreated(topicName,
+                    adminClient.createTopics(List.of(newTopic(topicName))).values().get(topicName), attempt + 1, nextSleepTimeMs(sleepTimeMs)));
+        }).thenCompose(Function.identity());
     }
 
-    private boolean isTopicCreated(Collection<TopicListing> topics, String topicName) {
-        if(topics == null)
-            return false;
-        return topics.stream().anyMatch(topic -> topic.name().equals(topicName));
+    // Completes with the number of describe calls it took until every partition of the topic had a leader
+    private CompletableFuture<Integer> awaitLeaders(String topicName, int attempt, long sleepTimeMs) {
+        LOG.debug("Describing kafka topic {}, attempt {}", topicName, attempt);
+        return toCompletableFuture(adminClient.describeTopics(List.of(topicName)).topicNameValues().get(topicName))
+                .handle((description, throwable) -> throwable == null && hasLeaders(description))
+                .thenCompose(ready -> {
+                    if (ready) {
+                        return CompletableFuture.completedFuture(attempt);
+                    }
+                    if (attempt >= retryConfigData.getMaxAttempts()) {
+                        return CompletableFuture.failedFuture(
+                                new KafkaClientException("Reached maximum number of retry for reading kafka topic " + topicName));
+                    }
+                    return delay(sleepTimeMs).thenCompose(delayed -> awaitLeaders(topicName, attempt + 1, nextSleepTimeMs(sleepTimeMs)));
+                });
     }
 
-    // RetryContext is an interface in Spring Retry that provides contextual information about the current retry operation. It is used within the retry logic to access details such as the number of retries attempted, the exception that caused the retry, and other metadata. This context is available during each attempt of the retry and helps in making decisions or logging relevant information.
-    private CreateTopicsResult doCreateTopics(RetryContext retryContext) {
-        List<String> topicNames = kafkaConfigData.getTopicNamesToCreate();
-        LOG.info("Creating {} topics(s), attempt {}", topicNames.size(), retryContext.getRetryCount());
-        List<NewTopic> kafkaTopics =  topicNames.stream().map(topic -> new NewTopic(
-                topic.trim(),
-                kafkaConfigData.getNumOfPartitions(),
-                kafkaConfigData.getReplicationFactor()
-        )).collect(Collectors.toList());
-        return adminClient.createTopics(kafkaTopics);
+    private static boolean hasLeaders(TopicDescription description) {
+        return !description.partitions().isEmpty() && description.partitions().stream()
+                .allMatch(partition -> partition.leader() != null && !partition.leader().isEmpty());
     }
 
-    private Collection<TopicListing> getTopics(){
-        Collection<TopicListing> topics;
-        try {
-            topics = retryTemplate.execute(this::doGetTopics);
-        } catch (Throwable t) {
-            throw new KafkaClientException("Reached max number of retry for reading kafka topic(s)!", t);
-        }
-        return topics;
+    private long nextSleepTimeMs(long sleepTimeMs) {
+        long next = (long) (sleepTimeMs * retryConfigData.getMultiplier());
+        Long maxIntervalMs = retryConfigData.getMaxIntervalMs();
+        return maxIntervalMs == null ? next : Math.min(next, maxIntervalMs);
     }
 
-    private Collection<TopicListing> doGetTopics(RetryContext retryContext) {
-        LOG.info("Reading kafka topics {}, attempt {}",
-                kafkaConfigData.getTopicNamesToCreate().toArray(), retryContext.getRetryCount());
-        Collection<TopicListing> topics = null;
-        try {
-            topics = adminClient.listTopics().listings().get();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
-        }
-        if(topics != null){
-            topics.forEach(topic -> LOG.debug("Topic with name {}", topic.name()));
+    private static CompletableFuture<Void> delay(long delayMs) {
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
+    }
+
+    private static <T> CompletableFuture<T> toCompletableFuture(KafkaFuture<T> kafkaFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        kafkaFuture.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null) {
+            throwable = throwable.getCause();
         }
-        return topics;
+        return throwable;
     }
 
+    private void logTimingReport(List<TopicReadiness> report, long startNanos) {
+        LOG.info("{} kafka topic(s) ready in {} ms", report.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        for (TopicReadiness topicReadiness : report) {
+            LOG.info("Topic {} {}, leaders elected after {} ms and {} describe call(s)", topicReadiness.topicName(),
+                    topicReadiness.created() ? "created" : "already existed", topicReadiness.readyMs(), topicReadiness.describeAttempts());
+        }
+    }
 
+    // How long a topic took from the start of the bootstrap until all of its partitions had a leader
+    public record TopicReadiness(String topicName, boolean created, int describeAttempts, long readyMs) {
+    }
 }
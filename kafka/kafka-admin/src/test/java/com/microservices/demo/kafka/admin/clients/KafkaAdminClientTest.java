@@ -0,0 +1,159 @@
+package com.microservices.demo.kafka.admin.clients;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.RetryConfigData;
+import com.microservices.demo.kafka.admin.clients.KafkaAdminClient.TopicReadiness;
+import com.microservices.demo.kafka.admin.exception.KafkaClientException;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.CreateTopicsResult;
+import org.apache.kafka.clients.admin.CreateTopicsResult.TopicMetadataAndConfig;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KafkaAdminClientTest {
+
+    private static final Node BROKER = new Node(1, "localhost", 9092);
+
+    private final FakeAdmin fakeAdmin = new FakeAdmin();
+
+    @Test
+    public void existingTopicCountsAsCreated() {
+        fakeAdmin.existingTopics.add("twitter-topic");
+
+        List<TopicReadiness> report = kafkaAdminClient(5).createTopicsAsync().join();
+
+        assertEquals(2, report.size());
+        assertFalse(readiness(report, "twitter-topic").created());
+        assertTrue(readiness(report, "twitter-analytics-topic").created());
+    }
+
+    @Test
+    public void waitsUntilEveryPartitionHasALeader() {
+        fakeAdmin.leaderlessDescribes.put("twitter-topic", new AtomicInteger(2));
+
+        List<TopicReadiness> report = kafkaAdminClient(5).createTopicsAsync().join();
+
+        assertEquals(3, readiness(report, "twitter-topic").describeAttempts());
+        assertEquals(1, readiness(report, "twitter-analytics-topic").describeAttempts());
+    }
+
+    @Test
+    public void onlyTheConfiguredTopicsAreDescribed() {
+        // Any admin call but createTopics and describeTopics, like listTopics, fails the fake admin
+        kafkaAdminClient(5).createTopics();
+
+        assertEquals(Set.of("twitter-topic", "twitter-analytics-topic"), Set.copyOf(fakeAdmin.describedTopics));
+        assertEquals(2, fakeAdmin.describedTopics.size());
+    }
+
+    @Test
+    public void failsOnceTheLeadersAreNotElectedWithinTheAttempts() {
+        fakeAdmin.leaderlessDescribes.put("twitter-topic", new AtomicInteger(Integer.MAX_VALUE));
+
+        assertThrows(KafkaClientException.class, () -> kafkaAdminClient(3).createTopics());
+        assertEquals(3, fakeAdmin.describedTopics.stream().filter("twitter-topic"::equals).count());
+    }
+
+    @Test
+    public void unreachableSchemaRegistryFailsAfterTheAttempts() {
+        // Nothing listens on port 1, every attempt is answered as unavailable
+        assertThrows(KafkaClientException.class, () -> kafkaAdminClient(3).checkSchemaRegistry());
+    }
+
+    private KafkaAdminClient kafkaAdminClient(int maxAttempts) {
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setSchemaRegistryUrl("http://localhost:1");
+        kafkaConfigData.setTopicNamesToCreate(List.of("twitter-topic", "twitter-analytics-topic"));
+        kafkaConfigData.setNumOfPartitions(3);
+        kafkaConfigData.setReplicationFactor((short) 1);
+        RetryConfigData retryConfigData = new RetryConfigData();
+        retryConfigData.setMaxAttempts(maxAttempts);
+        retryConfigData.setSleepTimeMs(1L);
+        retryConfigData.setMultiplier(2.0);
+        retryConfigData.setMaxIntervalMs(10L);
+        return new KafkaAdminClient(kafkaConfigData, retryConfigData, fakeAdmin.proxy(),
+                RetryTemplate.builder().maxAttempts(maxAttempts).build(), WebClient.create());
+    }
+
+    private static TopicReadiness readiness(List<TopicReadiness> report, String topicName) {
+        return report.stream().filter(topicReadiness -> topicReadiness.topicName().equals(topicName)).findFirst().orElseThrow();
+    }
+
+    // Answers createTopics and describeTopics from memory, every other admin call fails
+    private static class FakeAdmin {
+
+        private final Set<String> existingTopics = ConcurrentHashMap.newKeySet();
+
+        // Describe calls that still see partitions without a leader, per topic
+        private final Map<String, AtomicInteger> leaderlessDescribes = new ConcurrentHashMap<>();
+
+        private final List<String> describedTopics = new CopyOnWriteArrayList<>();
+
+        private Admin proxy() {
+            return (Admin) Proxy.newProxyInstance(Admin.class.getClassLoader(), new Class<?>[]{Admin.class}, (proxy, method, args) ->
+                    switch (method.getName()) {
+                        case "createTopics" -> createTopics((Collection<?>) args[0]);
+                        case "describeTopics" -> describeTopics((Collection<?>) args[0]);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private CreateTopicsResult createTopics(Collection<?> newTopics) {
+            Map<String, KafkaFuture<TopicMetadataAndConfig>> futures = new HashMap<>();
+            for (Object newTopic : newTopics) {
+                String topicName = ((NewTopic) newTopic).name();
+                KafkaFutureImpl<TopicMetadataAndConfig> future = new KafkaFutureImpl<>();
+                if (!existingTopics.add(topicName)) {
+                    future.completeExceptionally(new TopicExistsException("Topic " + topicName + " already exists"));
+                } else {
+                    future.complete(null);
+                }
+                futures.put(topicName, future);
+            }
+            return new CreateTopicsResult(futures) {
+            };
+        }
+
+        private DescribeTopicsResult describeTopics(Collection<?> topicNames) {
+            Map<String, KafkaFuture<TopicDescription>> futures = new HashMap<>();
+            for (Object topic : topicNames) {
+                String topicName = (String) topic;
+                describedTopics.add(topicName);
+                AtomicInteger leaderless = leaderlessDescribes.get(topicName);
+                Node leader = leaderless != null && leaderless.getAndDecrement() > 0 ? null : BROKER;
+                List<TopicPartitionInfo> partitions = new ArrayList<>();
+                for (int partition = 0; partition < 3; partition++) {
+                    partitions.add(new TopicPartitionInfo(partition, leader, List.of(BROKER), List.of(BROKER)));
+                }
+                futures.put(topicName, KafkaFuture.completedFuture(new TopicDescription(topicName, false, partitions)));
+            }
+            return new DescribeTopicsResult(null, futures) {
+            };
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.microservices.demo.kafka.producer.backpressure;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData.BackpressurePolicy;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounds the number of records sent to kafka but not yet acknowledged, and optionally the send rate with a token bucket.
+// In-flight count and time spent waiting for a slot are always tracked, the limits are only enforced when backpressure is enabled.
+// Topics sent by a kafka producer of their own have max-in-flight-records slots of their own, the other topics share theirs
+@Component
+public class InFlightLimiter {
+
+    private final boolean enabled;
+
+    private final BackpressurePolicy policy;
+
+    private final long blockTimeoutNanos;
+
+    private final int maxInFlightRecords;
+
+    private final Semaphore permits;
+
+    private final Map<String, Semaphore> topicPermits = new ConcurrentHashMap<>();
+
+    private final TokenBucket tokenBucket;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder timedOutCount = new LongAdder();
+
+    private final LongAdder waitCount = new LongAdder();
+
+    private final LongAdder totalWaitNanos = new LongAdder();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public InFlightLimiter(KafkaProducerConfigData kafkaProducerConfigData) {
+        this.enabled = kafkaProducerConfigData.getEnableBackpressure();
+        this.policy = kafkaProducerConfigData.getBackpressurePolicy();
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(kafkaProducerConfigData.getBackpressureBlockTimeoutMs());
+        this.maxInFlightRecords = kafkaProducerConfigData.getMaxInFlightRecords();
+        this.permits = new Semaphore(maxInFlightRecords);
+        int maxRecordsPerSecond = kafkaProducerConfigData.getMaxRecordsPerSecond();
+        this.tokenBucket = maxRecordsPerSecond > 0 ? new TokenBucket(maxRecordsPerSecond) : null;
+    }
+
+    // Gives the topic slots of its own, so a slow topic that holds all of them does not take the slots of the other topics.
+    // The rate limit and the counters stay shared
+    public void isolateTopic(String topicName) {
+        topicPermits.computeIfAbsent(topicName, isolatedTopicName -> new Semaphore(maxInFlightRecords));
+    }
+
+    // Takes a slot for one record according to the configured policy. Returns false if the record must be shed or spilled,
+    // or with the BLOCK policy if no slot was free within the block timeout, which is counted apart from the rejections
+    public boolean acquire() {
+        return acquire(permits);
+    }
+
+    public boolean acquire(String topicName) {
+        return acquire(permits(topicName));
+    }
+
+    private boolean acquire(Semaphore permits) {
+        if (!enabled) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        if (policy == BackpressurePolicy.BLOCK) {
+            if (!acquireBlocking(permits)) {
+                timedOutCount.increment();
+                return false;
+            }
+            return true;
+        }
+        if (!tryAcquire(permits)) {
+            rejectedCount.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Takes a slot only if one is available right now, never waits and never counts as a rejection
+    public boolean tryAcquire() {
+        return tryAcquire(permits);
+    }
+
+    public boolean tryAcquire(String topicName) {
+        return tryAcquire(permits(topicName));
+    }
+
+    private boolean tryAcquire(Semaphore permits) {
+        if (!enabled) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        if (tokenBucket != null && tokenBucket.tryTake(0) != 0) {
+            permits.release();
+            return false;
+        }
+        inFlight.incrementAndGet();
+        return true;
+    }
+
+    // Must be called exactly once for every successful acquire, with the topic it was taken for,
+    // when the record is acknowledged or failed
+    public void release() {
+        release(permits);
+    }
+
+    public void release(String topicName) {
+        release(permits(topicName));
+    }
+
+    private void release(Semaphore permits) {
+        inFlight.decrementAndGet();
+        if (enabled) {
+            permits.release();
+        }
+    }
+
+    public boolean hasCapacity() {
+        return !enabled || permits.availablePermits() > 0;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.sum();
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.sum();
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    private Semaphore permits(String topicName) {
+        return topicPermits.getOrDefault(topicName, permits);
+    }
+
+    private boolean acquireBlocking(Semaphore permits) {
+        if (tryAcquire(permits)) {
+            return true;
+        }
+        long start = System.nanoTime();
+        long deadline = start + blockTimeoutNanos;
+        try {
+            if (!permits.tryAcquire(blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+            if (tokenBucket != null && !awaitToken(deadline)) {
+                permits.release();
+                return false;
+            }
+            inFlight.incrementAndGet();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            recordWait(System.nanoTime() - start);
+        }
+    }
+
+    private boolean awaitToken(long deadline) throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tokenBucket.tryTake(deadline - System.nanoTime())) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos == 0;
+    }
+
+    private void recordWait(long waitNanos) {
+        waitCount.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    // Refills continuously at the configured rate and allows a burst of one second worth of records
+    private static final class TokenBucket {
+
+        private final double tokensPerNano;
+
+        private final double capacity;
+
+        private double tokens;
+
+        private long lastRefillNanos = System.nanoTime();
+
+        private TokenBucket(int tokensPerSecond) {
+            this.tokensPerNano = tokensPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+            this.capacity = tokensPerSecond;
+            this.tokens = tokensPerSecond;
+        }
+
+        // Returns 0 if a token was taken, otherwise the nanos until the next token if that is within maxWaitNanos, or -1
+        private synchronized long tryTake(long maxWaitNanos) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            long nanosToNextToken = Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+            return nanosToNextToken <= maxWaitNanos ? nanosToNextToken : -1;
+        }
+    }
+}
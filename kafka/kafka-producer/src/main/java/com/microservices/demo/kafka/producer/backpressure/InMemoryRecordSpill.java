@@ -0,0 +1,69 @@
+package com.microservices.demo.kafka.producer.backpressure;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded on-heap spill, its content is lost when the service stops
+@Component
+@ConditionalOnProperty(name = "kafka-producer-config.spill-store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRecordSpill<K extends Serializable, V extends SpecificRecordBase> implements RecordSpill<K, V> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryRecordSpill.class);
+
+    private final LinkedBlockingQueue<SpilledRecord<K, V>> records;
+
+    private final LongAdder lostCount = new LongAdder();
+
+    public InMemoryRecordSpill(KafkaProducerConfigData kafkaProducerConfigData) {
+        this.records = new LinkedBlockingQueue<>(kafkaProducerConfigData.getSpillCapacity());
+    }
+
+    @Override
+    public boolean spill(String topicName, K key, V message) {
+        return records.offer(new SpilledRecord<>(-1, topicName, key, message));
+    }
+
+    @Override
+    public SpilledRecord<K, V> peek() {
+        return records.peek();
+    }
+
+    @Override
+    public void remove(SpilledRecord<K, V> spilledRecord) {
+        records.remove(spilledRecord);
+    }
+
+    @Override
+    public void acknowledge(SpilledRecord<K, V> spilledRecord) {
+    }
+
+    @Override
+    public void replayFailed(SpilledRecord<K, V> spilledRecord) {
+        // Ordering is not kept on-heap, the record simply goes to the back of the queue.
+        // New spills may have filled the queue since the record was taken out, then it is lost
+        if (!records.offer(spilledRecord)) {
+            lostCount.increment();
+            LOG.error("Record spill is full, losing failed replay of message {} for kafka topic {}",
+                    spilledRecord.message(), spilledRecord.topicName());
+        }
+    }
+
+    // Failed replays that did not fit back into the spill
+    @Override
+    public long getLostCount() {
+        return lostCount.sum();
+    }
+
+    @Override
+    public long size() {
+        return records.size();
+    }
+}
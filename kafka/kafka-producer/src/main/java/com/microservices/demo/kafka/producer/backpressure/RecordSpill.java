@@ -0,0 +1,34 @@
+package com.microservices.demo.kafka.producer.backpressure;
+
+import org.apache.avro.specific.SpecificRecordBase;
+
+import java.io.Serializable;
+
+// Local holding area for records that could not be handed to kafka, drained back to the topic by the SpillReplayer
+public interface RecordSpill<K extends Serializable, V extends SpecificRecordBase> {
+    // Returns false if the spill itself is full and the record is lost
+    boolean spill(String topicName, K key, V message);
+
+    // Returns the oldest spilled record without removing it, or null if the spill is empty
+    SpilledRecord<K, V> peek();
+
+    // Removes the record returned by peek once it has been handed back to kafka, unless the spill moved on in between
+    void remove(SpilledRecord<K, V> spilledRecord);
+
+    // Called when kafka acknowledged a replayed record, after this it is gone for good
+    void acknowledge(SpilledRecord<K, V> spilledRecord);
+
+    // Called when kafka rejected a replayed record, it has to be delivered again
+    void replayFailed(SpilledRecord<K, V> spilledRecord);
+
+    long size();
+
+    // Records the spill took in and dropped later, stores that never drop one keep the default
+    default long getLostCount() {
+        return 0;
+    }
+
+    // position identifies the record inside the spill, it is only meaningful to the spill that returned the record
+    record SpilledRecord<K, V>(long position, String topicName, K key, V message) {
+    }
+}
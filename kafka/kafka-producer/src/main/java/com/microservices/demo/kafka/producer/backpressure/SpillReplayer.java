@@ -0,0 +1,111 @@
+package com.microservices.demo.kafka.producer.backpressure;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData.BackpressurePolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill.SpilledRecord;
+import com.microservices.demo.kafka.producer.config.service.impl.TwitterKafkaProducer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Periodically hands spilled records back to the producer, oldest first, for as long as in-flight slots are free.
+// A replayed record is acknowledged to the spill only once kafka acknowledged it. After a failed replay the spill is told to
+// deliver the record again and replay pauses until the next interval, so a broker that is still down is not hammered
+@Component
+public class SpillReplayer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpillReplayer.class);
+
+    private final KafkaProducerConfigData kafkaProducerConfigData;
+
+    private final RecordSpill<Long, TwitterAvroModel> recordSpill;
+
+    private final TwitterKafkaProducer twitterKafkaProducer;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean replayFailed;
+
+    public SpillReplayer(KafkaProducerConfigData kafkaProducerConfigData,
+                         RecordSpill<Long, TwitterAvroModel> recordSpill,
+                         TwitterKafkaProducer twitterKafkaProducer) {
+        this.kafkaProducerConfigData = kafkaProducerConfigData;
+        this.recordSpill = recordSpill;
+        this.twitterKafkaProducer = twitterKafkaProducer;
+    }
+
+    @PostConstruct
+    public void startIfSpilling() {
+        boolean spillsOnBackpressure = kafkaProducerConfigData.getEnableBackpressure()
+                && kafkaProducerConfigData.getBackpressurePolicy() == BackpressurePolicy.SPILL;
+        if (spillsOnBackpressure || kafkaProducerConfigData.getSpillFailedRecords()) {
+            start();
+        }
+    }
+
+    // Also started by the callers that spill records of their own, like the ingest pipelines with the SPILL overflow policy.
+    // Starting a running replayer does nothing
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spill-replayer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = kafkaProducerConfigData.getSpillReplayIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::replay, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            LOG.info("Closing spill replayer, {} record(s) left in spill", recordSpill.size());
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void replay() {
+        if (replayFailed) {
+            replayFailed = false;
+            return;
+        }
+        int replayed = 0;
+        try {
+            SpilledRecord<Long, TwitterAvroModel> spilledRecord;
+            while (!replayFailed && (spilledRecord = recordSpill.peek()) != null) {
+                CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture =
+                        twitterKafkaProducer.trySendSpilled(spilledRecord.topicName(), spilledRecord.key(), spilledRecord.message());
+                if (kafkaResultFuture == null) {
+                    break;
+                }
+                recordSpill.remove(spilledRecord);
+                SpilledRecord<Long, TwitterAvroModel> sentRecord = spilledRecord;
+                kafkaResultFuture.whenComplete((result, throwable) -> {
+                    if (throwable == null) {
+                        recordSpill.acknowledge(sentRecord);
+                    } else {
+                        replayFailed = true;
+                        recordSpill.replayFailed(sentRecord);
+                    }
+                });
+                replayed++;
+            }
+        } catch (Exception e) {
+            LOG.error("Error while replaying spilled records", e);
+        }
+        if (replayed > 0) {
+            LOG.info("Replayed {} spilled record(s), {} left in spill", replayed, recordSpill.size());
+        }
+    }
+}
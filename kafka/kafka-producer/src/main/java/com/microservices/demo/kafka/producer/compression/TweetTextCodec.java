@@ -0,0 +1,131 @@
+package com.microservices.demo.kafka.producer.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Compresses the text of every tweet on its own with a zstd dictionary. A single short tweet compresses well with the
+// dictionary, where the batch compression of the producer has little to work with at a low linger.
+// Frames are written without the zstd magic number, dictionary id and checksum: the record header names the dictionary
+// and kafka checks the record, that saves about 8 bytes on every tweet. Decompresses with any of the dictionaries it knows.
+// Thread safe, the native contexts are pooled and reused instead of created per record
+public class TweetTextCodec implements AutoCloseable {
+
+    // 4 byte big endian dictionary id, present only on records whose text is compressed
+    public static final String DICTIONARY_ID_HEADER = "tweet.text.dictionary.id";
+
+    // Long posts have up to 25000 characters of at most 4 utf-8 bytes. The content size of a frame comes from the record,
+    // a larger one is corrupt and must not make the consumer allocate it
+    public static final int MAX_TEXT_BYTES = 25_000 * 4;
+
+    private final Map<Integer, ZstdDictDecompress> decompressDictionaries = new HashMap<>();
+
+    // null when the codec only decompresses
+    private final ZstdDictCompress compressDictionary;
+
+    private final byte[] dictionaryIdHeader;
+
+    private final Queue<ZstdCompressCtx> compressContexts = new ConcurrentLinkedQueue<>();
+
+    private final Queue<ZstdDecompressCtx> decompressContexts = new ConcurrentLinkedQueue<>();
+
+    public TweetTextCodec(Map<Integer, TweetTextDictionary> dictionaries, Integer compressDictionaryId, int level) {
+        dictionaries.forEach((id, dictionary) -> decompressDictionaries.put(id, new ZstdDictDecompress(dictionary.getBytes())));
+        if (compressDictionaryId == null) {
+            compressDictionary = null;
+            dictionaryIdHeader = null;
+            return;
+        }
+        TweetTextDictionary dictionary = dictionaries.get(compressDictionaryId);
+        if (dictionary == null) {
+            throw new SerializationException("No tweet text dictionary with id " + Integer.toUnsignedString(compressDictionaryId));
+        }
+        compressDictionary = new ZstdDictCompress(dictionary.getBytes(), level);
+        dictionaryIdHeader = new byte[]{
+                (byte) (compressDictionaryId >>> 24), (byte) (compressDictionaryId >>> 16),
+                (byte) (compressDictionaryId >>> 8), (byte) (compressDictionaryId.intValue())};
+    }
+
+    public boolean canCompress() {
+        return compressDictionary != null;
+    }
+
+    // Value of the DICTIONARY_ID_HEADER for the texts this codec compresses
+    public byte[] getDictionaryIdHeader() {
+        return dictionaryIdHeader;
+    }
+
+    // The compressed utf-8 text, or null if it does not get smaller and is better sent as it is
+    public byte[] compress(byte[] text) {
+        if (text.length > MAX_TEXT_BYTES) {
+            return null;
+        }
+        ZstdCompressCtx context = compressContexts.poll();
+        if (context == null) {
+            context = new ZstdCompressCtx()
+                    .setMagicless(true)
+                    .setDictID(false)
+                    .setChecksum(false)
+                    .setContentSize(true)
+                    .loadDict(compressDictionary);
+        }
+        try {
+            byte[] frame = context.compress(text);
+            return frame.length < text.length ? frame : null;
+        } finally {
+            compressContexts.offer(context);
+        }
+    }
+
+    public byte[] decompress(byte[] dictionaryIdHeader, byte[] frame, int offset, int length) {
+        int dictionaryId = ((dictionaryIdHeader[0] & 0xFF) << 24) | ((dictionaryIdHeader[1] & 0xFF) << 16)
+                | ((dictionaryIdHeader[2] & 0xFF) << 8) | (dictionaryIdHeader[3] & 0xFF);
+        ZstdDictDecompress dictionary = decompressDictionaries.get(dictionaryId);
+        if (dictionary == null) {
+            throw new SerializationException("Tweet text compressed with unknown dictionary " + Integer.toUnsignedString(dictionaryId));
+        }
+        long textLength = Zstd.getFrameContentSize(frame, offset, length, true);
+        if (textLength < 0) {
+            throw new SerializationException("Tweet text is not a zstd frame with a content size");
+        }
+        if (textLength > MAX_TEXT_BYTES) {
+            throw new SerializationException("Tweet text frame claims " + textLength + " bytes, more than the "
+                    + MAX_TEXT_BYTES + " of the longest tweet");
+        }
+        ZstdDecompressCtx context = decompressContexts.poll();
+        if (context == null) {
+            context = new ZstdDecompressCtx().setMagicless(true);
+        }
+        try {
+            byte[] text = new byte[(int) textLength];
+            context.loadDict(dictionary);
+            if (context.decompressByteArray(text, 0, text.length, frame, offset, length) != text.length) {
+                throw new SerializationException("Tweet text frame is shorter than its content size");
+            }
+            return text;
+        } catch (ZstdException e) {
+            throw new SerializationException("Tweet text is not a valid zstd frame", e);
+        } finally {
+            decompressContexts.offer(context);
+        }
+    }
+
+    @Override
+    public void close() {
+        compressContexts.forEach(ZstdCompressCtx::close);
+        decompressContexts.forEach(ZstdDecompressCtx::close);
+        if (compressDictionary != null) {
+            compressDictionary.close();
+        }
+        decompressDictionaries.values().forEach(ZstdDictDecompress::close);
+    }
+}
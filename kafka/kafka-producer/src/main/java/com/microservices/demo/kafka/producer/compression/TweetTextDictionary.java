@@ -0,0 +1,72 @@
+package com.microservices.demo.kafka.producer.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A zstd dictionary trained on tweet texts. The id is the dictionary id zstd writes into a trained dictionary, so every
+// training is a new version and records name the version they were compressed with. Saved as tweet-text-<id>.dict;
+// keep the older versions in the directory as long as their records may still be read
+public final class TweetTextDictionary {
+
+    private static final String FILE_PREFIX = "tweet-text-";
+
+    private static final String FILE_SUFFIX = ".dict";
+
+    private final int id;
+
+    private final byte[] bytes;
+
+    private TweetTextDictionary(int id, byte[] bytes) {
+        this.id = id;
+        this.bytes = bytes;
+    }
+
+    // zstd suggests samples of about 100 times the dictionary size, a few kB of dictionary already covers the common words
+    public static TweetTextDictionary train(List<String> texts, int dictionarySize) {
+        List<byte[]> samples = texts.stream().map(text -> text.getBytes(StandardCharsets.UTF_8)).toList();
+        ZstdDictTrainer trainer = new ZstdDictTrainer(samples.stream().mapToInt(sample -> sample.length).sum(), dictionarySize);
+        samples.forEach(trainer::addSample);
+        return of(trainer.trainSamples());
+    }
+
+    public static TweetTextDictionary of(byte[] bytes) {
+        long id = Zstd.getDictIdFromDict(bytes);
+        if (id == 0) {
+            throw new IllegalArgumentException("Not a trained zstd dictionary, it has no dictionary id");
+        }
+        return new TweetTextDictionary((int) id, bytes);
+    }
+
+    public static Map<Integer, TweetTextDictionary> loadAll(Path directory) throws IOException {
+        Map<Integer, TweetTextDictionary> dictionaries = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                TweetTextDictionary dictionary = of(Files.readAllBytes(file));
+                dictionaries.put(dictionary.getId(), dictionary);
+            }
+        }
+        return dictionaries;
+    }
+
+    public Path save(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return Files.write(directory.resolve(FILE_PREFIX + Integer.toUnsignedString(id) + FILE_SUFFIX), bytes);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+}
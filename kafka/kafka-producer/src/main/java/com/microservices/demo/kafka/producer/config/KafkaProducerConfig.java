@@ -2,8 +2,12 @@ package com.microservices.demo.kafka.producer.config;
 
 import com.microservices.demo.config.KafkaConfigData;
 import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.producer.partitioner.HotKeyAwarePartitioner;
+import com.microservices.demo.kafka.producer.serializer.TwitterAvroModelSerializer;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
@@ -11,11 +15,15 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 
 import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
 public class KafkaProducerConfig<K extends Serializable, V extends SpecificRecordBase>{
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaProducerConfig.class);
+
     private final KafkaConfigData kafkaConfigData;
     private final KafkaProducerConfigData kafkaProducerConfigData;
 
@@ -50,6 +58,40 @@ public class KafkaProducerConfig<K extends Serializable, V extends SpecificRecor
         props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, kafkaProducerConfigData.getRequestTimeoutMs());
         // Retry count
         props.put(ProducerConfig.RETRIES_CONFIG, kafkaProducerConfigData.getRetryCount());
+        // Idempotent delivery, the broker drops duplicates of a retried batch and keeps the order with up to 5 requests in flight.
+        // Kafka only allows it with acks=all, and the retries are bounded by delivery.timeout.ms instead of a count
+        if (isIdempotent()) {
+            props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+            props.put(ProducerConfig.ACKS_CONFIG, "all");
+            props.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+            props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        }
+        // Schema id pinning and caching, read by the TwitterAvroModelSerializer
+        if (kafkaProducerConfigData.getSchemaId() != null) {
+            props.put(TwitterAvroModelSerializer.USE_SCHEMA_ID_CONFIG, kafkaProducerConfigData.getSchemaId());
+        }
+        if (kafkaProducerConfigData.getSchemaIdCacheFile() != null) {
+            props.put(TwitterAvroModelSerializer.SCHEMA_ID_CACHE_FILE_CONFIG, kafkaProducerConfigData.getSchemaIdCacheFile());
+        }
+        props.put(TwitterAvroModelSerializer.SCHEMA_ID_REFRESH_INTERVAL_MS_CONFIG, kafkaProducerConfigData.getSchemaIdRefreshIntervalMs());
+        props.putAll(kafkaProducerConfigData.getSchemaRegistryProperties());
+        // Tweet text compression, also read by the TwitterAvroModelSerializer
+        if (kafkaProducerConfigData.getTextDictionaryId() != null) {
+            props.put(TwitterAvroModelSerializer.TEXT_DICTIONARY_DIRECTORY_CONFIG, kafkaProducerConfigData.getTextDictionaryDirectory());
+            props.put(TwitterAvroModelSerializer.TEXT_DICTIONARY_ID_CONFIG, kafkaProducerConfigData.getTextDictionaryId());
+            props.put(TwitterAvroModelSerializer.TEXT_COMPRESSION_LEVEL_CONFIG, kafkaProducerConfigData.getTextCompressionLevel());
+            if (kafkaProducerConfigData.getCompressedTextSchemaId() != null) {
+                props.put(TwitterAvroModelSerializer.USE_COMPRESSED_TEXT_SCHEMA_ID_CONFIG, kafkaProducerConfigData.getCompressedTextSchemaId());
+            }
+        }
+        // Partitioning strategy, the hot key settings are read by the HotKeyAwarePartitioner
+        if (kafkaProducerConfigData.getPartitionerClass() != null && !kafkaProducerConfigData.getPartitionerClass().isBlank()) {
+            props.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, kafkaProducerConfigData.getPartitionerClass());
+            props.put(HotKeyAwarePartitioner.HOT_KEY_WINDOW_MS_CONFIG, kafkaProducerConfigData.getHotKeyWindowMs());
+            props.put(HotKeyAwarePartitioner.HOT_KEY_LOAD_FACTOR_CONFIG, kafkaProducerConfigData.getHotKeyLoadFactor());
+            props.put(HotKeyAwarePartitioner.HOT_KEY_MIN_COUNT_CONFIG, kafkaProducerConfigData.getHotKeyMinCount());
+            props.put(HotKeyAwarePartitioner.HOT_KEY_MAX_PARTITIONS_CONFIG, kafkaProducerConfigData.getHotKeyMaxPartitions());
+        }
 
         return props;
     }
@@ -57,7 +99,12 @@ public class KafkaProducerConfig<K extends Serializable, V extends SpecificRecor
     // We will crate a bean to construct a producer factory where we will return a default kafka producer.
     @Bean
     public ProducerFactory<K, V> producerFactory(){
-        return new DefaultKafkaProducerFactory<>(producerConfig());
+        DefaultKafkaProducerFactory<K, V> producerFactory = new DefaultKafkaProducerFactory<>(producerConfig());
+        // A transaction id prefix makes the factory and the kafka template transactional
+        if (kafkaProducerConfigData.getEnableTransactions()) {
+            producerFactory.setTransactionIdPrefix(transactionIdPrefix());
+        }
+        return producerFactory;
     }
 
     // We will create a bean to return Kafka Template and pass the producer factory as a parameter
@@ -66,4 +113,29 @@ public class KafkaProducerConfig<K extends Serializable, V extends SpecificRecor
     public KafkaTemplate<K, V> kafkaTemplate(){
         return new KafkaTemplate<>(producerFactory());
     }
-}
\ No newline at end of file
+
+    private boolean isIdempotent() {
+        return kafkaProducerConfigData.getEnableIdempotence() || kafkaProducerConfigData.getEnableTransactions();
+    }
+
+    // The instance id has to survive a restart, otherwise the new run can not fence the transactions its previous run left open
+    // and read_committed consumers wait for them until the transaction timeout. Unset, the host name is taken
+    private String transactionIdPrefix() {
+        String instanceId = kafkaProducerConfigData.getTransactionalInstanceId();
+        if (instanceId == null || instanceId.isBlank()) {
+            instanceId = hostName();
+            LOG.warn("No kafka-producer-config.transactional-instance-id set, using host name {} as transactional instance id. " +
+                    "Instances sharing a host must each set their own id, or they fence each other's transactions", instanceId);
+        }
+        return kafkaProducerConfigData.getTransactionalIdPrefix() + instanceId + "-";
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Could not resolve the host name for the transactional instance id, " +
+                    "set kafka-producer-config.transactional-instance-id", e);
+        }
+    }
+}
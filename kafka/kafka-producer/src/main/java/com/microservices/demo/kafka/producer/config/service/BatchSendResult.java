@@ -0,0 +1,56 @@
+package com.microservices.demo.kafka.producer.config.service;
+
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of a KafkaProducer.sendBatch call, with one entry per record in completion order
+public class BatchSendResult<K extends Serializable, V extends SpecificRecordBase> {
+
+    private final List<RecordMetadata> succeeded;
+
+    private final List<FailedRecord<K, V>> failed;
+
+    private int spilledCount;
+
+    public BatchSendResult(int batchSize) {
+        this.succeeded = new ArrayList<>(batchSize);
+        this.failed = new ArrayList<>();
+    }
+
+    public synchronized void addSuccess(RecordMetadata metadata) {
+        succeeded.add(metadata);
+    }
+
+    public synchronized void addFailure(K key, V message, Throwable cause) {
+        failed.add(new FailedRecord<>(key, message, cause));
+    }
+
+    public synchronized void addSpilled() {
+        spilledCount++;
+    }
+
+    public synchronized List<RecordMetadata> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    public synchronized List<FailedRecord<K, V>> getFailed() {
+        return Collections.unmodifiableList(failed);
+    }
+
+    // Records diverted to the local spill by the backpressure policy, they are neither acknowledged nor lost yet
+    public synchronized int getSpilledCount() {
+        return spilledCount;
+    }
+
+    public synchronized boolean hasFailures() {
+        return !failed.isEmpty();
+    }
+
+    public record FailedRecord<K, V>(K key, V message, Throwable cause) {
+    }
+}
@@ -3,8 +3,23 @@ package com.microservices.demo.kafka.producer.config.service;
 import org.apache.avro.specific.SpecificRecordBase;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 // Specifying two generic variables
 public interface KafkaProducer<K extends Serializable, V extends SpecificRecordBase>{
     void send(String topicName, K key, V message);
+
+    // Sends all key/message pairs to the topic and completes once every record is either acknowledged or failed
+    CompletableFuture<BatchSendResult<K, V>> sendBatch(String topicName, List<Map.Entry<K, V>> messages);
+
+    // Sends the topic with a kafka producer and in-flight slots of its own, so a slow topic does not hold back the others.
+    // Called before the first send to the topic
+    default void isolateTopic(String topicName) {
+    }
+
+    // Sets up the connection and the metadata of the topic ahead of the first send. Blocks until done
+    default void warmUp(String topicName) {
+    }
 }
@@ -0,0 +1,106 @@
+package com.microservices.demo.kafka.producer.config.service.impl;
+
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaProducerException;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+// A single completion handler shared by every record of a batch, so a batch send does not allocate one callback closure per message.
+// The record of each completion is recovered from the SendResult or the KafkaProducerException, and the aggregated future completes with the last record.
+// Latencies of all records are measured from the start of the batch
+class BatchSendCallback<K extends Serializable, V extends SpecificRecordBase> implements BiConsumer<SendResult<K, V>, Throwable> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchSendCallback.class);
+
+    private final String topicName;
+
+    private final BatchSendResult<K, V> batchSendResult;
+
+    private final InFlightLimiter inFlightLimiter;
+
+    // Where records that kafka rejected go, null if failed records are only reported
+    private final RecordSpill<K, V> failedRecordSpill;
+
+    private final ProducerMetrics producerMetrics;
+
+    private final long sendStartNanos = System.nanoTime();
+
+    private final long sendStartMillis = System.currentTimeMillis();
+
+    private final AtomicInteger pending;
+
+    private final CompletableFuture<BatchSendResult<K, V>> future = new CompletableFuture<>();
+
+    BatchSendCallback(String topicName, int batchSize, InFlightLimiter inFlightLimiter, RecordSpill<K, V> failedRecordSpill,
+                      ProducerMetrics producerMetrics) {
+        this.topicName = topicName;
+        this.producerMetrics = producerMetrics;
+        this.inFlightLimiter = inFlightLimiter;
+        this.failedRecordSpill = failedRecordSpill;
+        this.batchSendResult = new BatchSendResult<>(batchSize);
+        this.pending = new AtomicInteger(batchSize);
+        if (batchSize == 0) {
+            future.complete(batchSendResult);
+        }
+    }
+
+    CompletableFuture<BatchSendResult<K, V>> getFuture() {
+        return future;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void accept(SendResult<K, V> result, Throwable throwable) {
+        inFlightLimiter.release(topicName);
+        if (throwable != null) {
+            ProducerRecord<K, V> failedRecord = throwable instanceof KafkaProducerException kafkaProducerException ?
+                    (ProducerRecord<K, V>) (ProducerRecord<?, ?>) kafkaProducerException.getFailedProducerRecord() : null;
+            onFailure(failedRecord == null ? null : failedRecord.key(), failedRecord == null ? null : failedRecord.value(), throwable);
+        } else {
+            producerMetrics.recordSuccess(result.getRecordMetadata(), sendStartNanos, sendStartMillis);
+            batchSendResult.addSuccess(result.getRecordMetadata());
+            completeOne();
+        }
+    }
+
+    // Also used for records that failed before reaching the producer, where the key and message are still known to the caller
+    void onFailure(K key, V message, Throwable throwable) {
+        producerMetrics.recordFailure(throwable);
+        LOG.error("Error while sending messsage {} to kafka topic {}", message, topicName, throwable);
+        if (failedRecordSpill != null && message != null && failedRecordSpill.spill(topicName, key, message)) {
+            batchSendResult.addSpilled();
+        } else {
+            batchSendResult.addFailure(key, message, throwable);
+        }
+        completeOne();
+    }
+
+    // A record that got no in-flight slot and was shed by the backpressure policy
+    void onRejected(K key, V message, Throwable cause) {
+        batchSendResult.addFailure(key, message, cause);
+        completeOne();
+    }
+
+    // A record that got no in-flight slot and was diverted to the record spill
+    void onSpilled() {
+        batchSendResult.addSpilled();
+        completeOne();
+    }
+
+    private void completeOne() {
+        if (pending.decrementAndGet() == 0) {
+            future.complete(batchSendResult);
+        }
+    }
+}
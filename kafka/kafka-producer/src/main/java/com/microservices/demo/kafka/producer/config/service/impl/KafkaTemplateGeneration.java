@@ -0,0 +1,54 @@
+package com.microservices.demo.kafka.producer.config.service.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// The template of the shared kafka producer between two replacements by adaptive tuning. Senders enter the generation
+// before they use its template and exit once the template has taken the record, so a replaced generation knows when no
+// send uses its producer anymore. The counters are striped, senders on many threads do not contend on them
+final class KafkaTemplateGeneration {
+
+    private final KafkaTemplate<Long, TwitterAvroModel> kafkaTemplate;
+
+    private final int number;
+
+    private final LongAdder entered = new LongAdder();
+
+    private final LongAdder exited = new LongAdder();
+
+    KafkaTemplateGeneration(KafkaTemplate<Long, TwitterAvroModel> kafkaTemplate, int number) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.number = number;
+    }
+
+    void enter() {
+        entered.increment();
+    }
+
+    void exit() {
+        exited.increment();
+    }
+
+    // Exits are summed before entries: when both match, every sender that had entered by then had also exited. The caller
+    // replaced the generation before, so a sender entering later sees that and exits without using the template
+    void awaitIdle() throws InterruptedException {
+        while (exited.sum() != entered.sum()) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    KafkaTemplate<Long, TwitterAvroModel> getKafkaTemplate() {
+        return kafkaTemplate;
+    }
+
+    int getNumber() {
+        return number;
+    }
+}
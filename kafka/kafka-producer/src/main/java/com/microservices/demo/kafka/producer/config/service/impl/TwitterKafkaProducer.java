@@ -1,64 +1,444 @@
 package com.microservices.demo.kafka.producer.config.service.impl;
 
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.common.logging.SampledEventLogger;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData.BackpressurePolicy;
 import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
 import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
 import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaOperations;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Service
 public class TwitterKafkaProducer implements KafkaProducer<Long, TwitterAvroModel> {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterKafkaProducer.class);
 
-    private KafkaTemplate<Long, TwitterAvroModel> kafkaTemplate;
+    // Sends and acknowledgements are counted and sampled, a line per record would make sending wait for the log appenders
+    private static final SampledEventLogger SEND_EVENTS = SampledEventLogger.getLogger(TwitterKafkaProducer.class, "record.send");
 
-    public TwitterKafkaProducer(KafkaTemplate<Long, TwitterAvroModel> kafkaTemplate){
-        this.kafkaTemplate = kafkaTemplate;
+    private static final SampledEventLogger ACK_EVENTS = SampledEventLogger.getLogger(TwitterKafkaProducer.class, "record.ack");
+
+    // Template of the shared producer, replaced as a whole when adaptive tuning recreates the producer
+    private volatile KafkaTemplateGeneration sharedGeneration;
+
+    // Templates of the topics with producer overrides or isolated by isolateTopic, each with a kafka producer of its own
+    private final Map<String, KafkaTemplate<Long, TwitterAvroModel>> topicKafkaTemplates = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, String>> topicProducerOverrides;
+
+    // Of the first generation, the templates of the topics are copies of it
+    private final ProducerFactory<Long, TwitterAvroModel> firstProducerFactory;
+
+    // Of the shared producer factory, null when it is not transactional
+    private final String transactionIdPrefix;
+
+    private final InFlightLimiter inFlightLimiter;
+
+    private final RecordSpill<Long, TwitterAvroModel> recordSpill;
+
+    private final boolean spillFailedRecords;
+
+    private final ProducerMetrics producerMetrics;
+
+    // Runs send callbacks off the kafka producer network thread, null runs them inline on it
+    private final ExecutorService callbackExecutor;
+
+    public TwitterKafkaProducer(KafkaTemplate<Long, TwitterAvroModel> kafkaTemplate,
+                                KafkaProducerConfigData kafkaProducerConfigData,
+                                InFlightLimiter inFlightLimiter,
+                                RecordSpill<Long, TwitterAvroModel> recordSpill,
+                                ExecutionConfigData executionConfigData,
+                                ExecutorFactory executorFactory,
+                                ProducerMetrics producerMetrics){
+        this.sharedGeneration = new KafkaTemplateGeneration(kafkaTemplate, 0);
+        this.firstProducerFactory = kafkaTemplate.getProducerFactory();
+        this.transactionIdPrefix = kafkaTemplate.getProducerFactory().getTransactionIdPrefix();
+        this.topicProducerOverrides = kafkaProducerConfigData.getTopicProducerOverrides();
+        this.producerMetrics = producerMetrics;
+        this.inFlightLimiter = inFlightLimiter;
+        this.recordSpill = recordSpill;
+        this.spillFailedRecords = kafkaProducerConfigData.getSpillFailedRecords();
+        int callbackThreads = executionConfigData.getProducerCallbackThreads();
+        this.callbackExecutor = executorFactory.isVirtual() || callbackThreads > 0
+                ? executorFactory.newExecutor("producer-callback", callbackThreads)
+                : null;
+        topicProducerOverrides.forEach((topicName, overrides) -> {
+            if (!overrides.isEmpty()) {
+                isolateTopic(topicName);
+            }
+        });
     }
 
     @Override
     public void send(String topicName, Long key, TwitterAvroModel message){
-        LOG.info("Sending messages='{}' to topic='{}'", message, topicName);
+        if (SEND_EVENTS.record()) {
+            SEND_EVENTS.log("topic", topicName, "key", key, "message", message);
+        }
+
+        // Take an in-flight slot first, so a slow broker shows up here with a bounded wait instead of blocking inside the kafka producer for max.block.ms
+        if (!inFlightLimiter.acquire(topicName)) {
+            if (!onRejected(topicName, key, message) && inFlightLimiter.getPolicy() == BackpressurePolicy.BLOCK) {
+                // BLOCK never drops a record on its own, the caller decides what to do with it
+                throw new ProducerBackpressureException("No in-flight capacity within the block timeout to send record to kafka topic " + topicName);
+            }
+            return;
+        }
 
         // It returns a CompletableFuture, which allows you to handle the result or failure without blocking the calling thread.
         // CompletableFuture is used for its flexibility, non-blocking nature, and support for chaining callbacks, making it ideal for handling asynchronous operations in modern Java.
-        CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture =
-                kafkaTemplate.send(topicName, key, message); // kafkaTemplate.send is an asynchronous method used to send a message to a specified Kafka topic.
+        CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture;
+        long sendStartNanos = System.nanoTime();
+        long sendStartMillis = System.currentTimeMillis();
+        try {
+            kafkaResultFuture = doSend(topicName, key, message); // kafkaTemplate.send is an asynchronous method used to send a message to a specified Kafka topic.
+        } catch (RuntimeException e) {
+            inFlightLimiter.release(topicName);
+            throw e;
+        }
+
+        addCallback(topicName, key, message, kafkaResultFuture, spillFailedRecords, sendStartNanos, sendStartMillis);
+    }
+
+    @Override
+    public CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> sendBatch(String topicName, List<Map.Entry<Long, TwitterAvroModel>> messages) {
+        LOG.debug("Sending batch of {} message(s) to topic='{}'", messages.size(), topicName);
+        KafkaTemplate<Long, TwitterAvroModel> topicKafkaTemplate = topicKafkaTemplates.get(topicName);
+        if (topicKafkaTemplate != null) {
+            return sendBatch(topicKafkaTemplate, topicName, messages);
+        }
+        KafkaTemplateGeneration generation = enterSharedGeneration();
+        try {
+            return sendBatch(generation.getKafkaTemplate(), topicName, messages);
+        } finally {
+            generation.exit();
+        }
+    }
+
+    private CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> sendBatch(KafkaTemplate<Long, TwitterAvroModel> topicKafkaTemplate,
+                                                                              String topicName,
+                                                                              List<Map.Entry<Long, TwitterAvroModel>> messages) {
+        if (topicKafkaTemplate.isTransactional()) {
+            return sendBatchInTransaction(topicKafkaTemplate, topicName, messages);
+        }
+
+        // One completion handler for the whole batch instead of a whenComplete lambda per record
+        BatchSendCallback<Long, TwitterAvroModel> batchSendCallback = new BatchSendCallback<>(topicName, messages.size(), inFlightLimiter,
+                spillFailedRecords ? recordSpill : null, producerMetrics);
+        boolean blockTimedOut = false;
+        for (Map.Entry<Long, TwitterAvroModel> message : messages) {
+            if (!acquireForBatch(topicName, blockTimedOut)) {
+                blockTimedOut = inFlightLimiter.getPolicy() == BackpressurePolicy.BLOCK;
+                if (onRejected(topicName, message.getKey(), message.getValue())) {
+                    batchSendCallback.onSpilled();
+                } else {
+                    batchSendCallback.onRejected(message.getKey(), message.getValue(),
+                            new ProducerBackpressureException("No in-flight capacity to send record to kafka topic " + topicName));
+                }
+                continue;
+            }
+            try {
+                whenComplete(topicKafkaTemplate.send(topicName, message.getKey(), message.getValue()), batchSendCallback);
+            } catch (Exception e) {
+                inFlightLimiter.release(topicName);
+                batchSendCallback.onFailure(message.getKey(), message.getValue(), e);
+            }
+        }
+        return batchSendCallback.getFuture();
+    }
+
+    // One transaction per run of records that got an in-flight slot, so its records share the cost of the commit. The first record
+    // of a run takes its slot by the backpressure policy (without waiting once a wait of the batch timed out), the next ones only take the slots that are free right now, and the run
+    // is committed before the next one starts. A batch larger than the in-flight limit is thus sent in several transactions
+    // instead of waiting for slots that only its own uncommitted records would release. Records are only reported once their
+    // transaction is over: an aborted transaction is invisible to read_committed consumers, so all of its records fail with the
+    // cause even if kafka had acknowledged them. Each commit waits for its sends, the returned future is already complete
+    private CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> sendBatchInTransaction(KafkaTemplate<Long, TwitterAvroModel> topicKafkaTemplate,
+                                                                                           String topicName,
+                                                                                           List<Map.Entry<Long, TwitterAvroModel>> messages) {
+        BatchSendCallback<Long, TwitterAvroModel> batchSendCallback = new BatchSendCallback<>(topicName, messages.size(), inFlightLimiter,
+                spillFailedRecords ? recordSpill : null, producerMetrics);
+        List<Map.Entry<Long, TwitterAvroModel>> accepted = new ArrayList<>(messages.size());
+        int next = 0;
+        boolean blockTimedOut = false;
+        while (next < messages.size()) {
+            Map.Entry<Long, TwitterAvroModel> first = messages.get(next++);
+            if (!acquireForBatch(topicName, blockTimedOut)) {
+                blockTimedOut = inFlightLimiter.getPolicy() == BackpressurePolicy.BLOCK;
+                if (onRejected(topicName, first.getKey(), first.getValue())) {
+                    batchSendCallback.onSpilled();
+                } else {
+                    batchSendCallback.onRejected(first.getKey(), first.getValue(),
+                            new ProducerBackpressureException("No in-flight capacity to send record to kafka topic " + topicName));
+                }
+                continue;
+            }
+            accepted.add(first);
+            while (next < messages.size() && inFlightLimiter.tryAcquire(topicName)) {
+                accepted.add(messages.get(next++));
+            }
+            sendInTransaction(topicKafkaTemplate, topicName, accepted, batchSendCallback);
+            accepted.clear();
+        }
+        return batchSendCallback.getFuture();
+    }
+
+    // Takes the in-flight slot of a record of a batch. Once one BLOCK wait of the batch timed out the rest of the batch only takes
+    // the slots that are free right away, so a saturated producer holds a batch up for one block timeout instead of one per
+    // record, and the records that get no slot are rejected without counting as further timeouts
+    private boolean acquireForBatch(String topicName, boolean blockTimedOut) {
+        return blockTimedOut ? inFlightLimiter.tryAcquire(topicName) : inFlightLimiter.acquire(topicName);
+    }
+
+    // Sends records that already hold an in-flight slot in one transaction and reports them to the callback
+    private void sendInTransaction(KafkaTemplate<Long, TwitterAvroModel> topicKafkaTemplate, String topicName,
+                                   List<Map.Entry<Long, TwitterAvroModel>> accepted,
+                                   BatchSendCallback<Long, TwitterAvroModel> batchSendCallback) {
+        List<CompletableFuture<SendResult<Long, TwitterAvroModel>>> kafkaResultFutures = new ArrayList<>(accepted.size());
+        try {
+            topicKafkaTemplate.executeInTransaction(operations -> {
+                for (Map.Entry<Long, TwitterAvroModel> message : accepted) {
+                    kafkaResultFutures.add(operations.send(topicName, message.getKey(), message.getValue()));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Transaction of {} record(s) to kafka topic {} was aborted", accepted.size(), topicName);
+            for (Map.Entry<Long, TwitterAvroModel> message : accepted) {
+                inFlightLimiter.release(topicName);
+                batchSendCallback.onFailure(message.getKey(), message.getValue(), e);
+            }
+            return;
+        }
+        // The commit waited for every send, so the results are reported and the slots released on this thread, before the
+        // next run of the batch takes its slots
+        for (CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture : kafkaResultFutures) {
+            kafkaResultFuture.whenComplete(batchSendCallback);
+        }
+    }
 
-        addCallback(topicName, message, kafkaResultFuture);
+    // Used by the SpillReplayer: sends only if an in-flight slot is free right now and returns null otherwise.
+    // A failed replay is not spilled again, the replayer hands it back to the spill itself
+    public CompletableFuture<SendResult<Long, TwitterAvroModel>> trySendSpilled(String topicName, Long key, TwitterAvroModel message) {
+        if (!inFlightLimiter.tryAcquire(topicName)) {
+            return null;
+        }
+        CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture;
+        long sendStartNanos = System.nanoTime();
+        long sendStartMillis = System.currentTimeMillis();
+        try {
+            kafkaResultFuture = doSend(topicName, key, message);
+        } catch (RuntimeException e) {
+            inFlightLimiter.release(topicName);
+            throw e;
+        }
+        addCallback(topicName, key, message, kafkaResultFuture, false, sendStartNanos, sendStartMillis);
+        return kafkaResultFuture;
+    }
+
+    // A topic of its own has the buffer.memory of its own producer, so a slow topic that fills it does not block the sends to
+    // the others, and in-flight slots of its own. Called before the first send to the topic
+    @Override
+    public void isolateTopic(String topicName) {
+        topicKafkaTemplates.computeIfAbsent(topicName, this::topicKafkaTemplate);
+        inFlightLimiter.isolateTopic(topicName);
+    }
+
+    // Creates the kafka producer and fetches the partitions of the topic, so the first record does not wait for the
+    // connection and the metadata. Waits for the topic to exist up to max.block.ms
+    @Override
+    public void warmUp(String topicName) {
+        long startNanos = System.nanoTime();
+        List<PartitionInfo> partitions = withKafkaTemplate(topicName, topicKafkaTemplate -> topicKafkaTemplate.isTransactional()
+                ? topicKafkaTemplate.executeInTransaction(operations -> operations.partitionsFor(topicName))
+                : topicKafkaTemplate.partitionsFor(topicName));
+        LOG.info("Kafka producer warmed up in {} ms, topic {} has {} partition(s)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), topicName, partitions.size());
+    }
+
+    // Metrics of the shared producer. A transactional template only hands out its producer within a transaction, an empty
+    // one sends nothing to the broker
+    public Map<MetricName, ? extends Metric> sharedProducerMetrics() {
+        KafkaTemplateGeneration generation = enterSharedGeneration();
+        try {
+            KafkaTemplate<Long, TwitterAvroModel> kafkaTemplate = generation.getKafkaTemplate();
+            return kafkaTemplate.isTransactional()
+                    ? kafkaTemplate.executeInTransaction(KafkaOperations::metrics)
+                    : kafkaTemplate.metrics();
+        } finally {
+            generation.exit();
+        }
+    }
+
+    // Recreates the shared producer with these settings, without failing the sends around it. The template of the new
+    // producer is in place first, so later sends take it, and the old producer is closed once the sends that had taken it
+    // handed their records over. Closing it then delivers every record it accepted. Transactional producers of a new
+    // generation get transactional ids of their own, they must not fence the old producer while it finishes
+    public synchronized void replaceSharedProducer(Map<String, Object> configOverrides) {
+        KafkaTemplateGeneration previous = sharedGeneration;
+        ProducerFactory<Long, TwitterAvroModel> producerFactory = previous.getKafkaTemplate().getProducerFactory();
+        Map<String, Object> overrides = new HashMap<>(configOverrides);
+        int number = previous.getNumber() + 1;
+        if (transactionIdPrefix != null) {
+            overrides.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionIdPrefix + "tuning-" + number + "-");
+        }
+        sharedGeneration = new KafkaTemplateGeneration(new KafkaTemplate<>(producerFactory, overrides), number);
+        try {
+            previous.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for the sends of the replaced kafka producer, closing it now");
+        }
+        // Closes the producer, the factory of the first generation is a bean and lives on until the context closes
+        producerFactory.reset();
     }
 
     @PreDestroy
     public void close(){
-        if(kafkaTemplate != null){
+        KafkaTemplateGeneration generation = sharedGeneration;
+        if(generation != null){
             LOG.info("Closing kafka producer");
-            kafkaTemplate.destroy();
+            generation.getKafkaTemplate().getProducerFactory().reset();
+        }
+        topicKafkaTemplates.values().forEach(KafkaTemplate::destroy);
+        if (callbackExecutor != null) {
+            // Closing the producer has completed every pending send, let their callbacks finish
+            callbackExecutor.shutdown();
+            try {
+                callbackExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    private static void addCallback(String topicName, TwitterAvroModel message, CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture) {
-        kafkaResultFuture.whenComplete((result, throwable) -> {
+    // Applies the backpressure policy to a record that did not get an in-flight slot. Returns true if the record was spilled.
+    // Only SHED drops records quietly, a BLOCK timeout is failed by the caller
+    private boolean onRejected(String topicName, Long key, TwitterAvroModel message) {
+        if (inFlightLimiter.getPolicy() == BackpressurePolicy.SPILL) {
+            if (recordSpill.spill(topicName, key, message)) {
+                LOG.debug("No in-flight capacity, spilled message with key {} for topic {}", key, topicName);
+                return true;
+            }
+            LOG.error("Record spill is full, dropping message {} for kafka topic {}", message, topicName);
+            return false;
+        }
+        if (inFlightLimiter.getPolicy() == BackpressurePolicy.BLOCK) {
+            LOG.warn("No in-flight capacity within the block timeout for message with key {} for topic {}, {} timed out so far",
+                    key, topicName, inFlightLimiter.getTimedOutCount());
+            return false;
+        }
+        LOG.debug("No in-flight capacity, shedding message with key {} for topic {}, {} shed so far",
+                key, topicName, inFlightLimiter.getRejectedCount());
+        return false;
+    }
+
+    private void addCallback(String topicName, Long key, TwitterAvroModel message,
+                             CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture, boolean spillOnFailure,
+                             long sendStartNanos, long sendStartMillis) {
+        whenComplete(kafkaResultFuture, (result, throwable) -> {
+            inFlightLimiter.release(topicName);
             if(throwable != null) {
                 // Handle failure
+                producerMetrics.recordFailure(throwable);
                 LOG.error("Error while sending messsage {} to kafka topic {}", message.toString(), topicName, throwable);
+                // Keep the record for a later replay instead of losing it
+                if (spillOnFailure && !recordSpill.spill(topicName, key, message)) {
+                    LOG.error("Could not spill failed message {} for kafka topic {}, it is lost", message, topicName);
+                }
             } else {
                 // Handle success
                 RecordMetadata metadata = result.getRecordMetadata();
-                LOG.debug("Received new metadata. Topic: {}; Partition: {}; Offset: {}; Timestamp: {}; at time: {}",
-                        metadata.topic(),
-                        metadata.partition(),
-                        metadata.offset(),
-                        metadata.timestamp(),
-                        System.nanoTime());
+                producerMetrics.recordSuccess(metadata, sendStartNanos, sendStartMillis);
+                if (ACK_EVENTS.record()) {
+                    ACK_EVENTS.log("topic", metadata.topic(), "partition", metadata.partition(), "offset", metadata.offset());
+                }
             }
 
         });
     }
+
+    // A transactional template only sends within a transaction, so a single record commits its own one before this returns.
+    // sendBatch shares one transaction across the batch instead
+    private CompletableFuture<SendResult<Long, TwitterAvroModel>> doSend(String topicName, Long key, TwitterAvroModel message) {
+        return withKafkaTemplate(topicName, topicKafkaTemplate -> topicKafkaTemplate.isTransactional()
+                ? topicKafkaTemplate.executeInTransaction(operations -> operations.send(topicName, key, message))
+                : topicKafkaTemplate.send(topicName, key, message));
+    }
+
+    // Runs the action with the template of the topic, within the current generation for the shared producer
+    private <T> T withKafkaTemplate(String topicName, Function<KafkaTemplate<Long, TwitterAvroModel>, T> action) {
+        KafkaTemplate<Long, TwitterAvroModel> topicKafkaTemplate = topicKafkaTemplates.get(topicName);
+        if (topicKafkaTemplate != null) {
+            return action.apply(topicKafkaTemplate);
+        }
+        KafkaTemplateGeneration generation = enterSharedGeneration();
+        try {
+            return action.apply(generation.getKafkaTemplate());
+        } finally {
+            generation.exit();
+        }
+    }
+
+    // A sender that entered a generation which got replaced meanwhile leaves it again and takes the new one, so the
+    // replaced one is not used once replaceSharedProducer saw it idle
+    private KafkaTemplateGeneration enterSharedGeneration() {
+        while (true) {
+            KafkaTemplateGeneration generation = sharedGeneration;
+            generation.enter();
+            if (generation == sharedGeneration) {
+                return generation;
+            }
+            generation.exit();
+        }
+    }
+
+    // A copy of the first producer factory with the overrides of the topic, if any. The transactional ids get the topic name,
+    // so the producers of two topics never fence each other
+    private KafkaTemplate<Long, TwitterAvroModel> topicKafkaTemplate(String topicName) {
+        Map<String, String> overrides = topicProducerOverrides.getOrDefault(topicName, Map.of());
+        Map<String, Object> configOverrides = new HashMap<>(overrides);
+        if (firstProducerFactory.transactionCapable()) {
+            configOverrides.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, firstProducerFactory.getTransactionIdPrefix() + topicName + "-");
+        }
+        LOG.info("Kafka topic {} is sent by its own producer with {}", topicName, overrides);
+        return new KafkaTemplate<>(firstProducerFactory, configOverrides);
+    }
+
+    private void whenComplete(CompletableFuture<SendResult<Long, TwitterAvroModel>> kafkaResultFuture,
+                              BiConsumer<SendResult<Long, TwitterAvroModel>, Throwable> callback) {
+        if (callbackExecutor == null) {
+            kafkaResultFuture.whenComplete(callback);
+        } else {
+            kafkaResultFuture.whenCompleteAsync(callback, callbackExecutor);
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package com.microservices.demo.kafka.producer.exception;
+
+public class ProducerBackpressureException extends RuntimeException{
+    public ProducerBackpressureException(){
+    }
+
+    public ProducerBackpressureException(String message){
+        super(message);
+    }
+
+    public ProducerBackpressureException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
@@ -0,0 +1,14 @@
+package com.microservices.demo.kafka.producer.exception;
+
+public class SpillJournalException extends RuntimeException{
+    public SpillJournalException(){
+    }
+
+    public SpillJournalException(String message){
+        super(message);
+    }
+
+    public SpillJournalException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
@@ -0,0 +1,117 @@
+package com.microservices.demo.kafka.producer.journal;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.exception.SpillJournalException;
+import com.microservices.demo.kafka.producer.journal.SpillJournal.JournalEntry;
+import jakarta.annotation.PreDestroy;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Durable spill: records are stored Avro-serialized in a memory-mapped SpillJournal, so they survive a restart and are not kept on-heap.
+// Each journal record holds the topic name, the key and the Avro binary encoding of the message
+@Component
+@ConditionalOnProperty(name = "kafka-producer-config.spill-store", havingValue = "journal")
+public class JournalRecordSpill implements RecordSpill<Long, TwitterAvroModel> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JournalRecordSpill.class);
+
+    private final SpillJournal spillJournal;
+
+    private final SpecificDatumWriter<TwitterAvroModel> datumWriter = new SpecificDatumWriter<>(TwitterAvroModel.class);
+
+    private final SpecificDatumReader<TwitterAvroModel> datumReader = new SpecificDatumReader<>(TwitterAvroModel.class);
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+
+    private BinaryEncoder encoder;
+
+    private BinaryDecoder decoder;
+
+    public JournalRecordSpill(KafkaProducerConfigData kafkaProducerConfigData) {
+        this(new SpillJournal(Path.of(kafkaProducerConfigData.getSpillJournalDirectory()), kafkaProducerConfigData.getSpillJournalSegmentBytes(),
+                kafkaProducerConfigData.getSpillJournalForceIntervalMs()));
+    }
+
+    JournalRecordSpill(SpillJournal spillJournal) {
+        this.spillJournal = spillJournal;
+    }
+
+    @Override
+    public synchronized boolean spill(String topicName, Long key, TwitterAvroModel message) {
+        try {
+            buffer.reset();
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeUTF(topicName);
+            out.writeLong(key);
+            encoder = EncoderFactory.get().directBinaryEncoder(buffer, encoder);
+            datumWriter.write(message, encoder);
+            spillJournal.append(buffer.toByteArray());
+            return true;
+        } catch (IOException | SpillJournalException e) {
+            LOG.error("Error while writing message {} for topic {} to spill journal", message, topicName, e);
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized SpilledRecord<Long, TwitterAvroModel> peek() {
+        JournalEntry entry = spillJournal.peek();
+        if (entry == null) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.payload()));
+            String topicName = in.readUTF();
+            long key = in.readLong();
+            int avroOffset = entry.payload().length - in.available();
+            decoder = DecoderFactory.get().binaryDecoder(entry.payload(), avroOffset, in.available(), decoder);
+            return new SpilledRecord<>(entry.position(), topicName, key, datumReader.read(null, decoder));
+        } catch (IOException e) {
+            throw new SpillJournalException("Error while reading record at position " + entry.position() + " from spill journal", e);
+        }
+    }
+
+    @Override
+    public void remove(SpilledRecord<Long, TwitterAvroModel> spilledRecord) {
+        spillJournal.advance(spilledRecord.position());
+    }
+
+    @Override
+    public void acknowledge(SpilledRecord<Long, TwitterAvroModel> spilledRecord) {
+        spillJournal.acknowledge(spilledRecord.position());
+    }
+
+    @Override
+    public void replayFailed(SpilledRecord<Long, TwitterAvroModel> spilledRecord) {
+        // Read again from the failed record on, records after it that are in flight or delivered are not sent twice
+        spillJournal.rewind(spilledRecord.position());
+    }
+
+    @Override
+    public long size() {
+        return spillJournal.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        LOG.info("Closing spill journal with {} unacknowledged record(s)", spillJournal.size());
+        spillJournal.close();
+    }
+}
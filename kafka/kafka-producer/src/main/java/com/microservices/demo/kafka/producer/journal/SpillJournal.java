@@ -0,0 +1,428 @@
+package com.microservices.demo.kafka.producer.journal;
+
+import com.microservices.demo.kafka.producer.exception.SpillJournalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only journal of opaque records kept in fixed size memory-mapped segment files.
+// Each record is stored as [int length][int crc32c][payload]. A zero length marks the end of the written part of a segment,
+// new segments are created zero filled so no separate end marker is needed.
+// A position is the segment id in the high 32 bits and the offset inside the segment in the low 32 bits.
+// Records are read in order through a read cursor, and only acknowledged records are released: the lowest position that is
+// read but not yet acknowledged is the committed position, it is persisted to a checkpoint file and segments below it are deleted.
+// A failed record moves the cursor back to it. Records after it that are still in flight or already acknowledged are skipped
+// when the cursor passes them again, so a rewind alone never sends a record twice.
+// Delivery is still at least once: acknowledgements above the committed position and the checkpoint only live in memory until
+// the next commit, and appends are forced to disk every forceIntervalMs (only on segment rollover and close if negative),
+// so after a crash the records appended since the last force are lost and records acknowledged since the last commit are replayed.
+// Close unmaps the segments and the checkpoint, the journal can not be used after that.
+public class SpillJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpillJournal.class);
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    // Unsafe.invokeCleaner bound to the Unsafe instance, null when the JDK does not offer it
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private final Path directory;
+
+    private final int segmentBytes;
+
+    private final TreeMap<Integer, MappedByteBuffer> segments = new TreeMap<>();
+
+    // Read and handed out, neither acknowledged nor failed yet
+    private final TreeSet<Long> unacknowledged = new TreeSet<>();
+
+    // Acknowledged while an earlier record was still pending, kept until the committed position passes them
+    private final TreeSet<Long> acknowledgedAhead = new TreeSet<>();
+
+    private final CRC32C crc = new CRC32C();
+
+    private final MappedByteBuffer checkpoint;
+
+    private final long forceIntervalNanos;
+
+    private long lastForceNanos = System.nanoTime();
+
+    private int writeSegment;
+
+    private int writeOffset;
+
+    private long readPosition;
+
+    private long committedPosition;
+
+    private long pendingCount;
+
+    private JournalEntry peeked;
+
+    private boolean closed;
+
+    public SpillJournal(Path directory, int segmentBytes) {
+        this(directory, segmentBytes, -1);
+    }
+
+    public SpillJournal(Path directory, int segmentBytes, long forceIntervalMs) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.forceIntervalNanos = forceIntervalMs < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(forceIntervalMs);
+        try {
+            Files.createDirectories(directory);
+            checkpoint = map(directory.resolve(CHECKPOINT_FILE), Long.BYTES);
+            recover();
+        } catch (IOException e) {
+            throw new SpillJournalException("Error while opening spill journal in " + directory, e);
+        }
+    }
+
+    public synchronized void append(byte[] payload) {
+        ensureOpen();
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (payload.length == 0) {
+            throw new SpillJournalException("Empty records can not be stored in the spill journal");
+        }
+        if (recordBytes > segmentBytes) {
+            throw new SpillJournalException("Record of " + payload.length + " bytes does not fit in a journal segment of " + segmentBytes + " bytes");
+        }
+        if (segmentBytes - writeOffset < recordBytes) {
+            // Leave the rest of the segment zero filled, a reader treats that as the end of the segment
+            segments.get(writeSegment).force();
+            writeSegment++;
+            writeOffset = 0;
+            segments.put(writeSegment, openSegment(writeSegment));
+        }
+        MappedByteBuffer segment = segments.get(writeSegment);
+        crc.reset();
+        crc.update(payload);
+        // Payload and checksum go in before the length, so a record only becomes visible once it is complete
+        segment.putInt(writeOffset + Integer.BYTES, (int) crc.getValue());
+        segment.put(writeOffset + HEADER_BYTES, payload);
+        segment.putInt(writeOffset, payload.length);
+        writeOffset += recordBytes;
+        pendingCount++;
+        if (forceIntervalNanos >= 0) {
+            long now = System.nanoTime();
+            if (now - lastForceNanos >= forceIntervalNanos) {
+                segment.force();
+                lastForceNanos = now;
+            }
+        }
+    }
+
+    // Returns the record at the read cursor without moving the cursor, or null if every record has been read
+    public synchronized JournalEntry peek() {
+        ensureOpen();
+        while (peeked == null) {
+            JournalEntry entry = readAt(readPosition);
+            if (entry == null) {
+                return null;
+            }
+            if (unacknowledged.contains(entry.position()) || acknowledgedAhead.contains(entry.position())) {
+                // Passed again after a rewind, the record is still in flight or already delivered
+                readPosition = entry.nextPosition();
+            } else {
+                peeked = entry;
+            }
+        }
+        return peeked;
+    }
+
+    // Moves the read cursor past the record at the given position if it is the one at the read cursor, which is not the case
+    // when the journal was rewound in between. The record stays in the journal until it is acknowledged
+    public synchronized void advance(long position) {
+        JournalEntry entry = peek();
+        if (entry == null || entry.position() != position) {
+            return;
+        }
+        unacknowledged.add(entry.position());
+        readPosition = entry.nextPosition();
+        peeked = null;
+    }
+
+    // Acknowledgements of sends that complete after close are dropped, the records are replayed after the restart
+    public synchronized void acknowledge(long position) {
+        if (closed) {
+            return;
+        }
+        if (unacknowledged.remove(position)) {
+            pendingCount--;
+            acknowledgedAhead.add(position);
+            commit();
+        }
+    }
+
+    // Hands a failed record back: the read cursor moves back to it unless it is already before it
+    public synchronized void rewind(long position) {
+        if (closed) {
+            return;
+        }
+        if (unacknowledged.remove(position) && position < readPosition) {
+            readPosition = position;
+            peeked = null;
+        }
+    }
+
+    // Number of records appended and not yet acknowledged
+    public synchronized long size() {
+        return pendingCount;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        segments.values().forEach(MappedByteBuffer::force);
+        checkpoint.force();
+        segments.values().forEach(SpillJournal::unmap);
+        segments.clear();
+        unmap(checkpoint);
+        peeked = null;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new SpillJournalException("Spill journal in " + directory + " is closed");
+        }
+    }
+
+    private void commit() {
+        long committed = unacknowledged.isEmpty() ? readPosition : Math.min(readPosition, unacknowledged.first());
+        if (committed == committedPosition) {
+            return;
+        }
+        committedPosition = committed;
+        acknowledgedAhead.headSet(committedPosition).clear();
+        checkpoint.putLong(0, committedPosition);
+        // Every segment below the one holding the committed position only contains acknowledged records
+        int committedSegment = segmentOf(committedPosition);
+        while (!segments.isEmpty() && segments.firstKey() < committedSegment) {
+            Map.Entry<Integer, MappedByteBuffer> segment = segments.pollFirstEntry();
+            unmap(segment.getValue());
+            deleteSegment(segment.getKey());
+        }
+    }
+
+    private JournalEntry readAt(long position) {
+        int segmentId = segmentOf(position);
+        int offset = offsetOf(position);
+        while (true) {
+            MappedByteBuffer segment = segments.get(segmentId);
+            if (segment == null) {
+                return null;
+            }
+            int length = offset + HEADER_BYTES <= segmentBytes ? segment.getInt(offset) : 0;
+            if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes) {
+                if (segmentId == writeSegment) {
+                    return null;
+                }
+                // End of a full segment, continue with the next one
+                segmentId = segments.higherKey(segmentId);
+                offset = 0;
+                readPosition = positionOf(segmentId, 0);
+                continue;
+            }
+            byte[] payload = new byte[length];
+            segment.get(offset + HEADER_BYTES, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != segment.getInt(offset + Integer.BYTES)) {
+                LOG.error("Checksum mismatch in spill journal segment {} at offset {}, skipping rest of segment", segmentId, offset);
+                if (segmentId == writeSegment) {
+                    return null;
+                }
+                segmentId = segments.higherKey(segmentId);
+                offset = 0;
+                readPosition = positionOf(segmentId, 0);
+                continue;
+            }
+            long recordPosition = positionOf(segmentId, offset);
+            return new JournalEntry(recordPosition, recordPosition + HEADER_BYTES + length, payload);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Integer> segmentIds = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(segmentIds::add);
+        }
+        committedPosition = checkpoint.getLong(0);
+        int committedSegment = segmentOf(committedPosition);
+        for (int segmentId : segmentIds) {
+            if (segmentId < committedSegment) {
+                deleteSegment(segmentId);
+            } else {
+                segments.put(segmentId, openSegment(segmentId));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(committedSegment, openSegment(committedSegment));
+        }
+        if (segments.firstKey() != committedSegment) {
+            committedPosition = positionOf(segments.firstKey(), 0);
+        }
+        writeSegment = segments.lastKey();
+        writeOffset = scanValidRecords(committedPosition);
+        readPosition = committedPosition;
+        if (pendingCount > 0) {
+            LOG.info("Recovered spill journal in {} with {} unacknowledged record(s) in {} segment(s)", directory, pendingCount, segments.size());
+        }
+    }
+
+    // Counts the records from the committed position on and returns the end of the valid data in the last segment.
+    // A torn or corrupt tail is zeroed so new appends are not followed by stale bytes
+    private int scanValidRecords(long fromPosition) {
+        int offset = offsetOf(fromPosition);
+        for (Integer id = segmentOf(fromPosition); id != null; id = segments.higherKey(id)) {
+            MappedByteBuffer segment = segments.get(id);
+            while (offset + HEADER_BYTES <= segmentBytes) {
+                int length = segment.getInt(offset);
+                if (length <= 0 || offset + HEADER_BYTES + length > segmentBytes || !checksumMatches(segment, offset, length)) {
+                    break;
+                }
+                pendingCount++;
+                offset += HEADER_BYTES + length;
+            }
+            if (id == writeSegment) {
+                zeroTail(segment, offset);
+                return offset;
+            }
+            offset = 0;
+        }
+        return 0;
+    }
+
+    // Zeroes stale bytes after the last valid record, stopping at the first page that is already empty so the untouched
+    // part of a sparse segment file is never materialized
+    private void zeroTail(MappedByteBuffer segment, int fromOffset) {
+        int pageBytes = 4096;
+        int offset = fromOffset;
+        while (offset < segmentBytes) {
+            int pageEnd = Math.min(segmentBytes, (offset / pageBytes + 1) * pageBytes);
+            boolean empty = true;
+            for (int i = offset; i < pageEnd && empty; i++) {
+                empty = segment.get(i) == 0;
+            }
+            if (empty && offset != fromOffset) {
+                return;
+            }
+            for (int i = offset; i < pageEnd; i++) {
+                segment.put(i, (byte) 0);
+            }
+            offset = pageEnd;
+        }
+    }
+
+    private boolean checksumMatches(MappedByteBuffer segment, int offset, int length) {
+        byte[] payload = new byte[length];
+        segment.get(offset + HEADER_BYTES, payload);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue() == segment.getInt(offset + Integer.BYTES);
+    }
+
+    private MappedByteBuffer openSegment(int segmentId) {
+        try {
+            return map(segmentPath(segmentId), segmentBytes);
+        } catch (IOException e) {
+            throw new SpillJournalException("Error while opening spill journal segment " + segmentPath(segmentId), e);
+        }
+    }
+
+    private void deleteSegment(int segmentId) {
+        try {
+            Files.deleteIfExists(segmentPath(segmentId));
+            LOG.debug("Deleted fully acknowledged spill journal segment {}", segmentId);
+        } catch (IOException e) {
+            LOG.warn("Could not delete spill journal segment {}", segmentPath(segmentId), e);
+        }
+    }
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(String.format("%010d%s", segmentId, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            if (randomAccessFile.length() < size) {
+                randomAccessFile.setLength(size);
+            }
+            // The mapping stays valid after the channel is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    // Releases the mapping right away instead of when the buffer is garbage collected. The buffer must not be used afterwards,
+    // an access to an unmapped buffer crashes the JVM
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable e) {
+            LOG.warn("Could not unmap spill journal buffer, it is released when it is garbage collected", e);
+        }
+    }
+
+    // The JDK has no public api to unmap a buffer, Unsafe.invokeCleaner from jdk.unsupported is the supported way around it
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Spill journal buffers can not be unmapped on close, they are released when they are garbage collected", e);
+            return null;
+        }
+    }
+
+    private static long positionOf(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    public record JournalEntry(long position, long nextPosition, byte[] payload) {
+    }
+}
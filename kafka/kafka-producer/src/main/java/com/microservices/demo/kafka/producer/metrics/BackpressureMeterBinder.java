@@ -0,0 +1,54 @@
+package com.microservices.demo.kafka.producer.metrics;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// State of the in-flight limiter and the record spill, read from its own counters when the registry is scraped so acquire and release record nothing twice
+@Component
+public class BackpressureMeterBinder implements MeterBinder {
+
+    private final InFlightLimiter inFlightLimiter;
+
+    private final RecordSpill<Long, TwitterAvroModel> recordSpill;
+
+    public BackpressureMeterBinder(InFlightLimiter inFlightLimiter, RecordSpill<Long, TwitterAvroModel> recordSpill) {
+        this.inFlightLimiter = inFlightLimiter;
+        this.recordSpill = recordSpill;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("twitter.kafka.producer.in.flight", inFlightLimiter, InFlightLimiter::getInFlightCount)
+                .description("Records sent to kafka and not acknowledged yet")
+                .register(meterRegistry);
+        FunctionTimer.builder("twitter.kafka.producer.in.flight.wait", inFlightLimiter,
+                        InFlightLimiter::getWaitCount, InFlightLimiter::getTotalWaitNanos, TimeUnit.NANOSECONDS)
+                .description("Time spent waiting for an in-flight slot with the BLOCK policy")
+                .register(meterRegistry);
+        Gauge.builder("twitter.kafka.producer.in.flight.wait.max", inFlightLimiter, limiter -> limiter.getMaxWaitNanos() / 1e9)
+                .description("Longest wait for an in-flight slot since the start")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.kafka.producer.in.flight.rejected", inFlightLimiter, InFlightLimiter::getRejectedCount)
+                .description("Records that got no in-flight slot and were shed or spilled")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.kafka.producer.in.flight.timeouts", inFlightLimiter, InFlightLimiter::getTimedOutCount)
+                .description("Records failed because no in-flight slot was free within the block timeout")
+                .register(meterRegistry);
+        Gauge.builder("twitter.kafka.producer.spill.size", recordSpill, RecordSpill::size)
+                .description("Records waiting in the spill to be replayed to kafka")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.kafka.producer.spill.lost", recordSpill, RecordSpill::getLostCount)
+                .description("Spilled records dropped because they could not be put back after a failed replay")
+                .register(meterRegistry);
+    }
+}
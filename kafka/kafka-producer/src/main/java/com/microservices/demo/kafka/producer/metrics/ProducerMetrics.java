@@ -0,0 +1,105 @@
+package com.microservices.demo.kafka.producer.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.core.KafkaProducerException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Meters of the kafka producer, registered up front or once per topic partition and exception type, so recording a send
+// only updates existing meters and allocates nothing.
+// The ack latency runs from the send call to its callback on the monotonic clock. The append latency runs from the send
+// call to the record timestamp of the metadata, which is the broker append time on topics with LogAppendTime
+@Component
+public class ProducerMetrics {
+
+    private static final int INITIAL_PARTITIONS = 16;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer ackLatency;
+
+    private final Timer appendLatency;
+
+    // Per topic, counters indexed by partition, grown when a topic has more partitions
+    private final ConcurrentHashMap<String, AtomicReferenceArray<Counter>> sentByPartition = new ConcurrentHashMap<>();
+
+    private final ClassValue<Counter> failuresByType = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> type) {
+            return Counter.builder("twitter.kafka.producer.send.failures")
+                    .description("Sends completed with an error, by exception type")
+                    .tag("exception", type.getSimpleName())
+                    .register(meterRegistry);
+        }
+    };
+
+    public ProducerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.ackLatency = Timer.builder("twitter.kafka.producer.ack.latency")
+                .description("Time from the send call to its acknowledgement")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+        this.appendLatency = Timer.builder("twitter.kafka.producer.append.latency")
+                .description("Time from the send call to the record timestamp returned by the broker")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    public void recordSuccess(RecordMetadata metadata, long sendStartNanos, long sendStartMillis) {
+        ackLatency.record(System.nanoTime() - sendStartNanos, TimeUnit.NANOSECONDS);
+        // With CreateTime the timestamp is set by the producer itself, a timestamp before the send carries no latency
+        if (metadata.hasTimestamp() && metadata.timestamp() >= sendStartMillis) {
+            appendLatency.record(metadata.timestamp() - sendStartMillis, TimeUnit.MILLISECONDS);
+        }
+        partitionCounter(metadata.topic(), metadata.partition()).increment();
+    }
+
+    public void recordFailure(Throwable throwable) {
+        // KafkaProducerException and CompletionException only wrap the error of the producer
+        Throwable cause = (throwable instanceof KafkaProducerException || throwable instanceof CompletionException)
+                && throwable.getCause() != null ? throwable.getCause() : throwable;
+        failuresByType.get(cause.getClass()).increment();
+    }
+
+    private Counter partitionCounter(String topic, int partition) {
+        AtomicReferenceArray<Counter> counters = sentByPartition.get(topic);
+        if (counters != null && partition < counters.length()) {
+            Counter counter = counters.get(partition);
+            if (counter != null) {
+                return counter;
+            }
+        }
+        return registerPartitionCounter(topic, partition);
+    }
+
+    // Slow path, taken once per topic partition
+    private Counter registerPartitionCounter(String topic, int partition) {
+        AtomicReferenceArray<Counter> counters = sentByPartition.compute(topic, (name, current) -> {
+            if (current != null && partition < current.length()) {
+                return current;
+            }
+            AtomicReferenceArray<Counter> grown = new AtomicReferenceArray<>(Math.max(INITIAL_PARTITIONS, partition * 2 + 1));
+            for (int i = 0; current != null && i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            return grown;
+        });
+        Counter counter = Counter.builder("twitter.kafka.producer.records.sent")
+                .description("Records acknowledged by the broker, by topic partition")
+                .tag("topic", topic)
+                .tag("partition", Integer.toString(partition))
+                .register(meterRegistry);
+        counters.compareAndSet(partition, null, counter);
+        return counter;
+    }
+}
@@ -0,0 +1,92 @@
+package com.microservices.demo.kafka.producer.partitioner;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Partitions by key like the kafka default partitioner (murmur2 of the key bytes), so a key keeps its partition and its order.
+// A key is hot when its records within hot.key.window.ms exceed hot.key.load.factor times the records a partition gets on
+// average (all records of the window / partitions), e.g. a very active user: with the default of 1 the key alone brings its
+// partition to at least twice the average load. The records of a hot key are spread over up to hot.key.max.partitions partitions starting at the key's own one, so one account can no
+// longer overload a single partition. Records of a hot key lose their order across those partitions while it stays hot.
+// The frequencies come from a count-min sketch, so the memory is fixed no matter how many keys there are.
+// Enable it with kafka-producer-config.partitioner-class
+public class HotKeyAwarePartitioner implements Partitioner {
+
+    public static final String HOT_KEY_WINDOW_MS_CONFIG = "hot.key.window.ms";
+
+    public static final String HOT_KEY_LOAD_FACTOR_CONFIG = "hot.key.load.factor";
+
+    // Below this many records within the window no key is hot, so a quiet topic is never salted
+    public static final String HOT_KEY_MIN_COUNT_CONFIG = "hot.key.min.count";
+
+    public static final String HOT_KEY_MAX_PARTITIONS_CONFIG = "hot.key.max.partitions";
+
+    private static final int SKETCH_DEPTH = 4;
+
+    private static final int SKETCH_WIDTH = 4096;
+
+    private final LongSupplier nanoClock;
+
+    private KeyFrequencySketch keyFrequencySketch;
+
+    private double hotKeyLoadFactor = 1.0;
+
+    private long hotKeyMinCount = 100;
+
+    private int hotKeyMaxPartitions = 4;
+
+    // Used by kafka, configure sets it up
+    public HotKeyAwarePartitioner() {
+        this(System::nanoTime);
+    }
+
+    HotKeyAwarePartitioner(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        long windowMs = longConfig(configs, HOT_KEY_WINDOW_MS_CONFIG, 10_000L);
+        hotKeyLoadFactor = doubleConfig(configs, HOT_KEY_LOAD_FACTOR_CONFIG, hotKeyLoadFactor);
+        hotKeyMinCount = longConfig(configs, HOT_KEY_MIN_COUNT_CONFIG, hotKeyMinCount);
+        hotKeyMaxPartitions = (int) longConfig(configs, HOT_KEY_MAX_PARTITIONS_CONFIG, hotKeyMaxPartitions);
+        keyFrequencySketch = new KeyFrequencySketch(SKETCH_DEPTH, SKETCH_WIDTH, TimeUnit.MILLISECONDS.toNanos(windowMs), nanoClock);
+    }
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int numPartitions = cluster.partitionsForTopic(topic).size();
+        if (keyBytes == null) {
+            return ThreadLocalRandom.current().nextInt(numPartitions);
+        }
+        int keyHash = Utils.murmur2(keyBytes);
+        int partition = Utils.toPositive(keyHash) % numPartitions;
+        long keyCount = keyFrequencySketch.add(keyHash);
+        int saltedPartitions = Math.min(hotKeyMaxPartitions, numPartitions);
+        if (saltedPartitions <= 1 || keyCount < hotKeyMinCount
+                || keyCount <= hotKeyLoadFactor * keyFrequencySketch.total() / numPartitions) {
+            return partition;
+        }
+        return (partition + ThreadLocalRandom.current().nextInt(saltedPartitions)) % numPartitions;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static long longConfig(Map<String, ?> configs, String name, long defaultValue) {
+        Object value = configs.get(name);
+        return value == null ? defaultValue : Long.parseLong(value.toString().trim());
+    }
+
+    private static double doubleConfig(Map<String, ?> configs, String name, double defaultValue) {
+        Object value = configs.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value.toString().trim());
+    }
+}
@@ -0,0 +1,111 @@
+package com.microservices.demo.kafka.producer.partitioner;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Count-min sketch of key frequencies over a sliding window: two sketches of half a window each, the older one is cleared
+// and becomes the current one every half window, so an estimate always covers between half and a whole window.
+// Estimates never undercount a key within the window, they may overcount it by the collisions of its cells
+class KeyFrequencySketch {
+
+    private final int depth;
+
+    private final int widthMask;
+
+    private final long halfWindowNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock rotationLock = new ReentrantLock();
+
+    private volatile Half current;
+
+    private volatile Half previous;
+
+    private volatile long currentStartNanos;
+
+    // width is rounded up to a power of two
+    KeyFrequencySketch(int depth, int width, long windowNanos, LongSupplier nanoClock) {
+        this.depth = depth;
+        int roundedWidth = Integer.highestOneBit(Math.max(2, width) - 1) << 1;
+        this.widthMask = roundedWidth - 1;
+        this.halfWindowNanos = Math.max(1, windowNanos / 2);
+        this.nanoClock = nanoClock;
+        this.current = new Half(depth * roundedWidth);
+        this.previous = new Half(depth * roundedWidth);
+        this.currentStartNanos = nanoClock.getAsLong();
+    }
+
+    // Counts the key and returns its estimated count within the window, this record included
+    long add(int keyHash) {
+        rotateIfDue();
+        Half half = current;
+        Half older = previous;
+        half.total.incrementAndGet();
+        long estimate = Long.MAX_VALUE;
+        int hash2 = mix(keyHash);
+        for (int row = 0; row < depth; row++) {
+            int cell = row * (widthMask + 1) + ((keyHash + row * hash2) & widthMask);
+            long count = (long) half.counts.incrementAndGet(cell) + older.counts.get(cell);
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    // Records counted within the window
+    long total() {
+        return current.total.get() + previous.total.get();
+    }
+
+    private void rotateIfDue() {
+        if (nanoClock.getAsLong() - currentStartNanos < halfWindowNanos || !rotationLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = nanoClock.getAsLong();
+            if (now - currentStartNanos < halfWindowNanos) {
+                return;
+            }
+            Half cleared = previous;
+            cleared.clear();
+            // After a pause longer than the window both halves are out of date
+            previous = now - currentStartNanos >= 2 * halfWindowNanos ? clear(current) : current;
+            current = cleared;
+            currentStartNanos = now;
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    private static Half clear(Half half) {
+        half.clear();
+        return half;
+    }
+
+    // Second hash for the rows, derived from the first like in Kirsch and Mitzenmacher's double hashing; odd, so rows differ
+    private static int mix(int hash) {
+        long mixed = hash * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) | 1;
+    }
+
+    private static final class Half {
+
+        private final AtomicIntegerArray counts;
+
+        private final AtomicLong total = new AtomicLong();
+
+        private Half(int cells) {
+            counts = new AtomicIntegerArray(cells);
+        }
+
+        // Increments racing the clear may survive it, the estimate is then a little high for half a window
+        private void clear() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+            total.set(0);
+        }
+    }
+}
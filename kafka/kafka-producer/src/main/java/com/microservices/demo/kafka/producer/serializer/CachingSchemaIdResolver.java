@@ -0,0 +1,195 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps resolved schema ids in memory and, optionally, in a small properties file, so a restarted producer can serialize
+// without a schema registry round trip. Entries carry the fingerprint of the schema they were resolved for, an id cached
+// for an older version of the schema is ignored. With a refresh interval the known subjects are resolved again in the
+// background and a changed id replaces the cached one; a failed refresh keeps the old id
+public class CachingSchemaIdResolver implements SchemaIdResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingSchemaIdResolver.class);
+
+    private final SchemaIdResolver delegate;
+
+    private final Path cacheFile;
+
+    private final Map<String, CachedSchemaId> schemaIds = new ConcurrentHashMap<>();
+
+    private final Map<String, CachedSchemaId> fileEntries;
+
+    // Guards the registry call and the cache file. Not synchronized: the call blocks on http and may run on a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ScheduledExecutorService refresher;
+
+    public CachingSchemaIdResolver(SchemaIdResolver delegate, Path cacheFile, long refreshIntervalMs) {
+        this.delegate = delegate;
+        this.cacheFile = cacheFile;
+        this.fileEntries = cacheFile == null ? Map.of() : load(cacheFile);
+        if (refreshIntervalMs > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "schema-id-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public int getSchemaId(String subject, Schema schema) {
+        CachedSchemaId cached = schemaIds.get(subject);
+        if (cached != null && cached.schema() == schema) {
+            return cached.id();
+        }
+        return resolve(subject, schema);
+    }
+
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        delegate.close();
+    }
+
+    // True when the cache file holds an id of the subject that was resolved for this very schema, so a producer started now
+    // would not call the schema registry for it
+    public static boolean hasSchemaId(Path cacheFile, String subject, Schema schema) {
+        if (cacheFile == null || !Files.exists(cacheFile)) {
+            return false;
+        }
+        try {
+            CachedSchemaId cached = load(cacheFile).get(subject);
+            return cached != null && cached.fingerprint() == SchemaNormalization.parsingFingerprint64(schema);
+        } catch (UncheckedIOException e) {
+            LOG.warn("Could not read schema id cache {}", cacheFile, e);
+            return false;
+        }
+    }
+
+    // Slow path on the first record of a subject: the cache file, then the schema registry
+    private int resolve(String subject, Schema schema) {
+        lock.lock();
+        try {
+            return resolveLocked(subject, schema);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int resolveLocked(String subject, Schema schema) {
+        CachedSchemaId cached = schemaIds.get(subject);
+        if (cached != null && cached.schema() == schema) {
+            return cached.id();
+        }
+        long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+        CachedSchemaId fromFile = fileEntries.get(subject);
+        if (fromFile != null && fromFile.fingerprint() == fingerprint) {
+            LOG.info("Using schema id {} for subject {} from {}", fromFile.id(), subject, cacheFile);
+            schemaIds.put(subject, new CachedSchemaId(fromFile.id(), fingerprint, schema));
+            return fromFile.id();
+        }
+        int id = delegate.getSchemaId(subject, schema);
+        LOG.info("Resolved schema id {} for subject {} from schema registry", id, subject);
+        schemaIds.put(subject, new CachedSchemaId(id, fingerprint, schema));
+        store();
+        return id;
+    }
+
+    // Resolves every known subject again, run by the refresher thread
+    void refresh() {
+        boolean changed = false;
+        for (Map.Entry<String, CachedSchemaId> entry : schemaIds.entrySet()) {
+            CachedSchemaId current = entry.getValue();
+            try {
+                int id = delegate.getSchemaId(entry.getKey(), current.schema());
+                if (id != current.id()) {
+                    LOG.info("Schema id of subject {} changed from {} to {}", entry.getKey(), current.id(), id);
+                    schemaIds.replace(entry.getKey(), current, new CachedSchemaId(id, current.fingerprint(), current.schema()));
+                    changed = true;
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Could not refresh schema id of subject {}, keeping id {}", entry.getKey(), current.id(), e);
+            }
+        }
+        if (changed) {
+            store();
+        }
+    }
+
+    // subject=id:fingerprint, written to a temporary file first so a crash never leaves a half written cache
+    private void store() {
+        if (cacheFile == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            writeCacheFile();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeCacheFile() {
+        Properties properties = new Properties();
+        fileEntries.forEach((subject, cached) -> properties.setProperty(subject, cached.id() + ":" + cached.fingerprint()));
+        schemaIds.forEach((subject, cached) -> properties.setProperty(subject, cached.id() + ":" + cached.fingerprint()));
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tempFile = Files.createTempFile(parent, cacheFile.getFileName().toString(), ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                properties.store(outputStream, "Schema registry ids by subject");
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The in-memory id is still used, only the next restart goes to the registry again
+            LOG.warn("Could not write schema id cache {}", cacheFile, e);
+        }
+    }
+
+    private static Map<String, CachedSchemaId> load(Path cacheFile) {
+        Map<String, CachedSchemaId> entries = new ConcurrentHashMap<>();
+        if (!Files.exists(cacheFile)) {
+            return entries;
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(cacheFile)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read schema id cache " + cacheFile, e);
+        }
+        for (String subject : properties.stringPropertyNames()) {
+            String[] value = properties.getProperty(subject).split(":");
+            try {
+                entries.put(subject, new CachedSchemaId(Integer.parseInt(value[0]), Long.parseLong(value[1]), null));
+            } catch (RuntimeException e) {
+                LOG.warn("Ignoring invalid schema id cache entry {}={}", subject, properties.getProperty(subject));
+            }
+        }
+        return entries;
+    }
+
+    private record CachedSchemaId(int id, long fingerprint, Schema schema) {
+    }
+}
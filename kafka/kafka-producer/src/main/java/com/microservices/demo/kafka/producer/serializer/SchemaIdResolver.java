@@ -0,0 +1,12 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import org.apache.avro.Schema;
+
+// Returns the schema registry id that is written into the wire format header of every record of a subject
+public interface SchemaIdResolver extends AutoCloseable {
+    int getSchemaId(String subject, Schema schema);
+
+    @Override
+    default void close() {
+    }
+}
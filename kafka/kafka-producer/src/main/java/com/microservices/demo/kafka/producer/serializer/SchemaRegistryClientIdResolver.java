@@ -0,0 +1,58 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.avro.AvroSchemaProvider;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClientFactory;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import io.confluent.kafka.serializers.KafkaAvroSerializerConfig;
+import org.apache.avro.Schema;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+// Resolves schema ids with the Confluent schema registry client: registers the schema under the subject, or only looks it
+// up when auto registration is off. Created from the producer configs the way the KafkaAvroSerializer creates its client,
+// so schema.registry.url, basic.auth.*, bearer.auth.*, schema.registry.ssl.* and the proxy settings all apply
+public class SchemaRegistryClientIdResolver implements SchemaIdResolver {
+
+    private final SchemaRegistryClient schemaRegistryClient;
+
+    private final boolean autoRegisterSchemas;
+
+    public SchemaRegistryClientIdResolver(SchemaRegistryClient schemaRegistryClient, boolean autoRegisterSchemas) {
+        this.schemaRegistryClient = schemaRegistryClient;
+        this.autoRegisterSchemas = autoRegisterSchemas;
+    }
+
+    public static SchemaRegistryClientIdResolver fromConfigs(Map<String, ?> configs) {
+        KafkaAvroSerializerConfig config = new KafkaAvroSerializerConfig(configs);
+        SchemaRegistryClient schemaRegistryClient = SchemaRegistryClientFactory.newClient(config.getSchemaRegistryUrls(),
+                config.getMaxSchemasPerSubject(), List.of(new AvroSchemaProvider()), config.originalsWithPrefix(""),
+                config.requestHeaders());
+        return new SchemaRegistryClientIdResolver(schemaRegistryClient, config.autoRegisterSchema());
+    }
+
+    @Override
+    public int getSchemaId(String subject, Schema schema) {
+        AvroSchema avroSchema = new AvroSchema(schema);
+        try {
+            return autoRegisterSchemas
+                    ? schemaRegistryClient.register(subject, avroSchema)
+                    : schemaRegistryClient.getId(subject, avroSchema);
+        } catch (IOException | RestClientException e) {
+            throw new SerializationException("Could not resolve the schema id of subject " + subject, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            schemaRegistryClient.close();
+        } catch (IOException e) {
+            throw new SerializationException("Could not close the schema registry client", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.compression.TweetTextCodec;
+import com.microservices.demo.kafka.producer.compression.TweetTextDictionary;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+// Reads the TwitterAvroModel values of TwitterAvroModelSerializer, decoding the four fields of twitter.avsc by hand as the
+// serializer writes them. The schema id is not looked up: TwitterAvroModel and TwitterCompressedTextAvroModel share the
+// layout and the TweetTextCodec.DICTIONARY_ID_HEADER is set exactly on the records of the compressed text schema.
+// Their text is decompressed with that dictionary of text.dictionary.directory, so a consumer can read every dictionary
+// version that is still in the directory
+public class TwitterAvroModelDeserializer implements Deserializer<TwitterAvroModel> {
+
+    private static final byte MAGIC_BYTE = 0x0;
+
+    private static final int HEADER_LENGTH = 5;
+
+    private static final int VALUE_BRANCH = 1;
+
+    private TweetTextCodec tweetTextCodec;
+
+    public TwitterAvroModelDeserializer() {
+    }
+
+    public TwitterAvroModelDeserializer(Map<Integer, TweetTextDictionary> dictionaries) {
+        this.tweetTextCodec = new TweetTextCodec(dictionaries, null, 0);
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        if (tweetTextCodec != null) {
+            return;
+        }
+        Object directory = configs.get(TwitterAvroModelSerializer.TEXT_DICTIONARY_DIRECTORY_CONFIG);
+        if (directory == null || directory.toString().isBlank()) {
+            return;
+        }
+        try {
+            tweetTextCodec = new TweetTextCodec(TweetTextDictionary.loadAll(Path.of(directory.toString())), null, 0);
+        } catch (IOException e) {
+            throw new SerializationException("Could not load the tweet text dictionaries of " + directory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (tweetTextCodec != null) {
+            tweetTextCodec.close();
+        }
+    }
+
+    @Override
+    public TwitterAvroModel deserialize(String topic, byte[] bytes) {
+        return deserialize(topic, null, bytes);
+    }
+
+    @Override
+    public TwitterAvroModel deserialize(String topic, Headers headers, byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC_BYTE) {
+            throw new SerializationException("Unknown magic byte for a TwitterAvroModel of topic " + topic);
+        }
+        Header dictionaryIdHeader = headers == null ? null : headers.lastHeader(TweetTextCodec.DICTIONARY_ID_HEADER);
+        if (dictionaryIdHeader != null && tweetTextCodec == null) {
+            throw new SerializationException("Tweet text of topic " + topic + " is compressed, but no "
+                    + TwitterAvroModelSerializer.TEXT_DICTIONARY_DIRECTORY_CONFIG + " is configured");
+        }
+        try {
+            Reader reader = new Reader(bytes, HEADER_LENGTH);
+            TwitterAvroModel.Builder builder = TwitterAvroModel.newBuilder()
+                    .setUserId(reader.readVarLong())
+                    .setId(reader.readVarLong())
+                    .setText(null)
+                    .setCreatedAt(null);
+            if (reader.readVarLong() == VALUE_BRANCH) {
+                int textLength = (int) reader.readVarLong();
+                builder.setText(dictionaryIdHeader == null
+                        ? new String(bytes, reader.position, textLength, StandardCharsets.UTF_8)
+                        : new String(tweetTextCodec.decompress(dictionaryIdHeader.value(), bytes, reader.position, textLength),
+                        StandardCharsets.UTF_8));
+                reader.position += textLength;
+            }
+            if (reader.readVarLong() == VALUE_BRANCH) {
+                builder.setCreatedAt(reader.readVarLong());
+            }
+            return builder.build();
+        } catch (SerializationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Could not read a TwitterAvroModel of topic " + topic, e);
+        }
+    }
+
+    private static class Reader {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        private Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        // Zig-zag encoded variable length integer, 7 bits per byte
+        private long readVarLong() {
+            long zigZag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                zigZag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigZag >>> 1) ^ -(zigZag & 1);
+                }
+            }
+        }
+    }
+}
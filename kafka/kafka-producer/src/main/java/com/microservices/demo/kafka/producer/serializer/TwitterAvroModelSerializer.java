@@ -0,0 +1,296 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.avro.model.TwitterCompressedTextAvroModel;
+import com.microservices.demo.kafka.producer.compression.TweetTextCodec;
+import com.microservices.demo.kafka.producer.compression.TweetTextDictionary;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serializer for TwitterAvroModel values in the schema registry wire format of the Confluent KafkaAvroSerializer (magic byte,
+// 4 byte schema id, avro binary), so the KafkaAvroDeserializer of any consumer reads its records. It encodes the four fields of twitter.avsc by hand straight into
+// the output array, sized exactly up front, instead of walking the record with a SpecificDatumWriter.
+// The result is a new array per record on purpose: Serializer has to return a byte[] of the exact length and the producer
+// copies it into its batch right away, so encoding into a reused buffer would only add a copy. It encodes the TwitterAvroModel
+// and not the twitter4j Status because the model is the value type of the producer and of every consumer of the topic.
+// Use it with kafka-producer-config.value-serializer-class. Of the KafkaAvroSerializer settings it reads the ones of the
+// schema registry client (schema.registry.url, basic.auth.*, bearer.auth.*, schema.registry.ssl.*), auto.register.schemas
+// and use.schema.id; subject name strategies, use.latest.version and the other serializer settings are not supported,
+// subjects are named after the topic. Resolved ids are cached in memory and, with schema.id.cache.file, on disk for the next start.
+// With text.dictionary.id the tweet text is compressed with that zstd dictionary of text.dictionary.directory and the
+// record gets the TweetTextCodec.DICTIONARY_ID_HEADER. Such records are written with the TwitterCompressedTextAvroModel
+// schema, registered under the <topic>-compressed-text subject, so their schema id tells any avro reader that the text
+// is in the textCompressed bytes. The layout is the same, only the text bytes differ
+public class TwitterAvroModelSerializer implements Serializer<TwitterAvroModel> {
+
+    public static final String SCHEMA_REGISTRY_URL_CONFIG = "schema.registry.url";
+
+    public static final String AUTO_REGISTER_SCHEMAS_CONFIG = "auto.register.schemas";
+
+    // Pins the id for every subject, the schema registry is never called
+    public static final String USE_SCHEMA_ID_CONFIG = "use.schema.id";
+
+    public static final String SCHEMA_ID_CACHE_FILE_CONFIG = "schema.id.cache.file";
+
+    // 0 disables the refresh
+    public static final String SCHEMA_ID_REFRESH_INTERVAL_MS_CONFIG = "schema.id.refresh.interval.ms";
+
+    // Directory of the tweet-text-<id>.dict files written by TweetTextDictionary
+    public static final String TEXT_DICTIONARY_DIRECTORY_CONFIG = "text.dictionary.directory";
+
+    // Dictionary to compress the tweet text with, the text is sent as it is without it
+    public static final String TEXT_DICTIONARY_ID_CONFIG = "text.dictionary.id";
+
+    public static final String TEXT_COMPRESSION_LEVEL_CONFIG = "text.compression.level";
+
+    // Pins the id of the TwitterCompressedTextAvroModel schema, needed with use.schema.id when the text is compressed
+    public static final String USE_COMPRESSED_TEXT_SCHEMA_ID_CONFIG = "use.compressed.text.schema.id";
+
+    private static final String COMPRESSED_TEXT_SUBJECT_INFIX = "-compressed-text";
+
+    private static final int DEFAULT_TEXT_COMPRESSION_LEVEL = 3;
+
+    private static final byte MAGIC_BYTE = 0x0;
+
+    private static final int HEADER_LENGTH = 5;
+
+    // Branch index of the non-null type in the ["null", ...] unions of text and createdAt
+    private static final int NULL_BRANCH = 0;
+
+    private static final int VALUE_BRANCH = 1;
+
+    // Subject names per topic, so the hot path does not build the subject string for every record
+    private final Map<String, String> subjectsByTopic = new ConcurrentHashMap<>();
+
+    private final Map<String, String> compressedTextSubjectsByTopic = new ConcurrentHashMap<>();
+
+    private SchemaIdResolver schemaIdResolver;
+
+    private String subjectSuffix = "-value";
+
+    private TweetTextCodec tweetTextCodec;
+
+    // Used by kafka, the schema registry client is created in configure
+    public TwitterAvroModelSerializer() {
+    }
+
+    public TwitterAvroModelSerializer(SchemaIdResolver schemaIdResolver) {
+        this.schemaIdResolver = schemaIdResolver;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        subjectSuffix = isKey ? "-key" : "-value";
+        configureTextCompression(configs);
+        if (schemaIdResolver != null) {
+            return;
+        }
+        Object pinnedSchemaId = configs.get(USE_SCHEMA_ID_CONFIG);
+        if (pinnedSchemaId != null && !pinnedSchemaId.toString().isBlank()) {
+            int schemaId = Integer.parseInt(pinnedSchemaId.toString().trim());
+            if (tweetTextCodec == null) {
+                schemaIdResolver = (subject, schema) -> schemaId;
+                return;
+            }
+            Object pinnedCompressedTextSchemaId = configs.get(USE_COMPRESSED_TEXT_SCHEMA_ID_CONFIG);
+            if (pinnedCompressedTextSchemaId == null || pinnedCompressedTextSchemaId.toString().isBlank()) {
+                throw new SerializationException("Missing " + USE_COMPRESSED_TEXT_SCHEMA_ID_CONFIG + " for "
+                        + USE_SCHEMA_ID_CONFIG + " with " + TEXT_DICTIONARY_ID_CONFIG);
+            }
+            int compressedTextSchemaId = Integer.parseInt(pinnedCompressedTextSchemaId.toString().trim());
+            schemaIdResolver = (subject, schema) ->
+                    schema.equals(TwitterCompressedTextAvroModel.getClassSchema()) ? compressedTextSchemaId : schemaId;
+            return;
+        }
+        Object schemaRegistryUrl = configs.get(SCHEMA_REGISTRY_URL_CONFIG);
+        if (schemaRegistryUrl == null) {
+            throw new SerializationException("Missing " + SCHEMA_REGISTRY_URL_CONFIG + " for " + getClass().getSimpleName());
+        }
+        Object cacheFile = configs.get(SCHEMA_ID_CACHE_FILE_CONFIG);
+        Object refreshIntervalMs = configs.get(SCHEMA_ID_REFRESH_INTERVAL_MS_CONFIG);
+        schemaIdResolver = new CachingSchemaIdResolver(
+                SchemaRegistryClientIdResolver.fromConfigs(configs),
+                cacheFile == null || cacheFile.toString().isBlank() ? null : Path.of(cacheFile.toString()),
+                refreshIntervalMs == null ? 0L : Long.parseLong(refreshIntervalMs.toString()));
+    }
+
+    @Override
+    public void close() {
+        if (schemaIdResolver != null) {
+            schemaIdResolver.close();
+        }
+        if (tweetTextCodec != null) {
+            tweetTextCodec.close();
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, TwitterAvroModel twitterAvroModel) {
+        if (twitterAvroModel == null) {
+            return null;
+        }
+        return encode(topic, twitterAvroModel, null);
+    }
+
+    // The producer calls this one, the text is only compressed when the header can name the dictionary
+    @Override
+    public byte[] serialize(String topic, Headers headers, TwitterAvroModel twitterAvroModel) {
+        if (twitterAvroModel == null) {
+            return null;
+        }
+        String text = twitterAvroModel.getText();
+        if (tweetTextCodec == null || headers == null || text == null) {
+            return encode(topic, twitterAvroModel, null);
+        }
+        byte[] compressedText = tweetTextCodec.compress(text.getBytes(StandardCharsets.UTF_8));
+        if (compressedText != null) {
+            headers.remove(TweetTextCodec.DICTIONARY_ID_HEADER);
+            headers.add(TweetTextCodec.DICTIONARY_ID_HEADER, tweetTextCodec.getDictionaryIdHeader());
+        }
+        return encode(topic, twitterAvroModel, compressedText);
+    }
+
+    // Writes the compressed text bytes in place of the utf-8 text when given, under the id of the compressed text schema
+    private byte[] encode(String topic, TwitterAvroModel twitterAvroModel, byte[] compressedText) {
+        int schemaId;
+        if (compressedText == null) {
+            // Subject name per TopicNameStrategy
+            String subject = subjectsByTopic.computeIfAbsent(topic, topicName -> topicName + subjectSuffix);
+            schemaId = schemaIdResolver.getSchemaId(subject, TwitterAvroModel.getClassSchema());
+        } else {
+            String subject = compressedTextSubjectsByTopic.computeIfAbsent(topic,
+                    topicName -> topicName + COMPRESSED_TEXT_SUBJECT_INFIX + subjectSuffix);
+            schemaId = schemaIdResolver.getSchemaId(subject, TwitterCompressedTextAvroModel.getClassSchema());
+        }
+
+        long userId = twitterAvroModel.getUserId();
+        long id = twitterAvroModel.getId();
+        String text = twitterAvroModel.getText();
+        Long createdAt = twitterAvroModel.getCreatedAt();
+        int textLength = text == null ? 0 : compressedText != null ? compressedText.length : utf8Length(text);
+
+        int size = HEADER_LENGTH + varLongLength(userId) + varLongLength(id)
+                + 1 + (text == null ? 0 : varLongLength(textLength) + textLength)
+                + 1 + (createdAt == null ? 0 : varLongLength(createdAt));
+        byte[] bytes = new byte[size];
+        bytes[0] = MAGIC_BYTE;
+        bytes[1] = (byte) (schemaId >>> 24);
+        bytes[2] = (byte) (schemaId >>> 16);
+        bytes[3] = (byte) (schemaId >>> 8);
+        bytes[4] = (byte) schemaId;
+        int position = writeVarLong(bytes, HEADER_LENGTH, userId);
+        position = writeVarLong(bytes, position, id);
+        if (text == null) {
+            position = writeVarLong(bytes, position, NULL_BRANCH);
+        } else {
+            position = writeVarLong(bytes, position, VALUE_BRANCH);
+            position = writeVarLong(bytes, position, textLength);
+            if (compressedText != null) {
+                System.arraycopy(compressedText, 0, bytes, position, textLength);
+                position += textLength;
+            } else {
+                position = writeUtf8(bytes, position, text);
+            }
+        }
+        if (createdAt == null) {
+            writeVarLong(bytes, position, NULL_BRANCH);
+        } else {
+            position = writeVarLong(bytes, position, VALUE_BRANCH);
+            writeVarLong(bytes, position, createdAt);
+        }
+        return bytes;
+    }
+
+    private void configureTextCompression(Map<String, ?> configs) {
+        Object dictionaryId = configs.get(TEXT_DICTIONARY_ID_CONFIG);
+        if (dictionaryId == null || dictionaryId.toString().isBlank()) {
+            return;
+        }
+        Object directory = configs.get(TEXT_DICTIONARY_DIRECTORY_CONFIG);
+        if (directory == null || directory.toString().isBlank()) {
+            throw new SerializationException("Missing " + TEXT_DICTIONARY_DIRECTORY_CONFIG + " for " + TEXT_DICTIONARY_ID_CONFIG);
+        }
+        Object level = configs.get(TEXT_COMPRESSION_LEVEL_CONFIG);
+        try {
+            tweetTextCodec = new TweetTextCodec(TweetTextDictionary.loadAll(Path.of(directory.toString())),
+                    Integer.parseUnsignedInt(dictionaryId.toString().trim()),
+                    level == null ? DEFAULT_TEXT_COMPRESSION_LEVEL : Integer.parseInt(level.toString().trim()));
+        } catch (IOException e) {
+            throw new SerializationException("Could not load the tweet text dictionaries of " + directory, e);
+        }
+    }
+
+    // Avro longs are zig-zag encoded variable length integers, 7 bits per byte
+    private static int varLongLength(long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        int length = 1;
+        while ((zigZag & ~0x7FL) != 0) {
+            zigZag >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static int writeVarLong(byte[] bytes, int position, long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        bytes[position++] = (byte) zigZag;
+        return position;
+    }
+
+    // Same result as String.getBytes(UTF_8), which avro uses: unpaired surrogates become '?'
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int writeUtf8(byte[] bytes, int position, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[position++] = '?';
+            } else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,98 @@
+package com.microservices.demo.kafka.producer.tuning;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.producer.config.service.impl.TwitterKafkaProducer;
+import com.microservices.demo.kafka.producer.tuning.ProducerTuner.Observation;
+import com.microservices.demo.kafka.producer.tuning.ProducerTuner.Tuning;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Runs the ProducerTuner every adaptive-tuning-interval-ms on the metrics of the live producer. A changed tuning replaces
+// the shared producer by one with the new settings, see TwitterKafkaProducer.replaceSharedProducer: sends switch to the
+// new producer right away and the old one is closed only after the sends that had taken it, so no send fails for it
+@Component
+@ConditionalOnProperty(name = "kafka-producer-config.enable-adaptive-tuning", havingValue = "true")
+public class AdaptiveProducerTuning {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveProducerTuning.class);
+
+    private final KafkaProducerConfigData kafkaProducerConfigData;
+
+    private final TwitterKafkaProducer twitterKafkaProducer;
+
+    private final ProducerTuner producerTuner;
+
+    private Tuning tuning;
+
+    private ScheduledExecutorService scheduler;
+
+    public AdaptiveProducerTuning(KafkaConfigData kafkaConfigData, KafkaProducerConfigData kafkaProducerConfigData,
+                                  TwitterKafkaProducer twitterKafkaProducer) {
+        this.kafkaProducerConfigData = kafkaProducerConfigData;
+        this.twitterKafkaProducer = twitterKafkaProducer;
+        this.producerTuner = new ProducerTuner(kafkaProducerConfigData, kafkaConfigData.getNumOfPartitions());
+        // The settings KafkaProducerConfig created the producer with
+        this.tuning = new Tuning(
+                kafkaProducerConfigData.getBatchSize() * kafkaProducerConfigData.getBatchSizeBoostFactor(),
+                kafkaProducerConfigData.getLingerMs(),
+                kafkaProducerConfigData.getCompressionType());
+    }
+
+    @PostConstruct
+    public void start() {
+        LOG.info("Adaptive producer tuning starts from {}", tuning);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "producer-tuning");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = kafkaProducerConfigData.getAdaptiveTuningIntervalMs();
+        scheduler.scheduleWithFixedDelay(this::tune, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // Returns true if the producer was recreated with a new tuning
+    public boolean tune() {
+        try {
+            Observation observed = Observation.fromMetrics(twitterKafkaProducer.sharedProducerMetrics());
+            Tuning next = producerTuner.next(tuning, observed);
+            if (next.equals(tuning)) {
+                return false;
+            }
+            LOG.info("Recreating kafka producer with {} instead of {} after observing {}", next, tuning, observed);
+            Map<String, Object> configs = new HashMap<>();
+            configs.put(ProducerConfig.BATCH_SIZE_CONFIG, next.batchSize());
+            configs.put(ProducerConfig.LINGER_MS_CONFIG, next.lingerMs());
+            configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, next.compressionType());
+            twitterKafkaProducer.replaceSharedProducer(configs);
+            tuning = next;
+            return true;
+        } catch (RuntimeException e) {
+            // The scheduler stops for good on an exception, the next interval tries again
+            LOG.warn("Adaptive producer tuning failed, keeping {}", tuning, e);
+            return false;
+        }
+    }
+
+    public Tuning getTuning() {
+        return tuning;
+    }
+}
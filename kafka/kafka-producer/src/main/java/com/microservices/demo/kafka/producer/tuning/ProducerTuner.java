@@ -0,0 +1,112 @@
+package com.microservices.demo.kafka.producer.tuning;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.util.Map;
+
+// Decides the batch.size, linger.ms and compression.type of the next producer from what the current one observed.
+// - batch.size doubles while batches leave full (they were cut by size before linger.ms was up) and halves while they
+//   leave mostly empty, so the per partition buffers follow the traffic
+// - linger.ms follows the request latency: a request to the broker takes that long anyway, so waiting up to one round
+//   trip for more records costs little latency and saves requests when the broker is slow. When a partition gets less than
+//   one record within that time there is nothing to batch and the minimum is used
+// - compression.type switches to the high rate type above adaptive-high-rate-bytes-per-second, if one is configured
+// Small linger changes are ignored, so the producer is not recreated for noise
+public class ProducerTuner {
+
+    private static final double FULL_BATCH_RATIO = 0.9;
+
+    private static final double EMPTY_BATCH_RATIO = 0.25;
+
+    private static final double LINGER_CHANGE_RATIO = 0.2;
+
+    private static final int MIN_LINGER_CHANGE_MS = 2;
+
+    private final KafkaProducerConfigData kafkaProducerConfigData;
+
+    private final int partitions;
+
+    public ProducerTuner(KafkaProducerConfigData kafkaProducerConfigData, int partitions) {
+        this.kafkaProducerConfigData = kafkaProducerConfigData;
+        this.partitions = Math.max(1, partitions);
+    }
+
+    // Returns the current tuning when the observation has no traffic to go by
+    public Tuning next(Tuning current, Observation observed) {
+        if (!observed.hasTraffic()) {
+            return current;
+        }
+        return new Tuning(nextBatchSize(current, observed), nextLingerMs(current, observed), nextCompressionType(observed));
+    }
+
+    private int nextBatchSize(Tuning current, Observation observed) {
+        double fillRatio = observed.batchSizeAvg() / current.batchSize();
+        long batchSize = current.batchSize();
+        if (fillRatio >= FULL_BATCH_RATIO) {
+            batchSize *= 2;
+        } else if (fillRatio <= EMPTY_BATCH_RATIO) {
+            batchSize /= 2;
+        }
+        return (int) clamp(batchSize, kafkaProducerConfigData.getAdaptiveMinBatchSize(), kafkaProducerConfigData.getAdaptiveMaxBatchSize());
+    }
+
+    private int nextLingerMs(Tuning current, Observation observed) {
+        int minLingerMs = kafkaProducerConfigData.getAdaptiveMinLingerMs();
+        int lingerMs = (int) clamp(Math.round(observed.requestLatencyAvgMs()), minLingerMs, kafkaProducerConfigData.getAdaptiveMaxLingerMs());
+        double recordsPerPartitionAndLinger = observed.recordSendRate() / partitions * lingerMs / 1000;
+        if (recordsPerPartitionAndLinger < 1) {
+            lingerMs = minLingerMs;
+        }
+        int change = Math.abs(lingerMs - current.lingerMs());
+        if (change < MIN_LINGER_CHANGE_MS || change < current.lingerMs() * LINGER_CHANGE_RATIO) {
+            return current.lingerMs();
+        }
+        return lingerMs;
+    }
+
+    private String nextCompressionType(Observation observed) {
+        String highRateCompressionType = kafkaProducerConfigData.getAdaptiveHighRateCompressionType();
+        if (highRateCompressionType != null && !highRateCompressionType.isBlank()
+                && observed.recordSendRate() * observed.recordSizeAvg() >= kafkaProducerConfigData.getAdaptiveHighRateBytesPerSecond()) {
+            return highRateCompressionType;
+        }
+        return kafkaProducerConfigData.getCompressionType();
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public record Tuning(int batchSize, int lingerMs, String compressionType) {
+    }
+
+    // Averages over the last metrics window of the kafka producer, NaN where the producer has not measured anything yet
+    public record Observation(double recordSendRate, double batchSizeAvg, double recordSizeAvg, double requestLatencyAvgMs) {
+
+        private static final String PRODUCER_METRICS_GROUP = "producer-metrics";
+
+        public static Observation fromMetrics(Map<MetricName, ? extends Metric> metrics) {
+            return new Observation(
+                    value(metrics, "record-send-rate"),
+                    value(metrics, "batch-size-avg"),
+                    value(metrics, "record-size-avg"),
+                    value(metrics, "request-latency-avg"));
+        }
+
+        boolean hasTraffic() {
+            return recordSendRate > 0 && batchSizeAvg > 0 && !Double.isNaN(recordSizeAvg) && !Double.isNaN(requestLatencyAvgMs);
+        }
+
+        private static double value(Map<MetricName, ? extends Metric> metrics, String name) {
+            for (Map.Entry<MetricName, ? extends Metric> metric : metrics.entrySet()) {
+                if (metric.getKey().name().equals(name) && metric.getKey().group().equals(PRODUCER_METRICS_GROUP)
+                        && metric.getValue().metricValue() instanceof Number number) {
+                    return number.doubleValue();
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.microservices.demo.kafka.producer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Avro models derived from their id only, so a test can build the same tweet again to compare it with what was sent or read back
+public final class SampleTweets {
+
+    private SampleTweets() {
+    }
+
+    public static TwitterAvroModel tweet(long id) {
+        return TwitterAvroModel.newBuilder()
+                .setId(id)
+                .setUserId(id * 10)
+                .setText("tweet number " + id)
+                .setCreatedAt(1_700_000_000_000L + id)
+                .build();
+    }
+
+    // A batch for sendBatch with the tweet id as key
+    public static List<Map.Entry<Long, TwitterAvroModel>> messages(long firstId, long lastId) {
+        List<Map.Entry<Long, TwitterAvroModel>> messages = new ArrayList<>();
+        for (long id = firstId; id <= lastId; id++) {
+            messages.add(Map.entry(id, tweet(id)));
+        }
+        return messages;
+    }
+}
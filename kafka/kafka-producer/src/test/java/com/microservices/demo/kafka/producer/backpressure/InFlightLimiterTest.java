@@ -0,0 +1,110 @@
+package com.microservices.demo.kafka.producer.backpressure;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData.BackpressurePolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.metrics.BackpressureMeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InFlightLimiterTest {
+
+    @Test
+    public void acquireAndReleaseTrackInFlightRecords() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(config(BackpressurePolicy.SHED, 2, 0L));
+
+        assertTrue(inFlightLimiter.acquire());
+        assertTrue(inFlightLimiter.acquire());
+        assertEquals(2, inFlightLimiter.getInFlightCount());
+        assertFalse(inFlightLimiter.hasCapacity());
+        assertFalse(inFlightLimiter.acquire());
+        assertFalse(inFlightLimiter.tryAcquire());
+        // Only acquire counts a rejection, tryAcquire is the replayer probing for a free slot
+        assertEquals(1, inFlightLimiter.getRejectedCount());
+
+        inFlightLimiter.release();
+        assertEquals(1, inFlightLimiter.getInFlightCount());
+        assertTrue(inFlightLimiter.tryAcquire());
+        assertEquals(0, inFlightLimiter.getWaitCount());
+    }
+
+    @Test
+    public void blockTimesOutAndCountsTheWait() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(config(BackpressurePolicy.BLOCK, 1, 50L));
+        assertTrue(inFlightLimiter.acquire());
+
+        assertFalse(inFlightLimiter.acquire());
+        assertEquals(1, inFlightLimiter.getTimedOutCount());
+        assertEquals(0, inFlightLimiter.getRejectedCount());
+        assertEquals(1, inFlightLimiter.getWaitCount());
+        assertTrue(inFlightLimiter.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(inFlightLimiter.getMaxWaitNanos(), inFlightLimiter.getTotalWaitNanos());
+        assertEquals(1, inFlightLimiter.getInFlightCount());
+    }
+
+    @Test
+    public void blockedAcquireGetsTheReleasedSlot() {
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(config(BackpressurePolicy.BLOCK, 1, 10_000L));
+        assertTrue(inFlightLimiter.acquire());
+
+        CompletableFuture.runAsync(inFlightLimiter::release, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+
+        assertTrue(inFlightLimiter.acquire());
+        assertEquals(1, inFlightLimiter.getInFlightCount());
+        assertEquals(1, inFlightLimiter.getWaitCount());
+        assertEquals(0, inFlightLimiter.getTimedOutCount());
+    }
+
+    @Test
+    public void disabledLimiterOnlyCounts() {
+        KafkaProducerConfigData configData = config(BackpressurePolicy.SHED, 1, 0L);
+        configData.setEnableBackpressure(false);
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+
+        assertTrue(inFlightLimiter.acquire());
+        assertTrue(inFlightLimiter.acquire());
+        assertEquals(2, inFlightLimiter.getInFlightCount());
+        assertTrue(inFlightLimiter.hasCapacity());
+    }
+
+    @Test
+    public void metersReadTheLimiterState() {
+        KafkaProducerConfigData configData = config(BackpressurePolicy.BLOCK, 1, 20L);
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+        InMemoryRecordSpill<Long, TwitterAvroModel> recordSpill = new InMemoryRecordSpill<>(configData);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new BackpressureMeterBinder(inFlightLimiter, recordSpill).bindTo(meterRegistry);
+
+        inFlightLimiter.acquire();
+        inFlightLimiter.acquire();
+        recordSpill.spill("twitter-topic", 1L, TwitterAvroModel.newBuilder()
+                .setId(1L)
+                .setUserId(1L)
+                .setText("spilled tweet")
+                .setCreatedAt(1_700_000_000_000L)
+                .build());
+
+        assertEquals(1, meterRegistry.get("twitter.kafka.producer.in.flight").gauge().value());
+        assertEquals(1, meterRegistry.get("twitter.kafka.producer.in.flight.timeouts").functionCounter().count());
+        assertEquals(1, meterRegistry.get("twitter.kafka.producer.in.flight.wait").functionTimer().count());
+        assertTrue(meterRegistry.get("twitter.kafka.producer.in.flight.wait.max").gauge().value() >= 0.02);
+        assertEquals(1, meterRegistry.get("twitter.kafka.producer.spill.size").gauge().value());
+        assertEquals(0, meterRegistry.get("twitter.kafka.producer.spill.lost").functionCounter().count());
+    }
+
+    private static KafkaProducerConfigData config(BackpressurePolicy policy, int maxInFlightRecords, long blockTimeoutMs) {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setEnableBackpressure(true);
+        configData.setBackpressurePolicy(policy);
+        configData.setMaxInFlightRecords(maxInFlightRecords);
+        configData.setBackpressureBlockTimeoutMs(blockTimeoutMs);
+        return configData;
+    }
+}
@@ -0,0 +1,33 @@
+package com.microservices.demo.kafka.producer.backpressure;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill.SpilledRecord;
+import org.junit.jupiter.api.Test;
+
+import static com.microservices.demo.kafka.producer.SampleTweets.tweet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemoryRecordSpillTest {
+
+    @Test
+    public void failedReplayThatNoLongerFitsIsCountedAsLost() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setSpillCapacity(1);
+        InMemoryRecordSpill<Long, TwitterAvroModel> recordSpill = new InMemoryRecordSpill<>(configData);
+        assertTrue(recordSpill.spill("twitter-topic", 1L, tweet(1)));
+        assertFalse(recordSpill.spill("twitter-topic", 2L, tweet(2)));
+
+        SpilledRecord<Long, TwitterAvroModel> replayed = recordSpill.peek();
+        recordSpill.remove(replayed);
+        // Refilled while the replay was in flight
+        assertTrue(recordSpill.spill("twitter-topic", 3L, tweet(3)));
+        recordSpill.replayFailed(replayed);
+
+        assertEquals(1, recordSpill.getLostCount());
+        assertEquals(1, recordSpill.size());
+        assertEquals(3L, recordSpill.peek().key());
+    }
+}
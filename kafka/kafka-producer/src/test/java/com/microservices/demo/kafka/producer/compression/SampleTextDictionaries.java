@@ -0,0 +1,29 @@
+package com.microservices.demo.kafka.producer.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Dictionaries trained on word sequences that differ per seed, so every seed gets a dictionary id of its own
+public final class SampleTextDictionaries {
+
+    public static final String[] WORDS = {"kafka", "java", "spring", "microservices", "stream", "avro", "topic", "producer"};
+
+    private SampleTextDictionaries() {
+    }
+
+    public static TweetTextDictionary train(int seed) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 12; j++) {
+                text.append(WORDS[(i * seed + j * 7 + i / 3) % WORDS.length]).append(j % 4 == 3 ? ". " : " ");
+            }
+            texts.add(text.append(i).toString());
+        }
+        return TweetTextDictionary.train(texts, 4 * 1024);
+    }
+
+    public static String text() {
+        return String.join(" ", WORDS);
+    }
+}
@@ -0,0 +1,96 @@
+package com.microservices.demo.kafka.producer.compression;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TweetTextCodecTest {
+
+    private static final TweetTextDictionary OLD_DICTIONARY = SampleTextDictionaries.train(1);
+
+    private static final TweetTextDictionary DICTIONARY = SampleTextDictionaries.train(2);
+
+    private final TweetTextCodec codec = new TweetTextCodec(
+            Map.of(OLD_DICTIONARY.getId(), OLD_DICTIONARY, DICTIONARY.getId(), DICTIONARY), DICTIONARY.getId(), 3);
+
+    @AfterEach
+    public void close() {
+        codec.close();
+    }
+
+    @Test
+    public void decompressesWithTheDictionaryOfTheHeader() {
+        byte[] text = SampleTextDictionaries.text().getBytes(StandardCharsets.UTF_8);
+        byte[] frame = codec.compress(text);
+        assertNotNull(frame);
+        assertTrue(frame.length < text.length);
+        assertArrayEquals(text, codec.decompress(codec.getDictionaryIdHeader(), frame, 0, frame.length));
+
+        // Frames within a larger array, as they are in the record, and of an older dictionary version
+        try (TweetTextCodec oldCodec = new TweetTextCodec(Map.of(OLD_DICTIONARY.getId(), OLD_DICTIONARY), OLD_DICTIONARY.getId(), 3)) {
+            byte[] oldFrame = oldCodec.compress(text);
+            byte[] record = new byte[oldFrame.length + 10];
+            System.arraycopy(oldFrame, 0, record, 7, oldFrame.length);
+            assertArrayEquals(text, codec.decompress(oldCodec.getDictionaryIdHeader(), record, 7, oldFrame.length));
+        }
+    }
+
+    @Test
+    public void sendsTextAsItIsWhenItDoesNotGetSmaller() {
+        assertNull(codec.compress(new byte[0]));
+        assertNull(codec.compress("x".getBytes(StandardCharsets.UTF_8)));
+        assertNull(codec.compress(new byte[TweetTextCodec.MAX_TEXT_BYTES + 1]));
+    }
+
+    @Test
+    public void rejectsUnknownDictionary() {
+        byte[] frame = codec.compress(SampleTextDictionaries.text().getBytes(StandardCharsets.UTF_8));
+        try (TweetTextCodec decompressOnly = new TweetTextCodec(Map.of(OLD_DICTIONARY.getId(), OLD_DICTIONARY), null, 0)) {
+            assertFalse(decompressOnly.canCompress());
+            assertThrows(SerializationException.class,
+                    () -> decompressOnly.decompress(codec.getDictionaryIdHeader(), frame, 0, frame.length));
+        }
+        assertThrows(SerializationException.class, () -> new TweetTextCodec(Map.of(), DICTIONARY.getId(), 3));
+    }
+
+    @Test
+    public void rejectsCorruptFrames() {
+        byte[] frame = codec.compress(SampleTextDictionaries.text().getBytes(StandardCharsets.UTF_8));
+        byte[] header = codec.getDictionaryIdHeader();
+
+        assertThrows(SerializationException.class, () -> codec.decompress(header, frame, 0, frame.length / 2));
+        byte[] flipped = frame.clone();
+        for (int i = 2; i < flipped.length; i++) {
+            flipped[i] ^= (byte) 0x5A;
+        }
+        assertThrows(SerializationException.class, () -> codec.decompress(header, flipped, 0, flipped.length));
+        byte[] garbage = new byte[32];
+        Arrays.fill(garbage, (byte) 0xFF);
+        assertThrows(SerializationException.class, () -> codec.decompress(header, garbage, 0, garbage.length));
+    }
+
+    @Test
+    public void rejectsFramesLargerThanAnyTweet() {
+        byte[] frame;
+        try (ZstdCompressCtx context = new ZstdCompressCtx()) {
+            frame = context.setMagicless(true).setDictID(false).setChecksum(false).setContentSize(true)
+                    .loadDict(DICTIONARY.getBytes())
+                    .compress(new byte[TweetTextCodec.MAX_TEXT_BYTES + 1]);
+        }
+        SerializationException e = assertThrows(SerializationException.class,
+                () -> codec.decompress(codec.getDictionaryIdHeader(), frame, 0, frame.length));
+        assertTrue(e.getMessage().contains(String.valueOf(TweetTextCodec.MAX_TEXT_BYTES + 1)), e.getMessage());
+    }
+}
@@ -0,0 +1,52 @@
+package com.microservices.demo.kafka.producer.compression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TweetTextDictionaryTest {
+
+    @TempDir
+    private Path dictionaryDirectory;
+
+    @Test
+    public void everyVersionIsSavedAndLoadedByItsId() throws IOException {
+        TweetTextDictionary first = SampleTextDictionaries.train(1);
+        TweetTextDictionary second = SampleTextDictionaries.train(2);
+        assertNotEquals(first.getId(), second.getId());
+
+        Path file = first.save(dictionaryDirectory);
+        second.save(dictionaryDirectory);
+        assertEquals("tweet-text-" + Integer.toUnsignedString(first.getId()) + ".dict", file.getFileName().toString());
+        // Other files of the directory are not taken for dictionaries
+        Files.writeString(dictionaryDirectory.resolve("README"), "not a dictionary");
+
+        Map<Integer, TweetTextDictionary> loaded = TweetTextDictionary.loadAll(dictionaryDirectory);
+        assertEquals(2, loaded.size());
+        assertArrayEquals(first.getBytes(), loaded.get(first.getId()).getBytes());
+        assertArrayEquals(second.getBytes(), loaded.get(second.getId()).getBytes());
+    }
+
+    @Test
+    public void rejectsBytesWithoutDictionaryId() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> TweetTextDictionary.of(new byte[64]));
+
+        Files.write(dictionaryDirectory.resolve("tweet-text-1.dict"), new byte[64]);
+        assertThrows(IllegalArgumentException.class, () -> TweetTextDictionary.loadAll(dictionaryDirectory));
+    }
+
+    @Test
+    public void emptyDirectoryHasNoDictionaries() throws IOException {
+        assertTrue(TweetTextDictionary.loadAll(dictionaryDirectory).isEmpty());
+    }
+}
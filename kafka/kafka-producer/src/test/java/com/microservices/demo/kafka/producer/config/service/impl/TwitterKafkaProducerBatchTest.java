@@ -0,0 +1,235 @@
+package com.microservices.demo.kafka.producer.config.service.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData.BackpressurePolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.microservices.demo.kafka.producer.SampleTweets.messages;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TwitterKafkaProducerBatchTest {
+
+    private static final String TOPIC_NAME = "twitter-topic";
+
+    // KafkaTemplate closes its producer after each send, a real factory hands out a close-safe wrapper instead
+    private final MockProducer<Long, TwitterAvroModel> mockProducer = new MockProducer<>(false, new LongSerializer(), (topic, data) -> new byte[0]) {
+        @Override
+        public void close(Duration timeout) {
+        }
+    };
+
+    @Test
+    public void completesOnceWhenEveryRecordIsAcknowledged() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future = producer(configData, inFlightLimiter).sendBatch(TOPIC_NAME, messages(1, 3));
+        AtomicInteger completions = new AtomicInteger();
+        future.whenComplete((result, throwable) -> completions.incrementAndGet());
+
+        assertEquals(3, inFlightLimiter.getInFlightCount());
+        mockProducer.completeNext();
+        mockProducer.completeNext();
+        assertFalse(future.isDone());
+        mockProducer.completeNext();
+
+        BatchSendResult<Long, TwitterAvroModel> result = future.join();
+        assertEquals(3, result.getSucceeded().size());
+        assertFalse(result.hasFailures());
+        assertEquals(1, completions.get());
+        assertEquals(0, inFlightLimiter.getInFlightCount());
+    }
+
+    @Test
+    public void reportsPartialFailureWithTheFailedRecord() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future = producer(configData, inFlightLimiter).sendBatch(TOPIC_NAME, messages(1, 3));
+
+        mockProducer.completeNext();
+        mockProducer.errorNext(new RuntimeException("broker unavailable"));
+        mockProducer.completeNext();
+
+        BatchSendResult<Long, TwitterAvroModel> result = future.join();
+        assertEquals(2, result.getSucceeded().size());
+        assertEquals(1, result.getFailed().size());
+        assertEquals(2L, result.getFailed().get(0).key());
+        assertEquals(2L, result.getFailed().get(0).message().getId());
+        assertEquals(0, inFlightLimiter.getInFlightCount());
+    }
+
+    @Test
+    public void reportsRecordsRejectedByTheLimiter() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setEnableBackpressure(true);
+        configData.setMaxInFlightRecords(2);
+        configData.setBackpressurePolicy(BackpressurePolicy.SHED);
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future = producer(configData, inFlightLimiter).sendBatch(TOPIC_NAME, messages(1, 4));
+
+        assertEquals(2, mockProducer.history().size());
+        assertFalse(future.isDone());
+        while (mockProducer.completeNext()) {
+        }
+
+        BatchSendResult<Long, TwitterAvroModel> result = future.join();
+        assertEquals(2, result.getSucceeded().size());
+        assertEquals(2, result.getFailed().size());
+        assertInstanceOf(ProducerBackpressureException.class, result.getFailed().get(0).cause());
+        assertEquals(2, inFlightLimiter.getRejectedCount());
+    }
+
+    @Test
+    public void waitsForCapacityOncePerBatchUnderBlock() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setEnableBackpressure(true);
+        configData.setMaxInFlightRecords(1);
+        configData.setBackpressurePolicy(BackpressurePolicy.BLOCK);
+        configData.setBackpressureBlockTimeoutMs(200L);
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+        assertTrue(inFlightLimiter.tryAcquire());
+
+        long startNanos = System.nanoTime();
+        BatchSendResult<Long, TwitterAvroModel> result =
+                producer(configData, inFlightLimiter).sendBatch(TOPIC_NAME, messages(1, 10)).join();
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+
+        assertTrue(elapsedMillis < 1000, "Batch waited " + elapsedMillis + " ms for in-flight capacity");
+        assertEquals(10, result.getFailed().size());
+        assertInstanceOf(ProducerBackpressureException.class, result.getFailed().get(9).cause());
+        assertEquals(1, inFlightLimiter.getTimedOutCount());
+        assertTrue(mockProducer.history().isEmpty());
+    }
+
+    @Test
+    public void countsSpilledRecordsApartFromFailures() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setEnableBackpressure(true);
+        configData.setMaxInFlightRecords(1);
+        configData.setBackpressurePolicy(BackpressurePolicy.SPILL);
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+        InMemoryRecordSpill<Long, TwitterAvroModel> recordSpill = new InMemoryRecordSpill<>(configData);
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future =
+                producer(configData, inFlightLimiter, recordSpill).sendBatch(TOPIC_NAME, messages(1, 3));
+        mockProducer.completeNext();
+
+        BatchSendResult<Long, TwitterAvroModel> result = future.join();
+        assertEquals(1, result.getSucceeded().size());
+        assertEquals(2, result.getSpilledCount());
+        assertFalse(result.hasFailures());
+        assertEquals(2, recordSpill.size());
+    }
+
+    @Test
+    public void emptyBatchCompletesRightAway() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future =
+                producer(configData, new InFlightLimiter(configData)).sendBatch(TOPIC_NAME, List.of());
+        assertTrue(future.isDone());
+        assertTrue(future.join().getSucceeded().isEmpty());
+    }
+
+    @Test
+    public void sendsTopicsWithOverridesThroughTheirOwnProducer() {
+        MockProducer<Long, TwitterAvroModel> coldTopicProducer = new MockProducer<>(true, new LongSerializer(), (topic, data) -> new byte[0]) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        Map<String, Object> appliedOverrides = new HashMap<>();
+        ProducerFactory<Long, TwitterAvroModel> producerFactory = new MockProducerFactory<>(() -> mockProducer) {
+            @Override
+            public ProducerFactory<Long, TwitterAvroModel> copyWithConfigurationOverride(Map<String, Object> overrides) {
+                appliedOverrides.putAll(overrides);
+                return new MockProducerFactory<>(() -> coldTopicProducer);
+            }
+        };
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setTopicProducerOverrides(Map.of("cold-topic", Map.of("compression.type", "zstd", "linger.ms", "500")));
+        TwitterKafkaProducer twitterKafkaProducer = new TwitterKafkaProducer(new KafkaTemplate<>(producerFactory),
+                configData, new InFlightLimiter(configData), new InMemoryRecordSpill<>(configData),
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(new SimpleMeterRegistry()));
+
+        BatchSendResult<Long, TwitterAvroModel> coldResult = twitterKafkaProducer.sendBatch("cold-topic", messages(1, 2)).join();
+        twitterKafkaProducer.sendBatch(TOPIC_NAME, messages(1, 1));
+
+        assertEquals(Map.of("compression.type", "zstd", "linger.ms", "500"), appliedOverrides);
+        assertEquals(2, coldResult.getSucceeded().size());
+        assertEquals(2, coldTopicProducer.history().size());
+        assertEquals(1, mockProducer.history().size());
+        assertEquals(TOPIC_NAME, mockProducer.history().get(0).topic());
+    }
+
+    @Test
+    public void isolatedTopicHasAProducerAndInFlightSlotsOfItsOwn() {
+        MockProducer<Long, TwitterAvroModel> slowTopicProducer = new MockProducer<>(false, new LongSerializer(), (topic, data) -> new byte[0]) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        ProducerFactory<Long, TwitterAvroModel> producerFactory = new MockProducerFactory<>(() -> mockProducer) {
+            @Override
+            public ProducerFactory<Long, TwitterAvroModel> copyWithConfigurationOverride(Map<String, Object> overrides) {
+                return new MockProducerFactory<>(() -> slowTopicProducer);
+            }
+        };
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setEnableBackpressure(true);
+        configData.setMaxInFlightRecords(2);
+        configData.setBackpressurePolicy(BackpressurePolicy.SHED);
+        InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+        TwitterKafkaProducer twitterKafkaProducer = new TwitterKafkaProducer(new KafkaTemplate<>(producerFactory),
+                configData, inFlightLimiter, new InMemoryRecordSpill<>(configData),
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(new SimpleMeterRegistry()));
+        twitterKafkaProducer.isolateTopic("slow-topic");
+
+        // The slow topic never acknowledges and runs out of its slots, the shared ones stay free for the other topics
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> slowFuture = twitterKafkaProducer.sendBatch("slow-topic", messages(1, 3));
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future = twitterKafkaProducer.sendBatch(TOPIC_NAME, messages(1, 2));
+        while (mockProducer.completeNext()) {
+        }
+
+        assertEquals(2, slowTopicProducer.history().size());
+        assertEquals(2, future.join().getSucceeded().size());
+        assertFalse(slowFuture.isDone());
+        assertEquals(1, inFlightLimiter.getRejectedCount());
+        assertEquals(2, inFlightLimiter.getInFlightCount());
+    }
+
+    private TwitterKafkaProducer producer(KafkaProducerConfigData configData, InFlightLimiter inFlightLimiter) {
+        return producer(configData, inFlightLimiter, new InMemoryRecordSpill<>(configData));
+    }
+
+    private TwitterKafkaProducer producer(KafkaProducerConfigData configData, InFlightLimiter inFlightLimiter,
+                                          InMemoryRecordSpill<Long, TwitterAvroModel> recordSpill) {
+        return new TwitterKafkaProducer(new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer)),
+                configData, inFlightLimiter, recordSpill,
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(new SimpleMeterRegistry()));
+    }
+}
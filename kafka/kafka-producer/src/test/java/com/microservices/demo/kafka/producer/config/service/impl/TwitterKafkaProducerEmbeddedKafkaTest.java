@@ -0,0 +1,203 @@
+package com.microservices.demo.kafka.producer.config.service.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.config.KafkaProducerConfig;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import com.microservices.demo.kafka.producer.serializer.TwitterAvroModelSerializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.microservices.demo.kafka.producer.SampleTweets.messages;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Transactions against a real broker: what read_committed consumers see of committed and aborted batches, and the fencing
+// of a producer whose transactional id was taken over by a newer one. The broker runs a single replica of the transaction log
+@EmbeddedKafka(partitions = 1,
+        topics = {TwitterKafkaProducerEmbeddedKafkaTest.COMMIT_TOPIC, TwitterKafkaProducerEmbeddedKafkaTest.ABORT_TOPIC,
+                TwitterKafkaProducerEmbeddedKafkaTest.FENCING_TOPIC},
+        brokerProperties = {"transaction.state.log.replication.factor=1", "transaction.state.log.min.isr=1"})
+public class TwitterKafkaProducerEmbeddedKafkaTest {
+
+    static final String COMMIT_TOPIC = "twitter-commit-topic";
+
+    static final String ABORT_TOPIC = "twitter-abort-topic";
+
+    static final String FENCING_TOPIC = "twitter-fencing-topic";
+
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+
+    private EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    private final List<TwitterKafkaProducer> producers = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp(EmbeddedKafkaBroker embeddedKafkaBroker) {
+        this.embeddedKafkaBroker = embeddedKafkaBroker;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        producers.forEach(TwitterKafkaProducer::close);
+    }
+
+    @Test
+    public void transactionsImplyIdempotentDelivery() {
+        Map<String, Object> producerConfig = producerConfig("idempotence").producerConfig();
+
+        assertEquals(true, producerConfig.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG));
+        assertEquals("all", producerConfig.get(ProducerConfig.ACKS_CONFIG));
+        assertEquals(Integer.MAX_VALUE, producerConfig.get(ProducerConfig.RETRIES_CONFIG));
+        assertEquals(5, producerConfig.get(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION));
+    }
+
+    @Test
+    public void committedBatchIsVisibleToReadCommittedConsumers() {
+        BatchSendResult<Long, TwitterAvroModel> result = producer(producerFactory("commit"))
+                .sendBatch(COMMIT_TOPIC, messages(1, 3)).join();
+
+        assertEquals(3, result.getSucceeded().size());
+        assertFalse(result.hasFailures());
+        assertEquals(List.of(1L, 2L, 3L), readCommittedKeys(COMMIT_TOPIC, 3));
+    }
+
+    @Test
+    public void abortedBatchIsInvisibleToReadCommittedConsumers() {
+        // The second record can not be serialized, which aborts the transaction after the first one was already sent
+        DefaultKafkaProducerFactory<Long, TwitterAvroModel> producerFactory = producerFactory("abort");
+        producerFactory.setValueSerializer(new FailingSerializer(2L));
+        TwitterKafkaProducer twitterKafkaProducer = producer(producerFactory);
+
+        BatchSendResult<Long, TwitterAvroModel> aborted = twitterKafkaProducer.sendBatch(ABORT_TOPIC, messages(1, 3)).join();
+        BatchSendResult<Long, TwitterAvroModel> committed = twitterKafkaProducer.sendBatch(ABORT_TOPIC, messages(4, 5)).join();
+
+        assertEquals(0, aborted.getSucceeded().size());
+        assertEquals(3, aborted.getFailed().size());
+        assertEquals(2, committed.getSucceeded().size());
+        // The committed batch comes after the aborted one in the log, so once it is read the aborted records were skipped
+        assertEquals(List.of(4L, 5L), readCommittedKeys(ABORT_TOPIC, 2));
+    }
+
+    @Test
+    public void producerWithATakenOverTransactionalIdIsFenced() {
+        // Same instance id, as a restarted instance would have: the newer producer fences the transactions of the older one
+        TwitterKafkaProducer olderProducer = producer(producerFactory("fencing"));
+        TwitterKafkaProducer newerProducer = producer(producerFactory("fencing"));
+
+        assertFalse(olderProducer.sendBatch(FENCING_TOPIC, messages(1, 2)).join().hasFailures());
+        assertFalse(newerProducer.sendBatch(FENCING_TOPIC, messages(3, 3)).join().hasFailures());
+        BatchSendResult<Long, TwitterAvroModel> fenced = olderProducer.sendBatch(FENCING_TOPIC, messages(4, 4)).join();
+
+        assertTrue(fenced.hasFailures());
+        assertEquals(0, fenced.getSucceeded().size());
+        assertEquals(List.of(1L, 2L, 3L), readCommittedKeys(FENCING_TOPIC, 3));
+    }
+
+    // The producer configuration of the services, with a pinned schema id so no schema registry is needed
+    private KafkaProducerConfig<Long, TwitterAvroModel> producerConfig(String transactionalInstanceId) {
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setBootstrapServers(embeddedKafkaBroker.getBrokersAsString());
+        kafkaConfigData.setSchemaRegistryUrlKey(TwitterAvroModelSerializer.SCHEMA_REGISTRY_URL_CONFIG);
+        kafkaConfigData.setSchemaRegistryUrl("http://localhost:8081");
+        KafkaProducerConfigData kafkaProducerConfigData = new KafkaProducerConfigData();
+        kafkaProducerConfigData.setKeySerializerClass(LongSerializer.class.getName());
+        kafkaProducerConfigData.setValueSerializerClass(TwitterAvroModelSerializer.class.getName());
+        kafkaProducerConfigData.setCompressionType("none");
+        kafkaProducerConfigData.setAcks("1");
+        kafkaProducerConfigData.setBatchSize(16 * 1024);
+        kafkaProducerConfigData.setBatchSizeBoostFactor(1);
+        kafkaProducerConfigData.setLingerMs(5);
+        kafkaProducerConfigData.setRequestTimeoutMs(10000);
+        kafkaProducerConfigData.setRetryCount(5);
+        kafkaProducerConfigData.setSchemaId(1);
+        kafkaProducerConfigData.setEnableTransactions(true);
+        kafkaProducerConfigData.setTransactionalInstanceId(transactionalInstanceId);
+        return new KafkaProducerConfig<>(kafkaConfigData, kafkaProducerConfigData);
+    }
+
+    private DefaultKafkaProducerFactory<Long, TwitterAvroModel> producerFactory(String transactionalInstanceId) {
+        return (DefaultKafkaProducerFactory<Long, TwitterAvroModel>) producerConfig(transactionalInstanceId).producerFactory();
+    }
+
+    private TwitterKafkaProducer producer(DefaultKafkaProducerFactory<Long, TwitterAvroModel> producerFactory) {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        TwitterKafkaProducer twitterKafkaProducer = new TwitterKafkaProducer(new KafkaTemplate<>(producerFactory),
+                configData, new InFlightLimiter(configData), new InMemoryRecordSpill<>(configData),
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(new SimpleMeterRegistry()));
+        producers.add(twitterKafkaProducer);
+        return twitterKafkaProducer;
+    }
+
+    // Keys a read_committed consumer sees from the start of the topic, read until the expected count or the timeout.
+    // Commit markers are written after the commit returns, so the records may take a moment to become visible
+    private List<Long> readCommittedKeys(String topic, int expectedCount) {
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps(topic + "-reader", "false", embeddedKafkaBroker);
+        consumerProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        List<Long> keys = new ArrayList<>();
+        try (Consumer<Long, byte[]> consumer = new KafkaConsumer<>(consumerProps, new LongDeserializer(), new ByteArrayDeserializer())) {
+            TopicPartition partition = new TopicPartition(topic, 0);
+            consumer.assign(List.of(partition));
+            consumer.seekToBeginning(List.of(partition));
+            long deadline = System.nanoTime() + READ_TIMEOUT.toNanos();
+            while (keys.size() < expectedCount && System.nanoTime() < deadline) {
+                for (ConsumerRecord<Long, byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    keys.add(record.key());
+                }
+            }
+            // One more poll, so records that should not be there get a chance to show up
+            consumer.poll(Duration.ofSeconds(1)).forEach(record -> keys.add(record.key()));
+        }
+        return keys;
+    }
+
+    // Fails the serialization of one record, like a record the schema registry refuses would
+    private static class FailingSerializer extends TwitterAvroModelSerializer {
+
+        private final long failingId;
+
+        FailingSerializer(long failingId) {
+            super((subject, schema) -> 1);
+            this.failingId = failingId;
+        }
+
+        @Override
+        public byte[] serialize(String topic, Headers headers, TwitterAvroModel twitterAvroModel) {
+            if (twitterAvroModel.getId() == failingId) {
+                throw new SerializationException("Could not serialize tweet " + failingId);
+            }
+            return super.serialize(topic, headers, twitterAvroModel);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.microservices.demo.kafka.producer.config.service.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.microservices.demo.kafka.producer.SampleTweets.messages;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TwitterKafkaProducerTransactionTest {
+
+    private static final String TOPIC_NAME = "twitter-topic";
+
+    // KafkaTemplate closes its producer after each transaction, a real factory hands out a close-safe wrapper instead
+    private final MockProducer<Long, TwitterAvroModel> mockProducer = new MockProducer<>(true, new LongSerializer(), (topic, data) -> new byte[0]) {
+        @Override
+        public void close(Duration timeout) {
+        }
+    };
+
+    private final KafkaProducerConfigData configData = new KafkaProducerConfigData();
+
+    private final InFlightLimiter inFlightLimiter = new InFlightLimiter(configData);
+
+    @Test
+    public void batchIsSentInOneTransaction() {
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future = producer().sendBatch(TOPIC_NAME, messages(1, 3));
+
+        assertTrue(future.isDone());
+        BatchSendResult<Long, TwitterAvroModel> result = future.join();
+        assertEquals(3, result.getSucceeded().size());
+        assertFalse(result.hasFailures());
+        assertEquals(1, mockProducer.commitCount());
+        assertEquals(3, mockProducer.history().size());
+        assertEquals(0, inFlightLimiter.getInFlightCount());
+    }
+
+    @Test
+    public void abortedTransactionFailsEveryRecord() {
+        mockProducer.commitTransactionException = new KafkaException("transaction coordinator unavailable");
+
+        BatchSendResult<Long, TwitterAvroModel> result = producer().sendBatch(TOPIC_NAME, messages(1, 3)).join();
+
+        assertFalse(mockProducer.transactionCommitted());
+        assertEquals(0, result.getSucceeded().size());
+        assertEquals(3, result.getFailed().size());
+        assertEquals(0, mockProducer.history().size());
+        assertEquals(0, inFlightLimiter.getInFlightCount());
+    }
+
+    @Test
+    public void singleSendCommitsItsOwnTransaction() {
+        TwitterKafkaProducer twitterKafkaProducer = producer();
+        for (Map.Entry<Long, TwitterAvroModel> message : messages(1, 2)) {
+            twitterKafkaProducer.send(TOPIC_NAME, message.getKey(), message.getValue());
+        }
+
+        assertEquals(2, mockProducer.commitCount());
+        assertEquals(2, mockProducer.history().size());
+        assertEquals(0, inFlightLimiter.getInFlightCount());
+    }
+
+    @Test
+    public void batchLargerThanTheInFlightLimitIsSentInSeveralTransactions() {
+        KafkaProducerConfigData limitedConfigData = new KafkaProducerConfigData();
+        limitedConfigData.setEnableBackpressure(true);
+        limitedConfigData.setMaxInFlightRecords(2);
+        limitedConfigData.setBackpressurePolicy(KafkaProducerConfigData.BackpressurePolicy.BLOCK);
+        limitedConfigData.setBackpressureBlockTimeoutMs(100L);
+        InFlightLimiter limitedInFlightLimiter = new InFlightLimiter(limitedConfigData);
+
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future =
+                producer(limitedConfigData, limitedInFlightLimiter).sendBatch(TOPIC_NAME, messages(1, 5));
+
+        assertTrue(future.isDone());
+        BatchSendResult<Long, TwitterAvroModel> result = future.join();
+        assertEquals(5, result.getSucceeded().size());
+        assertFalse(result.hasFailures());
+        assertEquals(3, mockProducer.commitCount());
+        assertEquals(5, mockProducer.history().size());
+        assertEquals(0, limitedInFlightLimiter.getInFlightCount());
+        assertEquals(0, limitedInFlightLimiter.getTimedOutCount());
+    }
+
+    private TwitterKafkaProducer producer() {
+        return producer(configData, inFlightLimiter);
+    }
+
+    private TwitterKafkaProducer producer(KafkaProducerConfigData producerConfigData, InFlightLimiter producerInFlightLimiter) {
+        // A transaction id makes the mock factory, and with it the template, transactional. A real factory initializes the
+        // transactions of every producer it creates
+        mockProducer.initTransactions();
+        MockProducerFactory<Long, TwitterAvroModel> producerFactory = new MockProducerFactory<>((transactional, transactionId) -> mockProducer, "tx-");
+        return new TwitterKafkaProducer(new KafkaTemplate<>(producerFactory),
+                producerConfigData, producerInFlightLimiter, new InMemoryRecordSpill<>(producerConfigData),
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,183 @@
+package com.microservices.demo.kafka.producer.journal;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill.SpilledRecord;
+import com.microservices.demo.kafka.producer.backpressure.SpillReplayer;
+import com.microservices.demo.kafka.producer.config.service.impl.TwitterKafkaProducer;
+import com.microservices.demo.kafka.producer.exception.SpillJournalException;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.microservices.demo.kafka.producer.SampleTweets.tweet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JournalRecordSpillTest {
+
+    private static final String TOPIC_NAME = "twitter-topic";
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    public void unacknowledgedRecordsSurviveReopen() {
+        JournalRecordSpill recordSpill = new JournalRecordSpill(new SpillJournal(journalDirectory, 4096));
+        for (long id = 1; id <= 3; id++) {
+            assertTrue(recordSpill.spill(TOPIC_NAME, id, tweet(id)));
+        }
+        SpilledRecord<Long, TwitterAvroModel> first = recordSpill.peek();
+        recordSpill.remove(first);
+        recordSpill.acknowledge(first);
+        recordSpill.close();
+
+        JournalRecordSpill reopened = new JournalRecordSpill(new SpillJournal(journalDirectory, 4096));
+        assertEquals(2, reopened.size());
+        SpilledRecord<Long, TwitterAvroModel> next = reopened.peek();
+        assertEquals(TOPIC_NAME, next.topicName());
+        assertEquals(2L, next.key());
+        assertEquals(tweet(2), next.message());
+    }
+
+    @Test
+    public void closedJournalRejectsAppendsAndReads() {
+        SpillJournal spillJournal = new SpillJournal(journalDirectory, 4096);
+        spillJournal.append(new byte[]{1, 2, 3});
+        SpillJournal.JournalEntry entry = spillJournal.peek();
+        spillJournal.advance(entry.position());
+        spillJournal.close();
+
+        assertThrows(SpillJournalException.class, () -> spillJournal.append(new byte[]{4}));
+        assertThrows(SpillJournalException.class, spillJournal::peek);
+        // A send completing after close is not recorded, the record is replayed after the restart
+        spillJournal.acknowledge(entry.position());
+        spillJournal.close();
+        assertFalse(new JournalRecordSpill(spillJournal).spill(TOPIC_NAME, 1L, tweet(1)));
+
+        SpillJournal reopened = new SpillJournal(journalDirectory, 4096);
+        assertEquals(1, reopened.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, reopened.peek().payload());
+        reopened.close();
+    }
+
+    @Test
+    public void acknowledgedSegmentsAreDeleted() throws IOException {
+        JournalRecordSpill recordSpill = new JournalRecordSpill(new SpillJournal(journalDirectory, 128));
+        for (long id = 1; id <= 20; id++) {
+            recordSpill.spill(TOPIC_NAME, id, tweet(id));
+        }
+        assertTrue(segmentFiles().size() > 2);
+
+        SpilledRecord<Long, TwitterAvroModel> spilledRecord;
+        long expectedId = 1;
+        while ((spilledRecord = recordSpill.peek()) != null) {
+            assertEquals(expectedId++, spilledRecord.key());
+            recordSpill.remove(spilledRecord);
+            recordSpill.acknowledge(spilledRecord);
+        }
+        assertEquals(21, expectedId);
+        assertEquals(0, recordSpill.size());
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    public void replayerDrainsJournalInOrderAndRetriesAfterFailure() {
+        JournalRecordSpill recordSpill = new JournalRecordSpill(new SpillJournal(journalDirectory, 4096));
+        for (long id = 1; id <= 3; id++) {
+            recordSpill.spill(TOPIC_NAME, id, tweet(id));
+        }
+        // KafkaTemplate closes its producer after each send, a real factory hands out a close-safe wrapper instead
+        MockProducer<Long, TwitterAvroModel> mockProducer = new MockProducer<>(false, new LongSerializer(), (topic, data) -> new byte[0]) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        KafkaProducerConfigData kafkaProducerConfigData = new KafkaProducerConfigData();
+        TwitterKafkaProducer twitterKafkaProducer = new TwitterKafkaProducer(
+                new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer)),
+                kafkaProducerConfigData, new InFlightLimiter(kafkaProducerConfigData), recordSpill,
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(new SimpleMeterRegistry()));
+        SpillReplayer spillReplayer = new SpillReplayer(kafkaProducerConfigData, recordSpill, twitterKafkaProducer);
+
+        // Broker down: the first record fails, the journal rewinds and the next tick is skipped
+        spillReplayer.replay();
+        assertEquals(List.of(1L, 2L, 3L), sentKeys(mockProducer));
+        mockProducer.errorNext(new RuntimeException("broker unavailable"));
+        mockProducer.completeNext();
+        mockProducer.completeNext();
+        mockProducer.clear();
+        spillReplayer.replay();
+        assertTrue(mockProducer.history().isEmpty());
+
+        // Broker back: only the failed record is replayed, the records after it were acknowledged and are not sent twice
+        spillReplayer.replay();
+        assertEquals(List.of(1L), sentKeys(mockProducer));
+        while (mockProducer.completeNext()) {
+        }
+        assertEquals(0, recordSpill.size());
+        assertNull(recordSpill.peek());
+    }
+
+    @Test
+    public void rewindSkipsRecordsStillInFlight() {
+        JournalRecordSpill recordSpill = new JournalRecordSpill(new SpillJournal(journalDirectory, 4096, 0));
+        for (long id = 1; id <= 3; id++) {
+            recordSpill.spill(TOPIC_NAME, id, tweet(id));
+        }
+        SpilledRecord<Long, TwitterAvroModel> first = takeNext(recordSpill);
+        SpilledRecord<Long, TwitterAvroModel> second = takeNext(recordSpill);
+        SpilledRecord<Long, TwitterAvroModel> third = takeNext(recordSpill);
+        recordSpill.acknowledge(second);
+
+        // The first fails while the third is still in flight: only the first is read again
+        recordSpill.replayFailed(first);
+        SpilledRecord<Long, TwitterAvroModel> retried = takeNext(recordSpill);
+        assertEquals(1L, retried.key());
+        assertNull(recordSpill.peek());
+
+        // The third fails later and is read again on its own
+        recordSpill.replayFailed(third);
+        assertEquals(3L, takeNext(recordSpill).key());
+        assertNull(recordSpill.peek());
+        assertEquals(2, recordSpill.size());
+    }
+
+    private static SpilledRecord<Long, TwitterAvroModel> takeNext(JournalRecordSpill recordSpill) {
+        SpilledRecord<Long, TwitterAvroModel> spilledRecord = recordSpill.peek();
+        recordSpill.remove(spilledRecord);
+        return spilledRecord;
+    }
+
+    private List<Long> sentKeys(MockProducer<Long, TwitterAvroModel> mockProducer) {
+        return mockProducer.history().stream().map(ProducerRecord::key).collect(Collectors.toList());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.microservices.demo.kafka.producer.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaProducerException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ProducerMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ProducerMetrics producerMetrics = new ProducerMetrics(meterRegistry);
+
+    @Test
+    public void countsSendsPerTopicPartition() {
+        long startNanos = System.nanoTime();
+        long startMillis = System.currentTimeMillis();
+        producerMetrics.recordSuccess(metadata("twitter-topic", 0, startMillis + 5), startNanos, startMillis);
+        producerMetrics.recordSuccess(metadata("twitter-topic", 0, startMillis + 5), startNanos, startMillis);
+        // Beyond the initial partition slots, the counters grow
+        producerMetrics.recordSuccess(metadata("twitter-topic", 40, startMillis + 5), startNanos, startMillis);
+        producerMetrics.recordSuccess(metadata("other-topic", 0, startMillis - 1), startNanos, startMillis);
+
+        assertEquals(2, sent("twitter-topic", "0"));
+        assertEquals(1, sent("twitter-topic", "40"));
+        assertEquals(1, sent("other-topic", "0"));
+        assertEquals(4, meterRegistry.get("twitter.kafka.producer.ack.latency").timer().count());
+        // A timestamp from before the send is a producer CreateTime and not recorded as append latency
+        assertEquals(3, meterRegistry.get("twitter.kafka.producer.append.latency").timer().count());
+    }
+
+    @Test
+    public void countsFailuresByUnwrappedExceptionType() {
+        producerMetrics.recordFailure(new KafkaProducerException(null, "send failed", new TimeoutException("expired")));
+        producerMetrics.recordFailure(new TimeoutException("expired"));
+        producerMetrics.recordFailure(new IllegalStateException("closed"));
+
+        assertEquals(2, meterRegistry.get("twitter.kafka.producer.send.failures").tag("exception", "TimeoutException").counter().count());
+        assertEquals(1, meterRegistry.get("twitter.kafka.producer.send.failures").tag("exception", "IllegalStateException").counter().count());
+    }
+
+    private double sent(String topic, String partition) {
+        return meterRegistry.get("twitter.kafka.producer.records.sent").tag("topic", topic).tag("partition", partition).counter().count();
+    }
+
+    private static RecordMetadata metadata(String topic, int partition, long timestamp) {
+        return new RecordMetadata(new TopicPartition(topic, partition), 0, 0, timestamp, 8, 64);
+    }
+}
@@ -0,0 +1,117 @@
+package com.microservices.demo.kafka.producer.partitioner;
+
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HotKeyAwarePartitionerTest {
+
+    private static final String TOPIC = "twitter-topic";
+
+    private static final int PARTITIONS = 12;
+
+    private static final Cluster CLUSTER = cluster();
+
+    private final LongSerializer keySerializer = new LongSerializer();
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    private final HotKeyAwarePartitioner partitioner = partitioner();
+
+    @Test
+    public void normalKeysKeepTheDefaultPartition() {
+        for (long userId = 0; userId < 1_000; userId++) {
+            assertEquals(defaultPartition(userId), partition(userId));
+        }
+    }
+
+    @Test
+    public void hotKeyIsSpreadOverTheBoundedPartitionSubset() {
+        Set<Integer> hotPartitions = new HashSet<>();
+        for (int i = 0; i < 2_000; i++) {
+            // One user writes every other record
+            hotPartitions.add(partition(42L));
+            partition(1_000L + i);
+        }
+        int base = defaultPartition(42L);
+        assertEquals(4, hotPartitions.size());
+        for (int offset = 0; offset < 4; offset++) {
+            assertTrue(hotPartitions.contains((base + offset) % PARTITIONS));
+        }
+        // The other users kept their own partitions
+        assertEquals(defaultPartition(3_000L), partition(3_000L));
+    }
+
+    @Test
+    public void frequentKeyBelowThePartitionShareKeepsItsPartition() {
+        // One user writes every 20th record, 5% of the records against the 1/12 a partition gets on average
+        for (int i = 0; i < 2_000; i++) {
+            if (i % 20 == 0) {
+                assertEquals(defaultPartition(42L), partition(42L));
+            } else {
+                partition(1_000L + i);
+            }
+        }
+    }
+
+    @Test
+    public void keyCoolsDownOnceItLeavesTheWindow() {
+        for (int i = 0; i < 500; i++) {
+            partition(42L);
+            partition(1_000L + i);
+        }
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        for (int i = 0; i < 500; i++) {
+            partition(5_000L + i);
+        }
+        assertEquals(defaultPartition(42L), partition(42L));
+    }
+
+    @Test
+    public void quietTopicIsNeverSalted() {
+        for (int i = 0; i < 50; i++) {
+            assertEquals(defaultPartition(42L), partition(42L));
+        }
+    }
+
+    private int partition(long userId) {
+        return partitioner.partition(TOPIC, userId, keySerializer.serialize(TOPIC, userId), null, null, CLUSTER);
+    }
+
+    private int defaultPartition(long userId) {
+        return Utils.toPositive(Utils.murmur2(keySerializer.serialize(TOPIC, userId))) % PARTITIONS;
+    }
+
+    private HotKeyAwarePartitioner partitioner() {
+        HotKeyAwarePartitioner hotKeyAwarePartitioner = new HotKeyAwarePartitioner(nanoTime::get);
+        hotKeyAwarePartitioner.configure(Map.of(
+                HotKeyAwarePartitioner.HOT_KEY_WINDOW_MS_CONFIG, 10_000L,
+                HotKeyAwarePartitioner.HOT_KEY_LOAD_FACTOR_CONFIG, 1.0,
+                HotKeyAwarePartitioner.HOT_KEY_MIN_COUNT_CONFIG, 100L,
+                HotKeyAwarePartitioner.HOT_KEY_MAX_PARTITIONS_CONFIG, 4));
+        return hotKeyAwarePartitioner;
+    }
+
+    private static Cluster cluster() {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitions.add(new PartitionInfo(TOPIC, partition, node, new Node[]{node}, new Node[]{node}));
+        }
+        return new Cluster("cluster", List.of(node), partitions, Set.of(), Set.of());
+    }
+}
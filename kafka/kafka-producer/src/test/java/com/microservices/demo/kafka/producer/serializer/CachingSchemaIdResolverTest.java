@@ -0,0 +1,119 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachingSchemaIdResolverTest {
+
+    private static final String SUBJECT = "twitter-topic-value";
+
+    private static final Schema SCHEMA = TwitterAvroModel.getClassSchema();
+
+    // Same record name with other fields, as a newer version of twitter.avsc would be
+    private static final Schema EVOLVED_SCHEMA = SchemaBuilder.record("TwitterAvroModel")
+            .namespace("com.microservices.demo.kafka.avro.model")
+            .fields().requiredLong("userId").requiredLong("id").endRecord();
+
+    @TempDir
+    Path cacheDirectory;
+
+    @Test
+    public void cachedIdIsUsedAfterRestartWithoutRegistry() throws Exception {
+        Path cacheFile = cacheDirectory.resolve("schema-ids.properties");
+        MockSchemaRegistryIdResolver schemaRegistry = new MockSchemaRegistryIdResolver(new MockSchemaRegistryClient());
+        CachingSchemaIdResolver resolver = new CachingSchemaIdResolver(schemaRegistry, cacheFile, 0);
+        int registeredId = resolver.getSchemaId(SUBJECT, SCHEMA);
+        assertEquals(schemaRegistry.registeredId(SUBJECT, SCHEMA), registeredId);
+        assertEquals(registeredId, resolver.getSchemaId(SUBJECT, SCHEMA));
+        assertEquals(1, schemaRegistry.getRegistrations());
+        resolver.close();
+
+        schemaRegistry.setAvailable(false);
+        CachingSchemaIdResolver restarted = new CachingSchemaIdResolver(schemaRegistry, cacheFile, 0);
+        assertEquals(registeredId, restarted.getSchemaId(SUBJECT, SCHEMA));
+        assertEquals(1, schemaRegistry.getRegistrations());
+    }
+
+    @Test
+    public void cachedIdOfAnotherSchemaVersionIsIgnored() throws Exception {
+        Path cacheFile = cacheDirectory.resolve("schema-ids.properties");
+        MockSchemaRegistryIdResolver schemaRegistry = new MockSchemaRegistryIdResolver(new MockSchemaRegistryClient());
+        int oldId = new CachingSchemaIdResolver(schemaRegistry, cacheFile, 0).getSchemaId(SUBJECT, SCHEMA);
+
+        CachingSchemaIdResolver restarted = new CachingSchemaIdResolver(schemaRegistry, cacheFile, 0);
+        int evolvedId = restarted.getSchemaId(SUBJECT, EVOLVED_SCHEMA);
+        assertEquals(schemaRegistry.registeredId(SUBJECT, EVOLVED_SCHEMA), evolvedId);
+        assertNotEquals(oldId, evolvedId);
+        assertEquals(2, schemaRegistry.getRegistrations());
+    }
+
+    @Test
+    public void refreshReplacesChangedIdAndKeepsIdOnFailure() throws Exception {
+        MockSchemaRegistryIdResolver firstRegistry = new MockSchemaRegistryIdResolver(new MockSchemaRegistryClient());
+        // A registry that was rebuilt and handed out its first id to another schema
+        MockSchemaRegistryIdResolver rebuiltRegistry = new MockSchemaRegistryIdResolver(new MockSchemaRegistryClient());
+        rebuiltRegistry.getSchemaId("other-topic-value", EVOLVED_SCHEMA);
+        AtomicReference<MockSchemaRegistryIdResolver> schemaRegistry = new AtomicReference<>(firstRegistry);
+        CachingSchemaIdResolver resolver = new CachingSchemaIdResolver(
+                (subject, schema) -> schemaRegistry.get().getSchemaId(subject, schema), null, 0);
+        int firstId = resolver.getSchemaId(SUBJECT, SCHEMA);
+        assertEquals(firstRegistry.registeredId(SUBJECT, SCHEMA), firstId);
+
+        schemaRegistry.set(rebuiltRegistry);
+        resolver.refresh();
+        int rebuiltId = rebuiltRegistry.registeredId(SUBJECT, SCHEMA);
+        assertNotEquals(firstId, rebuiltId);
+        assertEquals(rebuiltId, resolver.getSchemaId(SUBJECT, SCHEMA));
+
+        rebuiltRegistry.setAvailable(false);
+        resolver.refresh();
+        assertEquals(rebuiltId, resolver.getSchemaId(SUBJECT, SCHEMA));
+    }
+
+    @Test
+    public void serializerRegistersSchemaOncePerTopic() throws Exception {
+        MockSchemaRegistryIdResolver schemaRegistry = new MockSchemaRegistryIdResolver(new MockSchemaRegistryClient());
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer(new CachingSchemaIdResolver(schemaRegistry, null, 0));
+        TwitterAvroModel model = new TwitterAvroModel(1L, 2L, "text", 3L);
+        serializer.serialize("twitter-topic", model);
+        byte[] bytes = serializer.serialize("twitter-topic", model);
+
+        assertEquals(schemaRegistry.registeredId(SUBJECT, SCHEMA), ByteBuffer.wrap(bytes, 1, 4).getInt());
+        assertEquals(1, schemaRegistry.getRegistrations());
+    }
+
+    @Test
+    public void failsWhenRegistryIsDownAndNothingIsCached() {
+        MockSchemaRegistryIdResolver schemaRegistry = new MockSchemaRegistryIdResolver(new MockSchemaRegistryClient());
+        schemaRegistry.setAvailable(false);
+        CachingSchemaIdResolver resolver = new CachingSchemaIdResolver(schemaRegistry, null, 0);
+        assertThrows(SerializationException.class, () -> resolver.getSchemaId(SUBJECT, SCHEMA));
+    }
+
+    @Test
+    public void cacheFileCountsOnlyForTheSubjectAndSchemaItWasResolvedFor() {
+        Path cacheFile = cacheDirectory.resolve("schema-ids.properties");
+        assertFalse(CachingSchemaIdResolver.hasSchemaId(cacheFile, SUBJECT, SCHEMA));
+        new CachingSchemaIdResolver(new MockSchemaRegistryIdResolver(new MockSchemaRegistryClient()), cacheFile, 0)
+                .getSchemaId(SUBJECT, SCHEMA);
+
+        assertTrue(CachingSchemaIdResolver.hasSchemaId(cacheFile, SUBJECT, SCHEMA));
+        assertFalse(CachingSchemaIdResolver.hasSchemaId(cacheFile, "other-topic-value", SCHEMA));
+        assertFalse(CachingSchemaIdResolver.hasSchemaId(cacheFile, SUBJECT, EVOLVED_SCHEMA));
+    }
+}
@@ -0,0 +1,72 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.avro.model.TwitterCompressedTextAvroModel;
+import com.microservices.demo.kafka.producer.compression.SampleTextDictionaries;
+import com.microservices.demo.kafka.producer.compression.TweetTextCodec;
+import com.microservices.demo.kafka.producer.compression.TweetTextDictionary;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.serializers.KafkaAvroDeserializer;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// A consumer with the Confluent KafkaAvroDeserializer looks up the schema id of the record, so it reads compressed
+// records as TwitterCompressedTextAvroModel with the frame in textCompressed and never takes the frame for the text
+public class ConfluentCompressedTextDeserializerTest {
+
+    private final MockSchemaRegistryClient schemaRegistryClient = new MockSchemaRegistryClient();
+
+    @TempDir
+    private Path dictionaryDirectory;
+
+    @Test
+    public void confluentDeserializerReadsCompressedRecordsByTheirSchema() throws IOException {
+        TweetTextDictionary dictionary = SampleTextDictionaries.train(4);
+        dictionary.save(dictionaryDirectory);
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer(new MockSchemaRegistryIdResolver(schemaRegistryClient));
+        serializer.configure(Map.of(
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_DIRECTORY_CONFIG, dictionaryDirectory.toString(),
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_ID_CONFIG, Integer.toUnsignedString(dictionary.getId())), false);
+        TwitterAvroModel plain = new TwitterAvroModel(1L, 2L, "x", 3L);
+        TwitterAvroModel compressed = new TwitterAvroModel(4L, 5L, SampleTextDictionaries.text(), 6L);
+        RecordHeaders headers = new RecordHeaders();
+        byte[] compressedBytes = serializer.serialize("twitter-topic", headers, compressed);
+        assertNotNull(headers.lastHeader(TweetTextCodec.DICTIONARY_ID_HEADER));
+
+        for (boolean specificReader : new boolean[]{true, false}) {
+            try (KafkaAvroDeserializer deserializer = new KafkaAvroDeserializer(schemaRegistryClient, Map.of(
+                    "schema.registry.url", "mock://unused",
+                    "specific.avro.reader", specificReader))) {
+                Object plainRecord = deserializer.deserialize("twitter-topic",
+                        serializer.serialize("twitter-topic", new RecordHeaders(), plain));
+                assertEquals(plain.getText(), String.valueOf(((GenericRecord) plainRecord).get("text")));
+
+                GenericRecord compressedRecord =
+                        (GenericRecord) deserializer.deserialize("twitter-topic", compressedBytes);
+                assertEquals(TwitterCompressedTextAvroModel.getClassSchema().getFullName(), compressedRecord.getSchema().getFullName());
+                assertEquals(5L, compressedRecord.get("id"));
+                ByteBuffer frame = assertInstanceOf(ByteBuffer.class, compressedRecord.get("textCompressed"));
+                try (TweetTextCodec codec = new TweetTextCodec(Map.of(dictionary.getId(), dictionary), null, 0)) {
+                    byte[] frameBytes = new byte[frame.remaining()];
+                    frame.duplicate().get(frameBytes);
+                    assertEquals(compressed.getText(), new String(codec.decompress(
+                            headers.lastHeader(TweetTextCodec.DICTIONARY_ID_HEADER).value(), frameBytes, 0, frameBytes.length),
+                            StandardCharsets.UTF_8));
+                }
+            }
+        }
+        serializer.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import org.apache.avro.Schema;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Registers schemas with the Confluent MockSchemaRegistryClient, so tests see the ids a real registry would hand out.
+// The registry can be switched off to check what happens while it is unavailable
+class MockSchemaRegistryIdResolver implements SchemaIdResolver {
+
+    private final MockSchemaRegistryClient schemaRegistryClient;
+
+    private final AtomicInteger registrations = new AtomicInteger();
+
+    private volatile boolean available = true;
+
+    MockSchemaRegistryIdResolver(MockSchemaRegistryClient schemaRegistryClient) {
+        this.schemaRegistryClient = schemaRegistryClient;
+    }
+
+    @Override
+    public int getSchemaId(String subject, Schema schema) {
+        if (!available) {
+            throw new SerializationException("Schema registry is down");
+        }
+        registrations.incrementAndGet();
+        try {
+            return schemaRegistryClient.register(subject, new AvroSchema(schema));
+        } catch (IOException | RestClientException e) {
+            throw new SerializationException("Could not register schema of subject " + subject, e);
+        }
+    }
+
+    // The id the registry has for the schema, without counting a registration
+    int registeredId(String subject, Schema schema) throws IOException, RestClientException {
+        return schemaRegistryClient.getId(subject, new AvroSchema(schema));
+    }
+
+    int getRegistrations() {
+        return registrations.get();
+    }
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+}
@@ -0,0 +1,70 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import io.confluent.kafka.schemaregistry.avro.AvroSchema;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import io.confluent.kafka.schemaregistry.testutil.MockSchemaRegistry;
+import org.apache.avro.Schema;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SchemaRegistryClientIdResolverTest {
+
+    private static final String SUBJECT = "twitter-topic-value";
+
+    private static final String MOCK_SCOPE = "schema-registry-client-id-resolver-test";
+
+    private static final Schema SCHEMA = TwitterAvroModel.getClassSchema();
+
+    private final MockSchemaRegistryClient schemaRegistryClient = new MockSchemaRegistryClient();
+
+    @AfterEach
+    public void dropMockScope() {
+        MockSchemaRegistry.dropScope(MOCK_SCOPE);
+    }
+
+    @Test
+    public void registersTheSchemaAndReturnsItsId() throws IOException, RestClientException {
+        SchemaRegistryClientIdResolver resolver = new SchemaRegistryClientIdResolver(schemaRegistryClient, true);
+
+        int schemaId = resolver.getSchemaId(SUBJECT, SCHEMA);
+
+        assertEquals(schemaRegistryClient.getId(SUBJECT, new AvroSchema(SCHEMA)), schemaId);
+        assertEquals(schemaId, resolver.getSchemaId(SUBJECT, SCHEMA));
+    }
+
+    @Test
+    public void onlyLooksTheSchemaUpWithoutAutoRegistration() throws IOException, RestClientException {
+        SchemaRegistryClientIdResolver resolver = new SchemaRegistryClientIdResolver(schemaRegistryClient, false);
+
+        assertThrows(SerializationException.class, () -> resolver.getSchemaId(SUBJECT, SCHEMA));
+
+        int registeredId = schemaRegistryClient.register(SUBJECT, new AvroSchema(SCHEMA));
+        assertEquals(registeredId, resolver.getSchemaId(SUBJECT, SCHEMA));
+    }
+
+    @Test
+    public void serializerCreatesItsClientFromTheProducerConfigs() throws IOException, RestClientException {
+        // A mock:// url makes the client factory hand out the mock client of that scope, the auth settings are taken as they are
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer();
+        serializer.configure(Map.of(
+                TwitterAvroModelSerializer.SCHEMA_REGISTRY_URL_CONFIG, "mock://" + MOCK_SCOPE,
+                "basic.auth.credentials.source", "USER_INFO",
+                "basic.auth.user.info", "twitter:secret"), false);
+
+        byte[] bytes = serializer.serialize("twitter-topic", new TwitterAvroModel(1L, 2L, "text", 3L));
+        serializer.close();
+
+        int registeredId = MockSchemaRegistry.getClientForScope(MOCK_SCOPE).getId(SUBJECT, new AvroSchema(SCHEMA));
+        assertEquals(registeredId, ByteBuffer.wrap(bytes, 1, 4).getInt());
+    }
+}
@@ -0,0 +1,96 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.compression.SampleTextDictionaries;
+import com.microservices.demo.kafka.producer.compression.TweetTextCodec;
+import com.microservices.demo.kafka.producer.compression.TweetTextDictionary;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TwitterAvroModelDeserializerTest {
+
+    @TempDir
+    private Path dictionaryDirectory;
+
+    @Test
+    public void readsWhatTheSerializerWrites() {
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer((subject, schema) -> 42);
+        TwitterAvroModelDeserializer deserializer = new TwitterAvroModelDeserializer();
+        deserializer.configure(Map.of(), false);
+        List<TwitterAvroModel> models = List.of(
+                new TwitterAvroModel(0L, 0L, "", 0L),
+                new TwitterAvroModel(-1L, Long.MIN_VALUE, "Lorem ipsum Kafka dolor", 1_700_000_000_000L),
+                new TwitterAvroModel(Long.MAX_VALUE, 63L, "Grüße, 日本語 and 😀", -64L),
+                new TwitterAvroModel(64L, 8191L, null, null));
+        for (TwitterAvroModel model : models) {
+            RecordHeaders headers = new RecordHeaders();
+            assertEquals(model, deserializer.deserialize("twitter-topic", headers, serializer.serialize("twitter-topic", headers, model)));
+        }
+        assertNull(deserializer.deserialize("twitter-topic", null));
+    }
+
+    @Test
+    public void rejectsCorruptRecords() {
+        TwitterAvroModelDeserializer deserializer = new TwitterAvroModelDeserializer(Map.of());
+        byte[] bytes = new TwitterAvroModelSerializer((subject, schema) -> 42)
+                .serialize("twitter-topic", new TwitterAvroModel(1L, 2L, "text", 3L));
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("twitter-topic", new byte[]{1, 0, 0, 0, 42}));
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("twitter-topic", Arrays.copyOf(bytes, bytes.length - 3)));
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(TweetTextCodec.DICTIONARY_ID_HEADER, new byte[]{0, 0, 0, 7});
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("twitter-topic", headers, bytes));
+    }
+
+    @Test
+    public void decompressesTheTextWithTheDictionaryOfTheHeader() throws IOException {
+        TweetTextDictionary oldDictionary = SampleTextDictionaries.train(1);
+        TweetTextDictionary dictionary = SampleTextDictionaries.train(2);
+        oldDictionary.save(dictionaryDirectory);
+        dictionary.save(dictionaryDirectory);
+        Map<String, Object> configs = Map.of(
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_DIRECTORY_CONFIG, dictionaryDirectory.toString(),
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_ID_CONFIG, Integer.toUnsignedString(dictionary.getId()));
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer((subject, schema) -> 42);
+        serializer.configure(configs, false);
+        TwitterAvroModelDeserializer deserializer = new TwitterAvroModelDeserializer();
+        deserializer.configure(configs, false);
+
+        TwitterAvroModel model = new TwitterAvroModel(7L, 8L, SampleTextDictionaries.text(), 9L);
+        RecordHeaders headers = new RecordHeaders();
+        byte[] compressed = serializer.serialize("twitter-topic", headers, model);
+        byte[] plain = serializer.serialize("twitter-topic", model);
+
+        assertNotNull(headers.lastHeader(TweetTextCodec.DICTIONARY_ID_HEADER));
+        assertTrue(compressed.length < plain.length);
+        assertEquals(model, deserializer.deserialize("twitter-topic", headers, compressed));
+        // Without the header the text went out as it is
+        assertEquals(model, deserializer.deserialize("twitter-topic", new RecordHeaders(), plain));
+        assertThrows(SerializationException.class, () -> new TwitterAvroModelDeserializer().deserialize("twitter-topic", headers, compressed));
+
+        // Null and short texts go out as they are, without the header
+        for (TwitterAvroModel uncompressed : List.of(new TwitterAvroModel(1L, 2L, null, 3L), new TwitterAvroModel(1L, 2L, "x", null))) {
+            RecordHeaders plainHeaders = new RecordHeaders();
+            byte[] bytes = serializer.serialize("twitter-topic", plainHeaders, uncompressed);
+            assertNull(plainHeaders.lastHeader(TweetTextCodec.DICTIONARY_ID_HEADER));
+            assertEquals(uncompressed, deserializer.deserialize("twitter-topic", plainHeaders, bytes));
+        }
+
+        serializer.close();
+        deserializer.close();
+    }
+}
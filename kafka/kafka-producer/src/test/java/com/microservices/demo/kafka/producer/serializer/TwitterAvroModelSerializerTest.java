@@ -0,0 +1,139 @@
+package com.microservices.demo.kafka.producer.serializer;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.avro.model.TwitterCompressedTextAvroModel;
+import com.microservices.demo.kafka.producer.compression.SampleTextDictionaries;
+import com.microservices.demo.kafka.producer.compression.TweetTextCodec;
+import com.microservices.demo.kafka.producer.compression.TweetTextDictionary;
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TwitterAvroModelSerializerTest {
+
+    private static final int SCHEMA_ID = 42;
+
+    private static final int COMPRESSED_TEXT_SCHEMA_ID = 43;
+
+    @TempDir
+    private Path dictionaryDirectory;
+
+    @Test
+    public void writesSameBytesAsSpecificDatumWriter() throws IOException {
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer((subject, schema) -> SCHEMA_ID);
+        List<TwitterAvroModel> models = List.of(
+                new TwitterAvroModel(0L, 0L, "", 0L),
+                new TwitterAvroModel(-1L, Long.MIN_VALUE, "Lorem ipsum Kafka dolor", 1_700_000_000_000L),
+                new TwitterAvroModel(Long.MAX_VALUE, 63L, "Grüße, 日本語 and 😀 plus a lone \uD800 surrogate", -64L),
+                new TwitterAvroModel(64L, 8191L, null, null));
+        for (TwitterAvroModel model : models) {
+            byte[] bytes = serializer.serialize("twitter-topic", model);
+            assertEquals(0, bytes[0]);
+            assertEquals(SCHEMA_ID, ByteBuffer.wrap(bytes, 1, 4).getInt());
+            assertArrayEquals(avroBinary(model), Arrays.copyOfRange(bytes, 5, bytes.length), model.toString());
+        }
+        assertNull(serializer.serialize("twitter-topic", null));
+    }
+
+    @Test
+    public void pinnedSchemaIdNeedsNoRegistry() {
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer();
+        serializer.configure(Map.of(TwitterAvroModelSerializer.USE_SCHEMA_ID_CONFIG, 12), false);
+        byte[] bytes = serializer.serialize("twitter-topic", new TwitterAvroModel(1L, 2L, "text", 3L));
+        assertEquals(12, ByteBuffer.wrap(bytes, 1, 4).getInt());
+
+        assertThrows(SerializationException.class, () -> new TwitterAvroModelSerializer().configure(Map.of(), false));
+    }
+
+    @Test
+    public void compressedTextIsWrittenWithItsOwnSchema() throws IOException {
+        TweetTextDictionary dictionary = SampleTextDictionaries.train(3);
+        dictionary.save(dictionaryDirectory);
+        List<String> subjects = new CopyOnWriteArrayList<>();
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer((subject, schema) -> {
+            subjects.add(subject);
+            return schema.equals(TwitterCompressedTextAvroModel.getClassSchema()) ? COMPRESSED_TEXT_SCHEMA_ID : SCHEMA_ID;
+        });
+        serializer.configure(textCompressionConfigs(dictionary), false);
+        TwitterAvroModel model = new TwitterAvroModel(1L, 2L, SampleTextDictionaries.text(), 3L);
+
+        byte[] bytes = serializer.serialize("twitter-topic", new RecordHeaders(), model);
+        assertEquals(COMPRESSED_TEXT_SCHEMA_ID, ByteBuffer.wrap(bytes, 1, 4).getInt());
+        assertEquals(List.of("twitter-topic-compressed-text-value"), subjects);
+
+        // An avro reader of the compressed text schema gets the fields and the frame of the text
+        GenericRecord record = new GenericDatumReader<GenericRecord>(TwitterCompressedTextAvroModel.getClassSchema())
+                .read(null, DecoderFactory.get().binaryDecoder(bytes, 5, bytes.length - 5, null));
+        assertEquals(1L, record.get("userId"));
+        assertEquals(3L, record.get("createdAt"));
+        ByteBuffer frame = (ByteBuffer) record.get("textCompressed");
+        try (TweetTextCodec codec = new TweetTextCodec(Map.of(dictionary.getId(), dictionary), null, 0)) {
+            byte[] text = codec.decompress(ByteBuffer.allocate(4).putInt(dictionary.getId()).array(),
+                    frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            assertEquals(model.getText(), new String(text, StandardCharsets.UTF_8));
+        }
+        // A reader expecting the plain model is refused by avro instead of getting the frame as text
+        assertThrows(AvroTypeException.class, () -> new SpecificDatumReader<TwitterAvroModel>(
+                TwitterCompressedTextAvroModel.getClassSchema(), TwitterAvroModel.getClassSchema())
+                .read(null, DecoderFactory.get().binaryDecoder(bytes, 5, bytes.length - 5, null)));
+        serializer.close();
+    }
+
+    @Test
+    public void pinnedSchemaIdNeedsPinnedCompressedTextSchemaId() throws IOException {
+        TweetTextDictionary dictionary = SampleTextDictionaries.train(3);
+        dictionary.save(dictionaryDirectory);
+        Map<String, Object> configs = new HashMap<>(textCompressionConfigs(dictionary));
+        configs.put(TwitterAvroModelSerializer.USE_SCHEMA_ID_CONFIG, SCHEMA_ID);
+        assertThrows(SerializationException.class, () -> new TwitterAvroModelSerializer().configure(configs, false));
+
+        configs.put(TwitterAvroModelSerializer.USE_COMPRESSED_TEXT_SCHEMA_ID_CONFIG, COMPRESSED_TEXT_SCHEMA_ID);
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer();
+        serializer.configure(configs, false);
+        RecordHeaders headers = new RecordHeaders();
+        byte[] compressed = serializer.serialize("twitter-topic", headers, new TwitterAvroModel(1L, 2L, SampleTextDictionaries.text(), 3L));
+        byte[] plain = serializer.serialize("twitter-topic", headers, new TwitterAvroModel(1L, 2L, null, 3L));
+        assertEquals(COMPRESSED_TEXT_SCHEMA_ID, ByteBuffer.wrap(compressed, 1, 4).getInt());
+        assertEquals(SCHEMA_ID, ByteBuffer.wrap(plain, 1, 4).getInt());
+        serializer.close();
+    }
+
+    private Map<String, Object> textCompressionConfigs(TweetTextDictionary dictionary) {
+        return Map.of(
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_DIRECTORY_CONFIG, dictionaryDirectory.toString(),
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_ID_CONFIG, Integer.toUnsignedString(dictionary.getId()));
+    }
+
+    private static byte[] avroBinary(TwitterAvroModel model) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+        new SpecificDatumWriter<>(TwitterAvroModel.class).write(model, encoder);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,225 @@
+package com.microservices.demo.kafka.producer.tuning;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.config.service.impl.TwitterKafkaProducer;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.microservices.demo.kafka.producer.SampleTweets.tweet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveProducerTuningTest {
+
+    private static final String TOPIC_NAME = "twitter-topic";
+
+    // Every producer factory of the test, the first one and the copies with the tunings
+    private final List<RecordingProducerFactory> producerFactories = new CopyOnWriteArrayList<>();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Gives every producer metrics that change the batch size on the next tune()
+    private boolean alternatingMetrics;
+
+    @Test
+    public void recreatesTheProducerWhenTheTuningChanges() {
+        RecordingProducerFactory producerFactory = new RecordingProducerFactory(Map.of());
+        AdaptiveProducerTuning adaptiveProducerTuning = adaptiveProducerTuning(twitterKafkaProducer(producerFactory));
+        assertFalse(adaptiveProducerTuning.tune());
+        assertEquals(1, producerFactories.size());
+
+        setMetric(producerFactory.producer, "record-send-rate", 30_000);
+        setMetric(producerFactory.producer, "batch-size-avg", 16 * 1024);
+        setMetric(producerFactory.producer, "record-size-avg", 300);
+        setMetric(producerFactory.producer, "request-latency-avg", 25);
+        assertTrue(adaptiveProducerTuning.tune());
+
+        assertEquals(2, producerFactories.size());
+        assertTrue(producerFactory.producer.closed());
+        Map<String, Object> configs = producerFactories.get(1).configs;
+        assertEquals(32 * 1024, configs.get(ProducerConfig.BATCH_SIZE_CONFIG));
+        assertEquals(25, configs.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("snappy", configs.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+
+        // The new producer has no traffic yet, the tuning is kept
+        assertFalse(adaptiveProducerTuning.tune());
+        assertEquals(2, producerFactories.size());
+    }
+
+    @Test
+    public void sendsDoNotFailWhileTheProducerIsReplaced() throws InterruptedException {
+        alternatingMetrics = true;
+        TwitterKafkaProducer twitterKafkaProducer = twitterKafkaProducer(new RecordingProducerFactory(Map.of()));
+        AdaptiveProducerTuning adaptiveProducerTuning = adaptiveProducerTuning(twitterKafkaProducer);
+        AtomicBoolean sending = new AtomicBoolean(true);
+        AtomicLong sent = new AtomicLong();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                while (sending.get()) {
+                    long id = sent.incrementAndGet();
+                    try {
+                        twitterKafkaProducer.send(TOPIC_NAME, id, tweet(id));
+                    } catch (RuntimeException e) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        int replacements = 0;
+        for (int i = 0; i < 50; i++) {
+            // Let some sends reach the current producer first
+            long sentBefore = sent.get();
+            while (sent.get() < sentBefore + 20) {
+                Thread.onSpinWait();
+            }
+            if (adaptiveProducerTuning.tune()) {
+                replacements++;
+            }
+        }
+        sending.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(50, replacements);
+        assertEquals(List.of(), failures);
+        assertEquals(0.0, meterRegistry.find("twitter.kafka.producer.send.failures").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum());
+        assertEquals(sent.get(), producerFactories.stream().mapToLong(factory -> factory.producer.history().size()).sum());
+        // Every replaced producer is closed, only the last one is still open
+        assertEquals(1, producerFactories.stream().filter(factory -> !factory.producer.closed()).count());
+    }
+
+    private TwitterKafkaProducer twitterKafkaProducer(RecordingProducerFactory producerFactory) {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        return new TwitterKafkaProducer(new KafkaTemplate<>(producerFactory), configData,
+                new InFlightLimiter(configData), new InMemoryRecordSpill<>(configData),
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(meterRegistry));
+    }
+
+    private AdaptiveProducerTuning adaptiveProducerTuning(TwitterKafkaProducer twitterKafkaProducer) {
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setNumOfPartitions(3);
+        KafkaProducerConfigData kafkaProducerConfigData = new KafkaProducerConfigData();
+        kafkaProducerConfigData.setBatchSize(16 * 1024);
+        kafkaProducerConfigData.setBatchSizeBoostFactor(1);
+        kafkaProducerConfigData.setLingerMs(5);
+        kafkaProducerConfigData.setCompressionType("snappy");
+        return new AdaptiveProducerTuning(kafkaConfigData, kafkaProducerConfigData, twitterKafkaProducer);
+    }
+
+    private static void setMetric(MockProducer<Long, TwitterAvroModel> producer, String name, double value) {
+        MetricName metricName = new MetricName(name, "producer-metrics", "", Map.of());
+        producer.setMockMetrics(metricName, new Metric() {
+            @Override
+            public MetricName metricName() {
+                return metricName;
+            }
+
+            @Override
+            public Object metricValue() {
+                return value;
+            }
+        });
+    }
+
+    // Hands out one mock producer and copies itself for the overrides of a new tuning. Only reset closes the producer,
+    // KafkaTemplate closes it after every send as it does with the close-safe producers of a real factory.
+    // With alternatingMetrics the producers alternate between full and nearly empty batches
+    private class RecordingProducerFactory implements ProducerFactory<Long, TwitterAvroModel> {
+
+        private final Map<String, Object> configs;
+
+        private final ClosingMockProducer producer = new ClosingMockProducer();
+
+        private RecordingProducerFactory(Map<String, Object> configs) {
+            this.configs = configs;
+            int generation = producerFactories.size();
+            producerFactories.add(this);
+            if (alternatingMetrics) {
+                setMetric(producer, "record-send-rate", 30_000);
+                setMetric(producer, "batch-size-avg", generation % 2 == 0 ? 16 * 1024 : 1024);
+                setMetric(producer, "record-size-avg", 300);
+                setMetric(producer, "request-latency-avg", 5);
+            }
+        }
+
+        @Override
+        public Producer<Long, TwitterAvroModel> createProducer() {
+            return producer;
+        }
+
+        @Override
+        public ProducerFactory<Long, TwitterAvroModel> copyWithConfigurationOverride(Map<String, Object> overrides) {
+            Map<String, Object> copy = new HashMap<>(configs);
+            copy.putAll(overrides);
+            return new RecordingProducerFactory(copy);
+        }
+
+        @Override
+        public void reset() {
+            producer.closeForGood();
+        }
+    }
+
+    // Fails every send after closeForGood, like a kafka producer after close. A send takes a moment before it gets to the
+    // producer, as the serializer and the partitioner of a real one do, so sends overlap the replacements
+    private static class ClosingMockProducer extends MockProducer<Long, TwitterAvroModel> {
+
+        private ClosingMockProducer() {
+            super(true, new LongSerializer(), (topic, data) -> new byte[0]);
+        }
+
+        @Override
+        public Future<RecordMetadata> send(ProducerRecord<Long, TwitterAvroModel> record, Callback callback) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            return super.send(record, callback);
+        }
+
+        @Override
+        public void close(Duration timeout) {
+        }
+
+        private synchronized void closeForGood() {
+            if (!closed()) {
+                super.close(Duration.ZERO);
+            }
+        }
+    }
+}
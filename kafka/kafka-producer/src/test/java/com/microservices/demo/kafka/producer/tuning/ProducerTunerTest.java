@@ -0,0 +1,69 @@
+package com.microservices.demo.kafka.producer.tuning;
+
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.kafka.producer.tuning.ProducerTuner.Observation;
+import com.microservices.demo.kafka.producer.tuning.ProducerTuner.Tuning;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ProducerTunerTest {
+
+    private static final Tuning START = new Tuning(64 * 1024, 10, "snappy");
+
+    private final KafkaProducerConfigData configData = configData();
+
+    private final ProducerTuner producerTuner = new ProducerTuner(configData, 3);
+
+    @Test
+    public void fullBatchesDoubleTheBatchSizeUpToTheMaximum() {
+        Tuning next = producerTuner.next(START, new Observation(30_000, 63 * 1024, 300, 10));
+        assertEquals(128 * 1024, next.batchSize());
+
+        Tuning atMaximum = producerTuner.next(new Tuning(1024 * 1024, 10, "snappy"), new Observation(30_000, 1024 * 1024, 300, 10));
+        assertEquals(1024 * 1024, atMaximum.batchSize());
+    }
+
+    @Test
+    public void emptyBatchesHalveTheBatchSizeDownToTheMinimum() {
+        assertEquals(32 * 1024, producerTuner.next(START, new Observation(3_000, 4 * 1024, 300, 10)).batchSize());
+        assertEquals(16 * 1024, producerTuner.next(new Tuning(16 * 1024, 10, "snappy"), new Observation(3_000, 100, 300, 10)).batchSize());
+    }
+
+    @Test
+    public void lingerFollowsTheRequestLatencyWithinBounds() {
+        assertEquals(40, producerTuner.next(START, new Observation(30_000, 32 * 1024, 300, 40)).lingerMs());
+        assertEquals(100, producerTuner.next(START, new Observation(30_000, 32 * 1024, 300, 900)).lingerMs());
+    }
+
+    @Test
+    public void lingerDropsToTheMinimumWhenThereIsNothingToBatch() {
+        // 30 records per second over 3 partitions, less than one record per partition within 40 ms
+        assertEquals(0, producerTuner.next(START, new Observation(30, 32 * 1024, 300, 40)).lingerMs());
+    }
+
+    @Test
+    public void smallLingerChangesAreIgnored() {
+        assertEquals(10, producerTuner.next(START, new Observation(30_000, 32 * 1024, 300, 11)).lingerMs());
+    }
+
+    @Test
+    public void highRateSwitchesToTheHighRateCompressionType() {
+        assertEquals("snappy", producerTuner.next(START, new Observation(1_000, 32 * 1024, 1_000, 10)).compressionType());
+        assertEquals("lz4", producerTuner.next(START, new Observation(20_000, 32 * 1024, 1_000, 10)).compressionType());
+    }
+
+    @Test
+    public void keepsTheTuningWithoutTraffic() {
+        assertSame(START, producerTuner.next(START, new Observation(0, Double.NaN, Double.NaN, Double.NaN)));
+    }
+
+    private static KafkaProducerConfigData configData() {
+        KafkaProducerConfigData configData = new KafkaProducerConfigData();
+        configData.setCompressionType("snappy");
+        configData.setAdaptiveHighRateCompressionType("lz4");
+        configData.setAdaptiveHighRateBytesPerSecond(10_000_000L);
+        return configData;
+    }
+}
@@ -2,8 +2,7 @@ package com.microservices.demo.twitter.to.kafka.service;
 
 //import com.microservices.demo.twitter.to.kafka.service.config.TwitterToKafkaServiceConfigData;
 import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
-import com.microservices.demo.twitter.to.kafka.service.init.StreamInitializer;
-import com.microservices.demo.twitter.to.kafka.service.runner.StreamRunner;
+import com.microservices.demo.twitter.to.kafka.service.init.impl.StartupOrchestrator;
 import com.microservices.demo.twitter.to.kafka.service.runner.impl.TwitterKafkaStreamRunner;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
@@ -27,13 +26,10 @@ public class TwitterToKafkaServiceApplication implements CommandLineRunner {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterToKafkaServiceApplication.class);
 
-    private final StreamRunner streamRunner;
+    private final StartupOrchestrator startupOrchestrator;
 
-    private final StreamInitializer streamInitializer;
-
-    public TwitterToKafkaServiceApplication(StreamRunner streamRunner, StreamInitializer streamInitializer) {
-        this.streamRunner = streamRunner;
-        this.streamInitializer = streamInitializer;
+    public TwitterToKafkaServiceApplication(StartupOrchestrator startupOrchestrator) {
+        this.startupOrchestrator = startupOrchestrator;
     }
 
     public static void main(String[] args) {
@@ -43,7 +39,7 @@ public class TwitterToKafkaServiceApplication implements CommandLineRunner {
     @Override
     public void run(String... args) throws Exception {
         LOG.info("Application starts...");
-        streamInitializer.init();
-        streamRunner.start();
+        // Kafka readiness checks, producer warm up and stream connect, one after the other or overlapping
+        startupOrchestrator.start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.microservices.demo.twitter.to.kafka.service.dedup;
+
+import java.util.Arrays;
+
+// Fixed size set of primitive longs with open addressing and linear probing, no boxing and no per entry objects.
+// The table is sized for at most half full at maxSize entries and never grows; 0 marks an empty slot and is tracked apart.
+// Not thread safe
+class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private final long[] table;
+
+    private final int mask;
+
+    private final int maxSize;
+
+    private int size;
+
+    private boolean containsZero;
+
+    LongHashSet(int maxSize) {
+        this.maxSize = maxSize;
+        int capacity = Integer.highestOneBit(Math.max(2, maxSize * 2 - 1)) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsZero;
+        }
+        for (int slot = slot(value); ; slot = (slot + 1) & mask) {
+            long current = table[slot];
+            if (current == value) {
+                return true;
+            }
+            if (current == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    // false if the value was already in the set; callers check isFull first
+    boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsZero;
+            containsZero = true;
+            size += added ? 1 : 0;
+            return added;
+        }
+        for (int slot = slot(value); ; slot = (slot + 1) & mask) {
+            long current = table[slot];
+            if (current == value) {
+                return false;
+            }
+            if (current == EMPTY) {
+                table[slot] = value;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    boolean isFull() {
+        return size >= maxSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+        containsZero = false;
+    }
+
+    // Tweet ids are snowflake ids whose low bits barely change, so they are mixed before masking (murmur3 fmix64)
+    private int slot(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,143 @@
+package com.microservices.demo.twitter.to.kafka.service.dedup;
+
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Remembers the tweet ids sent during the last deduplication-window-seconds so a tweet delivered again, e.g. after a
+// reconnect, is not produced twice. The window is a ring of deduplication-window-buckets primitive long sets: new ids
+// go into the newest bucket, lookups check all of them and every window/buckets the oldest bucket is cleared and reused.
+// Memory is fixed up front by deduplication-max-ids-per-bucket; when a bucket fills up before its time is over it is
+// rotated early, so under overload the window shrinks instead of the heap growing.
+// Ids are spread over stripes with a lock and a ring each, so concurrent stream threads rarely wait for each other
+@Component
+public class TweetIdDeduplicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TweetIdDeduplicator.class);
+
+    private static final int STRIPES = 16;
+
+    private final boolean enabled;
+
+    private final Stripe[] stripes;
+
+    private final LongSupplier nanoClock;
+
+    private final long bucketDurationNanos;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder earlyRotationCount = new LongAdder();
+
+    public TweetIdDeduplicator(TwitterToKafkaServiceConfigData configData) {
+        this(configData, System::nanoTime);
+    }
+
+    TweetIdDeduplicator(TwitterToKafkaServiceConfigData configData, LongSupplier nanoClock) {
+        this.enabled = configData.getEnableDeduplication();
+        this.nanoClock = nanoClock;
+        int buckets = configData.getDeduplicationWindowBuckets();
+        this.bucketDurationNanos = TimeUnit.SECONDS.toNanos(configData.getDeduplicationWindowSeconds()) / buckets;
+        int idsPerStripeBucket = Math.max(1, configData.getDeduplicationMaxIdsPerBucket() / STRIPES);
+        this.stripes = new Stripe[enabled ? STRIPES : 0];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(buckets, idsPerStripeBucket, nanoClock.getAsLong());
+        }
+        if (enabled) {
+            LOG.info("Deduplicating tweet ids over {} s in {} buckets of up to {} ids",
+                    configData.getDeduplicationWindowSeconds(), buckets, configData.getDeduplicationMaxIdsPerBucket());
+        }
+    }
+
+    // true if the id was already seen within the window; otherwise it is remembered and false is returned
+    public boolean isDuplicate(long tweetId) {
+        if (!enabled) {
+            return false;
+        }
+        Stripe stripe = stripes[(int) ((tweetId ^ (tweetId >>> 32)) * 0x9E3779B9L >>> 28) & (STRIPES - 1)];
+        boolean duplicate = stripe.checkAndAdd(tweetId);
+        if (duplicate) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return duplicate;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    // Rotations forced by a full bucket, a steadily growing count means the window is shorter than configured
+    public long getEarlyRotationCount() {
+        return earlyRotationCount.sum();
+    }
+
+    private final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final LongHashSet[] buckets;
+
+        private int current;
+
+        private long currentBucketStartNanos;
+
+        private Stripe(int bucketCount, int idsPerBucket, long nowNanos) {
+            buckets = new LongHashSet[bucketCount];
+            for (int i = 0; i < bucketCount; i++) {
+                buckets[i] = new LongHashSet(idsPerBucket);
+            }
+            currentBucketStartNanos = nowNanos;
+        }
+
+        private boolean checkAndAdd(long tweetId) {
+            lock.lock();
+            try {
+                expireBuckets();
+                for (LongHashSet bucket : buckets) {
+                    if (bucket.contains(tweetId)) {
+                        return true;
+                    }
+                }
+                if (buckets[current].isFull()) {
+                    earlyRotationCount.increment();
+                    rotate(nanoClock.getAsLong());
+                }
+                buckets[current].add(tweetId);
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Clears one bucket per elapsed bucket duration, at most all of them after a long pause
+        private void expireBuckets() {
+            long now = nanoClock.getAsLong();
+            for (int i = 0; i < buckets.length && now - currentBucketStartNanos >= bucketDurationNanos; i++) {
+                rotate(currentBucketStartNanos + bucketDurationNanos);
+            }
+            if (now - currentBucketStartNanos >= bucketDurationNanos) {
+                currentBucketStartNanos = now;
+            }
+        }
+
+        private void rotate(long bucketStartNanos) {
+            current = (current + 1) % buckets.length;
+            buckets[current].clear();
+            currentBucketStartNanos = bucketStartNanos;
+        }
+    }
+}
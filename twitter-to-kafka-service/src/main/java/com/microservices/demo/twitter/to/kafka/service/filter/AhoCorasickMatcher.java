@@ -0,0 +1,182 @@
+package com.microservices.demo.twitter.to.kafka.service.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// All keywords of the filter in one Aho-Corasick automaton, so a text is scanned once however many keywords there are.
+// Matching is case insensitive and only counts whole words: the characters around a match must not be letters or digits.
+// The automaton is built once into flat arrays and is read only afterwards, scanning needs no locks and allocates nothing.
+// Every keyword carries a bit mask and a scan returns the masks of the keywords found, the tweet filter uses two bits for
+// include and exclude keywords and the topic router one bit per route
+public final class AhoCorasickMatcher {
+
+    static final int INCLUDE = 1;
+
+    static final int EXCLUDE = 2;
+
+    private static final int ROOT = 0;
+
+    private static final int NONE = -1;
+
+    // Sorted edge characters and their target states per state
+    private final char[][] edgeChars;
+
+    private final int[][] edgeTargets;
+
+    private final int[] failure;
+
+    // Length and mask of the keyword ending in a state, 0 if none does
+    private final int[] keywordLength;
+
+    private final long[] keywordMasks;
+
+    // Next state on the failure chain where a keyword ends
+    private final int[] outputLink;
+
+    AhoCorasickMatcher(List<String> includeKeywords, List<String> excludeKeywords) {
+        this(masksByKeyword(includeKeywords, excludeKeywords));
+    }
+
+    // Blank keywords are left out. Keywords that only differ in case share one state and the union of their masks
+    public AhoCorasickMatcher(Map<String, Long> masksByKeyword) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        List<long[]> keywordsByState = new ArrayList<>();
+        keywordsByState.add(new long[2]);
+        for (Map.Entry<String, Long> keywordMask : masksByKeyword.entrySet()) {
+            addKeyword(trie, keywordsByState, keywordMask.getKey(), keywordMask.getValue());
+        }
+
+        int stateCount = trie.size();
+        edgeChars = new char[stateCount][];
+        edgeTargets = new int[stateCount][];
+        keywordLength = new int[stateCount];
+        keywordMasks = new long[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            Map<Character, Integer> edges = trie.get(state);
+            edgeChars[state] = new char[edges.size()];
+            edgeTargets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[state][i] = edge.getKey();
+                edgeTargets[state][i++] = edge.getValue();
+            }
+            keywordLength[state] = (int) keywordsByState.get(state)[0];
+            keywordMasks[state] = keywordsByState.get(state)[1];
+        }
+
+        failure = new int[stateCount];
+        outputLink = new int[stateCount];
+        outputLink[ROOT] = NONE;
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[ROOT]) {
+            failure[child] = ROOT;
+            outputLink[child] = NONE;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int fallback = failure[state];
+                while (fallback != ROOT && edge(fallback, c) == NONE) {
+                    fallback = failure[fallback];
+                }
+                int target = edge(fallback, c);
+                failure[child] = target == NONE ? ROOT : target;
+                outputLink[child] = keywordLength[failure[child]] > 0 ? failure[child] : outputLink[failure[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return edgeChars[ROOT].length == 0;
+    }
+
+    // Kinds of the whole word keywords found in the text, stops at the first exclude keyword
+    int scan(CharSequence text) {
+        return (int) scan(text, EXCLUDE);
+    }
+
+    // Union of the masks of the whole word keywords found in the text, stops as soon as one of the stop bits is found
+    public long scan(CharSequence text, long stopMask) {
+        long found = 0;
+        int state = ROOT;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = next(state, Character.toLowerCase(text.charAt(i)));
+            for (int match = keywordLength[state] > 0 ? state : outputLink[state]; match != NONE; match = outputLink[match]) {
+                if (isWholeWord(text, i + 1 - keywordLength[match], i + 1)) {
+                    found |= keywordMasks[match];
+                    if ((found & stopMask) != 0) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int target = edge(state, c);
+            if (target != NONE) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failure[state];
+        }
+    }
+
+    private int edge(int state, char c) {
+        int i = Arrays.binarySearch(edgeChars[state], c);
+        return i < 0 ? NONE : edgeTargets[state][i];
+    }
+
+    private static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+    }
+
+    private static Map<String, Long> masksByKeyword(List<String> includeKeywords, List<String> excludeKeywords) {
+        Map<String, Long> masksByKeyword = new LinkedHashMap<>();
+        for (String keyword : includeKeywords) {
+            masksByKeyword.merge(keyword.trim(), (long) INCLUDE, (a, b) -> a | b);
+        }
+        for (String keyword : excludeKeywords) {
+            masksByKeyword.merge(keyword.trim(), (long) EXCLUDE, (a, b) -> a | b);
+        }
+        return masksByKeyword;
+    }
+
+    private static void addKeyword(List<Map<Character, Integer>> trie, List<long[]> keywordsByState, String keyword, long mask) {
+        String normalizedKeyword = keyword.trim();
+        if (normalizedKeyword.isEmpty()) {
+            return;
+        }
+        int state = ROOT;
+        for (int i = 0; i < normalizedKeyword.length(); i++) {
+            char c = Character.toLowerCase(normalizedKeyword.charAt(i));
+            Integer target = trie.get(state).get(c);
+            if (target == null) {
+                target = trie.size();
+                trie.add(new TreeMap<>());
+                keywordsByState.add(new long[2]);
+                trie.get(state).put(c, target);
+            }
+            state = target;
+        }
+        keywordsByState.get(state)[0] = normalizedKeyword.length();
+        keywordsByState.get(state)[1] |= mask;
+    }
+}
@@ -0,0 +1,157 @@
+package com.microservices.demo.twitter.to.kafka.service.filter;
+
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+// Decides on the producer side whether a status is sent, from the filter rules of the service configuration.
+// The rules are compiled once into an immutable snapshot: all keywords into one automaton, the regexes into patterns.
+// A configuration refresh swaps the snapshot, statuses being checked keep the one they started with.
+// Checks run cheapest first, length, language, keywords in one pass over the text and regexes last
+@Component
+public class TweetFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TweetFilter.class);
+
+    public enum Verdict {
+        ACCEPTED,
+        TOO_SHORT,
+        TOO_LONG,
+        LANGUAGE,
+        EXCLUDED_KEYWORD,
+        MISSING_KEYWORD,
+        EXCLUDED_REGEX,
+        MISSING_REGEX
+    }
+
+    private final TwitterToKafkaServiceConfigData twitterToKafkaServiceConfigData;
+
+    private final LongAdder[] verdictCounts = new LongAdder[Verdict.values().length];
+
+    private volatile Rules rules;
+
+    public TweetFilter(TwitterToKafkaServiceConfigData configData) {
+        this.twitterToKafkaServiceConfigData = configData;
+        for (int i = 0; i < verdictCounts.length; i++) {
+            verdictCounts[i] = new LongAdder();
+        }
+        this.rules = Rules.compile(configData);
+        logRules();
+    }
+
+    // Invalid rules in a refreshed configuration are logged and the previous rules stay in place
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void reload() {
+        try {
+            rules = Rules.compile(twitterToKafkaServiceConfigData);
+            logRules();
+        } catch (PatternSyntaxException e) {
+            LOG.error("Invalid tweet filter regex, keeping the previous rules", e);
+        }
+    }
+
+    // Whether the source should read the language of a status for this filter
+    public boolean filtersLanguage() {
+        Rules current = rules;
+        return current.enabled && !current.languages.isEmpty();
+    }
+
+    // lang is null when the source does not know it, the language rule is then not applied
+    public boolean accept(CharSequence text, String lang) {
+        Rules current = rules;
+        if (!current.enabled) {
+            return true;
+        }
+        Verdict verdict = current.evaluate(text == null ? "" : text, lang);
+        verdictCounts[verdict.ordinal()].increment();
+        return verdict == Verdict.ACCEPTED;
+    }
+
+    public Verdict evaluate(CharSequence text, String lang) {
+        return rules.evaluate(text == null ? "" : text, lang);
+    }
+
+    public long getCount(Verdict verdict) {
+        return verdictCounts[verdict.ordinal()].sum();
+    }
+
+    private void logRules() {
+        TwitterToKafkaServiceConfigData configData = twitterToKafkaServiceConfigData;
+        if (rules.enabled) {
+            LOG.info("Tweet filter includes {} excludes {} include regexes {} exclude regexes {} languages {} length {} to {}",
+                    configData.getFilterIncludeKeywords(), configData.getFilterExcludeKeywords(),
+                    configData.getFilterIncludeRegexes(), configData.getFilterExcludeRegexes(),
+                    configData.getFilterLanguages(), configData.getFilterMinTextLength(), configData.getFilterMaxTextLength());
+        }
+    }
+
+    private record Rules(boolean enabled, int minLength, int maxLength, Set<String> languages,
+                         AhoCorasickMatcher keywordMatcher, boolean requiresKeyword,
+                         List<Pattern> includeRegexes, List<Pattern> excludeRegexes) {
+
+        private static Rules compile(TwitterToKafkaServiceConfigData configData) {
+            return new Rules(Boolean.TRUE.equals(configData.getEnableTweetFilter()),
+                    valueOrZero(configData.getFilterMinTextLength()),
+                    valueOrZero(configData.getFilterMaxTextLength()),
+                    configData.getFilterLanguages().stream()
+                            .map(language -> language.trim().toLowerCase(Locale.ROOT))
+                            .filter(language -> !language.isEmpty())
+                            .collect(Collectors.toUnmodifiableSet()),
+                    new AhoCorasickMatcher(configData.getFilterIncludeKeywords(), configData.getFilterExcludeKeywords()),
+                    configData.getFilterIncludeKeywords().stream().anyMatch(keyword -> !keyword.isBlank()),
+                    configData.getFilterIncludeRegexes().stream().map(Pattern::compile).toList(),
+                    configData.getFilterExcludeRegexes().stream().map(Pattern::compile).toList());
+        }
+
+        private Verdict evaluate(CharSequence text, String lang) {
+            if (minLength > 0 || maxLength > 0) {
+                // Counted in code points like twitter does, an emoji is one character
+                int length = Character.codePointCount(text, 0, text.length());
+                if (length < minLength) {
+                    return Verdict.TOO_SHORT;
+                }
+                if (maxLength > 0 && length > maxLength) {
+                    return Verdict.TOO_LONG;
+                }
+            }
+            if (lang != null && !languages.isEmpty() && !languages.contains(lang.toLowerCase(Locale.ROOT))) {
+                return Verdict.LANGUAGE;
+            }
+            if (!keywordMatcher.isEmpty()) {
+                int found = keywordMatcher.scan(text);
+                if ((found & AhoCorasickMatcher.EXCLUDE) != 0) {
+                    return Verdict.EXCLUDED_KEYWORD;
+                }
+                if (requiresKeyword && (found & AhoCorasickMatcher.INCLUDE) == 0) {
+                    return Verdict.MISSING_KEYWORD;
+                }
+            }
+            for (Pattern excludeRegex : excludeRegexes) {
+                if (excludeRegex.matcher(text).find()) {
+                    return Verdict.EXCLUDED_REGEX;
+                }
+            }
+            for (Pattern includeRegex : includeRegexes) {
+                if (includeRegex.matcher(text).find()) {
+                    return Verdict.ACCEPTED;
+                }
+            }
+            return includeRegexes.isEmpty() ? Verdict.ACCEPTED : Verdict.MISSING_REGEX;
+        }
+
+        private static int valueOrZero(Integer value) {
+            return value == null ? 0 : value;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.microservices.demo.twitter.to.kafka.service.init;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// Opened by the StartupOrchestrator once the topics are ready and the schema registry is up.
+// The ingest pipeline only buffers until then, so a stream can connect while kafka is still being checked
+@Component
+public class KafkaReadiness {
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    public void open() {
+        ready.countDown();
+    }
+
+    public boolean isOpen() {
+        return ready.getCount() == 0;
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit);
+    }
+
+    // Waits until kafka is ready or running turns false, whichever comes first. running is checked every slice, so a
+    // shutdown does not wait for kafka. Returns whether kafka is ready
+    public boolean awaitOpenWhile(BooleanSupplier running, long slice, TimeUnit unit) throws InterruptedException {
+        while (running.getAsBoolean()) {
+            if (ready.await(slice, unit)) {
+                return true;
+            }
+        }
+        return isOpen();
+    }
+}
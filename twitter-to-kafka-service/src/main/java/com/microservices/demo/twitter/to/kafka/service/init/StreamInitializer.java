@@ -1,5 +1,12 @@
 package com.microservices.demo.twitter.to.kafka.service.init;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface StreamInitializer {
     void init();
+
+    // Runs the readiness checks without blocking the caller, so other startup work can overlap them
+    default CompletableFuture<Void> initAsync() {
+        return CompletableFuture.runAsync(this::init);
+    }
 }
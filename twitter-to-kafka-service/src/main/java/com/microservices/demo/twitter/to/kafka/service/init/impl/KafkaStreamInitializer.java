@@ -1,12 +1,22 @@
 package com.microservices.demo.twitter.to.kafka.service.init.impl;
 
 import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
 import com.microservices.demo.kafka.admin.clients.KafkaAdminClient;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.serializer.CachingSchemaIdResolver;
+import com.microservices.demo.kafka.producer.serializer.TwitterAvroModelSerializer;
 import com.microservices.demo.twitter.to.kafka.service.init.StreamInitializer;
+import com.microservices.demo.twitter.to.kafka.service.metrics.StartupMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @Component
 public class KafkaStreamInitializer implements StreamInitializer {
 
@@ -14,21 +24,70 @@ public class KafkaStreamInitializer implements StreamInitializer {
 
     private final KafkaConfigData kafkaConfigData;
 
+    private final KafkaProducerConfigData kafkaProducerConfigData;
+
+    private final TwitterToKafkaServiceConfigData twitterToKafkaServiceConfigData;
+
     private final KafkaAdminClient kafkaAdminClient;
 
-    public KafkaStreamInitializer(KafkaConfigData kafkaConfigData, KafkaAdminClient kafkaAdminClient) {
+    private final StartupMetrics startupMetrics;
+
+    public KafkaStreamInitializer(KafkaConfigData kafkaConfigData, KafkaProducerConfigData kafkaProducerConfigData,
+                                  TwitterToKafkaServiceConfigData twitterToKafkaServiceConfigData, KafkaAdminClient kafkaAdminClient,
+                                  StartupMetrics startupMetrics) {
         this.kafkaConfigData = kafkaConfigData;
+        this.kafkaProducerConfigData = kafkaProducerConfigData;
+        this.twitterToKafkaServiceConfigData = twitterToKafkaServiceConfigData;
         this.kafkaAdminClient = kafkaAdminClient;
+        this.startupMetrics = startupMetrics;
     }
 
     @Override
     public void init() {
-        // Call kafkaAdminClient's createTopics() method in the init method to create the required topics
-        kafkaAdminClient.createTopics();
+        try {
+            initAsync().join();
+        } catch (CompletionException e) {
+            // Rethrow the KafkaClientException of the failed check as it was thrown before
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
-        // Call kafkaAdminClient's checkSchemaRegistry() method to be sure that schema registry is up and running prior to starting of our service
-        kafkaAdminClient.checkSchemaRegistry();
+    // Creates the required topics and makes sure that schema registry is up and running prior to starting of our service.
+    // With the concurrent startup both checks run at the same time, otherwise the registry is checked once the topics are ready.
+    // With a pinned or locally cached schema id the producer does not need the registry to start, so we don't wait for it
+    @Override
+    public CompletableFuture<Void> initAsync() {
+        CompletableFuture<?> topicsReady = startupMetrics.time("kafka.topics", kafkaAdminClient::createTopicsAsync);
+        CompletableFuture<Void> kafkaReady = twitterToKafkaServiceConfigData.getEnableConcurrentStartup()
+                ? CompletableFuture.allOf(topicsReady, checkSchemaRegistryAsync())
+                : topicsReady.thenCompose(topics -> checkSchemaRegistryAsync());
+        return kafkaReady.thenRun(() ->
+                LOG.info("Topics with the name {} are ready for operation", kafkaConfigData.getTopicNamesToCreate().toArray()));
+    }
+
+    private CompletableFuture<Void> checkSchemaRegistryAsync() {
+        if (isSchemaIdAvailableLocally()) {
+            LOG.info("Schema id is pinned or cached locally, skipping schema registry check");
+            return CompletableFuture.completedFuture(null);
+        }
+        return startupMetrics.time("schema.registry", kafkaAdminClient::checkSchemaRegistryAsync);
+    }
 
-        LOG.info("Topics with the name {} are ready for operation", kafkaConfigData.getTopicNamesToCreate().toArray());
+    // Only the wire format serializer reads the pinned id and the cache file, the Confluent serializer always asks the registry.
+    // A cached id counts only if it was resolved for the subject of the topic and the current TwitterAvroModel schema
+    private boolean isSchemaIdAvailableLocally() {
+        if (!TwitterAvroModelSerializer.class.getName().equals(kafkaProducerConfigData.getValueSerializerClass())) {
+            return false;
+        }
+        if (kafkaProducerConfigData.getSchemaId() != null) {
+            return true;
+        }
+        String schemaIdCacheFile = kafkaProducerConfigData.getSchemaIdCacheFile();
+        return schemaIdCacheFile != null && !schemaIdCacheFile.isBlank()
+                && CachingSchemaIdResolver.hasSchemaId(Path.of(schemaIdCacheFile), kafkaConfigData.getTopicName() + "-value",
+                TwitterAvroModel.getClassSchema());
     }
 }
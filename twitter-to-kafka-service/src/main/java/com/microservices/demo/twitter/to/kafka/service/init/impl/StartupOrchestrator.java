@@ -0,0 +1,129 @@
+package com.microservices.demo.twitter.to.kafka.service.init.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.init.KafkaReadiness;
+import com.microservices.demo.twitter.to.kafka.service.init.StreamInitializer;
+import com.microservices.demo.twitter.to.kafka.service.metrics.StartupMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.runner.StreamRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import twitter4j.TwitterException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+// Brings the service up: kafka readiness checks, producer warm up and the stream connect.
+// Sequential by default, kafka first and then the stream. With the concurrent startup the readiness checks, the warm up and,
+// when the ingest pipeline can buffer, the stream connect all overlap. The pipeline holds the statuses until kafka is ready,
+// a stream that sends on its own thread still waits for kafka. A failed warm up is only logged, the first send connects then
+@Component
+public class StartupOrchestrator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupOrchestrator.class);
+
+    private final TwitterToKafkaServiceConfigData twitterToKafkaServiceConfigData;
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final StreamInitializer streamInitializer;
+
+    private final StreamRunner streamRunner;
+
+    private final IngestPipeline ingestPipeline;
+
+    private final KafkaProducer<Long, TwitterAvroModel> kafkaProducer;
+
+    private final KafkaReadiness kafkaReadiness;
+
+    private final ExecutorFactory executorFactory;
+
+    private final StartupMetrics startupMetrics;
+
+    public StartupOrchestrator(TwitterToKafkaServiceConfigData twitterToKafkaServiceConfigData,
+                               KafkaConfigData kafkaConfigData,
+                               StreamInitializer streamInitializer,
+                               StreamRunner streamRunner,
+                               IngestPipeline ingestPipeline,
+                               KafkaProducer<Long, TwitterAvroModel> kafkaProducer,
+                               KafkaReadiness kafkaReadiness,
+                               ExecutorFactory executorFactory,
+                               StartupMetrics startupMetrics) {
+        this.twitterToKafkaServiceConfigData = twitterToKafkaServiceConfigData;
+        this.kafkaConfigData = kafkaConfigData;
+        this.streamInitializer = streamInitializer;
+        this.streamRunner = streamRunner;
+        this.ingestPipeline = ingestPipeline;
+        this.kafkaProducer = kafkaProducer;
+        this.kafkaReadiness = kafkaReadiness;
+        this.executorFactory = executorFactory;
+        this.startupMetrics = startupMetrics;
+    }
+
+    public void start() throws TwitterException {
+        long startNanos = System.nanoTime();
+        if (twitterToKafkaServiceConfigData.getEnableConcurrentStartup()) {
+            startConcurrently();
+        } else {
+            streamInitializer.init();
+            startupMetrics.record("kafka.ready", startNanos);
+            kafkaReadiness.open();
+            long streamStartNanos = System.nanoTime();
+            streamRunner.start();
+            startupMetrics.record("stream.start", streamStartNanos);
+        }
+        startupMetrics.record("total", startNanos);
+        startupMetrics.logReport();
+    }
+
+    private void startConcurrently() throws TwitterException {
+        ExecutorService startupExecutor = executorFactory.newExecutor("startup", 2);
+        try {
+            CompletableFuture<Void> kafkaReady = startupMetrics.time("kafka.ready", streamInitializer::initAsync);
+            CompletableFuture<Void> producerWarm = startupMetrics.time("producer.warmup", () -> CompletableFuture.runAsync(
+                            () -> kafkaProducer.warmUp(kafkaConfigData.getTopicName()), startupExecutor))
+                    .exceptionally(throwable -> {
+                        LOG.warn("Could not warm up the kafka producer, the first send will connect", throwable);
+                        return null;
+                    });
+            CompletableFuture<Void> streamStarted;
+            if (ingestPipeline.isBuffered()) {
+                LOG.info("Connecting the stream while kafka is checked, statuses are buffered until it is ready");
+                streamStarted = startupMetrics.time("stream.start", () -> CompletableFuture.runAsync(this::startStream, startupExecutor));
+            } else {
+                streamStarted = kafkaReady.thenCompose(ready ->
+                        startupMetrics.time("stream.start", () -> CompletableFuture.runAsync(this::startStream, startupExecutor)));
+            }
+            kafkaReady.join();
+            kafkaReadiness.open();
+            CompletableFuture.allOf(streamStarted, producerWarm).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TwitterToKafkaServiceException streamException
+                    && streamException.getCause() instanceof TwitterException twitterException) {
+                throw twitterException;
+            }
+            // Rethrow the exception of the failed phase as the sequential startup would have thrown it
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            startupExecutor.shutdown();
+        }
+    }
+
+    private void startStream() {
+        try {
+            streamRunner.start();
+        } catch (TwitterException e) {
+            throw new TwitterToKafkaServiceException("Could not start the twitter stream", e);
+        }
+    }
+}
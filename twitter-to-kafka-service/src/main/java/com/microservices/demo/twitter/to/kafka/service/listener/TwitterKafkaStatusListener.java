@@ -1,40 +1,69 @@
 package com.microservices.demo.twitter.to.kafka.service.listener;
 
-
+import com.microservices.demo.common.logging.SampledEventLogger;
 import com.microservices.demo.config.KafkaConfigData;
 import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
-import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
-import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterStatusToAvroTransformer;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer.StatusWithLanguage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
-import twitter4j.Status;
-import twitter4j.StatusAdapter;
 
+// Entry point of every stream runner: filters the statuses it receives and hands them to the ingest pipeline
 @Component
-public class TwitterKafkaStatusListener extends StatusAdapter {
+public class TwitterKafkaStatusListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterKafkaStatusListener.class);
 
+    // One line per received status would make the stream thread wait for the appenders, they are counted and sampled instead
+    private static final SampledEventLogger RECEIVED_EVENTS = SampledEventLogger.getLogger(TwitterKafkaStatusListener.class, "status.received");
+
     private final KafkaConfigData kafkaConfigData;
 
-    private final KafkaProducer<Long, TwitterAvroModel> kafkaProducer;
+    private final IngestPipeline ingestPipeline;
+
+    private final TwitterJsonToAvroTransformer twitterJsonToAvroTransformer;
 
-    private final TwitterStatusToAvroTransformer twitterStatusToAvroTransformer;
+    private final TweetFilter tweetFilter;
 
-    public TwitterKafkaStatusListener(KafkaConfigData kafkaConfigData, KafkaProducer<Long, TwitterAvroModel> kafkaProducer, TwitterStatusToAvroTransformer twitterStatusToAvroTransformer) {
+    // The language is only read for the tweet filter, unless the pipeline routes by it
+    private final boolean keepLanguage;
+
+    public TwitterKafkaStatusListener(KafkaConfigData kafkaConfigData, IngestPipeline ingestPipeline,
+                                      TwitterJsonToAvroTransformer twitterJsonToAvroTransformer,
+                                      TweetFilter tweetFilter) {
         this.kafkaConfigData = kafkaConfigData;
-        this.kafkaProducer = kafkaProducer;
-        this.twitterStatusToAvroTransformer = twitterStatusToAvroTransformer;
+        this.ingestPipeline = ingestPipeline;
+        this.twitterJsonToAvroTransformer = twitterJsonToAvroTransformer;
+        this.tweetFilter = tweetFilter;
+        this.keepLanguage = ingestPipeline.routesByLanguage();
+    }
+
+    // Raw status json of a stream, read straight into the avro model without building a twitter4j Status
+    public void onRawStatus(String rawJson) {
+        StatusWithLanguage status = twitterJsonToAvroTransformer.getStatusWithLanguageFromJson(rawJson, tweetFilter, keepLanguage);
+        if (status == null) {
+            LOG.debug("Skipping stream message that is not a status or was filtered {}", rawJson);
+            return;
+        }
+        TwitterAvroModel twitterAvroModel = status.twitterAvroModel();
+        if (RECEIVED_EVENTS.record()) {
+            RECEIVED_EVENTS.log("tweetId", twitterAvroModel.getId(), "topic", kafkaConfigData.getTopicName(), "text", twitterAvroModel.getText());
+        }
+        ingestPipeline.accept(twitterAvroModel, status.lang());
     }
 
-    @Override
-    public void onStatus(Status status){
-        LOG.info("Received status text {} sending to kafka topic {}", status.getText(), kafkaConfigData.getTopicName());
-        TwitterAvroModel twitterAvroModel = twitterStatusToAvroTransformer.getTwitterAvroModelFromStatus(status);
-        // Kafka Partition Key: Set the target partition for a message
-        // We used twitterAvroModel.getUserId() as key. That means we want to partition the data using the userId field of Twitter Avro model object
-        // That way the tweets belongs to a user will be inserted to the same partition on the kafka topic
-        kafkaProducer.send(kafkaConfigData.getTopicName(), twitterAvroModel.getUserId(), twitterAvroModel);
+    // A status that already is an avro model, as the mock load generator creates them. Only its text can be filtered
+    public void onTwitterAvroModel(TwitterAvroModel twitterAvroModel) {
+        if (!tweetFilter.accept(twitterAvroModel.getText(), null)) {
+            LOG.debug("Tweet filter rejected status {}", twitterAvroModel.getId());
+            return;
+        }
+        if (RECEIVED_EVENTS.record()) {
+            RECEIVED_EVENTS.log("tweetId", twitterAvroModel.getId(), "topic", kafkaConfigData.getTopicName(), "text", twitterAvroModel.getText());
+        }
+        ingestPipeline.accept(twitterAvroModel);
     }
 }
@@ -0,0 +1,52 @@
+package com.microservices.demo.twitter.to.kafka.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+// Meters of the ingest path before the producer. Hot path meters are registered here once and handed out as fields,
+// callers keep the counter or timer they need, so recording never looks a meter up or builds tags
+@Component
+public class IngestMetrics {
+
+    private static final int TRANSFORM_SAMPLE_RATE = 16;
+
+    private final MeterRegistry meterRegistry;
+
+    private final SampledTimer jsonTransformTimer;
+
+    public IngestMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.jsonTransformTimer = transformTimer("json");
+    }
+
+    // Called once by a runner when it starts, the runner increments the counter for every status it receives
+    public Counter statusesReceived(String runner) {
+        return Counter.builder("twitter.ingest.statuses.received")
+                .description("Statuses received from a stream, before filtering")
+                .tag("runner", runner)
+                .register(meterRegistry);
+    }
+
+    // Statuses a runner skipped because the producer timed out waiting for in-flight capacity under the BLOCK policy
+    public Counter statusesBackpressured(String runner) {
+        return Counter.builder("twitter.ingest.statuses.backpressured")
+                .description("Statuses skipped by a stream because the producer had no capacity within the block timeout")
+                .tag("runner", runner)
+                .register(meterRegistry);
+    }
+
+    // Raw json to avro model in TwitterJsonToAvroTransformer
+    public SampledTimer getJsonTransformTimer() {
+        return jsonTransformTimer;
+    }
+
+    // Sampled and without a histogram, both would cost more than the transformation they measure
+    private SampledTimer transformTimer(String source) {
+        return new SampledTimer(Timer.builder("twitter.ingest.transform")
+                .description("Time to build the avro model of a status, one in " + TRANSFORM_SAMPLE_RATE + " is timed")
+                .tag("source", source)
+                .register(meterRegistry), TRANSFORM_SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,103 @@
+package com.microservices.demo.twitter.to.kafka.service.metrics;
+
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.impl.BatchingIngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.impl.RoutingIngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.impl.TopicLane;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+// Counts the tweet filter, the deduplicator and the batching pipeline already keep, read when the registry is scraped
+// instead of being recorded a second time on the hot path. Bound to the registry by the actuator like any other MeterBinder.
+// The pipeline meters are only there when enable-ingest-pipeline created the pipeline, the lane meters when enable-topic-routing did
+@Component
+public class IngestStateMeterBinder implements MeterBinder {
+
+    private final TweetFilter tweetFilter;
+
+    private final TweetIdDeduplicator tweetIdDeduplicator;
+
+    private final ObjectProvider<BatchingIngestPipeline> batchingIngestPipeline;
+
+    private final ObjectProvider<RoutingIngestPipeline> routingIngestPipeline;
+
+    public IngestStateMeterBinder(TweetFilter tweetFilter, TweetIdDeduplicator tweetIdDeduplicator,
+                                  ObjectProvider<BatchingIngestPipeline> batchingIngestPipeline,
+                                  ObjectProvider<RoutingIngestPipeline> routingIngestPipeline) {
+        this.tweetFilter = tweetFilter;
+        this.tweetIdDeduplicator = tweetIdDeduplicator;
+        this.batchingIngestPipeline = batchingIngestPipeline;
+        this.routingIngestPipeline = routingIngestPipeline;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (TweetFilter.Verdict verdict : TweetFilter.Verdict.values()) {
+            FunctionCounter.builder("twitter.ingest.filter.verdicts", tweetFilter, filter -> filter.getCount(verdict))
+                    .description("Statuses checked by the tweet filter, by verdict")
+                    .tag("verdict", verdict.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("twitter.ingest.dedup.duplicates", tweetIdDeduplicator, TweetIdDeduplicator::getHitCount)
+                .description("Statuses dropped as already sent")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.ingest.dedup.unique", tweetIdDeduplicator, TweetIdDeduplicator::getMissCount)
+                .description("Statuses not seen before within the deduplication window")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.ingest.dedup.early.rotations", tweetIdDeduplicator, TweetIdDeduplicator::getEarlyRotationCount)
+                .description("Deduplication buckets rotated early because they were full")
+                .register(meterRegistry);
+        batchingIngestPipeline.ifAvailable(pipeline -> bindPipeline(pipeline, meterRegistry));
+        routingIngestPipeline.ifAvailable(pipeline -> bindRouting(pipeline, meterRegistry));
+    }
+
+    private static void bindPipeline(BatchingIngestPipeline pipeline, MeterRegistry meterRegistry) {
+        Gauge.builder("twitter.ingest.pipeline.queue.size", pipeline, BatchingIngestPipeline::getQueueSize)
+                .description("Statuses waiting in the ingest pipeline queue")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.ingest.pipeline.dropped", pipeline, BatchingIngestPipeline::getDroppedCount)
+                .description("Statuses dropped by the DROP_OLDEST overflow policy, or by SPILL with a full record spill")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.ingest.pipeline.caller.runs", pipeline, BatchingIngestPipeline::getCallerRunsCount)
+                .description("Statuses transformed and sent on the stream thread by the CALLER_RUNS overflow policy")
+                .register(meterRegistry);
+        FunctionCounter.builder("twitter.ingest.pipeline.spilled", pipeline, BatchingIngestPipeline::getSpilledCount)
+                .description("Statuses diverted to the record spill by the SPILL overflow policy")
+                .register(meterRegistry);
+    }
+
+    private static void bindRouting(RoutingIngestPipeline pipeline, MeterRegistry meterRegistry) {
+        FunctionCounter.builder("twitter.ingest.route.unmatched", pipeline, RoutingIngestPipeline::getUnmatchedCount)
+                .description("Statuses no route matched, sent to the default topic or dropped")
+                .register(meterRegistry);
+        for (TopicLane lane : pipeline.getLanes()) {
+            Gauge.builder("twitter.ingest.route.queue.size", lane, TopicLane::getQueueSize)
+                    .description("Statuses waiting in the lane of a topic")
+                    .tag("topic", lane.getTopicName())
+                    .register(meterRegistry);
+            Gauge.builder("twitter.ingest.route.in.flight.batches", lane, TopicLane::getInFlightBatches)
+                    .description("Batches of a lane sent to kafka and not acknowledged yet")
+                    .tag("topic", lane.getTopicName())
+                    .register(meterRegistry);
+            FunctionCounter.builder("twitter.ingest.route.dropped", lane, TopicLane::getDroppedCount)
+                    .description("Statuses dropped by the DROP_OLDEST overflow policy of a lane, or by SPILL with a full record spill")
+                    .tag("topic", lane.getTopicName())
+                    .register(meterRegistry);
+            FunctionCounter.builder("twitter.ingest.route.caller.runs", lane, TopicLane::getCallerRunsCount)
+                    .description("Statuses sent on the stream thread by the CALLER_RUNS overflow policy of a lane")
+                    .tag("topic", lane.getTopicName())
+                    .register(meterRegistry);
+            FunctionCounter.builder("twitter.ingest.route.spilled", lane, TopicLane::getSpilledCount)
+                    .description("Statuses diverted to the record spill by the SPILL overflow policy of a lane")
+                    .tag("topic", lane.getTopicName())
+                    .register(meterRegistry);
+        }
+    }
+}
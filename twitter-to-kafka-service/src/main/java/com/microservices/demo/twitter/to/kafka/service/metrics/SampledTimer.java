@@ -0,0 +1,34 @@
+package com.microservices.demo.twitter.to.kafka.service.metrics;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Times one call in every sampleRate on average, for steps that take about as long as the clock reads needed to time them.
+// Each call draws from the thread's own random, so the threads calling the transformers share no counter
+public final class SampledTimer {
+
+    private final Timer timer;
+
+    private final int sampleMask;
+
+    SampledTimer(Timer timer, int sampleRate) {
+        if (Integer.bitCount(sampleRate) != 1) {
+            throw new IllegalArgumentException("Sample rate must be a power of two but was " + sampleRate);
+        }
+        this.timer = timer;
+        this.sampleMask = sampleRate - 1;
+    }
+
+    // Start time of a timed call, 0 if this call is not sampled
+    public long start() {
+        return (ThreadLocalRandom.current().nextInt() & sampleMask) == 0 ? System.nanoTime() : 0L;
+    }
+
+    public void stop(long startNanos) {
+        if (startNanos != 0L) {
+            timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
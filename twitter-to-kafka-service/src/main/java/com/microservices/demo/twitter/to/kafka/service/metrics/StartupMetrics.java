@@ -0,0 +1,61 @@
+package com.microservices.demo.twitter.to.kafka.service.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Durations of the startup phases, published as the twitter.startup.phase timer tagged with the phase and logged as one report.
+// Phases overlap with the concurrent startup, so they do not add up to the total
+@Component
+public class StartupMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+
+    public StartupMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(String phase, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Timer.builder("twitter.startup.phase")
+                .description("Time a startup phase took, from the start of the phase until it was done")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        synchronized (phaseMillis) {
+            phaseMillis.put(phase, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    // Starts the phase and records it when its future completes successfully, a failed phase fails the startup anyway
+    public <T> CompletableFuture<T> time(String phase, Supplier<CompletableFuture<T>> phaseStart) {
+        long startNanos = System.nanoTime();
+        return phaseStart.get().whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                record(phase, startNanos);
+            }
+        });
+    }
+
+    public Map<String, Long> getPhaseMillis() {
+        synchronized (phaseMillis) {
+            return new LinkedHashMap<>(phaseMillis);
+        }
+    }
+
+    public void logReport() {
+        LOG.info("Startup phases in ms: {}", getPhaseMillis());
+    }
+}
@@ -0,0 +1,24 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+
+// Hands statuses received from a stream over to kafka. The sources read every status straight into the avro model,
+// implementations decide on which thread the send happens
+public interface IngestPipeline {
+    void accept(TwitterAvroModel twitterAvroModel);
+
+    // For sources that read the language of the status next to the avro model, null when they do not know it
+    default void accept(TwitterAvroModel twitterAvroModel, String lang) {
+        accept(twitterAvroModel);
+    }
+
+    // True if the pipeline routes by language, sources then read the language of every status and pass it along
+    default boolean routesByLanguage() {
+        return false;
+    }
+
+    // True if statuses accepted before kafka is ready wait in a bounded buffer, so a stream can connect before the startup checks are done
+    default boolean isBuffered() {
+        return false;
+    }
+}
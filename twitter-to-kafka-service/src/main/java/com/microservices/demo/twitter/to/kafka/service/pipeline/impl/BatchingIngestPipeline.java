@@ -0,0 +1,291 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData.OverflowPolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.backpressure.SpillReplayer;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.init.KafkaReadiness;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decouples the stream thread from the kafka producer: statuses are queued in a bounded buffer and
+// worker threads drain them in micro-batches and pass them to the producer. The sources hand over the avro model they read
+// the status into. The stream thread only enqueues, the workers check the ids for duplicates after
+// dequeueing, so a status evicted by DROP_OLDEST is not remembered as seen and is sent if it comes again. CALLER_RUNS and SPILL
+// check the id on the stream thread instead, for the statuses that bypass the queue.
+// The workers start draining once kafka is ready, statuses received before that wait in the queue. The reactive pipeline and the topic routing replace it when enabled
+@Component
+@ConditionalOnExpression("${twitter-to-kafka-service.enable-ingest-pipeline:false} && !${twitter-to-kafka-service.enable-reactive-pipeline:false}"
+        + " && !${twitter-to-kafka-service.enable-topic-routing:false}")
+public class BatchingIngestPipeline implements IngestPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchingIngestPipeline.class);
+
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final KafkaProducer<Long, TwitterAvroModel> kafkaProducer;
+
+    private final ExecutorFactory executorFactory;
+
+    private final TweetIdDeduplicator tweetIdDeduplicator;
+
+    private final KafkaReadiness kafkaReadiness;
+
+    private final RecordSpill<Long, TwitterAvroModel> recordSpill;
+
+    private final SpillReplayer spillReplayer;
+
+    private final BlockingQueue<TwitterAvroModel> queue;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final int workerThreads;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final LongAdder callerRunsCount = new LongAdder();
+
+    private final LongAdder spilledCount = new LongAdder();
+
+    private ExecutorService workers;
+
+    private volatile boolean running;
+
+    public BatchingIngestPipeline(TwitterToKafkaServiceConfigData configData,
+                                  KafkaConfigData kafkaConfigData,
+                                  KafkaProducer<Long, TwitterAvroModel> kafkaProducer,
+                                  ExecutorFactory executorFactory,
+                                  TweetIdDeduplicator tweetIdDeduplicator,
+                                  KafkaReadiness kafkaReadiness,
+                                  RecordSpill<Long, TwitterAvroModel> recordSpill,
+                                  SpillReplayer spillReplayer) {
+        this.kafkaConfigData = kafkaConfigData;
+        this.kafkaProducer = kafkaProducer;
+        this.executorFactory = executorFactory;
+        this.tweetIdDeduplicator = tweetIdDeduplicator;
+        this.kafkaReadiness = kafkaReadiness;
+        this.recordSpill = recordSpill;
+        this.spillReplayer = spillReplayer;
+        this.queue = new ArrayBlockingQueue<>(configData.getPipelineQueueCapacity());
+        this.batchSize = configData.getPipelineBatchSize();
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(configData.getPipelineFlushIntervalMs());
+        this.workerThreads = configData.getPipelineWorkerThreads();
+        this.overflowPolicy = configData.getPipelineOverflowPolicy();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        workers = executorFactory.newExecutor("ingest-pipeline", workerThreads);
+        for (int i = 0; i < workerThreads; i++) {
+            workers.submit(this::drainLoop);
+        }
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            spillReplayer.start();
+        }
+        LOG.info("Started ingest pipeline with {} worker(s), batch size {}, queue capacity {} and overflow policy {}",
+                workerThreads, batchSize, queue.remainingCapacity(), overflowPolicy);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (workers != null) {
+            LOG.info("Closing ingest pipeline, {} status(es) left in queue", queue.size());
+            running = false;
+            workers.shutdown();
+            try {
+                workers.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void accept(TwitterAvroModel twitterAvroModel) {
+        enqueue(twitterAvroModel);
+    }
+
+    @Override
+    public boolean isBuffered() {
+        return true;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRunsCount.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    private void enqueue(TwitterAvroModel twitterAvroModel) {
+        switch (overflowPolicy) {
+            case BLOCK -> put(twitterAvroModel);
+            case DROP_OLDEST -> {
+                // Evict from the head until the new status fits, so the queue always holds the most recent statuses
+                while (!queue.offer(twitterAvroModel)) {
+                    if (queue.poll() != null) {
+                        droppedCount.increment();
+                    }
+                }
+            }
+            case CALLER_RUNS -> {
+                if (!queue.offer(twitterAvroModel)) {
+                    // The stream thread sends this one itself, once kafka is ready like the workers
+                    callerRunsCount.increment();
+                    awaitKafkaReadiness();
+                    List<TwitterAvroModel> overflow = new ArrayList<>(1);
+                    overflow.add(twitterAvroModel);
+                    flush(overflow);
+                }
+            }
+            case SPILL -> {
+                if (!queue.offer(twitterAvroModel)) {
+                    spill(twitterAvroModel);
+                }
+            }
+        }
+    }
+
+    private void awaitKafkaReadiness() {
+        try {
+            kafkaReadiness.awaitOpenWhile(() -> running, POLL_SLICE_NANOS, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TwitterToKafkaServiceException("Interrupted while waiting for kafka to be ready!", e);
+        }
+    }
+
+    // Bypasses the queue, so the stream thread checks the id for duplicates
+    private void spill(TwitterAvroModel twitterAvroModel) {
+        String topicName = kafkaConfigData.getTopicName();
+        Map.Entry<Long, TwitterAvroModel> message = toMessage(twitterAvroModel);
+        if (message == null) {
+            return;
+        }
+        if (recordSpill.spill(topicName, message.getKey(), message.getValue())) {
+            spilledCount.increment();
+        } else {
+            droppedCount.increment();
+            LOG.warn("Record spill is full, dropping status {} for kafka topic {}", message.getValue().getId(), topicName);
+        }
+    }
+
+    private void put(TwitterAvroModel twitterAvroModel) {
+        try {
+            queue.put(twitterAvroModel);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TwitterToKafkaServiceException("Interrupted while waiting for space in ingest pipeline!", e);
+        }
+    }
+
+    private void drainLoop() {
+        try {
+            // A shutdown before kafka got ready still drains what was queued, the producer reports what can not be sent
+            kafkaReadiness.awaitOpenWhile(() -> running, POLL_SLICE_NANOS, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+        List<TwitterAvroModel> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Wait for the first status, then keep collecting until the batch is full or the flush interval of the batch has elapsed.
+    // Waits are cut in slices so a shutdown ends the linger right away and the rest of the queue is flushed without waiting
+    private void fillBatch(List<TwitterAvroModel> batch) throws InterruptedException {
+        TwitterAvroModel first = queue.poll(Math.min(flushIntervalNanos, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            TwitterAvroModel next = queue.poll(Math.min(remaining, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void flush(List<TwitterAvroModel> batch) {
+        String topicName = kafkaConfigData.getTopicName();
+        List<Map.Entry<Long, TwitterAvroModel>> messages = new ArrayList<>(batch.size());
+        for (TwitterAvroModel twitterAvroModel : batch) {
+            Map.Entry<Long, TwitterAvroModel> message = toMessage(twitterAvroModel);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        // Failed records are logged by the producer, here we only report the batch as a whole
+        kafkaProducer.sendBatch(topicName, messages).thenAccept(result -> {
+            if (result.hasFailures()) {
+                LOG.warn("{} of {} record(s) in batch failed for kafka topic {}", result.getFailed().size(), messages.size(), topicName);
+            }
+        });
+        LOG.debug("Flushed batch of {} status(es) to kafka topic {}", messages.size(), topicName);
+    }
+
+    // Null for a duplicate
+    private Map.Entry<Long, TwitterAvroModel> toMessage(TwitterAvroModel twitterAvroModel) {
+        if (tweetIdDeduplicator.isDuplicate(twitterAvroModel.getId())) {
+            return null;
+        }
+        return Map.entry(twitterAvroModel.getUserId(), twitterAvroModel);
+    }
+}
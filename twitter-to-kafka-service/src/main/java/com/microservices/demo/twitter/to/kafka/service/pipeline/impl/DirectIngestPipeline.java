@@ -0,0 +1,40 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+// Sends every status on the calling (stream) thread. Used unless the ingest or the reactive pipeline or the topic routing is enabled
+@Component
+@ConditionalOnExpression("!${twitter-to-kafka-service.enable-ingest-pipeline:false} && !${twitter-to-kafka-service.enable-reactive-pipeline:false}"
+        + " && !${twitter-to-kafka-service.enable-topic-routing:false}")
+public class DirectIngestPipeline implements IngestPipeline {
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final KafkaProducer<Long, TwitterAvroModel> kafkaProducer;
+
+    private final TweetIdDeduplicator tweetIdDeduplicator;
+
+    public DirectIngestPipeline(KafkaConfigData kafkaConfigData, KafkaProducer<Long, TwitterAvroModel> kafkaProducer,
+                                TweetIdDeduplicator tweetIdDeduplicator) {
+        this.kafkaConfigData = kafkaConfigData;
+        this.kafkaProducer = kafkaProducer;
+        this.tweetIdDeduplicator = tweetIdDeduplicator;
+    }
+
+    @Override
+    public void accept(TwitterAvroModel twitterAvroModel) {
+        if (tweetIdDeduplicator.isDuplicate(twitterAvroModel.getId())) {
+            return;
+        }
+        // Kafka Partition Key: Set the target partition for a message
+        // We used twitterAvroModel.getUserId() as key. That means we want to partition the data using the userId field of Twitter Avro model object
+        // That way the tweets belongs to a user will be inserted to the same partition on the kafka topic
+        kafkaProducer.send(kafkaConfigData.getTopicName(), twitterAvroModel.getUserId(), twitterAvroModel);
+    }
+}
@@ -0,0 +1,148 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Reactor version of the ingest path: the statuses of the stream are a Flux of avro models that is deduplicated, cut into batches
+// and sent by the kafka producer. The send stage works like a KafkaSender: a batch is one send, and at most maxInFlightBatches
+// wait for their acks. Demand flows back from those acks through the batching and the bounded prefetch of the worker to the
+// StatusFluxSource, where a stream thread waits when there is none. Nothing is buffered beyond the prefetch and the open batches.
+// The topic routing replaces it when enabled
+@Component
+@ConditionalOnExpression("${twitter-to-kafka-service.enable-reactive-pipeline:false} && !${twitter-to-kafka-service.enable-topic-routing:false}")
+public class ReactiveIngestPipeline implements IngestPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveIngestPipeline.class);
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final KafkaProducer<Long, TwitterAvroModel> kafkaProducer;
+
+    private final ExecutorFactory executorFactory;
+
+    private final TweetIdDeduplicator tweetIdDeduplicator;
+
+    private final StatusFluxSource statusFluxSource = new StatusFluxSource();
+
+    private final int prefetch;
+
+    private final int batchSize;
+
+    private final Duration flushInterval;
+
+    private final int maxInFlightBatches;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private Scheduler scheduler;
+
+    private Disposable subscription;
+
+    public ReactiveIngestPipeline(TwitterToKafkaServiceConfigData configData,
+                                  KafkaConfigData kafkaConfigData,
+                                  KafkaProducer<Long, TwitterAvroModel> kafkaProducer,
+                                  ExecutorFactory executorFactory,
+                                  TweetIdDeduplicator tweetIdDeduplicator) {
+        this.kafkaConfigData = kafkaConfigData;
+        this.kafkaProducer = kafkaProducer;
+        this.executorFactory = executorFactory;
+        this.tweetIdDeduplicator = tweetIdDeduplicator;
+        this.prefetch = configData.getPipelineQueueCapacity();
+        this.batchSize = configData.getPipelineBatchSize();
+        this.flushInterval = Duration.ofMillis(configData.getPipelineFlushIntervalMs());
+        this.maxInFlightBatches = configData.getReactiveMaxInFlightBatches();
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Schedulers.fromExecutorService(executorFactory.newExecutor("reactive-pipeline", 1), "reactive-pipeline");
+        subscription = pipeline(statusFluxSource.flux())
+                .doFinally(signal -> terminated.countDown())
+                .subscribe(this::onBatchSent, throwable -> LOG.error("Reactive ingest pipeline stopped", throwable));
+        LOG.info("Started reactive ingest pipeline with batch size {}, prefetch {} and at most {} batch(es) in flight",
+                batchSize, prefetch, maxInFlightBatches);
+    }
+
+    // Completes the source and lets the open batches be sent
+    @PreDestroy
+    public void shutdown() {
+        if (subscription != null) {
+            LOG.info("Closing reactive ingest pipeline");
+            statusFluxSource.complete();
+            try {
+                if (!terminated.await(10, TimeUnit.SECONDS)) {
+                    subscription.dispose();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                subscription.dispose();
+            }
+            scheduler.dispose();
+        }
+    }
+
+    @Override
+    public void accept(TwitterAvroModel twitterAvroModel) {
+        if (!statusFluxSource.push(twitterAvroModel)) {
+            droppedCount.increment();
+        }
+    }
+
+    // Statuses pushed after the shutdown began
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    Flux<BatchSendResult<Long, TwitterAvroModel>> pipeline(Flux<TwitterAvroModel> statuses) {
+        String topicName = kafkaConfigData.getTopicName();
+        return statuses
+                .publishOn(scheduler, prefetch)
+                .filter(twitterAvroModel -> !tweetIdDeduplicator.isDuplicate(twitterAvroModel.getId()))
+                .map(twitterAvroModel -> Map.entry(twitterAvroModel.getUserId(), twitterAvroModel))
+                // Fair backpressure: a batch is only cut when the send stage has asked for one
+                .bufferTimeout(batchSize, flushInterval, true)
+                .flatMap(messages -> send(topicName, messages), maxInFlightBatches, 1);
+    }
+
+    private Mono<BatchSendResult<Long, TwitterAvroModel>> send(String topicName, List<Map.Entry<Long, TwitterAvroModel>> messages) {
+        return Mono.fromFuture(() -> kafkaProducer.sendBatch(topicName, messages))
+                // A failed batch is reported and the pipeline goes on with the next one
+                .onErrorResume(throwable -> {
+                    LOG.error("Error while sending batch of {} record(s) to kafka topic {}", messages.size(), topicName, throwable);
+                    return Mono.empty();
+                });
+    }
+
+    // Failed records are logged by the producer, here we only report the batch as a whole
+    private void onBatchSent(BatchSendResult<Long, TwitterAvroModel> result) {
+        if (result.hasFailures()) {
+            LOG.warn("{} record(s) in batch failed for kafka topic {}", result.getFailed().size(), kafkaConfigData.getTopicName());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TopicRoutingConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData.OverflowPolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.backpressure.SpillReplayer;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.init.KafkaReadiness;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.routing.TopicRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Fans the statuses out to the topics of the topic router, each topic with a TopicLane of its own.
+// The stream thread checks the id for duplicates, routes the status and offers the same model to every lane it is routed to.
+// Every topic is sent by a kafka producer with in-flight slots of its own, so a slow topic only fills up its own lane.
+// Lanes start sending once kafka is ready, statuses received before that wait in their queues
+@Component
+@ConditionalOnProperty(name = "twitter-to-kafka-service.enable-topic-routing", havingValue = "true")
+public class RoutingIngestPipeline implements IngestPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RoutingIngestPipeline.class);
+
+    private final KafkaConfigData kafkaConfigData;
+
+    private final TopicRouter topicRouter;
+
+    private final ExecutorFactory executorFactory;
+
+    private final TweetIdDeduplicator tweetIdDeduplicator;
+
+    private final SpillReplayer spillReplayer;
+
+    // By topic index of the router
+    private final List<TopicLane> lanes;
+
+    public RoutingIngestPipeline(TopicRoutingConfigData topicRoutingConfigData,
+                                 KafkaConfigData kafkaConfigData,
+                                 TopicRouter topicRouter,
+                                 KafkaProducer<Long, TwitterAvroModel> kafkaProducer,
+                                 ExecutorFactory executorFactory,
+                                 TweetIdDeduplicator tweetIdDeduplicator,
+                                 KafkaReadiness kafkaReadiness,
+                                 RecordSpill<Long, TwitterAvroModel> recordSpill,
+                                 SpillReplayer spillReplayer) {
+        this.kafkaConfigData = kafkaConfigData;
+        this.topicRouter = topicRouter;
+        this.executorFactory = executorFactory;
+        this.tweetIdDeduplicator = tweetIdDeduplicator;
+        this.spillReplayer = spillReplayer;
+        topicRouter.getTopics().forEach(kafkaProducer::isolateTopic);
+        this.lanes = topicRouter.getTopics().stream()
+                .map(topicName -> new TopicLane(topicName,
+                        topicRoutingConfigData.getLanes().getOrDefault(topicName, topicRoutingConfigData.getDefaultLane()),
+                        kafkaProducer, kafkaReadiness, recordSpill))
+                .toList();
+    }
+
+    @PostConstruct
+    public void start() {
+        List<String> topicNamesToCreate = kafkaConfigData.getTopicNamesToCreate();
+        for (TopicLane lane : lanes) {
+            if (topicNamesToCreate == null || !topicNamesToCreate.contains(lane.getTopicName())) {
+                LOG.warn("Routed kafka topic {} is not in kafka-config.topic-names-to-create, it has to exist already", lane.getTopicName());
+            }
+            lane.start(executorFactory);
+        }
+        if (lanes.stream().anyMatch(lane -> lane.getOverflowPolicy() == OverflowPolicy.SPILL)) {
+            spillReplayer.start();
+        }
+    }
+
+    // Stops all lanes at once, so they drain their queues side by side
+    @PreDestroy
+    public void shutdown() {
+        LOG.info("Closing routing ingest pipeline");
+        lanes.forEach(TopicLane::stop);
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (TopicLane lane : lanes) {
+            lane.awaitTermination(deadlineNanos);
+        }
+    }
+
+    // Sources that build the avro model themselves, like the mock load generator, do not know the language,
+    // routes with languages do not match these
+    @Override
+    public void accept(TwitterAvroModel twitterAvroModel) {
+        accept(twitterAvroModel, null);
+    }
+
+    @Override
+    public void accept(TwitterAvroModel twitterAvroModel, String lang) {
+        if (tweetIdDeduplicator.isDuplicate(twitterAvroModel.getId())) {
+            return;
+        }
+        long topicBits = topicRouter.route(twitterAvroModel.getText(), twitterAvroModel.getUserId(), lang);
+        if (topicBits != 0) {
+            offer(topicBits, twitterAvroModel);
+        }
+    }
+
+    @Override
+    public boolean isBuffered() {
+        return true;
+    }
+
+    @Override
+    public boolean routesByLanguage() {
+        return topicRouter.routesByLanguage();
+    }
+
+    public List<TopicLane> getLanes() {
+        return lanes;
+    }
+
+    public long getUnmatchedCount() {
+        return topicRouter.getUnmatchedCount();
+    }
+
+    private void offer(long topicBits, TwitterAvroModel twitterAvroModel) {
+        for (long remaining = topicBits; remaining != 0; remaining &= remaining - 1) {
+            lanes.get(Long.numberOfTrailingZeros(remaining)).offer(twitterAvroModel);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Turns the statuses the stream threads push into a Flux. Every stream runner hands its statuses to the listener and the
+// ingest pipeline, so one source serves all of them. A status is only emitted once downstream has asked for it, until then
+// the pushing stream thread waits, so the demand of the pipeline reaches the stream instead of piling up in a buffer.
+// One subscriber only
+class StatusFluxSource {
+
+    private static final long WAIT_SLICE_MS = 100;
+
+    // Requested but not yet emitted
+    private final Semaphore demand = new Semaphore(0);
+
+    private final Flux<TwitterAvroModel> flux;
+
+    private volatile FluxSink<TwitterAvroModel> sink;
+
+    private volatile boolean unbounded;
+
+    private volatile boolean closed;
+
+    StatusFluxSource() {
+        this.flux = Flux.create(fluxSink -> {
+            sink = fluxSink;
+            fluxSink.onRequest(this::request);
+            fluxSink.onDispose(() -> closed = true);
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    Flux<TwitterAvroModel> flux() {
+        return flux;
+    }
+
+    // Waits until downstream has demand, returns false if the source was closed before the status could be emitted
+    boolean push(TwitterAvroModel twitterAvroModel) {
+        try {
+            while (!unbounded && !demand.tryAcquire(WAIT_SLICE_MS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TwitterToKafkaServiceException("Interrupted while waiting for demand of the reactive pipeline!", e);
+        }
+        if (closed) {
+            return false;
+        }
+        sink.next(twitterAvroModel);
+        return true;
+    }
+
+    // Completes the flux, statuses pushed after this are not emitted
+    void complete() {
+        closed = true;
+        FluxSink<TwitterAvroModel> fluxSink = sink;
+        if (fluxSink != null) {
+            fluxSink.complete();
+        }
+    }
+
+    private void request(long requested) {
+        if (requested == Long.MAX_VALUE) {
+            unbounded = true;
+        } else {
+            demand.release((int) Math.min(requested, Integer.MAX_VALUE - demand.availablePermits()));
+        }
+    }
+}
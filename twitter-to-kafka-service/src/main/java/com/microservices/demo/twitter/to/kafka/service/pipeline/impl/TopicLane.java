@@ -0,0 +1,255 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.TopicRoutingConfigData.Lane;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData.OverflowPolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.init.KafkaReadiness;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// One destination topic of the routing pipeline: a bounded queue that its own worker drains in batches, with at most
+// maxInFlightBatches batches waiting for their acks. When the topic is slow the worker waits for its acks, the queue of this
+// lane fills up and overflows by the policy of the lane while the other lanes go on
+public class TopicLane {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopicLane.class);
+
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String topicName;
+
+    private final KafkaProducer<Long, TwitterAvroModel> kafkaProducer;
+
+    private final KafkaReadiness kafkaReadiness;
+
+    private final RecordSpill<Long, TwitterAvroModel> recordSpill;
+
+    private final BlockingQueue<TwitterAvroModel> queue;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    private final int maxInFlightBatches;
+
+    private final Semaphore inFlightBatches;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final LongAdder callerRunsCount = new LongAdder();
+
+    private final LongAdder spilledCount = new LongAdder();
+
+    private ExecutorService worker;
+
+    private volatile boolean running;
+
+    TopicLane(String topicName, Lane lane, KafkaProducer<Long, TwitterAvroModel> kafkaProducer, KafkaReadiness kafkaReadiness,
+              RecordSpill<Long, TwitterAvroModel> recordSpill) {
+        this.topicName = topicName;
+        this.kafkaProducer = kafkaProducer;
+        this.kafkaReadiness = kafkaReadiness;
+        this.recordSpill = recordSpill;
+        this.queue = new ArrayBlockingQueue<>(lane.getQueueCapacity());
+        this.batchSize = lane.getBatchSize();
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(lane.getFlushIntervalMs());
+        this.maxInFlightBatches = lane.getMaxInFlightBatches();
+        this.inFlightBatches = new Semaphore(maxInFlightBatches);
+        this.overflowPolicy = lane.getOverflowPolicy();
+    }
+
+    void start(ExecutorFactory executorFactory) {
+        running = true;
+        worker = executorFactory.newExecutor("topic-lane-" + topicName, 1);
+        worker.submit(this::drainLoop);
+        LOG.info("Started lane of kafka topic {} with batch size {}, queue capacity {}, {} batch(es) in flight and overflow policy {}",
+                topicName, batchSize, queue.remainingCapacity(), maxInFlightBatches, overflowPolicy);
+    }
+
+    // Lets the worker drain the queue and stop, all lanes are stopped first and then awaited
+    void stop() {
+        if (worker != null) {
+            running = false;
+            worker.shutdown();
+        }
+    }
+
+    // A lane still waiting for the acks of a stuck topic at the deadline is interrupted, what is left in its queue is dropped
+    void awaitTermination(long deadlineNanos) {
+        if (worker == null) {
+            return;
+        }
+        try {
+            if (!worker.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                worker.shutdownNow();
+                LOG.warn("Lane of kafka topic {} did not drain in time, dropping {} status(es)", topicName, queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            worker.shutdownNow();
+        }
+    }
+
+    void offer(TwitterAvroModel twitterAvroModel) {
+        switch (overflowPolicy) {
+            case BLOCK -> put(twitterAvroModel);
+            case DROP_OLDEST -> {
+                while (!queue.offer(twitterAvroModel)) {
+                    if (queue.poll() != null) {
+                        droppedCount.increment();
+                    }
+                }
+            }
+            case CALLER_RUNS -> {
+                if (!queue.offer(twitterAvroModel)) {
+                    // The stream thread sends this one itself, past the in-flight limit of the lane but not before kafka is ready
+                    callerRunsCount.increment();
+                    awaitKafkaReadiness();
+                    List<TwitterAvroModel> overflow = new ArrayList<>(1);
+                    overflow.add(twitterAvroModel);
+                    send(overflow, false);
+                }
+            }
+            case SPILL -> {
+                if (!queue.offer(twitterAvroModel)) {
+                    spill(twitterAvroModel);
+                }
+            }
+        }
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public String getTopicName() {
+        return topicName;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getInFlightBatches() {
+        return maxInFlightBatches - inFlightBatches.availablePermits();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRunsCount.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    private void put(TwitterAvroModel twitterAvroModel) {
+        try {
+            queue.put(twitterAvroModel);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TwitterToKafkaServiceException("Interrupted while waiting for space in the lane of kafka topic " + topicName, e);
+        }
+    }
+
+    private void awaitKafkaReadiness() {
+        try {
+            kafkaReadiness.awaitOpenWhile(() -> running, POLL_SLICE_NANOS, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TwitterToKafkaServiceException("Interrupted while waiting for kafka to be ready for the lane of kafka topic " + topicName, e);
+        }
+    }
+
+    private void spill(TwitterAvroModel twitterAvroModel) {
+        if (recordSpill.spill(topicName, twitterAvroModel.getUserId(), twitterAvroModel)) {
+            spilledCount.increment();
+        } else {
+            droppedCount.increment();
+            LOG.warn("Record spill is full, dropping status {} for kafka topic {}", twitterAvroModel.getId(), topicName);
+        }
+    }
+
+    private void drainLoop() {
+        List<TwitterAvroModel> batch = new ArrayList<>(batchSize);
+        try {
+            kafkaReadiness.awaitOpenWhile(() -> running, POLL_SLICE_NANOS, TimeUnit.NANOSECONDS);
+            while (running || !queue.isEmpty()) {
+                fillBatch(batch);
+                if (!batch.isEmpty()) {
+                    inFlightBatches.acquire();
+                    send(batch, true);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.add(batch.size());
+        }
+    }
+
+    // Wait for the first status, then keep collecting until the batch is full or the flush interval of the batch has elapsed
+    private void fillBatch(List<TwitterAvroModel> batch) throws InterruptedException {
+        TwitterAvroModel first = queue.poll(Math.min(flushIntervalNanos, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            TwitterAvroModel next = queue.poll(Math.min(remaining, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void send(List<TwitterAvroModel> batch, boolean inFlight) {
+        List<Map.Entry<Long, TwitterAvroModel>> messages = new ArrayList<>(batch.size());
+        for (TwitterAvroModel twitterAvroModel : batch) {
+            messages.add(Map.entry(twitterAvroModel.getUserId(), twitterAvroModel));
+        }
+        try {
+            // Failed records are logged by the producer, here we only report the batch as a whole
+            kafkaProducer.sendBatch(topicName, messages).whenComplete((result, throwable) -> {
+                if (inFlight) {
+                    inFlightBatches.release();
+                }
+                if (throwable != null) {
+                    LOG.error("Error while sending batch of {} record(s) to kafka topic {}", messages.size(), topicName, throwable);
+                } else if (result.hasFailures()) {
+                    LOG.warn("{} of {} record(s) in batch failed for kafka topic {}", result.getFailed().size(), messages.size(), topicName);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (inFlight) {
+                inFlightBatches.release();
+            }
+            LOG.error("Error while sending batch of {} record(s) to kafka topic {}", messages.size(), topicName, e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.microservices.demo.twitter.to.kafka.service.routing;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TopicRoutingConfigData;
+import com.microservices.demo.config.TopicRoutingConfigData.Route;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.filter.AhoCorasickMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Maps a tweet to its destination topics from the routes of the topic routing configuration.
+// The routes are compiled once into bit masks with one bit per route: every condition yields the routes it lets through,
+// all keywords share one automaton and the user ids are a sorted array, so a tweet is routed with a few lookups and ANDs
+// and one pass over its text, without allocating. The result is a mask over the topic indexes of getTopics()
+@Component
+@ConditionalOnProperty(name = "twitter-to-kafka-service.enable-topic-routing", havingValue = "true")
+public class TopicRouter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopicRouter.class);
+
+    public static final int MAX_ROUTES = Long.SIZE;
+
+    private final List<String> topics;
+
+    // Topic bit of every route
+    private final long[] routeTopicBits;
+
+    private final long allRoutes;
+
+    private final AhoCorasickMatcher keywordMatcher;
+
+    // Routes without a condition of that kind, they let every tweet through
+    private final long anyKeywordRoutes;
+
+    private final long anyUserRoutes;
+
+    private final long anyLanguageRoutes;
+
+    // Sorted user ids and the routes of each
+    private final long[] userIds;
+
+    private final long[] userRoutes;
+
+    private final Map<String, Long> languageRoutes;
+
+    private final long lengthRoutes;
+
+    private final int[] minTextLength;
+
+    private final int[] maxTextLength;
+
+    // Topic bit of the tweets no route matched, 0 drops them
+    private final long unmatchedTopicBit;
+
+    private final LongAdder unmatchedCount = new LongAdder();
+
+    public TopicRouter(TopicRoutingConfigData topicRoutingConfigData, KafkaConfigData kafkaConfigData) {
+        List<Route> routes = topicRoutingConfigData.getRoutes();
+        if (routes.size() > MAX_ROUTES) {
+            throw new TwitterToKafkaServiceException("Topic routing supports up to " + MAX_ROUTES + " routes, " + routes.size() + " are configured");
+        }
+        Map<String, Integer> topicIndexes = new LinkedHashMap<>();
+        routeTopicBits = new long[routes.size()];
+        minTextLength = new int[routes.size()];
+        maxTextLength = new int[routes.size()];
+        Map<String, Long> keywordRoutes = new LinkedHashMap<>();
+        TreeMap<Long, Long> routesByUser = new TreeMap<>();
+        Map<String, Long> routesByLanguage = new HashMap<>();
+        long anyKeyword = 0;
+        long anyUser = 0;
+        long anyLanguage = 0;
+        long withLength = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            long routeBit = 1L << i;
+            if (route.getTopic() == null || route.getTopic().isBlank()) {
+                throw new TwitterToKafkaServiceException("Topic route " + i + " has no topic");
+            }
+            routeTopicBits[i] = 1L << topicIndexes.computeIfAbsent(route.getTopic().trim(), topic -> topicIndexes.size());
+            List<String> keywords = route.getKeywords().stream().map(String::trim).filter(keyword -> !keyword.isEmpty()).toList();
+            if (keywords.isEmpty()) {
+                anyKeyword |= routeBit;
+            }
+            keywords.forEach(keyword -> keywordRoutes.merge(keyword, routeBit, (a, b) -> a | b));
+            if (route.getUserIds().isEmpty()) {
+                anyUser |= routeBit;
+            }
+            route.getUserIds().forEach(userId -> routesByUser.merge(userId, routeBit, (a, b) -> a | b));
+            List<String> languages = route.getLanguages().stream()
+                    .map(language -> language.trim().toLowerCase(Locale.ROOT))
+                    .filter(language -> !language.isEmpty())
+                    .toList();
+            if (languages.isEmpty()) {
+                anyLanguage |= routeBit;
+            }
+            languages.forEach(language -> routesByLanguage.merge(language, routeBit, (a, b) -> a | b));
+            minTextLength[i] = valueOrZero(route.getMinTextLength());
+            maxTextLength[i] = valueOrZero(route.getMaxTextLength());
+            if (minTextLength[i] > 0 || maxTextLength[i] > 0) {
+                withLength |= routeBit;
+            }
+        }
+        int unmatchedTopic = topicRoutingConfigData.getSendUnmatchedToDefaultTopic()
+                ? topicIndexes.computeIfAbsent(kafkaConfigData.getTopicName(), topic -> topicIndexes.size())
+                : -1;
+        if (topicIndexes.size() > Long.SIZE) {
+            throw new TwitterToKafkaServiceException("Topic routing supports up to " + Long.SIZE + " topics including the default topic");
+        }
+        unmatchedTopicBit = unmatchedTopic < 0 ? 0 : 1L << unmatchedTopic;
+        topics = List.copyOf(topicIndexes.keySet());
+        allRoutes = routes.size() == Long.SIZE ? -1L : (1L << routes.size()) - 1;
+        keywordMatcher = new AhoCorasickMatcher(keywordRoutes);
+        anyKeywordRoutes = anyKeyword;
+        anyUserRoutes = anyUser;
+        anyLanguageRoutes = anyLanguage;
+        userIds = routesByUser.keySet().stream().mapToLong(Long::longValue).toArray();
+        userRoutes = routesByUser.values().stream().mapToLong(Long::longValue).toArray();
+        languageRoutes = Map.copyOf(routesByLanguage);
+        lengthRoutes = withLength;
+        LOG.info("Topic router compiled {} route(s) to topics {}, unmatched tweets {}", routes.size(), topics,
+                unmatchedTopicBit == 0 ? "are dropped" : "go to " + kafkaConfigData.getTopicName());
+    }
+
+    // Destination topics, a topic index is its position in the list
+    public List<String> getTopics() {
+        return topics;
+    }
+
+    // Mask of the topic indexes a tweet goes to, 0 if it goes nowhere. lang is null when the source does not know it.
+    // Checks run cheapest first and stop once no route is left, the keyword scan only runs for routes that need it
+    public long route(CharSequence text, long userId, String lang) {
+        long matched = allRoutes;
+        if (userIds.length > 0) {
+            int i = Arrays.binarySearch(userIds, userId);
+            matched &= anyUserRoutes | (i < 0 ? 0 : userRoutes[i]);
+        }
+        if (!languageRoutes.isEmpty()) {
+            matched &= anyLanguageRoutes | (lang == null ? 0 : languageRoutes.getOrDefault(lang.toLowerCase(Locale.ROOT), 0L));
+        }
+        CharSequence body = text == null ? "" : text;
+        if ((matched & lengthRoutes) != 0) {
+            matched &= ~lengthMismatches(body, matched & lengthRoutes);
+        }
+        if ((matched & ~anyKeywordRoutes) != 0) {
+            matched &= anyKeywordRoutes | keywordMatcher.scan(body, 0);
+        }
+        long topicBits = 0;
+        for (long remaining = matched; remaining != 0; remaining &= remaining - 1) {
+            topicBits |= routeTopicBits[Long.numberOfTrailingZeros(remaining)];
+        }
+        if (topicBits == 0) {
+            unmatchedCount.increment();
+            return unmatchedTopicBit;
+        }
+        return topicBits;
+    }
+
+    // True if a route has languages, sources have to pass the language for those to match
+    public boolean routesByLanguage() {
+        return !languageRoutes.isEmpty();
+    }
+
+    // Tweets no route matched, whether they went to the default topic or were dropped
+    public long getUnmatchedCount() {
+        return unmatchedCount.sum();
+    }
+
+    // Counted in code points like twitter does, an emoji is one character
+    private long lengthMismatches(CharSequence text, long routes) {
+        int length = Character.codePointCount(text, 0, text.length());
+        long mismatches = 0;
+        for (long remaining = routes; remaining != 0; remaining &= remaining - 1) {
+            int route = Long.numberOfTrailingZeros(remaining);
+            if (length < minTextLength[route] || (maxTextLength[route] > 0 && length > maxTextLength[route])) {
+                mismatches |= 1L << route;
+            }
+        }
+        return mismatches;
+    }
+
+    private static int valueOrZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,36 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Statuses a runner skipped because the producer had no in-flight capacity within the BLOCK timeout. The stream goes on
+// with the next status instead of dying or reconnecting. A slow broker times out many sends in a row, so the warning is
+// logged at most once a second, with the number skipped so far
+final class BackpressureSkips {
+
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger logger;
+
+    private final Counter skippedCounter;
+
+    private final AtomicLong lastLogNanos = new AtomicLong(System.nanoTime() - LOG_INTERVAL_NANOS);
+
+    BackpressureSkips(Logger logger, Counter skippedCounter) {
+        this.logger = logger;
+        this.skippedCounter = skippedCounter;
+    }
+
+    void skip(ProducerBackpressureException e) {
+        skippedCounter.increment();
+        long now = System.nanoTime();
+        long last = lastLogNanos.get();
+        if (now - last >= LOG_INTERVAL_NANOS && lastLogNanos.compareAndSet(last, now)) {
+            logger.warn("Skipping status, {} skipped so far: {}", (long) skippedCounter.count(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Assigns keywords to stream shards by rendezvous hashing: every keyword goes to the shard with the highest
+// murmur2(keyword#shard). The result only depends on the keyword and the shard count, so every instance and every restart
+// agrees on it, and a change of the keyword list or of the shard count only moves the keywords it has to
+final class KeywordShardAssigner {
+
+    private KeywordShardAssigner() {
+    }
+
+    static int shardOf(String keyword, int shardCount) {
+        String normalizedKeyword = keyword.trim().toLowerCase(Locale.ROOT);
+        int shard = 0;
+        long highestWeight = Long.MIN_VALUE;
+        for (int i = 0; i < shardCount; i++) {
+            long weight = Utils.murmur2((normalizedKeyword + '#' + i).getBytes(StandardCharsets.UTF_8)) & 0xFFFFFFFFL;
+            if (weight > highestWeight) {
+                highestWeight = weight;
+                shard = i;
+            }
+        }
+        return shard;
+    }
+
+    // Keywords per shard index, in the order of the keyword list; shards without keywords get an empty list
+    static List<List<String>> assign(List<String> keywords, int shardCount) {
+        List<List<String>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
+        }
+        keywords.stream().distinct().forEach(keyword -> shards.get(shardOf(keyword, shardCount)).add(keyword));
+        return shards;
+    }
+}
@@ -1,24 +1,21 @@
 package com.microservices.demo.twitter.to.kafka.service.runner.impl;
 
+import com.microservices.demo.common.execution.ExecutorFactory;
 import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
 import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
 import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
 import com.microservices.demo.twitter.to.kafka.service.runner.StreamRunner;
+import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import twitter4j.Status;
 import twitter4j.TwitterException;
-import twitter4j.TwitterObjectFactory;
 
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
-import java.util.Locale;
-import java.util.Random;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @ConditionalOnProperty(name = "twitter-to-kafka-service.enable-mock-tweets", havingValue = "true")
@@ -30,50 +27,32 @@ public class MockKafkaStreamRunner implements StreamRunner {
 
     private final TwitterKafkaStatusListener twitterKafkaStatusListener;
 
-    private static final Random RANDOM = new Random();
+    private final ExecutorFactory executorFactory;
 
-    private static final String[] WORDS = new String[]{
-            "Lorem",
-            "ipsum",
-            "dolor",
-            "sit",
-            "amet",
-            "consectetuer",
-            "adipiscing",
-            "elit",
-            "Maecenas",
-            "porttitor",
-            "congue",
-            "massa",
-            "Fusce",
-            "posuere",
-            "magna",
-            "sed",
-            "pulvinar",
-            "ultricies",
-            "purus",
-            "lectus",
-            "malesuada",
-            "libero"
-    };
+    private final IngestMetrics ingestMetrics;
 
-    private static final String tweetAsRawJson = "{" +
-            "\"created_at\":\"{0}\"," +
-            "\"id\":\"{1}\"," +
-            "\"text\":\"{2}\"," +
-            "\"user\":{\"id\":\"{3}\"}" +
-            "}";
+    private MockTweetLoadGenerator mockTweetLoadGenerator;
 
-    private static final String TWITTER_STATUS_DATE_FORMAT = "EEE MMM dd HH:mm:ss zzz yyyy";
+    private volatile boolean running;
 
     public MockKafkaStreamRunner(TwitterToKafkaServiceConfigData configData,
-                                 TwitterKafkaStatusListener statusListener) {
+                                 TwitterKafkaStatusListener statusListener,
+                                 ExecutorFactory executorFactory,
+                                 IngestMetrics ingestMetrics) {
         this.twitterToKafkaServiceConfigData = configData;
         this.twitterKafkaStatusListener = statusListener;
+        this.executorFactory = executorFactory;
+        this.ingestMetrics = ingestMetrics;
     }
 
     @Override
     public void start() throws TwitterException {
+        if (twitterToKafkaServiceConfigData.getEnableMockLoadTest()) {
+            mockTweetLoadGenerator = new MockTweetLoadGenerator(twitterToKafkaServiceConfigData, twitterKafkaStatusListener, executorFactory,
+                    ingestMetrics.statusesReceived("mock-load"));
+            mockTweetLoadGenerator.start();
+            return;
+        }
         final String[] keywords = twitterToKafkaServiceConfigData.getTwitterKeywords().toArray(new String[0]);
         final int minTweetLength = twitterToKafkaServiceConfigData.getMockMinTweetLength();
         final int maxTweetLength = twitterToKafkaServiceConfigData.getMockMaxTweetLength();
@@ -82,16 +61,33 @@ public class MockKafkaStreamRunner implements StreamRunner {
         simulateTwitterStream(keywords, minTweetLength, maxTweetLength, sleepTimeMs);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (mockTweetLoadGenerator != null) {
+            LOG.info("Stopping mock load test");
+            mockTweetLoadGenerator.stop();
+        }
+    }
+
     private void simulateTwitterStream(String[] keywords, int minTweetLength, int maxTweetLength, long sleepTimeMs) {
-        Executors.newSingleThreadExecutor().submit(() -> {
+        Counter receivedCounter = ingestMetrics.statusesReceived("mock");
+        BackpressureSkips backpressureSkips = new BackpressureSkips(LOG, ingestMetrics.statusesBackpressured("mock"));
+        running = true;
+        executorFactory.startThread("mock-twitter-stream", () -> {
+            MockTweetSynthesizer mockTweetSynthesizer = new MockTweetSynthesizer(keywords, minTweetLength, maxTweetLength);
             try {
-                while (true) {
-                    String formattedTweetAsRawJson = getFormattedTweet(keywords, minTweetLength, maxTweetLength);
-                    Status status = TwitterObjectFactory.createStatus(formattedTweetAsRawJson);
-                    twitterKafkaStatusListener.onStatus(status);
+                while (running) {
+                    String formattedTweetAsRawJson = mockTweetSynthesizer.createTweetAsRawJson();
+                    receivedCounter.increment();
+                    try {
+                        twitterKafkaStatusListener.onRawStatus(formattedTweetAsRawJson);
+                    } catch (ProducerBackpressureException e) {
+                        backpressureSkips.skip(e);
+                    }
                     sleep(sleepTimeMs);
                 }
-            } catch (TwitterException e) {
+            } catch (TwitterToKafkaServiceException e) {
                 LOG.error("Error creating twitter status!", e);
             }
         });
@@ -104,40 +100,4 @@ public class MockKafkaStreamRunner implements StreamRunner {
             throw new TwitterToKafkaServiceException("Error while sleeping for waiting new status to create!!");
         }
     }
-
-    private String getFormattedTweet(String[] keywords, int minTweetLength, int maxTweetLength) {
-        String[] params = new String[]{
-                ZonedDateTime.now().format(DateTimeFormatter.ofPattern(TWITTER_STATUS_DATE_FORMAT, Locale.ENGLISH)),
-                String.valueOf(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE)),
-                getRandomTweetContent(keywords, minTweetLength, maxTweetLength),
-                String.valueOf(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE))
-        };
-        return formatTweetAsJsonWithParams(params);
-    }
-
-    private String formatTweetAsJsonWithParams(String[] params) {
-        String tweet = tweetAsRawJson;
-
-        for (int i = 0; i < params.length; i++) {
-            tweet = tweet.replace("{" + i + "}", params[i]);
-        }
-        return tweet;
-    }
-
-    private String getRandomTweetContent(String[] keywords, int minTweetLength, int maxTweetLength) {
-        StringBuilder tweet = new StringBuilder();
-        int tweetLength = RANDOM.nextInt(maxTweetLength - minTweetLength + 1) + minTweetLength;
-        return constructRandomTweet(keywords, tweet, tweetLength);
-    }
-
-    private String constructRandomTweet(String[] keywords, StringBuilder tweet, int tweetLength) {
-        for (int i = 0; i < tweetLength; i++) {
-            tweet.append(WORDS[RANDOM.nextInt(WORDS.length)]).append(" ");
-            if (i == tweetLength / 2) {
-                tweet.append(keywords[RANDOM.nextInt(keywords.length)]).append(" ");
-            }
-        }
-        return tweet.toString().trim();
-    }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,215 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Load test mode of the MockKafkaStreamRunner. Each generator thread owns an equal share of the target rate and sends on an
+// open-loop schedule: the send time of the n-th tweet is fixed up front, so a slow producer makes the thread fall behind
+// (and shows up as schedule lag) instead of silently lowering the offered rate like a sleep between sends would.
+// Tweets are handed to the status listener as avro models, through the tweet filter into the ingest pipeline, so the load
+// measures the pipeline and the producer and not the generator. With mock-load-test-raw-json they are offered as raw json
+// instead and also take the json parsing of a real stream
+class MockTweetLoadGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MockTweetLoadGenerator.class);
+
+    private static final long FAILURE_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final TwitterKafkaStatusListener twitterKafkaStatusListener;
+
+    private final ExecutorFactory executorFactory;
+
+    private final Counter receivedCounter;
+
+    private final String[] keywords;
+
+    private final int minTweetLength;
+
+    private final int maxTweetLength;
+
+    private final int threads;
+
+    private final long targetTweetsPerSecond;
+
+    private final long durationNanos;
+
+    private final long reportIntervalSeconds;
+
+    private final boolean rawJson;
+
+    private final LongAdder sentCount = new LongAdder();
+
+    private final LongAdder failedCount = new LongAdder();
+
+    // A failing producer fails every send, a warning per failure would flood the log. At most one a second is logged
+    private final AtomicLong lastFailureLogNanos = new AtomicLong(System.nanoTime() - FAILURE_LOG_INTERVAL_NANOS);
+
+    // Largest distance between the scheduled and the actual send time within the current report interval
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Long::max, 0L);
+
+    private final AtomicInteger activeGenerators = new AtomicInteger();
+
+    private CountDownLatch generatorsDone;
+
+    private ScheduledExecutorService reporter;
+
+    private volatile boolean running;
+
+    private long startNanos;
+
+    private long lastReportNanos;
+
+    private long lastReportSentCount;
+
+    MockTweetLoadGenerator(TwitterToKafkaServiceConfigData configData, TwitterKafkaStatusListener statusListener,
+                           ExecutorFactory executorFactory, Counter receivedCounter) {
+        if (configData.getMockLoadTestThreads() <= 0 || configData.getMockLoadTestTweetsPerSecond() <= 0
+                || configData.getMockLoadTestReportIntervalSeconds() <= 0) {
+            throw new TwitterToKafkaServiceException("Mock load test needs threads, tweets per second and report interval above 0, got "
+                    + configData.getMockLoadTestThreads() + ", " + configData.getMockLoadTestTweetsPerSecond() + " and "
+                    + configData.getMockLoadTestReportIntervalSeconds());
+        }
+        this.twitterKafkaStatusListener = statusListener;
+        this.receivedCounter = receivedCounter;
+        this.executorFactory = executorFactory;
+        this.keywords = configData.getTwitterKeywords().toArray(new String[0]);
+        this.minTweetLength = configData.getMockMinTweetLength();
+        this.maxTweetLength = configData.getMockMaxTweetLength();
+        this.threads = configData.getMockLoadTestThreads();
+        this.targetTweetsPerSecond = configData.getMockLoadTestTweetsPerSecond();
+        this.durationNanos = TimeUnit.SECONDS.toNanos(configData.getMockLoadTestDurationSeconds());
+        this.reportIntervalSeconds = configData.getMockLoadTestReportIntervalSeconds();
+        this.rawJson = Boolean.TRUE.equals(configData.getMockLoadTestRawJson());
+    }
+
+    void start() {
+        LOG.info("Starting mock load test with {} generator thread(s) at a target rate of {} tweets/s{}{}", threads,
+                targetTweetsPerSecond, durationNanos > 0 ? " for " + TimeUnit.NANOSECONDS.toSeconds(durationNanos) + "s" : "",
+                rawJson ? " as raw json" : "");
+        running = true;
+        startNanos = System.nanoTime();
+        lastReportNanos = startNanos;
+        generatorsDone = new CountDownLatch(threads);
+        activeGenerators.set(threads);
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mock-load-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+        // Every thread sends one tweet per period, the start of each thread is shifted so the sends are spread evenly
+        double periodNanos = (double) TimeUnit.SECONDS.toNanos(1) * threads / targetTweetsPerSecond;
+        // With virtual threads the generators park between sends without holding a carrier thread
+        ThreadFactory threadFactory = executorFactory.threadFactory("mock-load-generator");
+        for (int i = 0; i < threads; i++) {
+            long firstSendNanos = startNanos + (long) (periodNanos * i / threads);
+            threadFactory.newThread(() -> generate(firstSendNanos, periodNanos)).start();
+        }
+    }
+
+    void stop() {
+        if (running) {
+            running = false;
+            try {
+                generatorsDone.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Waits until every generator has reached the end of its schedule, returns false if they did not within the timeout
+    boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return generatorsDone.await(timeout, unit);
+    }
+
+    long getSentCount() {
+        return sentCount.sum();
+    }
+
+    long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    private void generate(long firstSendNanos, double periodNanos) {
+        MockTweetSynthesizer mockTweetSynthesizer = new MockTweetSynthesizer(keywords, minTweetLength, maxTweetLength);
+        try {
+            long endNanos = durationNanos > 0 ? startNanos + durationNanos : Long.MAX_VALUE;
+            long sequence = 0;
+            while (running) {
+                long scheduledNanos = firstSendNanos + (long) (periodNanos * sequence++);
+                if (scheduledNanos - endNanos >= 0) {
+                    return;
+                }
+                long now;
+                while ((now = System.nanoTime()) - scheduledNanos < 0) {
+                    LockSupport.parkNanos(scheduledNanos - now);
+                }
+                maxLagNanos.accumulate(now - scheduledNanos);
+                receivedCounter.increment();
+                try {
+                    if (rawJson) {
+                        twitterKafkaStatusListener.onRawStatus(mockTweetSynthesizer.createTweetAsRawJson());
+                    } else {
+                        twitterKafkaStatusListener.onTwitterAvroModel(mockTweetSynthesizer.createTweet());
+                    }
+                    sentCount.increment();
+                } catch (Exception e) {
+                    failedCount.increment();
+                    logFailure(e);
+                }
+            }
+        } finally {
+            // The last generator to finish reports the overall result
+            if (activeGenerators.decrementAndGet() == 0) {
+                finish();
+            }
+            generatorsDone.countDown();
+        }
+    }
+
+    private void logFailure(Exception e) {
+        long now = System.nanoTime();
+        long last = lastFailureLogNanos.get();
+        if (now - last >= FAILURE_LOG_INTERVAL_NANOS && lastFailureLogNanos.compareAndSet(last, now)) {
+            LOG.warn("Error while sending mock tweet, {} failed so far", failedCount.sum(), e);
+        }
+    }
+
+    private void finish() {
+        running = false;
+        reporter.shutdown();
+        long sent = sentCount.sum();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        LOG.info("Mock load test finished: sent {} tweet(s) in {}s, achieved {} tweets/s of target {} tweets/s, {} failed",
+                sent, String.format("%.1f", seconds), Math.round(sent / seconds), targetTweetsPerSecond, failedCount.sum());
+    }
+
+    private void report() {
+        long now = System.nanoTime();
+        long sent = sentCount.sum();
+        double seconds = (now - lastReportNanos) / 1e9;
+        long achieved = Math.round((sent - lastReportSentCount) / seconds);
+        long lagMs = TimeUnit.NANOSECONDS.toMillis(maxLagNanos.getThenReset());
+        LOG.info("Mock load test: achieved {} tweets/s of target {} tweets/s ({}%), {} sent, {} failed, max schedule lag {} ms",
+                achieved, targetTweetsPerSecond, achieved * 100 / targetTweetsPerSecond, sent, failedCount.sum(), lagMs);
+        lastReportNanos = now;
+        lastReportSentCount = sent;
+    }
+}
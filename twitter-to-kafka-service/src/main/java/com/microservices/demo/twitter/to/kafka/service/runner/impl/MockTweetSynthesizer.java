@@ -0,0 +1,181 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Builds mock tweets from word tables that are encoded to UTF-8 once, into a buffer that is reused for every tweet.
+// The only objects left per tweet are the ones handed out (the text or json string and the avro model), so the
+// generator does not add its own garbage to the latency numbers of a soak test. Not thread safe, use one instance per thread
+public class MockTweetSynthesizer {
+
+    private static final String[] WORDS = new String[]{
+            "Lorem",
+            "ipsum",
+            "dolor",
+            "sit",
+            "amet",
+            "consectetuer",
+            "adipiscing",
+            "elit",
+            "Maecenas",
+            "porttitor",
+            "congue",
+            "massa",
+            "Fusce",
+            "posuere",
+            "magna",
+            "sed",
+            "pulvinar",
+            "ultricies",
+            "purus",
+            "lectus",
+            "malesuada",
+            "libero"
+    };
+
+    private static final byte[][] WORD_BYTES = toUtf8(WORDS);
+
+    private static final String TWITTER_STATUS_DATE_FORMAT = "EEE MMM dd HH:mm:ss zzz yyyy";
+
+    // DateTimeFormatter is immutable, building it for every tweet was the most expensive part of the old json template
+    private static final DateTimeFormatter TWITTER_STATUS_DATE_FORMATTER =
+            DateTimeFormatter.ofPattern(TWITTER_STATUS_DATE_FORMAT, Locale.ENGLISH).withZone(ZoneId.systemDefault());
+
+    private static final byte[] JSON_CREATED_AT = utf8("{\"created_at\":\"");
+
+    private static final byte[] JSON_ID = utf8("\",\"id\":\"");
+
+    private static final byte[] JSON_TEXT = utf8("\",\"text\":\"");
+
+    private static final byte[] JSON_USER_ID = utf8("\",\"user\":{\"id\":\"");
+
+    private static final byte[] JSON_END = utf8("\"}}");
+
+    // Enough for a twitter date with a long zone name
+    private static final int MAX_CREATED_AT_BYTES = 64;
+
+    private static final int MAX_LONG_DIGITS = 19;
+
+    private final byte[][] keywordBytes;
+
+    private final int minTweetLength;
+
+    private final int maxTweetLength;
+
+    private final byte[] buffer;
+
+    private int length;
+
+    // The created_at text only changes once a second, so it is formatted once per second and copied from here
+    private final byte[] createdAtBytes = new byte[MAX_CREATED_AT_BYTES];
+
+    private int createdAtLength;
+
+    private long createdAtSecond = Long.MIN_VALUE;
+
+    public MockTweetSynthesizer(String[] keywords, int minTweetLength, int maxTweetLength) {
+        this.keywordBytes = toUtf8(keywords);
+        this.minTweetLength = minTweetLength;
+        this.maxTweetLength = maxTweetLength;
+        // Sized for the longest possible tweet, so the buffer never grows
+        int maxTextBytes = maxTweetLength * (maxLength(WORD_BYTES) + 1) + maxLength(keywordBytes) + 1;
+        this.buffer = new byte[maxTextBytes + JSON_CREATED_AT.length + MAX_CREATED_AT_BYTES + JSON_ID.length + JSON_TEXT.length
+                + JSON_USER_ID.length + JSON_END.length + 2 * MAX_LONG_DIGITS];
+    }
+
+    public TwitterAvroModel createTweet() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        length = 0;
+        appendRandomTweetContent(random);
+        return new TwitterAvroModel(random.nextLong(Long.MAX_VALUE), random.nextLong(Long.MAX_VALUE),
+                new String(buffer, 0, length, StandardCharsets.UTF_8), System.currentTimeMillis());
+    }
+
+    // Same json as the template the mock stream used to fill with String.replace, to be parsed by twitter4j
+    public String createTweetAsRawJson() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        length = 0;
+        append(JSON_CREATED_AT);
+        appendCreatedAt(System.currentTimeMillis());
+        append(JSON_ID);
+        appendLong(random.nextLong(Long.MAX_VALUE));
+        append(JSON_TEXT);
+        appendRandomTweetContent(random);
+        append(JSON_USER_ID);
+        appendLong(random.nextLong(Long.MAX_VALUE));
+        append(JSON_END);
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Random words separated by a space, with a keyword after the middle word
+    private void appendRandomTweetContent(ThreadLocalRandom random) {
+        int tweetLength = random.nextInt(maxTweetLength - minTweetLength + 1) + minTweetLength;
+        for (int i = 0; i < tweetLength; i++) {
+            if (i > 0) {
+                buffer[length++] = ' ';
+            }
+            append(WORD_BYTES[random.nextInt(WORD_BYTES.length)]);
+            if (i == tweetLength / 2) {
+                buffer[length++] = ' ';
+                append(keywordBytes[random.nextInt(keywordBytes.length)]);
+            }
+        }
+    }
+
+    private void appendCreatedAt(long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+        if (second != createdAtSecond) {
+            byte[] formatted = utf8(TWITTER_STATUS_DATE_FORMATTER.format(Instant.ofEpochSecond(second)));
+            createdAtLength = Math.min(formatted.length, MAX_CREATED_AT_BYTES);
+            System.arraycopy(formatted, 0, createdAtBytes, 0, createdAtLength);
+            createdAtSecond = second;
+        }
+        System.arraycopy(createdAtBytes, 0, buffer, length, createdAtLength);
+        length += createdAtLength;
+    }
+
+    // Writes a non-negative long as decimal digits, without going through Long.toString
+    private void appendLong(long value) {
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    private void append(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private static byte[][] toUtf8(String[] values) {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = utf8(values[i]);
+        }
+        return bytes;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int maxLength(byte[][] values) {
+        int max = 0;
+        for (byte[] value : values) {
+            max = Math.max(max, value.length);
+        }
+        return max;
+    }
+}
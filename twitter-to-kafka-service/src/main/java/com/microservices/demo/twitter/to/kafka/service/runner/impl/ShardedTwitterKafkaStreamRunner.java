@@ -0,0 +1,173 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.runner.StreamRunner;
+import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import twitter4j.TwitterStream;
+import twitter4j.TwitterStreamFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Splits the keywords over twitter-stream-shards twitter4j streams instead of putting all of them into one filter query,
+// so no single connection and callback thread carries the whole load. Every shard hands its statuses to the ingest pipeline
+// through a lane of its own, see TwitterStreamShard. Keywords are assigned by KeywordShardAssigner.
+// When the configuration is refreshed (POST /actuator/refresh), only the shards whose keywords changed reconnect
+@Component
+@ConditionalOnExpression("not ${twitter-to-kafka-service.enable-mock-tweets} && not ${twitter-to-kafka-service.enable-v2-tweets:false}"
+        + " && ${twitter-to-kafka-service.twitter-stream-shards:1} > 1")
+public class ShardedTwitterKafkaStreamRunner implements StreamRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedTwitterKafkaStreamRunner.class);
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 10000;
+
+    private final TwitterToKafkaServiceConfigData twitterToKafkaServiceConfigData;
+
+    private final TwitterKafkaStatusListener twitterKafkaStatusListener;
+
+    private final ExecutorFactory executorFactory;
+
+    private final Supplier<TwitterStream> twitterStreamFactory;
+
+    // Shared by all shards
+    private final Counter receivedCounter;
+
+    private final BackpressureSkips backpressureSkips;
+
+    // Running shards by index; start, rebalance and shutdown take the lock, the shards themselves are not touched by it
+    private final TreeMap<Integer, TwitterStreamShard> shards = new TreeMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ScheduledExecutorService healthReporter;
+
+    private volatile boolean started;
+
+    public ShardedTwitterKafkaStreamRunner(TwitterToKafkaServiceConfigData configData,
+                                           TwitterKafkaStatusListener statusListener,
+                                           ExecutorFactory executorFactory,
+                                           IngestMetrics ingestMetrics) {
+        this(configData, statusListener, executorFactory, ingestMetrics, () -> new TwitterStreamFactory().getInstance());
+    }
+
+    ShardedTwitterKafkaStreamRunner(TwitterToKafkaServiceConfigData configData,
+                                    TwitterKafkaStatusListener statusListener,
+                                    ExecutorFactory executorFactory,
+                                    IngestMetrics ingestMetrics,
+                                    Supplier<TwitterStream> twitterStreamFactory) {
+        this.twitterToKafkaServiceConfigData = configData;
+        this.twitterKafkaStatusListener = statusListener;
+        this.executorFactory = executorFactory;
+        this.twitterStreamFactory = twitterStreamFactory;
+        this.receivedCounter = ingestMetrics.statusesReceived("twitter-v1-sharded");
+        this.backpressureSkips = new BackpressureSkips(LOG, ingestMetrics.statusesBackpressured("twitter-v1-sharded"));
+    }
+
+    @Override
+    public void start() {
+        started = true;
+        rebalance();
+        long healthIntervalSeconds = twitterToKafkaServiceConfigData.getTwitterStreamShardHealthIntervalSeconds();
+        if (healthIntervalSeconds > 0) {
+            healthReporter = Executors.newSingleThreadScheduledExecutor(executorFactory.threadFactory("twitter-shard-health"));
+            healthReporter.scheduleAtFixedRate(this::reportHealth, healthIntervalSeconds, healthIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Runs after the refreshed configuration has been bound again
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onConfigurationRefresh() {
+        if (started) {
+            rebalance();
+        }
+    }
+
+    public void rebalance() {
+        lock.lock();
+        try {
+            int shardCount = twitterToKafkaServiceConfigData.getTwitterStreamShards();
+            List<List<String>> assignment = KeywordShardAssigner.assign(twitterToKafkaServiceConfigData.getTwitterKeywords(), shardCount);
+            int highestShard = shards.isEmpty() ? -1 : shards.lastKey();
+            for (int i = 0; i < Math.max(shardCount, highestShard + 1); i++) {
+                List<String> keywords = i < shardCount ? assignment.get(i) : List.of();
+                TwitterStreamShard shard = shards.get(i);
+                if (keywords.isEmpty()) {
+                    if (shard != null) {
+                        shard.stop();
+                        shards.remove(i);
+                    }
+                } else if (shard == null) {
+                    shard = new TwitterStreamShard(i, keywords, twitterKafkaStatusListener, twitterStreamFactory.get(),
+                            twitterToKafkaServiceConfigData.getTwitterStreamShardQueueCapacity(), receivedCounter, backpressureSkips);
+                    shards.put(i, shard);
+                    shard.start(executorFactory);
+                } else if (!shard.getKeywords().equals(keywords)) {
+                    shard.updateKeywords(keywords);
+                }
+            }
+            LOG.info("Running {} twitter stream shard(s) for {} keyword(s)", shards.size(), twitterToKafkaServiceConfigData.getTwitterKeywords().size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    List<TwitterStreamShard.Health> getShardHealth() {
+        lock.lock();
+        try {
+            List<TwitterStreamShard.Health> health = new ArrayList<>(shards.size());
+            shards.values().forEach(shard -> health.add(shard.health()));
+            return health;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        started = false;
+        if (healthReporter != null) {
+            healthReporter.shutdownNow();
+        }
+        lock.lock();
+        try {
+            LOG.info("Closing {} twitter stream shard(s)!", shards.size());
+            shards.values().forEach(TwitterStreamShard::stop);
+            long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+            for (TwitterStreamShard shard : shards.values()) {
+                shard.awaitTermination(deadlineNanos);
+            }
+            shards.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reportHealth() {
+        for (TwitterStreamShard.Health health : getShardHealth()) {
+            if (health.connected()) {
+                LOG.info("Twitter stream shard {}: connected, {} received, {} errors, {} queued, last message {} ms ago, keywords {}",
+                        health.shard(), health.receivedCount(), health.errorCount(), health.queuedCount(), health.lastMessageAgeMs(), health.keywords());
+            } else {
+                LOG.warn("Twitter stream shard {}: disconnected, {} received, {} errors, {} queued, last message {} ms ago, keywords {}",
+                        health.shard(), health.receivedCount(), health.errorCount(), health.queuedCount(), health.lastMessageAgeMs(), health.keywords());
+            }
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.microservices.demo.twitter.to.kafka.service.runner.impl;
 
 import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
 import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
 import com.microservices.demo.twitter.to.kafka.service.runner.StreamRunner;
+import io.micrometer.core.instrument.Counter;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,6 +14,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import twitter4j.FilterQuery;
+import twitter4j.RawStreamListener;
 import twitter4j.TwitterException;
 import twitter4j.TwitterStream;
 import twitter4j.TwitterStreamFactory;
@@ -17,7 +22,8 @@ import twitter4j.TwitterStreamFactory;
 import java.util.Arrays;
 
 @Component
-@ConditionalOnExpression("not ${twitter-to-kafka-service.enable-mock-tweets}")
+@ConditionalOnExpression("not ${twitter-to-kafka-service.enable-mock-tweets} && not ${twitter-to-kafka-service.enable-v2-tweets:false}"
+        + " && ${twitter-to-kafka-service.twitter-stream-shards:1} <= 1")
 public class TwitterKafkaStreamRunner implements StreamRunner {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitterKafkaStreamRunner.class);
@@ -26,18 +32,44 @@ public class TwitterKafkaStreamRunner implements StreamRunner {
 
     private final TwitterKafkaStatusListener twitterKafkaStatusListener;
 
+    private final Counter receivedCounter;
+
+    private final BackpressureSkips backpressureSkips;
+
     private TwitterStream twitterStream;
 
     public TwitterKafkaStreamRunner(TwitterToKafkaServiceConfigData configData,
-                                    TwitterKafkaStatusListener statusListener) {
+                                    TwitterKafkaStatusListener statusListener,
+                                    IngestMetrics ingestMetrics) {
         this.twitterToKafkaServiceConfigData = configData;
         this.twitterKafkaStatusListener = statusListener;
+        this.receivedCounter = ingestMetrics.statusesReceived("twitter-v1");
+        this.backpressureSkips = new BackpressureSkips(LOG, ingestMetrics.statusesBackpressured("twitter-v1"));
     }
 
     @Override
     public void start() throws TwitterException {
         twitterStream = new TwitterStreamFactory().getInstance();
-        twitterStream.addListener(twitterKafkaStatusListener);
+        // Only a raw listener is registered, so twitter4j hands over the json lines without parsing them into statuses
+        twitterStream.addListener(new RawStreamListener() {
+            @Override
+            public void onMessage(String rawString) {
+                receivedCounter.increment();
+                try {
+                    twitterKafkaStatusListener.onRawStatus(rawString);
+                } catch (ProducerBackpressureException e) {
+                    // A BLOCK timeout is about this status only, it is counted instead of surfacing as a stream error
+                    backpressureSkips.skip(e);
+                } catch (TwitterToKafkaServiceException e) {
+                    LOG.warn("Skipping unreadable twitter stream message", e);
+                }
+            }
+
+            @Override
+            public void onException(Exception ex) {
+                LOG.error("Error on twitter stream", ex);
+            }
+        });
         addFilter();
     }
 
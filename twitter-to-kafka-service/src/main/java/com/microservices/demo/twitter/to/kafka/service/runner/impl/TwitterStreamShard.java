@@ -0,0 +1,191 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import twitter4j.ConnectionLifeCycleListener;
+import twitter4j.FilterQuery;
+import twitter4j.RawStreamListener;
+import twitter4j.TwitterStream;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One twitter4j stream filtering a subset of the keywords, with a lane of its own: the stream's callback thread only
+// queues the raw json in a bounded queue, and the lane worker parses it and hands it to the ingest pipeline. A slow
+// send or a burst of this shard's keywords stalls this lane alone, the callback threads of the other shards keep reading.
+// A full lane blocks the callback thread, which stops reading from this shard's connection
+class TwitterStreamShard implements RawStreamListener, ConnectionLifeCycleListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterStreamShard.class);
+
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int index;
+
+    private final TwitterKafkaStatusListener twitterKafkaStatusListener;
+
+    private final BlockingQueue<String> lane;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final Counter receivedCounter;
+
+    private final BackpressureSkips backpressureSkips;
+
+    private final TwitterStream twitterStream;
+
+    private ExecutorService worker;
+
+    private volatile List<String> keywords;
+
+    private volatile boolean connected;
+
+    private volatile long lastMessageMillis;
+
+    private volatile boolean running;
+
+    TwitterStreamShard(int index, List<String> keywords, TwitterKafkaStatusListener statusListener, TwitterStream twitterStream,
+                       int laneCapacity, Counter receivedCounter, BackpressureSkips backpressureSkips) {
+        this.index = index;
+        this.keywords = keywords;
+        this.twitterKafkaStatusListener = statusListener;
+        this.twitterStream = twitterStream;
+        this.lane = new ArrayBlockingQueue<>(laneCapacity);
+        this.receivedCounter = receivedCounter;
+        this.backpressureSkips = backpressureSkips;
+        this.lastMessageMillis = System.currentTimeMillis();
+    }
+
+    void start(ExecutorFactory executorFactory) {
+        running = true;
+        worker = executorFactory.newExecutor("twitter-shard-" + index + "-lane", 1);
+        worker.submit(this::drainLane);
+        twitterStream.addListener(this);
+        twitterStream.addConnectionLifeCycleListener(this);
+        filter(keywords);
+    }
+
+    List<String> getKeywords() {
+        return keywords;
+    }
+
+    // twitter4j closes the current connection and opens a new one with the new filter
+    void updateKeywords(List<String> newKeywords) {
+        LOG.info("Shard {} keywords change from {} to {}", index, keywords, newKeywords);
+        keywords = newKeywords;
+        filter(newKeywords);
+    }
+
+    // Closes the connection and lets the lane worker send what is still queued, then awaitTermination waits for it
+    void stop() {
+        LOG.info("Stopping twitter stream shard {} with keywords {}", index, keywords);
+        twitterStream.shutdown();
+        running = false;
+        if (worker != null) {
+            worker.shutdown();
+        }
+    }
+
+    // A lane still busy at the deadline is interrupted, what is left in its queue is dropped
+    void awaitTermination(long deadlineNanos) {
+        if (worker == null) {
+            return;
+        }
+        try {
+            if (!worker.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                worker.shutdownNow();
+                LOG.warn("Lane of twitter stream shard {} did not drain in time, dropping {} status(es)", index, lane.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            worker.shutdownNow();
+        }
+    }
+
+    Health health() {
+        return new Health(index, keywords, connected, receivedCount.get(), errorCount.get(), lane.size(),
+                System.currentTimeMillis() - lastMessageMillis);
+    }
+
+    @Override
+    public void onMessage(String rawString) {
+        receivedCount.incrementAndGet();
+        receivedCounter.increment();
+        lastMessageMillis = System.currentTimeMillis();
+        try {
+            lane.put(rawString);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onException(Exception ex) {
+        errorCount.incrementAndGet();
+        LOG.error("Error on twitter stream shard {}", index, ex);
+    }
+
+    @Override
+    public void onConnect() {
+        connected = true;
+        LOG.info("Twitter stream shard {} connected", index);
+    }
+
+    @Override
+    public void onDisconnect() {
+        connected = false;
+        LOG.warn("Twitter stream shard {} disconnected", index);
+    }
+
+    @Override
+    public void onCleanUp() {
+        connected = false;
+    }
+
+    private void filter(List<String> keywords) {
+        twitterStream.filter(new FilterQuery(keywords.toArray(new String[0])));
+        LOG.info("Started filtering twitter stream shard {} for keywords {}", index, keywords);
+    }
+
+    private void drainLane() {
+        try {
+            while (running || !lane.isEmpty()) {
+                String rawJson = lane.poll(POLL_SLICE_NANOS, TimeUnit.NANOSECONDS);
+                if (rawJson != null) {
+                    send(rawJson);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(String rawJson) {
+        try {
+            twitterKafkaStatusListener.onRawStatus(rawJson);
+        } catch (ProducerBackpressureException e) {
+            backpressureSkips.skip(e);
+        } catch (TwitterToKafkaServiceException e) {
+            errorCount.incrementAndGet();
+            LOG.warn("Skipping unreadable message on twitter stream shard {}", index, e);
+        } catch (RuntimeException e) {
+            errorCount.incrementAndGet();
+            LOG.error("Error while sending message of twitter stream shard {}", index, e);
+        }
+    }
+
+    record Health(int shard, List<String> keywords, boolean connected, long receivedCount, long errorCount,
+                  int queuedCount, long lastMessageAgeMs) {
+    }
+}
@@ -0,0 +1,155 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.RetryConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.runner.StreamRunner;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+// Consumes the twitter api v2 filtered stream with the non-blocking WebClient. The response body arrives as a flux of
+// netty buffers which are decoded on a single stream thread, so a blocking ingest pipeline never stalls the event loop;
+// while that thread is busy, demand stops and netty stops reading from the socket instead of buffering the firehose.
+// Dropped connections are opened again with exponential backoff between retry-config initial and max interval
+@Component
+@ConditionalOnExpression("${twitter-to-kafka-service.enable-v2-tweets:false} && not ${twitter-to-kafka-service.enable-mock-tweets}")
+public class TwitterV2KafkaStreamRunner implements StreamRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterV2KafkaStreamRunner.class);
+
+    private final TwitterToKafkaServiceConfigData twitterToKafkaServiceConfigData;
+
+    private final RetryConfigData retryConfigData;
+
+    private final IngestPipeline ingestPipeline;
+
+    private final TweetFilter tweetFilter;
+
+    private final TwitterJsonToAvroTransformer twitterJsonToAvroTransformer;
+
+    private final WebClient webClient;
+
+    private final ExecutorFactory executorFactory;
+
+    private final IngestMetrics ingestMetrics;
+
+    private ExecutorService streamExecutor;
+
+    private Disposable subscription;
+
+    public TwitterV2KafkaStreamRunner(TwitterToKafkaServiceConfigData configData,
+                                      RetryConfigData retryConfigData,
+                                      IngestPipeline ingestPipeline,
+                                      TweetFilter tweetFilter,
+                                      TwitterJsonToAvroTransformer twitterJsonToAvroTransformer,
+                                      WebClient webClient,
+                                      ExecutorFactory executorFactory,
+                                      IngestMetrics ingestMetrics) {
+        this.twitterToKafkaServiceConfigData = configData;
+        this.retryConfigData = retryConfigData;
+        this.ingestPipeline = ingestPipeline;
+        this.tweetFilter = tweetFilter;
+        this.twitterJsonToAvroTransformer = twitterJsonToAvroTransformer;
+        this.webClient = webClient;
+        this.executorFactory = executorFactory;
+        this.ingestMetrics = ingestMetrics;
+    }
+
+    @Override
+    public void start() {
+        List<String> keywords = twitterToKafkaServiceConfigData.getTwitterKeywords();
+        String bearerToken = twitterToKafkaServiceConfigData.getTwitterV2BearerToken();
+        new TwitterV2RuleManager(webClient, twitterToKafkaServiceConfigData.getTwitterV2RulesBaseUrl(), bearerToken)
+                .updateRules(keywords);
+
+        URI streamUri = getStreamUri(twitterToKafkaServiceConfigData.getTwitterV2BaseUrl());
+        Duration initialBackoff = Duration.ofMillis(retryConfigData.getInitialIntervalMs());
+        Duration maxBackoff = Duration.ofMillis(retryConfigData.getMaxIntervalMs());
+        streamExecutor = executorFactory.newExecutor("twitter-v2-stream", 1);
+        Scheduler streamScheduler = Schedulers.fromExecutorService(streamExecutor);
+        BackpressureSkips backpressureSkips = new BackpressureSkips(LOG, ingestMetrics.statusesBackpressured("twitter-v2"));
+        // A producer timeout is about one tweet, not the connection: it is counted and the stream goes on without reconnecting
+        TwitterV2TweetDecoder tweetDecoder = new TwitterV2TweetDecoder(twitterJsonToAvroTransformer, tweetFilter,
+                ingestPipeline.routesByLanguage(), ingestMetrics.statusesReceived("twitter-v2"), (twitterAvroModel, lang) -> {
+                    try {
+                        ingestPipeline.accept(twitterAvroModel, lang);
+                    } catch (ProducerBackpressureException e) {
+                        backpressureSkips.skip(e);
+                    }
+                });
+
+        subscription = Flux.defer(() -> {
+                    // A new connection starts at a line boundary, whatever was left of the previous one is dropped
+                    tweetDecoder.reset();
+                    LOG.info("Connecting to twitter v2 filtered stream {}", streamUri);
+                    return webClient.get()
+                            .uri(streamUri)
+                            .headers(headers -> headers.setBearerAuth(bearerToken))
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class);
+                })
+                .publishOn(streamScheduler)
+                .map(dataBuffer -> {
+                    try {
+                        tweetDecoder.decode(dataBuffer);
+                    } finally {
+                        DataBufferUtils.release(dataBuffer);
+                    }
+                    return Boolean.TRUE;
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, initialBackoff)
+                        .maxBackoff(maxBackoff)
+                        // The backoff starts over once a connection delivered data again
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> LOG.warn("Twitter v2 stream failed, reconnecting", signal.failure())))
+                .then()
+                .repeatWhen(completed -> completed
+                        .doOnNext(signal -> LOG.warn("Twitter v2 stream was closed by the server, reconnecting"))
+                        .delayElements(initialBackoff))
+                .subscribe(null, e -> LOG.error("Twitter v2 stream stopped", e));
+        LOG.info("Started filtering twitter v2 stream for keywords {}", keywords);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (subscription != null) {
+            LOG.info("Closing twitter v2 stream!");
+            subscription.dispose();
+            streamExecutor.shutdownNow();
+        }
+    }
+
+    // The tweet fields the decoder reads are not in the default v2 payload, ask for them unless the url already selects fields
+    static URI getStreamUri(String baseUrl) {
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(baseUrl);
+        MultiValueMap<String, String> queryParams = uriBuilder.build().getQueryParams();
+        if (!queryParams.containsKey("tweet.fields")) {
+            uriBuilder.queryParam("tweet.fields", "author_id,created_at,lang");
+        }
+        return uriBuilder.build().toUri();
+    }
+}
@@ -0,0 +1,94 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps the rules of the v2 filtered stream in line with the configured keywords: one rule per keyword, rules for keywords
+// that are no longer configured are deleted and rules that already exist are left alone, so a restart does not churn them
+class TwitterV2RuleManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterV2RuleManager.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final WebClient webClient;
+
+    private final String rulesUrl;
+
+    private final String bearerToken;
+
+    TwitterV2RuleManager(WebClient webClient, String rulesUrl, String bearerToken) {
+        this.webClient = webClient;
+        this.rulesUrl = rulesUrl;
+        this.bearerToken = bearerToken;
+    }
+
+    void updateRules(List<String> keywords) {
+        Map<String, String> ruleIdsByValue = getRules();
+        List<String> staleRuleIds = new ArrayList<>();
+        ruleIdsByValue.forEach((value, id) -> {
+            if (!keywords.contains(value)) {
+                staleRuleIds.add(id);
+            }
+        });
+        List<String> missingKeywords = keywords.stream().filter(keyword -> !ruleIdsByValue.containsKey(keyword)).toList();
+
+        if (!staleRuleIds.isEmpty()) {
+            postRules(new JSONObject().put("delete", new JSONObject().put("ids", new JSONArray(staleRuleIds))));
+            LOG.info("Deleted {} twitter v2 stream rule(s) of removed keywords", staleRuleIds.size());
+        }
+        if (!missingKeywords.isEmpty()) {
+            JSONArray rules = new JSONArray();
+            missingKeywords.forEach(keyword -> rules.put(new JSONObject().put("value", keyword).put("tag", keyword)));
+            postRules(new JSONObject().put("add", rules));
+            LOG.info("Added twitter v2 stream rules for keywords {}", missingKeywords);
+        }
+    }
+
+    private Map<String, String> getRules() {
+        JSONObject response = new JSONObject(request(webClient.get().uri(rulesUrl)));
+        Map<String, String> ruleIdsByValue = new HashMap<>();
+        JSONArray rules = response.optJSONArray("data");
+        if (rules != null) {
+            for (int i = 0; i < rules.length(); i++) {
+                JSONObject rule = rules.getJSONObject(i);
+                ruleIdsByValue.put(rule.getString("value"), rule.getString("id"));
+            }
+        }
+        return ruleIdsByValue;
+    }
+
+    private void postRules(JSONObject body) {
+        JSONObject response = new JSONObject(request(webClient.post().uri(rulesUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body.toString())));
+        // Invalid or duplicate rules are reported in the body of a successful response
+        if (response.has("errors")) {
+            LOG.warn("Twitter v2 rules request {} reported errors {}", body, response.getJSONArray("errors"));
+        }
+    }
+
+    private String request(WebClient.RequestHeadersSpec<?> request) {
+        try {
+            String response = request
+                    .headers(headers -> headers.setBearerAuth(bearerToken))
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block(REQUEST_TIMEOUT);
+            return response == null ? "{}" : response;
+        } catch (RuntimeException e) {
+            throw new TwitterToKafkaServiceException("Error calling twitter v2 rules endpoint " + rulesUrl, e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer.StatusWithLanguage;
+import io.micrometer.core.instrument.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+// Splits the newline delimited json of the twitter v2 filtered stream into lines as the bytes arrive.
+// Chunks are appended to one reusable buffer and every complete line is parsed in place by the TwitterJsonToAvroTransformer,
+// the same streaming parser that reads v1 statuses. Tweets the filter rejects are not passed on, the others are passed on with
+// their language when keepLanguage is set and the tweet has one.
+// Not thread safe, feed it from one thread and reset it when the connection is opened again
+class TwitterV2TweetDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterV2TweetDecoder.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    // A single tweet is a few kB, anything bigger means we lost track of the line boundaries
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private final TwitterJsonToAvroTransformer twitterJsonToAvroTransformer;
+
+    private final TweetFilter tweetFilter;
+
+    private final boolean keepLanguage;
+
+    private final Counter receivedCounter;
+
+    private final BiConsumer<TwitterAvroModel, String> tweetConsumer;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    private int length;
+
+    // Bytes before this position are known not to contain a line break
+    private int scanned;
+
+    TwitterV2TweetDecoder(TwitterJsonToAvroTransformer twitterJsonToAvroTransformer, TweetFilter tweetFilter, boolean keepLanguage,
+                          Counter receivedCounter, BiConsumer<TwitterAvroModel, String> tweetConsumer) {
+        this.twitterJsonToAvroTransformer = twitterJsonToAvroTransformer;
+        this.tweetFilter = tweetFilter;
+        this.keepLanguage = keepLanguage;
+        this.receivedCounter = receivedCounter;
+        this.tweetConsumer = tweetConsumer;
+    }
+
+    void decode(DataBuffer dataBuffer) {
+        int readable = dataBuffer.readableByteCount();
+        ensureCapacity(length + readable);
+        dataBuffer.read(buffer, length, readable);
+        length += readable;
+        decodeLines();
+    }
+
+    void decode(byte[] bytes, int offset, int count) {
+        ensureCapacity(length + count);
+        System.arraycopy(bytes, offset, buffer, length, count);
+        length += count;
+        decodeLines();
+    }
+
+    // Drops a partially received line, the next connection starts at a line boundary
+    void reset() {
+        length = 0;
+        scanned = 0;
+    }
+
+    private void decodeLines() {
+        int lineStart = 0;
+        for (int i = scanned; i < length; i++) {
+            if (buffer[i] == '\n') {
+                decodeLine(lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart > 0) {
+            System.arraycopy(buffer, lineStart, buffer, 0, length - lineStart);
+            length -= lineStart;
+        }
+        scanned = length;
+        if (length > MAX_LINE_LENGTH) {
+            reset();
+            throw new TwitterToKafkaServiceException("Twitter v2 stream line exceeds " + MAX_LINE_LENGTH + " bytes");
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    private void decodeLine(int start, int end) {
+        while (start < end && isWhitespace(buffer[start])) {
+            start++;
+        }
+        // Keep-alive signals are empty lines
+        if (start == end) {
+            return;
+        }
+        receivedCounter.increment();
+        StatusWithLanguage tweet;
+        try {
+            tweet = twitterJsonToAvroTransformer.getStatusWithLanguageFromV2Json(buffer, start, end - start, tweetFilter, keepLanguage);
+        } catch (TwitterToKafkaServiceException e) {
+            LOG.warn("Skipping unreadable twitter v2 stream line", e);
+            return;
+        }
+        // Failures of the pipeline or the producer are not about the stream and propagate to the caller
+        if (tweet != null) {
+            tweetConsumer.accept(tweet.twitterAvroModel(), tweet.lang());
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
@@ -0,0 +1,101 @@
+package com.microservices.demo.twitter.to.kafka.service.transfromer;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+// Date arithmetic for the parsers that read tweets without going through java.time objects per tweet
+public final class TwitterDates {
+
+    // v1 created_at, e.g. "Wed Oct 10 20:19:24 +0000 2018"; the mock stream writes a zone name instead of the offset
+    private static final DateTimeFormatter TWITTER_STATUS_DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.ENGLISH);
+
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    private TwitterDates() {
+    }
+
+    public static long epochMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+        long secondOfDay = hour * 3600L + minute * 60L + second;
+        return (epochDay(year, month, day) * 86400L + secondOfDay) * 1000L + millis;
+    }
+
+    // Days since 1970-01-01 of a proleptic gregorian date, same result as LocalDate.toEpochDay
+    public static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+    // Reads the v1 created_at in place. Numeric offsets, UTC and GMT are computed directly, other zone names go through DateTimeFormatter
+    public static long parseStatusDate(char[] chars, int offset, int length) {
+        int end = offset + length;
+        int zoneStart = offset + 20;
+        int yearStart = end - 4;
+        if (length < 28 || chars[offset + 3] != ' ' || chars[offset + 10] != ' ' || chars[offset + 19] != ' ' || chars[yearStart - 1] != ' ') {
+            return parseWithFormatter(chars, offset, length);
+        }
+        int month = month(chars, offset + 4);
+        if (month == 0) {
+            return parseWithFormatter(chars, offset, length);
+        }
+        int zoneLength = yearStart - 1 - zoneStart;
+        long zoneOffsetSeconds;
+        if (zoneLength == 5 && (chars[zoneStart] == '+' || chars[zoneStart] == '-')) {
+            zoneOffsetSeconds = (digits(chars, zoneStart + 1, 2) * 3600L + digits(chars, zoneStart + 3, 2) * 60L)
+                    * (chars[zoneStart] == '-' ? -1 : 1);
+        } else if (zoneLength == 3 && (isZone(chars, zoneStart, "UTC") || isZone(chars, zoneStart, "GMT"))) {
+            zoneOffsetSeconds = 0;
+        } else {
+            return parseWithFormatter(chars, offset, length);
+        }
+        return epochMillis(digits(chars, yearStart, 4), month, digits(chars, offset + 8, 2),
+                digits(chars, offset + 11, 2), digits(chars, offset + 14, 2), digits(chars, offset + 17, 2), 0)
+                - zoneOffsetSeconds * 1000L;
+    }
+
+    // Reads the v2 created_at in place, e.g. "2021-06-07T12:34:56.789Z". Other ISO-8601 forms go through Instant.parse
+    public static long parseIsoDate(char[] chars, int offset, int length) {
+        if (length != 24 || chars[offset + 4] != '-' || chars[offset + 10] != 'T' || chars[offset + 19] != '.' || chars[offset + 23] != 'Z') {
+            return Instant.parse(new String(chars, offset, length)).toEpochMilli();
+        }
+        return epochMillis(digits(chars, offset, 4), digits(chars, offset + 5, 2), digits(chars, offset + 8, 2),
+                digits(chars, offset + 11, 2), digits(chars, offset + 14, 2), digits(chars, offset + 17, 2), digits(chars, offset + 20, 3));
+    }
+
+    private static long parseWithFormatter(char[] chars, int offset, int length) {
+        return ZonedDateTime.parse(new String(chars, offset, length), TWITTER_STATUS_DATE_FORMATTER).toInstant().toEpochMilli();
+    }
+
+    // 1 to 12, 0 for an unknown month
+    private static int month(char[] chars, int start) {
+        for (int month = 0; month < 12; month++) {
+            int i = month * 3;
+            if (chars[start] == MONTHS.charAt(i) && chars[start + 1] == MONTHS.charAt(i + 1) && chars[start + 2] == MONTHS.charAt(i + 2)) {
+                return month + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isZone(char[] chars, int start, String zone) {
+        return chars[start] == zone.charAt(0) && chars[start + 1] == zone.charAt(1) && chars[start + 2] == zone.charAt(2);
+    }
+
+    private static int digits(char[] chars, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Invalid digit in date at " + i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,233 @@
+package com.microservices.demo.twitter.to.kafka.service.transfromer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.metrics.SampledTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// Builds the avro model straight from the raw v1 status json, without creating a twitter4j Status.
+// A streaming parser reads the top level id, user.id, text and created_at, and lang when a tweet filter or the caller needs it; every
+// other value, nested entities and the embedded retweeted or quoted statuses included, is skipped token by token
+// without being materialized.
+// Lines of the v2 filtered stream are read the same way from the bytes they arrived in: data.id, data.author_id, data.text,
+// data.created_at and data.lang, where ids are strings and dates are ISO-8601
+@Component
+public class TwitterJsonToAvroTransformer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitterJsonToAvroTransformer.class);
+
+    // Thread safe and expensive to create, parsers are cheap and created per status
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final SampledTimer transformTimer;
+
+    public TwitterJsonToAvroTransformer(IngestMetrics ingestMetrics) {
+        this.transformTimer = ingestMetrics.getJsonTransformTimer();
+    }
+
+    // The avro model has no field for the language, a pipeline that routes by language gets it next to the model
+    public record StatusWithLanguage(TwitterAvroModel twitterAvroModel, String lang) {
+    }
+
+    // null for stream messages that are not statuses, e.g. delete notices and limit messages
+    public TwitterAvroModel getTwitterAvroModelFromJson(String rawJson) {
+        return getTwitterAvroModelFromJson(rawJson, null);
+    }
+
+    // Also null for statuses the tweet filter rejects, the filter sees the language which is not part of the avro model
+    public TwitterAvroModel getTwitterAvroModelFromJson(String rawJson, TweetFilter tweetFilter) {
+        StatusWithLanguage status = getStatusWithLanguageFromJson(rawJson, tweetFilter, false);
+        return status == null ? null : status.twitterAvroModel();
+    }
+
+    // Same as getTwitterAvroModelFromJson, keepLanguage also reads the language when no tweet filter needs it
+    public StatusWithLanguage getStatusWithLanguageFromJson(String rawJson, TweetFilter tweetFilter, boolean keepLanguage) {
+        try (JsonParser parser = JSON_FACTORY.createParser(rawJson)) {
+            return parse(parser, tweetFilter, keepLanguage);
+        } catch (IOException | RuntimeException e) {
+            throw new TwitterToKafkaServiceException("Error parsing twitter status json " + rawJson, e);
+        }
+    }
+
+    // null for lines without a tweet, e.g. an errors message, and for tweets the tweet filter rejects
+    public TwitterAvroModel getTwitterAvroModelFromV2Json(byte[] json, int offset, int length, TweetFilter tweetFilter) {
+        StatusWithLanguage tweet = getStatusWithLanguageFromV2Json(json, offset, length, tweetFilter, false);
+        return tweet == null ? null : tweet.twitterAvroModel();
+    }
+
+    // Same as getTwitterAvroModelFromV2Json, keepLanguage also reads data.lang when no tweet filter needs it
+    public StatusWithLanguage getStatusWithLanguageFromV2Json(byte[] json, int offset, int length, TweetFilter tweetFilter,
+                                                              boolean keepLanguage) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json, offset, length)) {
+            long startNanos = transformTimer.start();
+            StatusWithLanguage tweet = readV2Line(parser, tweetFilter, keepLanguage, json, offset, length);
+            transformTimer.stop(startNanos);
+            return tweet;
+        } catch (IOException | RuntimeException e) {
+            throw new TwitterToKafkaServiceException("Error parsing twitter v2 stream line "
+                    + new String(json, offset, length, StandardCharsets.UTF_8), e);
+        }
+    }
+
+    private StatusWithLanguage parse(JsonParser parser, TweetFilter tweetFilter, boolean keepLanguage) throws IOException {
+        long startNanos = transformTimer.start();
+        StatusWithLanguage status = readStatus(parser, tweetFilter, keepLanguage);
+        transformTimer.stop(startNanos);
+        return status;
+    }
+
+    private StatusWithLanguage readStatus(JsonParser parser, TweetFilter tweetFilter, boolean keepLanguage) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        long id = 0;
+        long userId = 0;
+        boolean hasId = false;
+        boolean hasUserId = false;
+        String text = null;
+        Long createdAt = null;
+        String lang = null;
+        boolean readLang = keepLanguage || (tweetFilter != null && tweetFilter.filtersLanguage());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Field names are canonicalized by the parser, switching on them does not create strings
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (fieldName) {
+                case "id" -> {
+                    id = readLong(parser, value);
+                    hasId = true;
+                }
+                case "user" -> {
+                    if (value == JsonToken.START_OBJECT && findUserId(parser)) {
+                        userId = readLong(parser, parser.currentToken());
+                        hasUserId = true;
+                        skipRestOfObject(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "text" -> text = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "created_at" -> createdAt = value == JsonToken.VALUE_NULL ? null
+                        : TwitterDates.parseStatusDate(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                case "lang" -> {
+                    if (readLang && value == JsonToken.VALUE_STRING) {
+                        lang = parser.getText();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (!hasId || !hasUserId) {
+            return null;
+        }
+        if (tweetFilter != null && !tweetFilter.accept(text, lang)) {
+            return null;
+        }
+        return new StatusWithLanguage(new TwitterAvroModel(userId, id, text, createdAt), lang);
+    }
+
+    private StatusWithLanguage readV2Line(JsonParser parser, TweetFilter tweetFilter, boolean keepLanguage,
+                                          byte[] json, int offset, int length) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        StatusWithLanguage tweet = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("data".equals(fieldName) && value == JsonToken.START_OBJECT) {
+                tweet = readV2Tweet(parser, tweetFilter, keepLanguage);
+            } else {
+                parser.skipChildren();
+                if ("errors".equals(fieldName)) {
+                    LOG.warn("Twitter v2 stream reported errors {}", new String(json, offset, length, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return tweet;
+    }
+
+    // v2 tweets lack author_id and created_at when the stream was opened without the tweet.fields asking for them. Like a
+    // v1 status without an id or a user, a tweet without an id or an author_id is skipped, a missing created_at is kept
+    private StatusWithLanguage readV2Tweet(JsonParser parser, TweetFilter tweetFilter, boolean keepLanguage) throws IOException {
+        long id = 0;
+        long authorId = 0;
+        boolean hasId = false;
+        boolean hasAuthorId = false;
+        String text = null;
+        Long createdAt = null;
+        String lang = null;
+        boolean readLang = keepLanguage || (tweetFilter != null && tweetFilter.filtersLanguage());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (fieldName) {
+                case "id" -> {
+                    id = readLong(parser, value);
+                    hasId = true;
+                }
+                case "author_id" -> {
+                    authorId = readLong(parser, value);
+                    hasAuthorId = true;
+                }
+                case "text" -> text = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "created_at" -> createdAt = value == JsonToken.VALUE_NULL ? null
+                        : TwitterDates.parseIsoDate(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                case "lang" -> {
+                    if (readLang && value == JsonToken.VALUE_STRING) {
+                        lang = parser.getText();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (!hasId || !hasAuthorId) {
+            return null;
+        }
+        if (tweetFilter != null && !tweetFilter.accept(text, lang)) {
+            return null;
+        }
+        return new StatusWithLanguage(new TwitterAvroModel(authorId, id, text, createdAt), lang);
+    }
+
+    // Moves the parser to the value of user.id, false if the user object has none
+    private boolean findUserId(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.currentName();
+            parser.nextToken();
+            if ("id".equals(fieldName)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private void skipRestOfObject(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    // Twitter sends ids as numbers, the mock stream as strings
+    private long readLong(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            return Long.parseLong(parser.getText());
+        }
+        throw new TwitterToKafkaServiceException("Expected a numeric id but got " + value);
+    }
+}
@@ -0,0 +1,67 @@
+package com.microservices.demo.twitter.to.kafka.service.dedup;
+
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TweetIdDeduplicatorTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    public void dropsRepeatedIdsWithinWindowAndForgetsThemAfter() {
+        TweetIdDeduplicator deduplicator = new TweetIdDeduplicator(config(60, 1000), nanoTime::get);
+        assertFalse(deduplicator.isDuplicate(1401527435137454080L));
+        assertFalse(deduplicator.isDuplicate(0L));
+        assertTrue(deduplicator.isDuplicate(1401527435137454080L));
+        assertTrue(deduplicator.isDuplicate(0L));
+
+        // Still remembered in an older bucket
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(45));
+        assertTrue(deduplicator.isDuplicate(1401527435137454080L));
+
+        // Past the window every bucket has been cleared
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertFalse(deduplicator.isDuplicate(1401527435137454080L));
+
+        assertEquals(3, deduplicator.getHitCount());
+        assertEquals(3, deduplicator.getMissCount());
+    }
+
+    @Test
+    public void fullBucketsRotateEarlyInsteadOfGrowing() {
+        TweetIdDeduplicator deduplicator = new TweetIdDeduplicator(config(60, 16 * 64), nanoTime::get);
+        for (long id = 1; id <= 100_000; id++) {
+            assertFalse(deduplicator.isDuplicate(id));
+        }
+        assertTrue(deduplicator.getEarlyRotationCount() > 0);
+        // The most recent ids are still in the window
+        assertTrue(deduplicator.isDuplicate(100_000L));
+        assertFalse(deduplicator.isDuplicate(1L));
+    }
+
+    @Test
+    public void disabledDeduplicatorLetsEverythingThrough() {
+        TwitterToKafkaServiceConfigData configData = config(60, 1000);
+        configData.setEnableDeduplication(false);
+        TweetIdDeduplicator deduplicator = new TweetIdDeduplicator(configData, nanoTime::get);
+        assertFalse(deduplicator.isDuplicate(1L));
+        assertFalse(deduplicator.isDuplicate(1L));
+        assertEquals(0, deduplicator.getMissCount());
+    }
+
+    private static TwitterToKafkaServiceConfigData config(long windowSeconds, int maxIdsPerBucket) {
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setEnableDeduplication(true);
+        configData.setDeduplicationWindowSeconds(windowSeconds);
+        configData.setDeduplicationWindowBuckets(4);
+        configData.setDeduplicationMaxIdsPerBucket(maxIdsPerBucket);
+        return configData;
+    }
+}
@@ -0,0 +1,125 @@
+package com.microservices.demo.twitter.to.kafka.service.filter;
+
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TweetFilterTest {
+
+    @Test
+    public void matchesWholeKeywordsCaseInsensitive() {
+        TwitterToKafkaServiceConfigData configData = config();
+        configData.setFilterIncludeKeywords(List.of("Java", "Kafka Streams", "#microservices"));
+        TweetFilter tweetFilter = new TweetFilter(configData);
+
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("Learning JAVA today", null));
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("java", null));
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("Intro to kafka streams!", null));
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("Why #Microservices?", null));
+        assertEquals(TweetFilter.Verdict.MISSING_KEYWORD, tweetFilter.evaluate("JavaScript everywhere", null));
+        assertEquals(TweetFilter.Verdict.MISSING_KEYWORD, tweetFilter.evaluate("kafka streamsets", null));
+        assertEquals(TweetFilter.Verdict.MISSING_KEYWORD, tweetFilter.evaluate("", null));
+    }
+
+    @Test
+    public void findsOverlappingKeywordsThroughFailureLinks() {
+        TwitterToKafkaServiceConfigData configData = config();
+        configData.setFilterIncludeKeywords(List.of("he", "hers", "kafka streams"));
+        configData.setFilterExcludeKeywords(List.of("she", "streams"));
+        TweetFilter tweetFilter = new TweetFilter(configData);
+
+        // "streams" ends inside "kafka streams" and is only reachable through the output links of the longer keyword
+        assertEquals(TweetFilter.Verdict.EXCLUDED_KEYWORD, tweetFilter.evaluate("kafka streams", null));
+        // "she" and "he" inside "ushers" are not whole words
+        assertEquals(TweetFilter.Verdict.MISSING_KEYWORD, tweetFilter.evaluate("ushers", null));
+        assertEquals(TweetFilter.Verdict.EXCLUDED_KEYWORD, tweetFilter.evaluate("she said", null));
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("it is hers", null));
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("he said", null));
+        assertEquals(TweetFilter.Verdict.EXCLUDED_KEYWORD, tweetFilter.evaluate("he and she", null));
+    }
+
+    @Test
+    public void appliesLengthLanguageAndRegexRules() {
+        TwitterToKafkaServiceConfigData configData = config();
+        configData.setFilterMinTextLength(3);
+        configData.setFilterMaxTextLength(10);
+        configData.setFilterLanguages(List.of("EN", "de"));
+        configData.setFilterIncludeRegexes(List.of("\\d+"));
+        configData.setFilterExcludeRegexes(List.of("(?i)spam"));
+        TweetFilter tweetFilter = new TweetFilter(configData);
+
+        assertEquals(TweetFilter.Verdict.TOO_SHORT, tweetFilter.evaluate("1", "en"));
+        assertEquals(TweetFilter.Verdict.TOO_LONG, tweetFilter.evaluate("12345678901", "en"));
+        // Counted in code points, four emoji are four characters
+        assertEquals(TweetFilter.Verdict.MISSING_REGEX, tweetFilter.evaluate("😀😀😀😀", "en"));
+        assertEquals(TweetFilter.Verdict.LANGUAGE, tweetFilter.evaluate("top 10", "fr"));
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("top 10", "en"));
+        assertEquals(TweetFilter.Verdict.ACCEPTED, tweetFilter.evaluate("top 10", null));
+        assertEquals(TweetFilter.Verdict.EXCLUDED_REGEX, tweetFilter.evaluate("SPAM 10", "de"));
+        assertTrue(tweetFilter.filtersLanguage());
+    }
+
+    @Test
+    public void reloadSwapsRulesAndKeepsThemOnInvalidRegex() {
+        TwitterToKafkaServiceConfigData configData = config();
+        configData.setFilterExcludeKeywords(List.of("kafka"));
+        TweetFilter tweetFilter = new TweetFilter(configData);
+        assertFalse(tweetFilter.accept("kafka", null));
+
+        configData.setFilterExcludeKeywords(List.of("java"));
+        tweetFilter.reload();
+        assertTrue(tweetFilter.accept("kafka", null));
+        assertFalse(tweetFilter.accept("java", null));
+
+        configData.setFilterExcludeKeywords(List.of());
+        configData.setFilterIncludeRegexes(List.of("("));
+        tweetFilter.reload();
+        assertFalse(tweetFilter.accept("java", null));
+
+        assertEquals(1, tweetFilter.getCount(TweetFilter.Verdict.ACCEPTED));
+        assertEquals(3, tweetFilter.getCount(TweetFilter.Verdict.EXCLUDED_KEYWORD));
+    }
+
+    @Test
+    public void reloadsWhenTheConfigurationIsRefreshed() {
+        TwitterToKafkaServiceConfigData configData = config();
+        configData.setFilterExcludeKeywords(List.of("kafka"));
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(TwitterToKafkaServiceConfigData.class, () -> configData);
+            context.register(TweetFilter.class);
+            context.refresh();
+            TweetFilter tweetFilter = context.getBean(TweetFilter.class);
+            assertFalse(tweetFilter.accept("kafka", null));
+
+            // What POST /actuator/refresh publishes once the changed properties are bound again
+            configData.setFilterExcludeKeywords(List.of("java"));
+            context.publishEvent(new RefreshScopeRefreshedEvent());
+
+            assertTrue(tweetFilter.accept("kafka", null));
+            assertFalse(tweetFilter.accept("java", null));
+        }
+    }
+
+    @Test
+    public void disabledFilterAcceptsEverything() {
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setFilterExcludeKeywords(List.of("kafka"));
+        TweetFilter tweetFilter = new TweetFilter(configData);
+        assertTrue(tweetFilter.accept("kafka", null));
+        assertFalse(tweetFilter.filtersLanguage());
+        assertEquals(0, tweetFilter.getCount(TweetFilter.Verdict.ACCEPTED));
+    }
+
+    private static TwitterToKafkaServiceConfigData config() {
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setEnableTweetFilter(true);
+        return configData;
+    }
+}
@@ -0,0 +1,148 @@
+package com.microservices.demo.twitter.to.kafka.service.init.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.admin.exception.KafkaClientException;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+import com.microservices.demo.twitter.to.kafka.service.init.KafkaReadiness;
+import com.microservices.demo.twitter.to.kafka.service.init.StreamInitializer;
+import com.microservices.demo.twitter.to.kafka.service.metrics.StartupMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StartupOrchestratorTest {
+
+    private final TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+
+    private final KafkaReadiness kafkaReadiness = new KafkaReadiness();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final StartupMetrics startupMetrics = new StartupMetrics(meterRegistry);
+
+    private final CompletableFuture<Void> kafkaReady = new CompletableFuture<>();
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch streamStarted = new CountDownLatch(1);
+
+    @Test
+    public void sequentialStartupConnectsTheStreamAfterKafka() throws Exception {
+        kafkaReady.complete(null);
+        orchestrator(true).start();
+
+        assertEquals(List.of("kafka.ready", "stream.start"), events);
+        assertTrue(kafkaReadiness.isOpen());
+        assertEquals(List.of("kafka.ready", "stream.start", "total"), List.copyOf(startupMetrics.getPhaseMillis().keySet()));
+    }
+
+    @Test
+    public void bufferedStreamConnectsBeforeKafkaIsReady() throws Exception {
+        configData.setEnableConcurrentStartup(true);
+        CompletableFuture<Void> startup = CompletableFuture.runAsync(() -> start(orchestrator(true)));
+
+        assertTrue(streamStarted.await(5, TimeUnit.SECONDS));
+        assertFalse(kafkaReadiness.isOpen());
+        assertFalse(startup.isDone());
+
+        kafkaReady.complete(null);
+        startup.get(5, TimeUnit.SECONDS);
+        assertTrue(kafkaReadiness.isOpen());
+        assertTrue(events.contains("producer.warmup"));
+        assertEquals(1, meterRegistry.get("twitter.startup.phase").tag("phase", "producer.warmup").timer().count());
+        assertEquals(1, meterRegistry.get("twitter.startup.phase").tag("phase", "stream.start").timer().count());
+    }
+
+    @Test
+    public void unbufferedStreamWaitsForKafka() throws Exception {
+        configData.setEnableConcurrentStartup(true);
+        CompletableFuture<Void> startup = CompletableFuture.runAsync(() -> start(orchestrator(false)));
+
+        assertFalse(streamStarted.await(200, TimeUnit.MILLISECONDS));
+        kafkaReady.complete(null);
+        startup.get(5, TimeUnit.SECONDS);
+        assertEquals(0, streamStarted.getCount());
+        assertTrue(events.indexOf("kafka.ready") < events.indexOf("stream.start"));
+    }
+
+    @Test
+    public void failedReadinessCheckFailsTheStartup() {
+        configData.setEnableConcurrentStartup(true);
+        kafkaReady.completeExceptionally(new KafkaClientException("Reached maximum number of retry for reading kafka topic twitter-topic"));
+
+        assertThrows(KafkaClientException.class, () -> orchestrator(false).start());
+        assertFalse(kafkaReadiness.isOpen());
+        assertFalse(events.contains("stream.start"));
+    }
+
+    private void start(StartupOrchestrator startupOrchestrator) {
+        try {
+            startupOrchestrator.start();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private StartupOrchestrator orchestrator(boolean bufferedPipeline) {
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setTopicName("twitter-topic");
+        StreamInitializer streamInitializer = new StreamInitializer() {
+            @Override
+            public void init() {
+                initAsync().join();
+            }
+
+            @Override
+            public CompletableFuture<Void> initAsync() {
+                return kafkaReady.thenRun(() -> events.add("kafka.ready"));
+            }
+        };
+        IngestPipeline ingestPipeline = new IngestPipeline() {
+            @Override
+            public void accept(TwitterAvroModel twitterAvroModel) {
+            }
+
+            @Override
+            public boolean isBuffered() {
+                return bufferedPipeline;
+            }
+        };
+        KafkaProducer<Long, TwitterAvroModel> kafkaProducer = new KafkaProducer<>() {
+            @Override
+            public void send(String topicName, Long key, TwitterAvroModel message) {
+            }
+
+            @Override
+            public CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> sendBatch(String topicName,
+                                                                                     List<Map.Entry<Long, TwitterAvroModel>> messages) {
+                return CompletableFuture.completedFuture(new BatchSendResult<>(0));
+            }
+
+            @Override
+            public void warmUp(String topicName) {
+                events.add("producer.warmup");
+            }
+        };
+        return new StartupOrchestrator(configData, kafkaConfigData, streamInitializer, () -> {
+            events.add("stream.start");
+            streamStarted.countDown();
+        }, ingestPipeline, kafkaProducer, kafkaReadiness, new ExecutorFactory(new ExecutionConfigData()), startupMetrics);
+    }
+}
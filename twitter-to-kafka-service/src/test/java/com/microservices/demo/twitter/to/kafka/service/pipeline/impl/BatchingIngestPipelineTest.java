@@ -0,0 +1,267 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData.OverflowPolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill.SpilledRecord;
+import com.microservices.demo.kafka.producer.backpressure.SpillReplayer;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.init.KafkaReadiness;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestStateMeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.microservices.demo.twitter.to.kafka.service.pipeline.impl.SampleTweets.tweet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchingIngestPipelineTest {
+
+    private final RecordingKafkaProducer kafkaProducer = new RecordingKafkaProducer();
+
+    private final TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+
+    private final KafkaProducerConfigData kafkaProducerConfigData = new KafkaProducerConfigData();
+
+    private RecordSpill<Long, TwitterAvroModel> recordSpill;
+
+    private BatchingIngestPipeline pipeline;
+
+    @AfterEach
+    public void shutdown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void flushesFullBatches() {
+        pipeline = pipeline(3, 10_000L, 10, OverflowPolicy.BLOCK);
+        // Queued before the worker starts, so the batches are cut by size only
+        for (long id = 1; id <= 7; id++) {
+            pipeline.accept(tweet(id));
+        }
+        pipeline.start();
+        pipeline.shutdown();
+
+        assertEquals(List.of(List.of(1L, 2L, 3L), List.of(4L, 5L, 6L), List.of(7L)), kafkaProducer.batchIds());
+    }
+
+    @Test
+    public void flushesPartialBatchAfterLinger() throws InterruptedException {
+        pipeline = pipeline(100, 50L, 10, OverflowPolicy.BLOCK);
+        pipeline.accept(tweet(1));
+        pipeline.accept(tweet(2));
+        long start = System.nanoTime();
+        pipeline.start();
+
+        assertTrue(kafkaProducer.awaitBatches(1, 5_000));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(List.of(List.of(1L, 2L)), kafkaProducer.batchIds());
+    }
+
+    @Test
+    public void sendsFromTheWorker() throws InterruptedException {
+        pipeline = pipeline(10, 10L, 10, OverflowPolicy.BLOCK);
+        pipeline.accept(tweet(1));
+        pipeline.start();
+
+        assertTrue(kafkaProducer.awaitBatches(1, 5_000));
+        assertEquals(List.of(List.of(1L)), kafkaProducer.batchIds());
+        assertTrue(kafkaProducer.threadNames().get(0).startsWith("ingest-pipeline"));
+    }
+
+    @Test
+    public void dropOldestEvictsFromTheHead() {
+        pipeline = pipeline(10, 10L, 2, OverflowPolicy.DROP_OLDEST);
+        for (long id = 1; id <= 5; id++) {
+            pipeline.accept(tweet(id));
+        }
+        assertEquals(3, pipeline.getDroppedCount());
+        assertEquals(2, pipeline.getQueueSize());
+
+        pipeline.start();
+        pipeline.shutdown();
+        assertEquals(List.of(List.of(4L, 5L)), kafkaProducer.batchIds());
+    }
+
+    @Test
+    public void dropOldestForgetsEvictedStatuses() {
+        configData.setEnableDeduplication(true);
+        pipeline = pipeline(10, 10L, 2, OverflowPolicy.DROP_OLDEST, new TweetIdDeduplicator(configData));
+        pipeline.accept(tweet(1));
+        pipeline.accept(tweet(2));
+        pipeline.accept(tweet(3));
+        // 1 was evicted before it was sent, it is not a duplicate when it comes again
+        pipeline.accept(tweet(1));
+        pipeline.accept(tweet(1));
+        assertEquals(3, pipeline.getDroppedCount());
+
+        pipeline.start();
+        pipeline.shutdown();
+        assertEquals(List.of(List.of(1L)), kafkaProducer.batchIds());
+    }
+
+    @Test
+    public void callerRunsSendsOverflowOnTheCallingThread() {
+        pipeline = pipeline(10, 10L, 2, OverflowPolicy.CALLER_RUNS);
+        for (long id = 1; id <= 4; id++) {
+            pipeline.accept(tweet(id));
+        }
+        assertEquals(2, pipeline.getCallerRunsCount());
+        assertEquals(0, pipeline.getDroppedCount());
+        assertEquals(List.of(List.of(3L), List.of(4L)), kafkaProducer.batchIds());
+        assertEquals(Thread.currentThread().getName(), kafkaProducer.threadNames().get(0));
+    }
+
+    @Test
+    public void callerRunsWaitsUntilKafkaIsReady() throws Exception {
+        KafkaReadiness kafkaReadiness = new KafkaReadiness();
+        pipeline = pipeline(10, 10L, 1, OverflowPolicy.CALLER_RUNS, new TweetIdDeduplicator(configData), kafkaReadiness);
+        pipeline.start();
+        pipeline.accept(tweet(1));
+        CompletableFuture<Void> callerRuns = CompletableFuture.runAsync(() -> pipeline.accept(tweet(2)));
+        Thread.sleep(100);
+        assertFalse(callerRuns.isDone());
+        assertTrue(kafkaProducer.batchIds().isEmpty());
+
+        kafkaReadiness.open();
+        callerRuns.get(5, TimeUnit.SECONDS);
+        pipeline.shutdown();
+        assertEquals(1, pipeline.getCallerRunsCount());
+        assertEquals(List.of(1L, 2L), kafkaProducer.batchIds().stream().flatMap(List::stream).sorted().toList());
+    }
+
+    @Test
+    public void spillDivertsOverflowToTheRecordSpill() {
+        kafkaProducerConfigData.setSpillCapacity(1);
+        pipeline = pipeline(10, 10L, 2, OverflowPolicy.SPILL);
+        for (long id = 1; id <= 4; id++) {
+            pipeline.accept(tweet(id));
+        }
+        // 3 went to the spill, which was full for 4
+        assertEquals(1, pipeline.getSpilledCount());
+        assertEquals(1, pipeline.getDroppedCount());
+        assertEquals(1, recordSpill.size());
+        SpilledRecord<Long, TwitterAvroModel> spilledRecord = recordSpill.peek();
+        assertEquals("twitter-topic", spilledRecord.topicName());
+        assertEquals(30L, spilledRecord.key());
+        assertEquals(3L, spilledRecord.message().getId());
+        assertTrue(kafkaProducer.batchIds().isEmpty());
+    }
+
+    @Test
+    public void blockWaitsForSpaceInTheQueue() throws Exception {
+        pipeline = pipeline(10, 10L, 1, OverflowPolicy.BLOCK);
+        pipeline.accept(tweet(1));
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> pipeline.accept(tweet(2)));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        pipeline.start();
+        blocked.get(5, TimeUnit.SECONDS);
+        pipeline.shutdown();
+        assertEquals(List.of(1L, 2L), kafkaProducer.batchIds().stream().flatMap(List::stream).toList());
+        assertEquals(0, pipeline.getDroppedCount());
+        assertEquals(0, pipeline.getCallerRunsCount());
+    }
+
+    @Test
+    public void shutdownDrainsTheQueue() {
+        pipeline = pipeline(2, 10_000L, 100, OverflowPolicy.BLOCK);
+        for (long id = 1; id <= 50; id++) {
+            pipeline.accept(tweet(id));
+        }
+        pipeline.start();
+        pipeline.shutdown();
+
+        assertEquals(0, pipeline.getQueueSize());
+        assertEquals(50, kafkaProducer.batchIds().stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    public void buffersUntilKafkaIsReady() throws InterruptedException {
+        KafkaReadiness kafkaReadiness = new KafkaReadiness();
+        pipeline = pipeline(10, 10L, 10, OverflowPolicy.BLOCK, new TweetIdDeduplicator(configData), kafkaReadiness);
+        pipeline.start();
+        pipeline.accept(tweet(1));
+        pipeline.accept(tweet(2));
+
+        assertFalse(kafkaProducer.awaitBatches(1, 200));
+        assertEquals(2, pipeline.getQueueSize());
+
+        kafkaReadiness.open();
+        assertTrue(kafkaProducer.awaitBatches(1, 5_000));
+        assertEquals(List.of(List.of(1L, 2L)), kafkaProducer.batchIds());
+    }
+
+    @Test
+    public void metersReadThePipelineState() {
+        configData.setEnableDeduplication(true);
+        TweetIdDeduplicator tweetIdDeduplicator = new TweetIdDeduplicator(configData);
+        pipeline = pipeline(10, 10L, 2, OverflowPolicy.DROP_OLDEST, tweetIdDeduplicator);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("pipeline", pipeline));
+        new IngestStateMeterBinder(new TweetFilter(configData), tweetIdDeduplicator,
+                beanFactory.getBeanProvider(BatchingIngestPipeline.class), beanFactory.getBeanProvider(RoutingIngestPipeline.class))
+                .bindTo(meterRegistry);
+        for (long id = 1; id <= 5; id++) {
+            pipeline.accept(tweet(id));
+        }
+        pipeline.accept(tweet(5));
+
+        assertEquals(2, meterRegistry.get("twitter.ingest.pipeline.queue.size").gauge().value());
+        assertEquals(4, meterRegistry.get("twitter.ingest.pipeline.dropped").functionCounter().count());
+        assertEquals(0, meterRegistry.get("twitter.ingest.pipeline.caller.runs").functionCounter().count());
+        assertEquals(0, meterRegistry.get("twitter.ingest.pipeline.spilled").functionCounter().count());
+
+        // The ids are checked once the workers dequeue them
+        pipeline.start();
+        pipeline.shutdown();
+        assertEquals(1, meterRegistry.get("twitter.ingest.dedup.unique").functionCounter().count());
+        assertEquals(1, meterRegistry.get("twitter.ingest.dedup.duplicates").functionCounter().count());
+    }
+
+    private BatchingIngestPipeline pipeline(int batchSize, long flushIntervalMs, int queueCapacity, OverflowPolicy overflowPolicy) {
+        return pipeline(batchSize, flushIntervalMs, queueCapacity, overflowPolicy, new TweetIdDeduplicator(configData));
+    }
+
+    // Kafka is ready for every test but the one that checks the buffering before it
+    private BatchingIngestPipeline pipeline(int batchSize, long flushIntervalMs, int queueCapacity, OverflowPolicy overflowPolicy,
+                                            TweetIdDeduplicator tweetIdDeduplicator) {
+        KafkaReadiness kafkaReadiness = new KafkaReadiness();
+        kafkaReadiness.open();
+        return pipeline(batchSize, flushIntervalMs, queueCapacity, overflowPolicy, tweetIdDeduplicator, kafkaReadiness);
+    }
+
+    private BatchingIngestPipeline pipeline(int batchSize, long flushIntervalMs, int queueCapacity, OverflowPolicy overflowPolicy,
+                                            TweetIdDeduplicator tweetIdDeduplicator, KafkaReadiness kafkaReadiness) {
+        configData.setPipelineBatchSize(batchSize);
+        configData.setPipelineFlushIntervalMs(flushIntervalMs);
+        configData.setPipelineQueueCapacity(queueCapacity);
+        configData.setPipelineWorkerThreads(1);
+        configData.setPipelineOverflowPolicy(overflowPolicy);
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setTopicName("twitter-topic");
+        recordSpill = new InMemoryRecordSpill<>(kafkaProducerConfigData);
+        // The replayer is only started by the SPILL policy, which is tested without starting the pipeline
+        return new BatchingIngestPipeline(configData, kafkaConfigData, kafkaProducer,
+                new ExecutorFactory(new ExecutionConfigData()), tweetIdDeduplicator, kafkaReadiness,
+                recordSpill, new SpillReplayer(kafkaProducerConfigData, recordSpill, null));
+    }
+}
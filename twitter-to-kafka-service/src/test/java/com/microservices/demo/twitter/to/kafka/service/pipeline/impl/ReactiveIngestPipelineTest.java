@@ -0,0 +1,93 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.microservices.demo.twitter.to.kafka.service.pipeline.impl.SampleTweets.tweet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReactiveIngestPipelineTest {
+
+    private final RecordingKafkaProducer kafkaProducer = new RecordingKafkaProducer();
+
+    private final TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+
+    private ReactiveIngestPipeline pipeline;
+
+    @AfterEach
+    public void shutdown() {
+        kafkaProducer.completeAll();
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void sendsDeduplicatedBatches() throws InterruptedException {
+        configData.setEnableDeduplication(true);
+        pipeline = pipeline(3, 10_000L, 16, 2);
+        for (long id = 1; id <= 7; id++) {
+            pipeline.accept(tweet(id));
+        }
+        pipeline.accept(tweet(7));
+        pipeline.shutdown();
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), kafkaProducer.sentIds());
+        assertEquals(List.of(1L, 2L, 3L), kafkaProducer.batchIds().get(0));
+    }
+
+    @Test
+    public void flushesPartialBatchAfterTheInterval() throws InterruptedException {
+        pipeline = pipeline(100, 50L, 16, 2);
+        pipeline.accept(tweet(1));
+
+        assertTrue(kafkaProducer.awaitBatches(1, 5_000));
+        assertEquals(List.of(List.of(1L)), kafkaProducer.batchIds());
+    }
+
+    @Test
+    public void unacknowledgedBatchesHoldBackTheSource() throws Exception {
+        kafkaProducer.holdAll();
+        pipeline = pipeline(1, 10L, 2, 1);
+        CompletableFuture<Void> stream = CompletableFuture.runAsync(() -> {
+            for (long id = 1; id <= 20; id++) {
+                pipeline.accept(tweet(id));
+            }
+        });
+
+        assertTrue(kafkaProducer.awaitBatches(1, 5_000));
+        Thread.sleep(200);
+        // One batch waits for its ack, the stream thread waits for demand instead of filling a buffer
+        assertEquals(1, kafkaProducer.batchIds().size());
+        assertFalse(stream.isDone());
+
+        kafkaProducer.completeAll();
+        stream.get(5, TimeUnit.SECONDS);
+        pipeline.shutdown();
+        assertEquals(20, kafkaProducer.sentIds().size());
+    }
+
+    private ReactiveIngestPipeline pipeline(int batchSize, long flushIntervalMs, int queueCapacity, int maxInFlightBatches) {
+        configData.setPipelineBatchSize(batchSize);
+        configData.setPipelineFlushIntervalMs(flushIntervalMs);
+        configData.setPipelineQueueCapacity(queueCapacity);
+        configData.setReactiveMaxInFlightBatches(maxInFlightBatches);
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setTopicName("twitter-topic");
+        ReactiveIngestPipeline reactiveIngestPipeline = new ReactiveIngestPipeline(configData, kafkaConfigData, kafkaProducer,
+                new ExecutorFactory(new ExecutionConfigData()), new TweetIdDeduplicator(configData));
+        reactiveIngestPipeline.start();
+        return reactiveIngestPipeline;
+    }
+}
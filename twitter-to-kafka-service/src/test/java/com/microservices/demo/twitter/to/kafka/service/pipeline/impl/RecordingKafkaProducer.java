@@ -0,0 +1,120 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.config.service.BatchSendResult;
+import com.microservices.demo.kafka.producer.config.service.KafkaProducer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// Remembers the ids of every batch, in send order and per topic, and the thread that sent it.
+// Batches complete right away unless their topic or every topic is held, held batches wait for completeAll
+class RecordingKafkaProducer implements KafkaProducer<Long, TwitterAvroModel> {
+
+    private final List<List<Long>> batchIds = new CopyOnWriteArrayList<>();
+
+    private final List<String> threadNames = new CopyOnWriteArrayList<>();
+
+    private final Map<String, List<Long>> idsByTopic = new ConcurrentHashMap<>();
+
+    private final Set<String> heldTopics = ConcurrentHashMap.newKeySet();
+
+    private final List<String> isolatedTopics = new CopyOnWriteArrayList<>();
+
+    private final List<CompletableFuture<BatchSendResult<Long, TwitterAvroModel>>> pending = new ArrayList<>();
+
+    private volatile boolean holdAll;
+
+    @Override
+    public void send(String topicName, Long key, TwitterAvroModel message) {
+        throw new UnsupportedOperationException("The ingest pipelines only send batches");
+    }
+
+    @Override
+    public void isolateTopic(String topicName) {
+        isolatedTopics.add(topicName);
+    }
+
+    @Override
+    public synchronized CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> sendBatch(String topicName,
+                                                                                          List<Map.Entry<Long, TwitterAvroModel>> messages) {
+        List<Long> ids = messages.stream().map(message -> message.getValue().getId()).toList();
+        batchIds.add(ids);
+        threadNames.add(Thread.currentThread().getName());
+        idsByTopic.computeIfAbsent(topicName, topic -> new CopyOnWriteArrayList<>()).addAll(ids);
+        notifyAll();
+        if (!holdAll && !heldTopics.contains(topicName)) {
+            return CompletableFuture.completedFuture(new BatchSendResult<>(messages.size()));
+        }
+        CompletableFuture<BatchSendResult<Long, TwitterAvroModel>> future = new CompletableFuture<>();
+        pending.add(future);
+        return future;
+    }
+
+    void hold(String topicName) {
+        heldTopics.add(topicName);
+    }
+
+    void holdAll() {
+        holdAll = true;
+    }
+
+    // Completes the held batches and stops holding new ones
+    void completeAll() {
+        List<CompletableFuture<BatchSendResult<Long, TwitterAvroModel>>> futures;
+        synchronized (this) {
+            holdAll = false;
+            heldTopics.clear();
+            futures = new ArrayList<>(pending);
+            pending.clear();
+        }
+        futures.forEach(future -> future.complete(new BatchSendResult<>(0)));
+    }
+
+    List<List<Long>> batchIds() {
+        return List.copyOf(batchIds);
+    }
+
+    List<String> threadNames() {
+        return List.copyOf(threadNames);
+    }
+
+    List<String> isolatedTopics() {
+        return List.copyOf(isolatedTopics);
+    }
+
+    List<Long> sentIds() {
+        return batchIds.stream().flatMap(List::stream).toList();
+    }
+
+    List<Long> sentIds(String topicName) {
+        return List.copyOf(idsByTopic.getOrDefault(topicName, List.of()));
+    }
+
+    boolean awaitBatches(int count, long timeoutMs) throws InterruptedException {
+        return await(() -> batchIds.size() >= count, timeoutMs);
+    }
+
+    boolean awaitIds(String topicName, int count, long timeoutMs) throws InterruptedException {
+        return await(() -> sentIds(topicName).size() >= count, timeoutMs);
+    }
+
+    private synchronized boolean await(BooleanSupplier condition, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (!condition.getAsBoolean()) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,206 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.TopicRoutingConfigData;
+import com.microservices.demo.config.TopicRoutingConfigData.Lane;
+import com.microservices.demo.config.TopicRoutingConfigData.Route;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData.OverflowPolicy;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.backpressure.RecordSpill;
+import com.microservices.demo.kafka.producer.backpressure.SpillReplayer;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.init.KafkaReadiness;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.routing.TopicRouter;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.microservices.demo.twitter.to.kafka.service.pipeline.impl.SampleTweets.tweet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoutingIngestPipelineTest {
+
+    private final RecordingKafkaProducer kafkaProducer = new RecordingKafkaProducer();
+
+    private final TopicRoutingConfigData routingConfigData = new TopicRoutingConfigData();
+
+    private final KafkaReadiness kafkaReadiness = new KafkaReadiness();
+
+    private final KafkaProducerConfigData kafkaProducerConfigData = new KafkaProducerConfigData();
+
+    private final RecordSpill<Long, TwitterAvroModel> recordSpill = new InMemoryRecordSpill<>(kafkaProducerConfigData);
+
+    // Started by a lane with the SPILL policy, the replay interval is longer than any test so it never sends
+    private SpillReplayer spillReplayer;
+
+    private RoutingIngestPipeline pipeline;
+
+    @AfterEach
+    public void shutdown() {
+        if (pipeline != null) {
+            kafkaProducer.completeAll();
+            pipeline.shutdown();
+            spillReplayer.shutdown();
+        }
+    }
+
+    @Test
+    public void fansOutEveryStatusToItsTopics() throws Exception {
+        routingConfigData.setRoutes(List.of(route("java-topic", List.of("java"), List.of()), route("vip-topic", List.of(), List.of(7L))));
+        pipeline = pipeline();
+        kafkaReadiness.open();
+
+        pipeline.accept(tweet(1, 7L, "java on the jvm"));
+        pipeline.accept(tweet(2, 8L, "java again"));
+        pipeline.accept(tweet(3, 7L, "hello"));
+        pipeline.accept(tweet(4, 9L, "hello"));
+        pipeline.accept(tweet(1, 7L, "java on the jvm"));
+        pipeline.accept(tweet(5, 7L, "Java en espa\u00f1ol"), "es");
+
+        assertTrue(kafkaProducer.awaitIds("java-topic", 3, 5_000));
+        assertTrue(kafkaProducer.awaitIds("vip-topic", 3, 5_000));
+        assertTrue(kafkaProducer.awaitIds("twitter-topic", 1, 5_000));
+        assertEquals(List.of(1L, 2L, 5L), kafkaProducer.sentIds("java-topic"));
+        assertEquals(List.of(1L, 3L, 5L), kafkaProducer.sentIds("vip-topic"));
+        assertEquals(List.of(4L), kafkaProducer.sentIds("twitter-topic"));
+        assertEquals(Set.of("java-topic", "vip-topic", "twitter-topic"), Set.copyOf(kafkaProducer.isolatedTopics()));
+    }
+
+    @Test
+    public void slowTopicDoesNotHoldBackTheOthers() throws Exception {
+        routingConfigData.setRoutes(List.of(route("slow-topic", List.of("kafka"), List.of()), route("fast-topic", List.of("kafka"), List.of())));
+        routingConfigData.setLanes(Map.of("slow-topic", lane(1, 2, 1)));
+        routingConfigData.setDefaultLane(lane(1, 100, 100));
+        kafkaProducer.hold("slow-topic");
+        pipeline = pipeline();
+        kafkaReadiness.open();
+
+        for (long id = 1; id <= 50; id++) {
+            pipeline.accept(tweet(id, id, "kafka tweet " + id));
+        }
+
+        assertTrue(kafkaProducer.awaitIds("fast-topic", 50, 5_000));
+        TopicLane slow = pipeline.getLanes().get(0);
+        assertEquals("slow-topic", slow.getTopicName());
+        assertEquals(1, slow.getInFlightBatches());
+        assertEquals(1, kafkaProducer.sentIds("slow-topic").size());
+        // Besides the batch in flight, the one the worker holds and the two in the queue, the rest was dropped
+        assertTrue(slow.getDroppedCount() >= 46);
+
+        kafkaProducer.completeAll();
+        assertTrue(kafkaProducer.awaitIds("slow-topic", 2, 5_000));
+    }
+
+    @Test
+    public void slowTopicSpillsItsOverflow() throws Exception {
+        routingConfigData.setRoutes(List.of(route("slow-topic", List.of("kafka"), List.of()), route("fast-topic", List.of("kafka"), List.of())));
+        Lane slowLane = lane(1, 2, 1);
+        slowLane.setOverflowPolicy(OverflowPolicy.SPILL);
+        routingConfigData.setLanes(Map.of("slow-topic", slowLane));
+        routingConfigData.setDefaultLane(lane(1, 100, 100));
+        kafkaProducer.hold("slow-topic");
+        pipeline = pipeline();
+        kafkaReadiness.open();
+
+        for (long id = 1; id <= 50; id++) {
+            pipeline.accept(tweet(id, id, "kafka tweet " + id));
+        }
+
+        assertTrue(kafkaProducer.awaitIds("fast-topic", 50, 5_000));
+        TopicLane slow = pipeline.getLanes().get(0);
+        assertEquals(0, slow.getDroppedCount());
+        assertTrue(slow.getSpilledCount() >= 46);
+        assertEquals(slow.getSpilledCount(), recordSpill.size());
+        assertEquals("slow-topic", recordSpill.peek().topicName());
+    }
+
+    @Test
+    public void languageRoutesMatchStatusesReadFromRawJson() throws Exception {
+        Route spanish = route("es-topic", List.of(), List.of());
+        spanish.setLanguages(List.of("es"));
+        routingConfigData.setRoutes(List.of(spanish));
+        pipeline = pipeline();
+        kafkaReadiness.open();
+        // The raw json path the stream runners take, the language is not part of the avro model
+        TwitterKafkaStatusListener statusListener = new TwitterKafkaStatusListener(new KafkaConfigData(), pipeline,
+                new TwitterJsonToAvroTransformer(new IngestMetrics(new SimpleMeterRegistry())),
+                new TweetFilter(new TwitterToKafkaServiceConfigData()));
+
+        statusListener.onRawStatus(rawStatus(1, "es"));
+        statusListener.onRawStatus(rawStatus(2, "en"));
+
+        assertTrue(kafkaProducer.awaitIds("es-topic", 1, 5_000));
+        assertTrue(kafkaProducer.awaitIds("twitter-topic", 1, 5_000));
+        assertEquals(List.of(1L), kafkaProducer.sentIds("es-topic"));
+        assertEquals(List.of(2L), kafkaProducer.sentIds("twitter-topic"));
+    }
+
+    @Test
+    public void buffersUntilKafkaIsReady() throws InterruptedException {
+        routingConfigData.setRoutes(List.of(route("java-topic", List.of("java"), List.of())));
+        pipeline = pipeline();
+
+        pipeline.accept(tweet(1, 1L, "java"));
+        assertTrue(pipeline.isBuffered());
+        assertFalse(kafkaProducer.awaitIds("java-topic", 1, 200));
+        assertEquals(1, pipeline.getLanes().get(0).getQueueSize());
+
+        kafkaReadiness.open();
+        assertTrue(kafkaProducer.awaitIds("java-topic", 1, 5_000));
+    }
+
+    private RoutingIngestPipeline pipeline() {
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setTopicName("twitter-topic");
+        kafkaConfigData.setTopicNamesToCreate(List.of("twitter-topic", "java-topic", "vip-topic", "slow-topic", "fast-topic"));
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setEnableDeduplication(true);
+        kafkaProducerConfigData.setSpillReplayIntervalMs(TimeUnit.MINUTES.toMillis(10));
+        spillReplayer = new SpillReplayer(kafkaProducerConfigData, recordSpill, null);
+        RoutingIngestPipeline routingIngestPipeline = new RoutingIngestPipeline(routingConfigData, kafkaConfigData,
+                new TopicRouter(routingConfigData, kafkaConfigData), kafkaProducer,
+                new ExecutorFactory(new ExecutionConfigData()), new TweetIdDeduplicator(configData), kafkaReadiness,
+                recordSpill, spillReplayer);
+        routingIngestPipeline.start();
+        return routingIngestPipeline;
+    }
+
+    private static Lane lane(int batchSize, int queueCapacity, int maxInFlightBatches) {
+        Lane lane = new Lane();
+        lane.setBatchSize(batchSize);
+        lane.setQueueCapacity(queueCapacity);
+        lane.setMaxInFlightBatches(maxInFlightBatches);
+        lane.setFlushIntervalMs(10L);
+        lane.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        return lane;
+    }
+
+    private static Route route(String topic, List<String> keywords, List<Long> userIds) {
+        Route route = new Route();
+        route.setTopic(topic);
+        route.setKeywords(keywords);
+        route.setUserIds(userIds);
+        return route;
+    }
+
+    private static String rawStatus(long id, String lang) {
+        return "{\"id\":" + id + ",\"text\":\"tweet number " + id + "\",\"lang\":\"" + lang + "\","
+                + "\"created_at\":\"Tue Nov 14 22:13:20 +0000 2023\",\"user\":{\"id\":7}}";
+    }
+}
@@ -0,0 +1,23 @@
+package com.microservices.demo.twitter.to.kafka.service.pipeline.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+
+// Avro models as the stream sources hand them to the pipelines, the creation time is derived from the id
+final class SampleTweets {
+
+    private SampleTweets() {
+    }
+
+    static TwitterAvroModel tweet(long id) {
+        return tweet(id, id * 10, "tweet number " + id);
+    }
+
+    static TwitterAvroModel tweet(long id, long userId, String text) {
+        return TwitterAvroModel.newBuilder()
+                .setId(id)
+                .setUserId(userId)
+                .setText(text)
+                .setCreatedAt(1_700_000_000_000L + id)
+                .build();
+    }
+}
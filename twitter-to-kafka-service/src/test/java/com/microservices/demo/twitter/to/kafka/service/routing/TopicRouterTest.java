@@ -0,0 +1,103 @@
+package com.microservices.demo.twitter.to.kafka.service.routing;
+
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TopicRoutingConfigData;
+import com.microservices.demo.config.TopicRoutingConfigData.Route;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TopicRouterTest {
+
+    @Test
+    public void fansOutToTheTopicOfEveryMatchedRoute() {
+        TopicRoutingConfigData configData = new TopicRoutingConfigData();
+        configData.setRoutes(List.of(
+                route("java-topic", List.of("java", "jvm"), List.of(), List.of(), 0, 0),
+                route("vip-topic", List.of(), List.of(42L, 7L), List.of(), 0, 0),
+                route("es-topic", List.of(), List.of(), List.of("ES"), 0, 0),
+                route("long-topic", List.of(), List.of(), List.of(), 100, 0)));
+        TopicRouter topicRouter = new TopicRouter(configData, kafkaConfig());
+
+        assertEquals(List.of("java-topic", "vip-topic", "es-topic", "long-topic", "twitter-topic"), topicRouter.getTopics());
+        assertEquals(List.of("java-topic", "vip-topic", "es-topic"), topics(topicRouter, topicRouter.route("Me gusta JAVA", 42L, "es")));
+        assertEquals(List.of("vip-topic"), topics(topicRouter, topicRouter.route("JavaScript", 7L, "en")));
+        assertEquals(List.of("long-topic"), topics(topicRouter, topicRouter.route("x".repeat(100), 1L, null)));
+        assertEquals(List.of("twitter-topic"), topics(topicRouter, topicRouter.route("nothing to see", 1L, "en")));
+        assertEquals(1, topicRouter.getUnmatchedCount());
+    }
+
+    @Test
+    public void everyConditionOfARouteMustHold() {
+        TopicRoutingConfigData configData = new TopicRoutingConfigData();
+        configData.setRoutes(List.of(route("hot-topic", List.of("kafka"), List.of(42L), List.of("en"), 0, 20)));
+        TopicRouter topicRouter = new TopicRouter(configData, kafkaConfig());
+
+        assertEquals(List.of("hot-topic"), topics(topicRouter, topicRouter.route("kafka rocks", 42L, "en")));
+        assertEquals(List.of("twitter-topic"), topics(topicRouter, topicRouter.route("kafka rocks", 43L, "en")));
+        assertEquals(List.of("twitter-topic"), topics(topicRouter, topicRouter.route("kafka rocks", 42L, "de")));
+        assertEquals(List.of("twitter-topic"), topics(topicRouter, topicRouter.route("kafka rocks and rolls all day", 42L, "en")));
+        // Language routes do not match a tweet of unknown language
+        assertEquals(List.of("twitter-topic"), topics(topicRouter, topicRouter.route("kafka rocks", 42L, null)));
+    }
+
+    @Test
+    public void routesOfOneTopicShareItsLane() {
+        TopicRoutingConfigData configData = new TopicRoutingConfigData();
+        configData.setRoutes(List.of(
+                route("cold-topic", List.of("spring"), List.of(), List.of(), 0, 0),
+                route("cold-topic", List.of(), List.of(), List.of("fr"), 0, 0)));
+        configData.setSendUnmatchedToDefaultTopic(false);
+        TopicRouter topicRouter = new TopicRouter(configData, kafkaConfig());
+
+        assertEquals(List.of("cold-topic"), topicRouter.getTopics());
+        assertEquals(1L, topicRouter.route("spring boot", 1L, "fr"));
+        assertEquals(0L, topicRouter.route("quarkus", 1L, "en"));
+        assertEquals(1, topicRouter.getUnmatchedCount());
+    }
+
+    @Test
+    public void rejectsMoreRoutesThanBitsInTheMask() {
+        TopicRoutingConfigData configData = new TopicRoutingConfigData();
+        List<Route> routes = new ArrayList<>();
+        for (int i = 0; i <= TopicRouter.MAX_ROUTES; i++) {
+            routes.add(route("topic-" + i, List.of("keyword" + i), List.of(), List.of(), 0, 0));
+        }
+        configData.setRoutes(routes);
+
+        assertThrows(TwitterToKafkaServiceException.class, () -> new TopicRouter(configData, kafkaConfig()));
+    }
+
+    private static List<String> topics(TopicRouter topicRouter, long topicBits) {
+        List<String> topics = new ArrayList<>();
+        for (int i = 0; i < topicRouter.getTopics().size(); i++) {
+            if ((topicBits & (1L << i)) != 0) {
+                topics.add(topicRouter.getTopics().get(i));
+            }
+        }
+        return topics;
+    }
+
+    private static Route route(String topic, List<String> keywords, List<Long> userIds, List<String> languages,
+                               int minTextLength, int maxTextLength) {
+        Route route = new Route();
+        route.setTopic(topic);
+        route.setKeywords(keywords);
+        route.setUserIds(userIds);
+        route.setLanguages(languages);
+        route.setMinTextLength(minTextLength);
+        route.setMaxTextLength(maxTextLength);
+        return route;
+    }
+
+    private static KafkaConfigData kafkaConfig() {
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setTopicName("twitter-topic");
+        return kafkaConfigData;
+    }
+}
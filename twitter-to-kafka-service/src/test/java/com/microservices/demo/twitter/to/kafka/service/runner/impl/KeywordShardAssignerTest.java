@@ -0,0 +1,34 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KeywordShardAssignerTest {
+
+    private static final List<String> KEYWORDS = IntStream.range(0, 400).mapToObj(i -> "keyword" + i).collect(Collectors.toList());
+
+    @Test
+    public void assignsEveryKeywordOnceAndEvenly() {
+        List<List<String>> shards = KeywordShardAssigner.assign(KEYWORDS, 4);
+        assertEquals(KEYWORDS.size(), shards.stream().mapToInt(List::size).sum());
+        assertEquals(KEYWORDS.stream().sorted().toList(), shards.stream().flatMap(List::stream).sorted().toList());
+        shards.forEach(shard -> assertTrue(shard.size() > 60 && shard.size() < 140, "unbalanced shard of " + shard.size()));
+        assertEquals(shards, KeywordShardAssigner.assign(KEYWORDS, 4));
+        assertEquals(KeywordShardAssigner.shardOf("Kafka", 4), KeywordShardAssigner.shardOf(" kafka", 4));
+    }
+
+    @Test
+    public void addingAShardOnlyMovesKeywordsToTheNewShard() {
+        for (String keyword : KEYWORDS) {
+            int before = KeywordShardAssigner.shardOf(keyword, 4);
+            int after = KeywordShardAssigner.shardOf(keyword, 5);
+            assertTrue(after == before || after == 4, keyword + " moved from shard " + before + " to " + after);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData;
+import com.microservices.demo.config.KafkaProducerConfigData.BackpressurePolicy;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.backpressure.InFlightLimiter;
+import com.microservices.demo.kafka.producer.backpressure.InMemoryRecordSpill;
+import com.microservices.demo.kafka.producer.config.service.impl.TwitterKafkaProducer;
+import com.microservices.demo.kafka.producer.metrics.ProducerMetrics;
+import com.microservices.demo.twitter.to.kafka.service.dedup.TweetIdDeduplicator;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.impl.DirectIngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.mock.MockProducerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MockKafkaStreamRunnerTest {
+
+    private MockKafkaStreamRunner runner;
+
+    @AfterEach
+    public void stop() {
+        if (runner != null) {
+            runner.shutdown();
+        }
+    }
+
+    @Test
+    public void skipsStatusesThatTimeOutWaitingForTheProducer() throws Exception {
+        // Acks only when the test completes a send, so the one in-flight slot stays taken and every later send times out
+        MockProducer<Long, TwitterAvroModel> mockProducer = new MockProducer<>(false, new LongSerializer(), (topic, data) -> new byte[0]) {
+            @Override
+            public void close(Duration timeout) {
+            }
+        };
+        KafkaProducerConfigData kafkaProducerConfigData = new KafkaProducerConfigData();
+        kafkaProducerConfigData.setEnableBackpressure(true);
+        kafkaProducerConfigData.setMaxInFlightRecords(1);
+        kafkaProducerConfigData.setBackpressureBlockTimeoutMs(5L);
+        kafkaProducerConfigData.setBackpressurePolicy(BackpressurePolicy.BLOCK);
+        TwitterKafkaProducer twitterKafkaProducer = new TwitterKafkaProducer(
+                new KafkaTemplate<>(new MockProducerFactory<>(() -> mockProducer)),
+                kafkaProducerConfigData, new InFlightLimiter(kafkaProducerConfigData), new InMemoryRecordSpill<>(kafkaProducerConfigData),
+                new ExecutionConfigData(), new ExecutorFactory(new ExecutionConfigData()),
+                new ProducerMetrics(new SimpleMeterRegistry()));
+
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setTwitterKeywords(List.of("Java", "Kafka"));
+        configData.setMockMinTweetLength(5);
+        configData.setMockMaxTweetLength(15);
+        configData.setMockSleepMs(1L);
+        IngestMetrics ingestMetrics = new IngestMetrics(new SimpleMeterRegistry());
+        KafkaConfigData kafkaConfigData = new KafkaConfigData();
+        kafkaConfigData.setTopicName("twitter-topic");
+        TwitterKafkaStatusListener statusListener = new TwitterKafkaStatusListener(kafkaConfigData,
+                new DirectIngestPipeline(kafkaConfigData, twitterKafkaProducer, new TweetIdDeduplicator(configData)),
+                new TwitterJsonToAvroTransformer(ingestMetrics), new TweetFilter(configData));
+        runner = new MockKafkaStreamRunner(configData, statusListener, new ExecutorFactory(new ExecutionConfigData()), ingestMetrics);
+        Counter backpressured = ingestMetrics.statusesBackpressured("mock");
+
+        runner.start();
+
+        assertTrue(await(() -> backpressured.count() >= 3), "statuses timed out on the full producer are skipped");
+        assertEquals(1, mockProducer.history().size());
+        // Once the producer acks, the stream thread is still there to send the next status
+        mockProducer.completeNext();
+        assertTrue(await(() -> mockProducer.history().size() == 2), "stream goes on after the timeouts");
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+}
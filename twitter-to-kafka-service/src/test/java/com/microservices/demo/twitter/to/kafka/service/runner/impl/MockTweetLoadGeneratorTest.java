@@ -0,0 +1,111 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.twitter.to.kafka.service.exception.TwitterToKafkaServiceException;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MockTweetLoadGeneratorTest {
+
+    @Test
+    public void sendsTargetRateForConfiguredDuration() throws InterruptedException {
+        TwitterToKafkaServiceConfigData configData = config();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        Counter receivedCounter = new SimpleMeterRegistry().counter("twitter.ingest.statuses.received");
+        MockTweetLoadGenerator mockTweetLoadGenerator = new MockTweetLoadGenerator(configData, statusListener(configData, ids),
+                new ExecutorFactory(new ExecutionConfigData()), receivedCounter);
+
+        mockTweetLoadGenerator.start();
+        assertTrue(mockTweetLoadGenerator.awaitFinished(30, TimeUnit.SECONDS));
+
+        // The schedule ends after exactly one second worth of tweets, however late the generator threads ran
+        assertEquals(2000, mockTweetLoadGenerator.getSentCount());
+        assertEquals(0, mockTweetLoadGenerator.getFailedCount());
+        assertEquals(2000, ids.size());
+        assertEquals(2000, receivedCounter.count());
+    }
+
+    @Test
+    public void sendsRawJsonWhenConfigured() throws InterruptedException {
+        TwitterToKafkaServiceConfigData configData = config();
+        configData.setMockLoadTestRawJson(true);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        MockTweetLoadGenerator mockTweetLoadGenerator = new MockTweetLoadGenerator(configData, statusListener(configData, ids),
+                new ExecutorFactory(new ExecutionConfigData()), new SimpleMeterRegistry().counter("twitter.ingest.statuses.received"));
+
+        mockTweetLoadGenerator.start();
+        assertTrue(mockTweetLoadGenerator.awaitFinished(30, TimeUnit.SECONDS));
+
+        assertEquals(2000, mockTweetLoadGenerator.getSentCount());
+        assertEquals(2000, ids.size());
+    }
+
+    @Test
+    public void countsFailedSends() throws InterruptedException {
+        TwitterToKafkaServiceConfigData configData = config();
+        TwitterKafkaStatusListener failingListener = new TwitterKafkaStatusListener(new KafkaConfigData(), new IngestPipeline() {
+            @Override
+            public void accept(TwitterAvroModel twitterAvroModel) {
+                throw new TwitterToKafkaServiceException("Kafka is down");
+            }
+        }, new TwitterJsonToAvroTransformer(new IngestMetrics(new SimpleMeterRegistry())), new TweetFilter(configData));
+        MockTweetLoadGenerator mockTweetLoadGenerator = new MockTweetLoadGenerator(configData, failingListener,
+                new ExecutorFactory(new ExecutionConfigData()), new SimpleMeterRegistry().counter("twitter.ingest.statuses.received"));
+
+        mockTweetLoadGenerator.start();
+        assertTrue(mockTweetLoadGenerator.awaitFinished(30, TimeUnit.SECONDS));
+
+        assertEquals(0, mockTweetLoadGenerator.getSentCount());
+        assertEquals(2000, mockTweetLoadGenerator.getFailedCount());
+    }
+
+    @Test
+    public void rejectsRateOfZero() {
+        TwitterToKafkaServiceConfigData configData = config();
+        configData.setMockLoadTestTweetsPerSecond(0L);
+        assertThrows(TwitterToKafkaServiceException.class, () -> new MockTweetLoadGenerator(configData,
+                statusListener(configData, ConcurrentHashMap.newKeySet()), new ExecutorFactory(new ExecutionConfigData()),
+                new SimpleMeterRegistry().counter("twitter.ingest.statuses.received")));
+    }
+
+    private static TwitterToKafkaServiceConfigData config() {
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setTwitterKeywords(List.of("Java", "Kafka"));
+        configData.setMockMinTweetLength(5);
+        configData.setMockMaxTweetLength(15);
+        configData.setMockLoadTestThreads(4);
+        configData.setMockLoadTestTweetsPerSecond(2000L);
+        configData.setMockLoadTestDurationSeconds(1L);
+        return configData;
+    }
+
+    // The real listener with the json transformer and a disabled tweet filter in front of a pipeline that collects the ids
+    private static TwitterKafkaStatusListener statusListener(TwitterToKafkaServiceConfigData configData, Set<Long> ids) {
+        return new TwitterKafkaStatusListener(new KafkaConfigData(), new IngestPipeline() {
+            @Override
+            public void accept(TwitterAvroModel twitterAvroModel) {
+                assertTrue(twitterAvroModel.getText().contains("Java") || twitterAvroModel.getText().contains("Kafka"));
+                ids.add(twitterAvroModel.getId());
+            }
+        }, new TwitterJsonToAvroTransformer(new IngestMetrics(new SimpleMeterRegistry())), new TweetFilter(configData));
+    }
+}
@@ -0,0 +1,50 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import org.junit.jupiter.api.Test;
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MockTweetSynthesizerTest {
+
+    private static final String[] KEYWORDS = new String[]{"Java", "Kafka", "Straße"};
+
+    private final MockTweetSynthesizer mockTweetSynthesizer = new MockTweetSynthesizer(KEYWORDS, 5, 15);
+
+    @Test
+    public void rawJsonIsParsedByTwitter4j() throws TwitterException {
+        long now = System.currentTimeMillis();
+        // The reused buffer must not leak the end of a longer tweet into a shorter one
+        for (int i = 0; i < 1000; i++) {
+            Status status = TwitterObjectFactory.createStatus(mockTweetSynthesizer.createTweetAsRawJson());
+            assertTrue(status.getId() >= 0);
+            assertTrue(status.getUser().getId() >= 0);
+            assertTrue(Math.abs(status.getCreatedAt().getTime() - now) < 60_000);
+            assertWordsAndKeyword(status.getText());
+        }
+    }
+
+    @Test
+    public void tweetModelHasWordsAndKeyword() {
+        for (int i = 0; i < 1000; i++) {
+            TwitterAvroModel twitterAvroModel = mockTweetSynthesizer.createTweet();
+            assertTrue(twitterAvroModel.getId() >= 0);
+            assertTrue(twitterAvroModel.getUserId() >= 0);
+            assertWordsAndKeyword(twitterAvroModel.getText());
+        }
+    }
+
+    private void assertWordsAndKeyword(String text) {
+        String[] words = text.split(" ");
+        // 5 to 15 words plus the keyword
+        assertTrue(words.length >= 6 && words.length <= 16, text);
+        boolean hasKeyword = false;
+        for (String keyword : KEYWORDS) {
+            hasKeyword |= text.contains(keyword);
+        }
+        assertTrue(hasKeyword, text);
+    }
+}
@@ -0,0 +1,64 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.compression.TweetTextCodec;
+import com.microservices.demo.kafka.producer.compression.TweetTextDictionary;
+import com.microservices.demo.kafka.producer.serializer.TwitterAvroModelDeserializer;
+import com.microservices.demo.kafka.producer.serializer.TwitterAvroModelSerializer;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MockTweetTextCompressionTest {
+
+    private static final String[] KEYWORDS = new String[]{"Java", "Kafka", "Straße"};
+
+    private final MockTweetSynthesizer mockTweetSynthesizer = new MockTweetSynthesizer(KEYWORDS, 5, 15);
+
+    @TempDir
+    private Path dictionaryDirectory;
+
+    @Test
+    public void dictionaryTrainedOnMockTweetsShrinksTheOthers() throws IOException {
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(mockTweetSynthesizer.createTweet().getText());
+        }
+        TweetTextDictionary dictionary = TweetTextDictionary.train(samples, 4 * 1024);
+        dictionary.save(dictionaryDirectory);
+        Map<String, Object> configs = Map.of(
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_DIRECTORY_CONFIG, dictionaryDirectory.toString(),
+                TwitterAvroModelSerializer.TEXT_DICTIONARY_ID_CONFIG, Integer.toUnsignedString(dictionary.getId()));
+        TwitterAvroModelSerializer serializer = new TwitterAvroModelSerializer((subject, schema) -> 1);
+        serializer.configure(configs, false);
+        TwitterAvroModelDeserializer deserializer = new TwitterAvroModelDeserializer();
+        deserializer.configure(configs, false);
+
+        long plainBytes = 0;
+        long compressedBytes = 0;
+        for (int i = 0; i < 1000; i++) {
+            TwitterAvroModel tweet = mockTweetSynthesizer.createTweet();
+            RecordHeaders headers = new RecordHeaders();
+            byte[] compressed = serializer.serialize("twitter-topic", headers, tweet);
+            plainBytes += serializer.serialize("twitter-topic", tweet).length;
+            compressedBytes += compressed.length;
+            assertNotNull(headers.lastHeader(TweetTextCodec.DICTIONARY_ID_HEADER));
+            assertEquals(tweet, deserializer.deserialize("twitter-topic", headers, compressed));
+        }
+        // The mock tweets are made of a small vocabulary, a trained dictionary takes off far more than a quarter
+        assertTrue(compressedBytes * 4 < plainBytes * 3, compressedBytes + " of " + plainBytes + " bytes");
+
+        serializer.close();
+        deserializer.close();
+    }
+}
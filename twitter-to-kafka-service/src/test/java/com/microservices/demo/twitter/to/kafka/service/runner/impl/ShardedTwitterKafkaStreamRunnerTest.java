@@ -0,0 +1,189 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.KafkaConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.listener.TwitterKafkaStatusListener;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import twitter4j.ConnectionLifeCycleListener;
+import twitter4j.FilterQuery;
+import twitter4j.RawStreamListener;
+import twitter4j.TwitterStream;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedTwitterKafkaStreamRunnerTest {
+
+    private static final List<String> KEYWORDS = List.of("Java", "Kafka", "Spring", "Avro", "Docker", "Elastic",
+            "Microservices", "Zookeeper", "Kubernetes", "Reactor", "Micrometer", "Twitter");
+
+    // Every stream the runner created, in the order of creation
+    private final List<FakeTwitterStream> streams = new CopyOnWriteArrayList<>();
+
+    private final Set<Long> sentIds = ConcurrentHashMap.newKeySet();
+
+    private final TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+
+    private ShardedTwitterKafkaStreamRunner runner;
+
+    @AfterEach
+    public void shutdown() {
+        if (runner != null) {
+            runner.shutdown();
+        }
+    }
+
+    @Test
+    public void rebalanceReconnectsOnlyTheShardsWhoseKeywordsChanged() {
+        List<List<String>> assignment = startRunner(KEYWORDS, 3);
+        assertEquals(3, streams.size());
+
+        List<String> keywords = new ArrayList<>(KEYWORDS);
+        keywords.add("Grafana");
+        configData.setTwitterKeywords(keywords);
+        runner.rebalance();
+
+        List<List<String>> newAssignment = KeywordShardAssigner.assign(keywords, 3);
+        int changedShard = KeywordShardAssigner.shardOf("Grafana", 3);
+        assertEquals(3, streams.size());
+        for (int i = 0; i < 3; i++) {
+            FakeTwitterStream stream = streams.get(i);
+            List<FilterQuery> expectedFilters = i == changedShard
+                    ? List.of(filterQuery(assignment.get(i)), filterQuery(newAssignment.get(i)))
+                    : List.of(filterQuery(assignment.get(i)));
+            assertEquals(expectedFilters, stream.filters, "filters of shard " + i);
+            assertFalse(stream.shutdown);
+        }
+    }
+
+    @Test
+    public void rebalanceStopsTheShardsBeyondAReducedShardCount() {
+        startRunner(KEYWORDS, 3);
+
+        configData.setTwitterStreamShards(2);
+        runner.rebalance();
+
+        assertTrue(streams.get(2).shutdown);
+        assertFalse(streams.get(0).shutdown);
+        assertFalse(streams.get(1).shutdown);
+        List<List<String>> assignment = KeywordShardAssigner.assign(KEYWORDS, 2);
+        List<TwitterStreamShard.Health> health = runner.getShardHealth();
+        assertEquals(2, health.size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals(i, health.get(i).shard());
+            assertEquals(assignment.get(i), health.get(i).keywords());
+            assertEquals(filterQuery(assignment.get(i)), streams.get(i).filters.get(streams.get(i).filters.size() - 1));
+        }
+    }
+
+    @Test
+    public void shardHealthReportsEveryShard() throws InterruptedException {
+        List<List<String>> assignment = startRunner(KEYWORDS, 2);
+        FakeTwitterStream first = streams.get(0);
+        first.connectionLifeCycleListener.onConnect();
+        first.rawStreamListener.onMessage(new MockTweetSynthesizer(new String[]{"Java"}, 5, 15).createTweetAsRawJson());
+        first.rawStreamListener.onMessage("{\"created_at\":");
+        first.rawStreamListener.onException(new IllegalStateException("connection reset"));
+
+        assertTrue(await(() -> sentIds.size() == 1 && runner.getShardHealth().get(0).errorCount() == 2));
+        List<TwitterStreamShard.Health> health = runner.getShardHealth();
+        assertEquals(2, health.size());
+        TwitterStreamShard.Health firstHealth = health.get(0);
+        assertEquals(0, firstHealth.shard());
+        assertEquals(assignment.get(0), firstHealth.keywords());
+        assertTrue(firstHealth.connected());
+        assertEquals(2, firstHealth.receivedCount());
+        assertEquals(0, firstHealth.queuedCount());
+        TwitterStreamShard.Health secondHealth = health.get(1);
+        assertEquals(1, secondHealth.shard());
+        assertEquals(assignment.get(1), secondHealth.keywords());
+        assertFalse(secondHealth.connected());
+        assertEquals(0, secondHealth.receivedCount());
+        assertEquals(0, secondHealth.errorCount());
+
+        first.connectionLifeCycleListener.onDisconnect();
+        assertFalse(runner.getShardHealth().get(0).connected());
+    }
+
+    // Starts the runner on fake streams, every shard of this assignment has keywords so the streams are in shard order
+    private List<List<String>> startRunner(List<String> keywords, int shardCount) {
+        List<List<String>> assignment = KeywordShardAssigner.assign(keywords, shardCount);
+        assertTrue(assignment.stream().noneMatch(List::isEmpty));
+        configData.setTwitterKeywords(keywords);
+        configData.setTwitterStreamShards(shardCount);
+        configData.setTwitterStreamShardHealthIntervalSeconds(0L);
+        IngestMetrics ingestMetrics = new IngestMetrics(new SimpleMeterRegistry());
+        TwitterKafkaStatusListener statusListener = new TwitterKafkaStatusListener(new KafkaConfigData(), new IngestPipeline() {
+            @Override
+            public void accept(TwitterAvroModel twitterAvroModel) {
+                sentIds.add(twitterAvroModel.getId());
+            }
+        }, new TwitterJsonToAvroTransformer(ingestMetrics), new TweetFilter(configData));
+        runner = new ShardedTwitterKafkaStreamRunner(configData, statusListener, new ExecutorFactory(new ExecutionConfigData()),
+                ingestMetrics, () -> {
+            FakeTwitterStream stream = new FakeTwitterStream();
+            streams.add(stream);
+            return stream.proxy;
+        });
+        runner.start();
+        return assignment;
+    }
+
+    private static FilterQuery filterQuery(List<String> keywords) {
+        return new FilterQuery(keywords.toArray(new String[0]));
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    // Records what the shard does with its twitter4j stream, and keeps the listeners so the test can play the stream
+    private static class FakeTwitterStream {
+
+        private final List<FilterQuery> filters = new CopyOnWriteArrayList<>();
+
+        private volatile boolean shutdown;
+
+        private volatile RawStreamListener rawStreamListener;
+
+        private volatile ConnectionLifeCycleListener connectionLifeCycleListener;
+
+        private final TwitterStream proxy = (TwitterStream) Proxy.newProxyInstance(TwitterStream.class.getClassLoader(),
+                new Class<?>[]{TwitterStream.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "addListener" -> rawStreamListener = (RawStreamListener) args[0];
+                        case "addConnectionLifeCycleListener" -> connectionLifeCycleListener = (ConnectionLifeCycleListener) args[0];
+                        case "filter" -> filters.add((FilterQuery) args[0]);
+                        case "shutdown" -> shutdown = true;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                    return proxy;
+                });
+    }
+}
@@ -0,0 +1,199 @@
+package com.microservices.demo.twitter.to.kafka.service.runner.impl;
+
+import com.microservices.demo.common.execution.ExecutorFactory;
+import com.microservices.demo.config.ExecutionConfigData;
+import com.microservices.demo.config.RetryConfigData;
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.kafka.producer.exception.ProducerBackpressureException;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.pipeline.IngestPipeline;
+import com.microservices.demo.twitter.to.kafka.service.transfromer.TwitterJsonToAvroTransformer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TwitterV2KafkaStreamRunnerTest {
+
+    private static final String STREAM = String.join("\r\n",
+            "{\"data\":{\"author_id\":\"2244994945\",\"created_at\":\"2021-06-07T12:34:56.789Z\",\"edit_history_tweet_ids\":[\"1\"],"
+                    + "\"id\":\"1401527435137454080\",\"text\":\"Kafka \\\"streams\\\" \\u00e9t\u00e9 \ud83d\ude80\\nJava\"},"
+                    + "\"matching_rules\":[{\"id\":\"3\",\"tag\":\"Kafka\"}]}",
+            "",
+            "{\"errors\":[{\"title\":\"operational-disconnect\"}]}",
+            "{\"data\":{\"id\":\"2\",\"text\":\"no author\"}}",
+            "{\"data\":{\"id\":\"3\",\"author_id\":\"4\",\"created_at\":\"1999-12-31T23:59:59Z\",\"text\":\"Java\"}}",
+            "{\"data\":{\"id\":\"5\",\"author_id\":\"6\",\"text\":\"no date\"}}",
+            "");
+
+    private final BlockingQueue<TwitterAvroModel> tweets = new LinkedBlockingQueue<>();
+
+    private final List<String> ruleRequests = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger streamConnections = new AtomicInteger();
+
+    private HttpServer twitterApi;
+
+    private TwitterV2KafkaStreamRunner runner;
+
+    @BeforeEach
+    public void startTwitterApi() throws IOException {
+        twitterApi = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        twitterApi.createContext("/2/tweets/search/stream/rules", exchange -> {
+            ruleRequests.add(exchange.getRequestMethod() + " " + new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            respond(exchange, exchange.getRequestMethod().equals("GET")
+                    ? "{\"data\":[{\"id\":\"1\",\"value\":\"Java\"},{\"id\":\"2\",\"value\":\"Scala\"}],\"meta\":{\"result_count\":2}}"
+                    : "{\"meta\":{}}");
+        });
+        twitterApi.createContext("/2/tweets/search/stream", exchange -> {
+            if (!"Bearer token".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            streamConnections.incrementAndGet();
+            // Chunked response, written in pieces that split lines and multi byte characters
+            exchange.sendResponseHeaders(200, 0);
+            byte[] stream = STREAM.getBytes(StandardCharsets.UTF_8);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                for (int offset = 0; offset < stream.length; offset += 7) {
+                    outputStream.write(stream, offset, Math.min(7, stream.length - offset));
+                    outputStream.flush();
+                }
+            }
+        });
+        twitterApi.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        if (runner != null) {
+            runner.shutdown();
+        }
+        twitterApi.stop(0);
+    }
+
+    @Test
+    public void streamsTweetsAndSyncsRules() throws InterruptedException {
+        startRunner(new IngestMetrics(new SimpleMeterRegistry()), tweets::add);
+
+        assertEquals(3, ruleRequests.size());
+        assertEquals("GET ", ruleRequests.get(0));
+        // The stale Scala rule is deleted, only the missing Kafka rule is added
+        assertEquals("POST {\"delete\":{\"ids\":[\"2\"]}}", ruleRequests.get(1));
+        assertTrue(ruleRequests.get(2).startsWith("POST {\"add\":[{"));
+        assertTrue(ruleRequests.get(2).contains("\"value\":\"Kafka\""));
+        assertFalse(ruleRequests.get(2).contains("Java"));
+
+        TwitterAvroModel first = tweets.poll(10, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertEquals(1401527435137454080L, first.getId());
+        assertEquals(2244994945L, first.getUserId());
+        assertEquals("Kafka \"streams\" \u00e9t\u00e9 \ud83d\ude80\nJava", first.getText());
+        assertEquals(Instant.parse("2021-06-07T12:34:56.789Z").toEpochMilli(), first.getCreatedAt());
+
+        // The tweet without an author is skipped, the one without a date is kept
+        TwitterAvroModel second = tweets.poll(10, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(3L, second.getId());
+        assertEquals(4L, second.getUserId());
+        assertEquals(Instant.parse("1999-12-31T23:59:59Z").toEpochMilli(), second.getCreatedAt());
+
+        TwitterAvroModel third = tweets.poll(10, TimeUnit.SECONDS);
+        assertNotNull(third);
+        assertEquals(5L, third.getId());
+        assertEquals(6L, third.getUserId());
+        assertNull(third.getCreatedAt());
+        assertNull(tweets.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void skipsTweetsThatTimeOutWaitingForTheProducerWithoutReconnecting() throws InterruptedException {
+        IngestMetrics ingestMetrics = new IngestMetrics(new SimpleMeterRegistry());
+        AtomicInteger accepted = new AtomicInteger();
+        startRunner(ingestMetrics, twitterAvroModel -> {
+            if (accepted.getAndIncrement() == 0) {
+                throw new ProducerBackpressureException("No in-flight capacity within the block timeout");
+            }
+            tweets.add(twitterAvroModel);
+        });
+
+        TwitterAvroModel next = tweets.poll(10, TimeUnit.SECONDS);
+        assertNotNull(next);
+        assertEquals(3L, next.getId());
+        assertEquals(5L, tweets.poll(10, TimeUnit.SECONDS).getId());
+        assertEquals(1.0, ingestMetrics.statusesBackpressured("twitter-v2").count());
+        assertEquals(1, streamConnections.get());
+    }
+
+    @Test
+    public void decoderSkipsUnreadableLinesButNotPipelineFailures() {
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        IngestMetrics ingestMetrics = new IngestMetrics(new SimpleMeterRegistry());
+        TwitterV2TweetDecoder decoder = new TwitterV2TweetDecoder(new TwitterJsonToAvroTransformer(ingestMetrics),
+                new TweetFilter(configData), false, ingestMetrics.statusesReceived("test"), (twitterAvroModel, lang) -> {
+                    throw new IllegalStateException("pipeline closed");
+                });
+
+        byte[] unreadable = "{\"data\":{\"id\":\"x1\"}}\n".getBytes(StandardCharsets.UTF_8);
+        decoder.decode(unreadable, 0, unreadable.length);
+
+        byte[] tweet = "{\"data\":{\"id\":\"1\",\"author_id\":\"2\",\"text\":\"Java\"}}\n".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IllegalStateException.class, () -> decoder.decode(tweet, 0, tweet.length));
+    }
+
+    private void startRunner(IngestMetrics ingestMetrics, Consumer<TwitterAvroModel> pipeline) {
+        String baseUrl = "http://localhost:" + twitterApi.getAddress().getPort() + "/2/tweets/search/stream";
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setTwitterKeywords(List.of("Java", "Kafka"));
+        configData.setTwitterV2BaseUrl(baseUrl);
+        configData.setTwitterV2RulesBaseUrl(baseUrl + "/rules");
+        configData.setTwitterV2BearerToken("token");
+        RetryConfigData retryConfigData = new RetryConfigData();
+        // Long enough that the stub's end of stream is not followed by a reconnect during the test
+        retryConfigData.setInitialIntervalMs(60000L);
+        retryConfigData.setMaxIntervalMs(60000L);
+        runner = new TwitterV2KafkaStreamRunner(configData, retryConfigData, new IngestPipeline() {
+            @Override
+            public void accept(TwitterAvroModel twitterAvroModel) {
+                pipeline.accept(twitterAvroModel);
+            }
+        }, new TweetFilter(configData), new TwitterJsonToAvroTransformer(ingestMetrics), WebClient.builder().build(),
+                new ExecutorFactory(new ExecutionConfigData()), ingestMetrics);
+
+        runner.start();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.microservices.demo.twitter.to.kafka.service.transfromer;
+
+import com.microservices.demo.config.TwitterToKafkaServiceConfigData;
+import com.microservices.demo.kafka.avro.model.TwitterAvroModel;
+import com.microservices.demo.twitter.to.kafka.service.filter.TweetFilter;
+import com.microservices.demo.twitter.to.kafka.service.metrics.IngestMetrics;
+import com.microservices.demo.twitter.to.kafka.service.runner.impl.MockTweetSynthesizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import twitter4j.Status;
+import twitter4j.TwitterException;
+import twitter4j.TwitterObjectFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TwitterJsonToAvroTransformerTest {
+
+    // A v1 retweet: entities, the nested user and the retweeted status all carry ids and texts of their own
+    private static final String RETWEET_JSON = "{\"created_at\":\"Wed Oct 10 20:19:24 +0000 2018\",\"id\":1050118621198921728,"
+            + "\"id_str\":\"1050118621198921728\",\"text\":\"RT @kafka: Streams \\\"are\\\" \\u00e9t\\u00e9 \\ud83d\\ude80\",\"truncated\":false,"
+            + "\"entities\":{\"hashtags\":[],\"user_mentions\":[{\"screen_name\":\"kafka\",\"id\":99,\"indices\":[3,9]}]},"
+            + "\"user\":{\"name\":\"Java\",\"entities\":{\"url\":{\"urls\":[]}},\"id\":6253282,\"id_str\":\"6253282\",\"verified\":true},"
+            + "\"retweeted_status\":{\"created_at\":\"Tue Oct 09 10:00:00 +0000 2018\",\"id\":1,\"text\":\"Streams\",\"user\":{\"id\":99}},"
+            + "\"coordinates\":null,\"retweet_count\":3,\"possibly_sensitive\":false,\"lang\":\"en\"}";
+
+    private final IngestMetrics ingestMetrics = new IngestMetrics(new SimpleMeterRegistry());
+
+    private final TwitterJsonToAvroTransformer transformer = new TwitterJsonToAvroTransformer(ingestMetrics);
+
+    @Test
+    public void readsSameFieldsAsTwitter4j() throws TwitterException {
+        TwitterAvroModel expected = fromTwitter4j(RETWEET_JSON);
+        assertEquals(expected, transformer.getTwitterAvroModelFromJson(RETWEET_JSON));
+        assertEquals(6253282L, expected.getUserId());
+
+        MockTweetSynthesizer mockTweetSynthesizer = new MockTweetSynthesizer(new String[]{"Java", "Kafka"}, 5, 15);
+        for (int i = 0; i < 100; i++) {
+            String mockTweet = mockTweetSynthesizer.createTweetAsRawJson();
+            assertEquals(fromTwitter4j(mockTweet), transformer.getTwitterAvroModelFromJson(mockTweet));
+        }
+    }
+
+    @Test
+    public void skipsMessagesThatAreNotStatuses() {
+        assertNull(transformer.getTwitterAvroModelFromJson("{\"delete\":{\"status\":{\"id\":1,\"user_id\":3}}}"));
+        assertNull(transformer.getTwitterAvroModelFromJson("{\"limit\":{\"track\":42}}"));
+    }
+
+    @Test
+    public void appliesTweetFilterWithStatusLanguage() {
+        TwitterToKafkaServiceConfigData configData = new TwitterToKafkaServiceConfigData();
+        configData.setEnableTweetFilter(true);
+        configData.setFilterLanguages(List.of("en"));
+        TweetFilter tweetFilter = new TweetFilter(configData);
+        assertNotNull(transformer.getTwitterAvroModelFromJson(RETWEET_JSON, tweetFilter));
+
+        configData.setFilterLanguages(List.of("de"));
+        tweetFilter.reload();
+        assertNull(transformer.getTwitterAvroModelFromJson(RETWEET_JSON, tweetFilter));
+        assertEquals(1, tweetFilter.getCount(TweetFilter.Verdict.LANGUAGE));
+    }
+
+    // The model read by twitter4j from the same json, as the json transformer has to produce it
+    private static TwitterAvroModel fromTwitter4j(String rawJson) throws TwitterException {
+        Status status = TwitterObjectFactory.createStatus(rawJson);
+        return new TwitterAvroModel(status.getUser().getId(), status.getId(), status.getText(), status.getCreatedAt().getTime());
+    }
+}